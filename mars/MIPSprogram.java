@@ -7,6 +7,8 @@
 	
    import java.util.*;
    import java.io.*;
+   import java.nio.file.Files;
+   import java.nio.file.Paths;
    import java.awt.event.*;
    import javax.swing.*;
 
@@ -51,6 +53,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
    // See explanation of method inSteppedExecution() below.
       private boolean steppedExecution = false;
+      private static final int SOURCE_BUFFER_SIZE = 64 * 1024; // read buffer for large source files
    
       private String filename;
       private ArrayList sourceList;
@@ -215,18 +218,23 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          this.filename = file;
          this.sourceList = new ArrayList();
          ErrorList errors = null;
-         BufferedReader inputFile;
+         BufferedReader inputFile = null;
          String line;
-         int lengthSoFar = 0;
          try {
-            inputFile = new BufferedReader(new FileReader(file));
+            inputFile = new BufferedReader(new InputStreamReader(Files.newInputStream(Paths.get(file))), 
+                                           SOURCE_BUFFER_SIZE);
             line = inputFile.readLine();
             while (line != null) {
                sourceList.add(line);
                line = inputFile.readLine();
             }
+            inputFile.close();
          } 
              catch (Exception e) {
+               if (inputFile != null) {
+                  try { inputFile.close(); }
+                      catch (IOException ioe) { }
+               }
                errors = new ErrorList();
                errors.add(new ErrorMessage((MIPSprogram)null,0,0,e.toString()));
                throw new ProcessingException(errors);
@@ -234,6 +242,27 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return;
       }
    
+   /**
+    * Discards the per-line token lists produced by tokenize().  The assembler calls
+    * this once its first pass over this file is complete, since nothing after that
+    * point refers to them.  Tokens belonging to program statements remain reachable
+    * through those statements.
+    **/
+
+       public void releaseTokenList() {
+         this.tokenList = null;
+      }
+
+   /**
+    * Discards the list of parsed statements produced by the assembler's first pass.
+    * The assembler calls this once its second pass has turned them into basic
+    * statements in the machine list.
+    **/
+
+       public void releaseParsedList() {
+         this.parsedList = null;
+      }
+
    /**
     * Tokenizes the MIPS source program. Program must have already been read from file.
     * @throws ProcessingException Will throw exception if errors occured while tokenizing.
@@ -319,6 +348,35 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          this.backStepper = new BackStepper();
          return asm.getErrorList();
       }
+
+   /**
+    * Loads a previously assembled MIPS program from an object file (see ObjectFile)
+    * in place of reading, tokenizing and assembling source.  Memory, the symbol tables
+    * and I/O files are initialized as the assembler would have left them.
+    * @param file String containing name of object file.
+    * @throws ProcessingException Will throw exception if the object file cannot be loaded.
+    **/
+
+       public void loadObjectFile(String file) throws ProcessingException {
+         this.filename = file;
+         this.sourceList = new ArrayList();
+         this.localSymbolTable = new SymbolTable(file);
+         this.backStepper = null;
+         this.machineList = ObjectFile.load(this, new File(file));
+         this.backStepper = new BackStepper();
+      }
+
+   /**
+    * Writes the assembled MIPS program to an object file, which can later be given to
+    * loadObjectFile().  Must be called after assemble() and before simulation
+    * alters memory.
+    * @param file String containing name of object file to write.
+    * @throws ProcessingException Will throw exception if the object file cannot be written.
+    **/
+
+       public void saveObjectFile(String file) throws ProcessingException {
+         ObjectFile.write(this, new File(file));
+      }
    
    
    /**
@@ -2,6 +2,15 @@
    import mars.venus.*;
    import mars.util.*;
    import mars.mips.dump.*;
+   import mars.tools.CacheSweep;
+   import mars.tools.CacheModel;
+   import mars.tools.CacheHierarchy;
+   import mars.tools.BranchPredictor;
+   import mars.tools.BranchPredictorEvaluator;
+   import mars.tools.HeadlessDevices;
+   import mars.mips.instructions.syscalls.VirtualClock;
+   import mars.mips.instructions.syscalls.RandomStreams;
+   import mars.assembler.ObjectFile;
    import mars.mips.hardware.*;
    import mars.simulator.*;
    import java.io.*;
@@ -56,6 +65,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	  ae<n>  -- terminate MARS with integer exit code <n> if an assemble error occurs.<br>
    	  ascii  -- display memory or register contents interpreted as ASCII
    		   b  -- brief - do not display register/memory address along with contents<br>
+           bp  -- evaluate branch predictors during the run and report the accuracy of each, overall<br>
+                  and for the most executed branches.  Option has 1 argument, e.g.<br>
+                  <tt>bp bimodal:4096,gshare:4096:12,tournament,tage:1024:4,btb:512:16</tt>.<br>
    		   d  -- print debugging statements<br>
            da  -- both a and d<br>
            db  -- MIPS delayed branching is enabled.<br>
@@ -68,19 +80,58 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             h  -- display help.  Use by itself and with no filename</br>
           hex  -- display memory or register contents in hexadecimal (default)<br>
            ic  -- display count of MIPS basic instructions 'executed'");
+        fl<n>  -- limit the MIPS program to opening <n> files in all.<br>
+        hl<n>  -- limit the MIPS program to allocating <n> bytes from the heap.<br>
+         json  -- display results (exit code, termination reason, instruction count, registers,<br>
+                  memory and errors) as a single JSON record.<br>
            mc  -- set memory configuration.  Option has 1 argument, e.g.<br>
                   <tt>mc &lt;config$gt;</tt>, where &lt;config$gt; is <tt>Default</tt><br>
                   for the MARS default 32-bit address space, <tt>CompactDataAtZero</tt> for<br>
                   a 32KB address space with data segment at address 0, or <tt>CompactTextAtZero</tt><br>
                   for a 32KB address space with text segment at address 0.<br>
            me  -- display MARS messages to standard err instead of standard out. Can separate via redirection.</br>
+        ol<n>  -- stop the MIPS program once it has output <n> bytes, to the console and files.<br>
            nc  -- do not display copyright notice (for cleaner redirected/piped output).</br>
    		  np  -- No Pseudo-instructions allowed ("ne" will work also).<br>
    		   p  -- Project mode - assemble all files in the same directory as given file.<br>
+         mobj  -- write assembled program to binary object file.  Option has 1 argument, e.g.<br>
+                  <tt>mobj &lt;file&gt;</tt>.  A filename ending in <tt>.mobj</tt> is loaded as an<br>
+                  object file instead of being assembled.<br>
+        cache  -- evaluate data cache configurations during the run and report hits and misses for<br>
+                  each.  Option has 1 argument, e.g. <tt>cache 8,16,32:1,4:1,2,full:lru,random</tt>,<br>
+                  giving lists of block counts, block sizes in words, set sizes in blocks and<br>
+                  replacement policies; every combination is evaluated.  Set sizes and policies<br>
+                  may be omitted (direct mapped, LRU).<br>
+    hierarchy  -- model L1 instruction and data caches and an optional L2 cache during the run and<br>
+                  report hits, misses, dirty evictions, memory traffic and average memory access<br>
+                  time.  Option has 1 argument, e.g. <tt>hierarchy l1i=64:4,l1d=64:4:2:wt:nwa,l2=512:8:4</tt>,<br>
+                  each cache <tt>&lt;blocks&gt;:&lt;words&gt;[:&lt;set size&gt;][:lru|random][:wb|wt][:wa|nwa]</tt>,<br>
+                  plus <tt>cycles=1:10:100</tt> for the L1 hit, L2 hit and memory access times.<br>
+         mimg  -- restore memory image before simulating.  Option has 1 argument, e.g.<br>
+                  <tt>mimg &lt;file&gt;</tt>, a file written by <tt>dump .all Image &lt;file&gt;</tt>.<br>
+                  Cannot be used with <tt>pa</tt>, since the image restores the stack and registers.<br>
+         mmio  -- attach GUI-free memory-mapped I/O devices for the run.  Option has 1 argument, e.g.<br>
+                  <tt>mmio keyboard=in.txt:100,display=-:5,segments=lab.txt</tt>.  The keyboard reads<br>
+                  characters from a file (<tt>-</tt> or omitted for standard input), each ready the given<br>
+                  number of instructions after the last is read; the display writes them to a file<br>
+                  (standard output by default), ready again the given number of instructions later;<br>
+                  segments records bytes written to the Digital Lab Sim seven-segment displays.<br>
+        rs<n>  -- seed the random number streams of syscalls 40-44 from integer <n>, for reproducible<br>
+                  runs.  Streams seeded by the RandSeed syscall (40) still use that seed.<br>
+           rr  -- display Resource Report: steps, heap bytes allocated, bytes output, files opened,<br>
+                  elapsed time and MIPS instructions per second.<br>
    	  se<n>  -- terminate MARS with integer exit code <n> if a simulation (run) error occurs.<br>
            sm  -- Start execution at Main - Execution will start at program statement globally labeled main.<br>
           smc  -- Self Modifying Code - Program can write and branch to either text or data segment<br>
+        trace  -- record the run to a binary trace file: each instruction fetched, memory access and<br>
+                  register write.  Option has 1 argument, e.g. <tt>trace &lt;file&gt;</tt>.  The trace<br>
+                  can be analyzed afterward with <tt>java mars.tools.TraceAnalyzer</tt>.<br>
+        vt<n>  -- Virtual Time: syscalls Time and Sleep use a simulated clock that starts at 0<br>
+                  and advances <n> nanoseconds per instruction executed.  Sleep advances it<br>
+                  without waiting, so timing results are reproducible.<br>
            we  -- assembler Warnings will be considered Errors<br>
+        wt<n>  -- stop the MIPS program after <n> milliseconds of wall-clock time, even if it<br>
+                  is sleeping or waiting for input.<br>
           <n>  -- where <n> is an integer maximum count of steps to simulate.<br>
                   If 0, negative or not specified, there is no maximum.<br>
        $<reg>  -- where <reg> is number or name (e.g. 5, t3, f10) of register whose <br>
@@ -108,6 +159,18 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private boolean startAtMain; // Whether to start execution at statement labeled 'main' 
       private boolean countInstructions; // Whether to count and report number of instructions executed 
       private boolean selfModifyingCode; // Whether to allow self-modifying code (e.g. write to text segment)
+      private boolean jsonResults; // Whether to report results as a single JSON record
+      private String errorReport; // errors that ended processing, for the JSON record
+      private boolean reportResources; // Whether to report resources used by the run
+      private int wallTimeLimit; // milliseconds the run may take, -1 for no limit
+      private int heapLimit; // bytes the MIPS program may allocate from heap, -1 for no limit
+      private int outputLimit; // bytes the MIPS program may output, -1 for no limit
+      private int openFileLimit; // files the MIPS program may open, -1 for no limit
+      private int virtualTimePerInstruction; // ns per instruction for simulated clock, -1 for host clock
+      private volatile boolean wallTimeLimitReached;
+      private long elapsedTime; // nanoseconds taken by the run
+      private boolean finished; // run reported, or being reported, by main thread or wall-time watchdog
+      private static final int wallTimeGracePeriod = 1000; // MS to wait for a stopped run to return
       private static final String rangeSeparator = "-";
       private static final int splashDuration = 2000; // time in MS to show splash screen
       private static final int memoryWordsPerLine = 4; // display 4 memory words, tab separated, per line
@@ -122,6 +185,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private int instructionCount;
       private PrintStream out; // stream for display of command line output
       private ArrayList dumpTriples = null; // each element holds 3 arguments for dump option
+      private String objectFileName = null; // file to receive assembled program for mobj option
+      private String memoryImageFileName = null; // memory image to restore before simulating, for mimg option
+      private String cacheSpecification = null; // data cache configurations to evaluate, for cache option
+      private CacheSweep cacheSweep = null; // evaluates them during the run
+      private String hierarchySpecification = null; // cache hierarchy to model, for hierarchy option
+      private CacheHierarchy cacheHierarchy = null; // models it during the run
+      private String traceFileName = null; // file to record the run in, for trace option
+      private String predictorSpecification = null; // branch predictors to evaluate, for bp option
+      private String deviceSpecification = null; // headless MMIO devices to attach, for mmio option
+      private BranchPredictorEvaluator predictorEvaluator = null; // evaluates them during the run
+      private static final String allSegments = ".all"; // dump segment name for entire address space
       private ArrayList programArgumentList; // optional program args for MIPS program (becomes argc, argv)
       private int assembleErrorExitCode;  // MARS command exit code to return if assemble error occurs
       private int simulateErrorExitCode;// MARS command exit code to return if simulation error occurs
@@ -145,6 +219,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             startAtMain = false;
             countInstructions = false;
 				selfModifyingCode = false;
+            jsonResults = false;
+            errorReport = null;
+            reportResources = false;
+            wallTimeLimit = -1;
+            heapLimit = -1;
+            outputLimit = -1;
+            openFileLimit = -1;
+            virtualTimePerInstruction = -1;
+            wallTimeLimitReached = false;
+            elapsedTime = 0;
+            finished = false;
             instructionCount = 0;
             assembleErrorExitCode = 0;
             simulateErrorExitCode = 0;
@@ -157,16 +242,29 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             maxSteps = -1;
             out = System.out;  
             if (parseCommandArgs(args)) {
-               if (runCommand()) {
-                  displayMiscellaneousPostMortem();
-                  displayRegistersPostMortem();
-                  displayMemoryPostMortem();
-               }
-               dumpSegments();
+               finish(runCommand());
             }
             System.exit(Globals.exitCode);
          }
       }   		
+   
+      /////////////////////////////////////////////////////////////
+   	// Display the results of the run and perform any dumps.  This is
+   	// done by the main thread, or by the wall-time watchdog if the run
+   	// does not return when stopped (e.g. blocked on input); see 
+   	// finishAtWallTimeLimit().
+   
+      private void finish(boolean programRan) {
+         if (jsonResults) {
+            displayPostMortemAsJson(programRan);
+         } 
+         else if (programRan) {
+            displayMiscellaneousPostMortem();
+            displayRegistersPostMortem();
+            displayMemoryPostMortem();
+         }
+         dumpSegments();
+      }
    	
       /////////////////////////////////////////////////////////////
    	// Perform any specified dump operations.  See "dump" option.
@@ -181,6 +279,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             String[] triple = (String[])dumpTriples.get(i);
             File file = new File(triple[2]);
             Integer[] segInfo = MemoryDump.getSegmentBounds(triple[0]);
+            // The whole address space: limit 0 wraps around to cover up to 0xfffffffc.
+            if (segInfo == null && triple[0].equals(allSegments)) {
+               segInfo = new Integer[] { new Integer(0), new Integer(0) };
+            }
          	// If not segment name, see if it is address range instead.  DPS 14-July-2008
             if (segInfo == null) {
                try {
@@ -207,7 +309,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                out.println("Error while attempting to save dump, format " + triple[1] + " was not found!");
                continue;
             }
+            boolean sparse = format instanceof MemoryImageDumpFormat;
+            if (triple[0].equals(allSegments) && !sparse) {
+               out.println("Error while attempting to save dump, segment " + allSegments + " requires a sparse format such as Image!");
+               continue;
+            }
             try {
+               if (sparse) {
+                  // Dumps only memory in use, so there is no need to stop at the first unused word.
+                  format.dumpMemoryRange(file, segInfo[0].intValue(), segInfo[1].intValue() - Memory.WORD_LENGTH_BYTES);
+                  continue;
+               }
                int highAddress = Globals.memory.getAddressOfFirstNull(segInfo[0].intValue(), segInfo[1].intValue())- Memory.WORD_LENGTH_BYTES;
                if (highAddress < segInfo[0].intValue()) {
                   out.println("This segment has not been written to, there is nothing to dump.");
@@ -311,6 +423,100 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                }
                continue;
             } 
+            if (args[i].toLowerCase().equals("mobj")) {
+               if (args.length <= (i+1)) {
+                  out.println("Object file command line argument requires a file name.");
+                  argsOK = false;
+               } 
+               else {
+                  objectFileName = args[++i];
+               }
+               continue;
+            } 
+            if (args[i].toLowerCase().equals("mimg")) {
+               if (args.length <= (i+1)) {
+                  out.println("Memory image command line argument requires a file name.");
+                  argsOK = false;
+               } 
+               else {
+                  memoryImageFileName = args[++i];
+               }
+               continue;
+            } 
+            if (args[i].toLowerCase().equals("cache")) {
+               if (args.length <= (i+1)) {
+                  out.println("Cache command line argument requires a cache specification.");
+                  argsOK = false;
+                  continue;
+               }
+               cacheSpecification = args[++i];
+               try {
+                  new CacheSweep(cacheSpecification);
+               } 
+                  catch (IllegalArgumentException e) {
+                     out.println("Invalid cache specification: "+e.getMessage());
+                     argsOK = false;
+                  }
+               continue;
+            } 
+            if (args[i].toLowerCase().equals("bp")) {
+               if (args.length <= (i+1)) {
+                  out.println("Bp command line argument requires a branch predictor specification.");
+                  argsOK = false;
+                  continue;
+               }
+               predictorSpecification = args[++i];
+               try {
+                  new BranchPredictorEvaluator(predictorSpecification, false);
+               } 
+                  catch (IllegalArgumentException e) {
+                     out.println("Invalid branch predictor specification: "+e.getMessage());
+                     argsOK = false;
+                  }
+               continue;
+            } 
+            if (args[i].toLowerCase().equals("trace")) {
+               if (args.length <= (i+1)) {
+                  out.println("Trace command line argument requires a file name.");
+                  argsOK = false;
+               } 
+               else {
+                  traceFileName = args[++i];
+               }
+               continue;
+            } 
+            if (args[i].toLowerCase().equals("mmio")) {
+               if (args.length <= (i+1)) {
+                  out.println("Mmio command line argument requires a device specification.");
+                  argsOK = false;
+                  continue;
+               }
+               deviceSpecification = args[++i];
+               try {
+                  new HeadlessDevices(deviceSpecification);
+               } 
+                  catch (IllegalArgumentException e) {
+                     out.println("Invalid MMIO device specification: "+e.getMessage());
+                     argsOK = false;
+                  }
+               continue;
+            } 
+            if (args[i].toLowerCase().equals("hierarchy")) {
+               if (args.length <= (i+1)) {
+                  out.println("Hierarchy command line argument requires a cache hierarchy specification.");
+                  argsOK = false;
+                  continue;
+               }
+               hierarchySpecification = args[++i];
+               try {
+                  new CacheHierarchy(hierarchySpecification);
+               } 
+                  catch (IllegalArgumentException e) {
+                     out.println("Invalid cache hierarchy specification: "+e.getMessage());
+                     argsOK = false;
+                  }
+               continue;
+            } 
             if (args[i].toLowerCase().equals("mc")) {
                String configName = args[++i];
                MemoryConfiguration config = MemoryConfigurations.getConfigurationByName(configName);
@@ -403,6 +609,46 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                countInstructions = true;
                continue;
             }
+         	// Seed random number streams
+            if (args[i].toLowerCase().indexOf("rs")==0) {
+               String s = args[i].substring(2);					   
+               try {
+                  RandomStreams.setBaseSeed(Long.decode(s).longValue());
+                  continue;
+               }              
+                  catch (NumberFormatException nfe) {
+                   // Let it fall thru and get handled by catch-all
+                  }
+            }
+            if (args[i].toLowerCase().equals("rr")) {
+               reportResources = true;
+               continue;
+            }
+            if (getLimitArgument(args[i], "wt") != null) {
+               wallTimeLimit = getLimitArgument(args[i], "wt").intValue();
+               continue;
+            }
+            if (getLimitArgument(args[i], "hl") != null) {
+               heapLimit = getLimitArgument(args[i], "hl").intValue();
+               continue;
+            }
+            if (getLimitArgument(args[i], "ol") != null) {
+               outputLimit = getLimitArgument(args[i], "ol").intValue();
+               continue;
+            }
+            if (getLimitArgument(args[i], "fl") != null) {
+               openFileLimit = getLimitArgument(args[i], "fl").intValue();
+               continue;
+            }
+            if (getLimitArgument(args[i], "vt") != null) {
+               virtualTimePerInstruction = getLimitArgument(args[i], "vt").intValue();
+               continue;
+            }
+            if (args[i].toLowerCase().equals("json")) {
+               jsonResults = true;
+               countInstructions = true;
+               continue;
+            }
          
          
             if (args[i].indexOf("$") == 0) {
@@ -451,6 +697,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             out.println("Invalid Command Argument: "+args[i]);
             argsOK = false;
          }
+         // A memory image restores $sp, $a0, $a1 and the stack, so it would overwrite program arguments.
+         if (memoryImageFileName != null && programArgumentList != null) {
+            out.println("Program arguments (pa) cannot be used with a memory image (mimg).");
+            argsOK = false;
+         }
          return argsOK;
       }
       
@@ -495,17 +746,42 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             if (Globals.debug) {
                out.println("--------  TOKENIZING BEGINS  -----------");
             }
-            ArrayList MIPSprogramsToAssemble = 
+            if (ObjectFile.isObjectFile(mainFile.getName())) {
+               // Previously assembled program: load it directly, no tokenizing or assembly.
+               code.loadObjectFile(mainFile.getAbsolutePath());
+            } 
+            else {
+               ArrayList MIPSprogramsToAssemble = 
                       code.prepareFilesForAssembly(filesToAssemble, mainFile.getAbsolutePath(), null);		
-            if (Globals.debug) {
-               out.println("--------  ASSEMBLY BEGINS  -----------");
+               if (Globals.debug) {
+                  out.println("--------  ASSEMBLY BEGINS  -----------");
+               }
+            	// Added logic to check for warnings and print if any. DPS 11/28/06
+               ErrorList warnings = code.assemble(MIPSprogramsToAssemble, pseudo, warningsAreErrors);
+               if (warnings != null && warnings.warningsOccurred()) {
+                  out.println(warnings.generateWarningReport());
+               }
             }
-         	// Added logic to check for warnings and print if any. DPS 11/28/06
-            ErrorList warnings = code.assemble(MIPSprogramsToAssemble, pseudo, warningsAreErrors);
-            if (warnings != null && warnings.warningsOccurred()) {
-               out.println(warnings.generateWarningReport());
+            if (objectFileName != null) {
+               code.saveObjectFile(objectFileName);
             }
             RegisterFile.initializeProgramCounter(startAtMain); // DPS 3/9/09
+            if (memoryImageFileName != null) {
+               try {
+                  MemoryImageDumpFormat.loadMemoryImage(new File(memoryImageFileName));
+               } 
+                  catch (IOException e) {
+                     out.println("Error while attempting to restore memory image: " + e.getMessage());
+                     Globals.exitCode = assembleErrorExitCode;
+                     return false;
+                  } 
+                  catch (AddressErrorException e) {
+                     out.println("Error while attempting to restore memory image " + memoryImageFileName 
+                                 + "!  Could not store address: " + Binary.intToHexString(e.getAddress()) + "!");
+                     Globals.exitCode = assembleErrorExitCode;
+                     return false;
+                  }
+            }
             if (simulate) {
                // store program args (if any) in MIPS memory
                new ProgramArgumentList(programArgumentList).storeProgramArguments();
@@ -514,10 +790,90 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                if (Globals.debug) {
                   out.println("--------  SIMULATION BEGINS  -----------");
                }
+               Memory.setHeapAllocationLimit(heapLimit);
+               SystemIO.setResourceLimits(outputLimit, openFileLimit);
+               if (virtualTimePerInstruction >= 0) {
+                  VirtualClock.enable(virtualTimePerInstruction);
+               }
+               if (cacheSpecification != null) {
+                  cacheSweep = new CacheSweep(cacheSpecification); // after mc option has set segment addresses
+                  ExecutionHook.add(cacheSweep);
+               }
+               if (hierarchySpecification != null) {
+                  cacheHierarchy = new CacheHierarchy(hierarchySpecification);
+                  ExecutionHook.add(cacheHierarchy);
+               }
+               if (predictorSpecification != null) {
+                  predictorEvaluator = new BranchPredictorEvaluator(predictorSpecification, delayedBranching);
+                  ExecutionHook.add(predictorEvaluator);
+               }
+               TraceRecorder traceRecorder = null;
+               if (traceFileName != null) {
+                  try {
+                     traceRecorder = new TraceRecorder(traceFileName, delayedBranching);
+                     ExecutionHook.add(traceRecorder);
+                  } 
+                     catch (IOException e) {
+                        out.println("Error while attempting to record trace, file " + traceFileName + ": " + e.getMessage());
+                     }
+               }
+               HeadlessDevices headlessDevices = null;
+               if (deviceSpecification != null) {
+                  headlessDevices = new HeadlessDevices(deviceSpecification);
+                  try {
+                     headlessDevices.attach();
+                  } 
+                     catch (IOException e) {
+                        out.println("Error while attempting to attach MMIO devices: " + e.getMessage());
+                        headlessDevices = null;
+                     }
+               }
+               java.util.Timer watchdog = startWallTimeWatchdog();
                programRan = true;
-               boolean done = code.simulate(maxSteps);
+               boolean done;
+               long startTime = System.nanoTime();
+               try {
+                  done = code.simulate(maxSteps);
+               } 
+               finally {
+                  if (watchdog != null) {
+                     watchdog.cancel();
+                     claimFinish();
+                  }
+                  elapsedTime = System.nanoTime() - startTime;
+                  if (cacheSweep != null) {
+                     ExecutionHook.remove(cacheSweep);
+                  }
+                  if (cacheHierarchy != null) {
+                     ExecutionHook.remove(cacheHierarchy);
+                  }
+                  if (predictorEvaluator != null) {
+                     ExecutionHook.remove(predictorEvaluator);
+                     predictorEvaluator.finish(RegisterFile.getProgramCounter());
+                  }
+                  if (traceRecorder != null) {
+                     ExecutionHook.remove(traceRecorder);
+                     try {
+                        traceRecorder.close(RegisterFile.getProgramCounter());
+                     } 
+                        catch (IOException e) {
+                           out.println("Error while attempting to record trace, file " + traceFileName + ": " + e.getMessage());
+                        }
+                  }
+                  if (headlessDevices != null) {
+                     headlessDevices.detach();
+                  }
+               }
                if (!done) {
-                  out.println("\nProgram terminated when maximum step limit "+maxSteps+" reached.");
+                  if (wallTimeLimitReached) {
+                     out.println("\nProgram terminated when wall-time limit "+wallTimeLimit+" ms reached.");
+                  } 
+                  else if (SystemIO.isOutputLimitReached()) {
+                     out.println("\nProgram terminated when output limit "+outputLimit+" bytes reached.");
+                  } 
+                  else {
+                     out.println("\nProgram terminated when maximum step limit "+maxSteps+" reached.");
+                  }
                }
             }
             if (Globals.debug) {
@@ -526,13 +882,80 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
             catch (ProcessingException e) {
                Globals.exitCode = (programRan) ? simulateErrorExitCode : assembleErrorExitCode;
-               out.println(e.errors().generateErrorAndWarningReport());
+               errorReport = e.errors().generateErrorAndWarningReport();
+               out.println(errorReport);
                out.println("Processing terminated due to errors.");
             } 
          return programRan;
       }
    
    
+   	//////////////////////////////////////////////////////////////////////
+      // Check for a resource limit or similar option: the given prefix followed
+      // by a non-negative integer, e.g. wt5000.  Returns the integer, or null if
+      // the argument is not such an option.
+   	
+      private Integer getLimitArgument(String arg, String prefix) {
+         if (arg.toLowerCase().indexOf(prefix) != 0) {
+            return null;
+         }
+         try {
+            Integer limit = Integer.decode(arg.substring(prefix.length()));
+            return (limit.intValue() < 0) ? null : limit;
+         } 
+            catch (NumberFormatException nfe) {
+               return null;
+            }
+      }
+   
+   	//////////////////////////////////////////////////////////////////////
+      // If a wall-time limit is specified, start a watchdog that stops the run
+      // when the limit is reached.  A Sleep syscall is interrupted, but a run
+      // blocked reading input cannot be, so if the run has not returned after
+      // a grace period the watchdog finishes up and exits MARS itself.
+      // Returns the watchdog timer, or null if there is no limit.
+   	
+      private java.util.Timer startWallTimeWatchdog() {
+         if (wallTimeLimit < 0) {
+            return null;
+         }
+         final java.util.Timer watchdog = new java.util.Timer(true);
+         watchdog.schedule(
+               new TimerTask() {
+                  public void run() {
+                     wallTimeLimitReached = true;
+                     Simulator.getInstance().interruptExecution();
+                     watchdog.schedule(
+                           new TimerTask() {
+                              public void run() {
+                                 finishAtWallTimeLimit();
+                              }
+                           }, wallTimeGracePeriod);
+                  }
+               }, wallTimeLimit);
+         return watchdog;
+      }
+   
+   	// Report the run for the wall-time watchdog, once the run has failed to return
+   	// within the grace period, and exit.  Does nothing if the main thread has claimed
+   	// the report.  The lock is held until exit, so the main thread cannot report too.
+      private synchronized void finishAtWallTimeLimit() {
+         if (finished) {
+            return;
+         }
+         finished = true;
+         elapsedTime = (wallTimeLimit + wallTimeGracePeriod) * 1000000L;
+         out.println("\nProgram terminated when wall-time limit "+wallTimeLimit+" ms reached.");
+         finish(true);
+         System.exit(Globals.exitCode);
+      }
+   
+   	// Claim the report for the main thread once the run has returned.  If the watchdog
+   	// is already reporting, this blocks until it exits.
+      private synchronized void claimFinish() {
+         finished = true;
+      }
+   
    	//////////////////////////////////////////////////////////////////////
       // Check for memory address subrange.  Has to be two integers separated
       // by "-"; no embedded spaces.  e.g. 0x00400000-0x00400010
@@ -598,6 +1021,33 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          if (countInstructions) {
             out.println("\n"+instructionCount);
          }
+         if (reportResources) {
+            out.println("\nSteps: "+Simulator.getInstance().getStepCount());
+            out.println("Heap bytes allocated: "+Memory.getHeapBytesAllocated());
+            out.println("Bytes output: "+SystemIO.getBytesOutput());
+            out.println("Files opened: "+SystemIO.getFilesOpened());
+            out.println("Elapsed time (ms): "+elapsedTime/1000000);
+            out.println("Instructions per second: "+getInstructionsPerSecond());
+         }
+         if (cacheSweep != null) {
+            out.print("\n"+cacheSweep.getReport());
+         }
+         if (cacheHierarchy != null) {
+            out.print("\n"+cacheHierarchy.getReport());
+         }
+         if (predictorEvaluator != null) {
+            out.print("\n"+predictorEvaluator.getReport());
+         }
+      }
+   
+   	//////////////////////////////////////////////////////////////////////
+   	// Rate of simulation over the run: steps per second of elapsed time.
+   	
+      private long getInstructionsPerSecond() {
+         if (elapsedTime <= 0) {
+            return 0;
+         }
+         return (long) (Simulator.getInstance().getStepCount() * 1.0e9 / elapsedTime);
       }
    
    	     		   	
@@ -720,14 +1170,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   }
                }
                try {
-                  // Allow display of binary text segment (machine code) DPS 14-July-2008
-                  if (Memory.inTextSegment(addr) || Memory.inKernelTextSegment(addr)) {
-                     Integer iValue = Globals.memory.getRawWordOrNull(addr);
-                     value = (iValue==null) ? 0 : iValue.intValue();
-                  } 
-                  else {
-                     value = Globals.memory.getWord(addr);
-                  }
+                  value = getMemoryWordForDisplay(addr);
                   out.print( formatIntForDisplay(value)+"\t");
                }
                   catch (AddressErrorException aee) {
@@ -739,6 +1182,212 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }					
       }
    
+   	//////////////////////////////////////////////////////////////////////
+   	// Reads memory word for post-mortem display.
+   	
+      private int getMemoryWordForDisplay(int addr) throws AddressErrorException {
+         // Allow display of binary text segment (machine code) DPS 14-July-2008
+         if (Memory.inTextSegment(addr) || Memory.inKernelTextSegment(addr)) {
+            Integer iValue = Globals.memory.getRawWordOrNull(addr);
+            return (iValue==null) ? 0 : iValue.intValue();
+         } 
+         return Globals.memory.getWord(addr);
+      }
+   
+   	//////////////////////////////////////////////////////////////////////
+   	// Displays the results of the run as one JSON record, in place of the
+   	// other post-mortem displays: exit code, termination reason, instruction
+   	// count, requested registers and memory ranges, and any error report.
+   	// Register and memory values are signed decimal ints, and addresses of
+   	// memory that cannot be read have null values.  Fields are null if the
+   	// program did not run.
+   	
+      private void displayPostMortemAsJson(boolean programRan) {
+         StringBuilder json = new StringBuilder("{");
+         json.append("\"exitCode\":").append(Globals.exitCode);
+         json.append(",\"terminationReason\":");
+         json.append(programRan ? "\"" + getTerminationReasonName() + "\"" : "null");
+         json.append(",\"instructionCount\":").append(programRan ? ""+instructionCount : "null");
+         json.append(",\"resources\":");
+         if (programRan) {
+            json.append("{\"steps\":").append(Simulator.getInstance().getStepCount());
+            json.append(",\"heapBytesAllocated\":").append(Memory.getHeapBytesAllocated());
+            json.append(",\"bytesOutput\":").append(SystemIO.getBytesOutput());
+            json.append(",\"filesOpened\":").append(SystemIO.getFilesOpened());
+            json.append(",\"elapsedMillis\":").append(elapsedTime/1000000);
+            json.append(",\"instructionsPerSecond\":").append(getInstructionsPerSecond()).append("}");
+         } 
+         else {
+            json.append("null");
+         }
+         if (cacheSweep != null) {
+            json.append(",\"cacheSweep\":{\"accesses\":").append(cacheSweep.getAccessCount()).append(",\"caches\":[");
+            CacheModel[] caches = cacheSweep.getCaches();
+            for (int i=0; i<caches.length; i++) {
+               json.append(i == 0 ? "{" : ",{");
+               json.append("\"blocks\":").append(caches[i].getNumberOfBlocks());
+               json.append(",\"blockWords\":").append(caches[i].getBlockSizeInWords());
+               json.append(",\"setBlocks\":").append(caches[i].getSetSizeInBlocks());
+               json.append(",\"policy\":").append(caches[i].getReplacementPolicy() == CacheModel.RANDOM ? "\"Random\"" : "\"LRU\"");
+               json.append(",\"hits\":").append(caches[i].getHitCount());
+               json.append(",\"misses\":").append(caches[i].getMissCount()).append("}");
+            }
+            json.append("]}");
+         }
+         if (cacheHierarchy != null) {
+            json.append(",\"cacheHierarchy\":{\"fetches\":").append(cacheHierarchy.getFetchCount());
+            json.append(",\"loads\":").append(cacheHierarchy.getLoadCount());
+            json.append(",\"stores\":").append(cacheHierarchy.getStoreCount());
+            appendCacheLevelJson(json, "l1i", cacheHierarchy.getInstructionCache());
+            appendCacheLevelJson(json, "l1d", cacheHierarchy.getDataCache());
+            appendCacheLevelJson(json, "l2", cacheHierarchy.getLevel2Cache());
+            json.append(",\"memoryReads\":").append(cacheHierarchy.getMemoryReadCount());
+            json.append(",\"memoryWrites\":").append(cacheHierarchy.getMemoryWriteCount());
+            json.append(",\"cycles\":").append(cacheHierarchy.getCycleCount());
+            json.append(",\"amat\":").append(cacheHierarchy.getAverageMemoryAccessTime()).append("}");
+         }
+         if (predictorEvaluator != null) {
+            json.append(",\"branchPrediction\":{\"branches\":").append(predictorEvaluator.getBranchCount());
+            json.append(",\"taken\":").append(predictorEvaluator.getTakenCount());
+            json.append(",\"jumps\":").append(predictorEvaluator.getJumpCount());
+            json.append(",\"predictors\":[");
+            BranchPredictor[] predictors = predictorEvaluator.getPredictors();
+            for (int i=0; i<predictors.length; i++) {
+               json.append(i == 0 ? "{" : ",{");
+               json.append("\"name\":\"").append(predictors[i].getName()).append("\"");
+               json.append(",\"mispredictions\":").append(predictorEvaluator.getMispredictionCount(i)).append("}");
+            }
+            json.append("]");
+            if (predictorEvaluator.getTargetBuffer() != null) {
+               json.append(",\"targets\":").append(predictorEvaluator.getTargetBuffer().getPredictionCount());
+               json.append(",\"targetsCorrect\":").append(predictorEvaluator.getTargetBuffer().getCorrectPredictionCount());
+            }
+            json.append("}");
+         }
+         json.append(",\"registers\":{");
+         Iterator regIter = registerDisplayList.iterator();
+         while (regIter.hasNext()) {
+            String reg = regIter.next().toString();
+            json.append("\"").append(reg).append("\":");
+            if (!programRan) {
+               json.append("null");
+            } 
+            else if (RegisterFile.getUserRegister(reg)!=null) {
+               json.append(RegisterFile.getUserRegister(reg).getValue());
+            } 
+            else {
+               json.append(Coprocessor1.getIntFromRegister(reg));
+            }
+            if (regIter.hasNext()) {
+               json.append(",");
+            }
+         }
+         json.append("},\"memory\":[");
+         Iterator memIter = memoryDisplayList.iterator();
+         while (memIter.hasNext()) {
+            int addressStart = Binary.stringToInt(memIter.next().toString());
+            int addressEnd = Binary.stringToInt(memIter.next().toString());
+            json.append("{\"address\":").append(addressStart).append(",\"words\":");
+            if (!programRan) {
+               json.append("null");
+            } 
+            else {
+               json.append("[");
+               for (int addr=addressStart; addr<=addressEnd; addr+=Memory.WORD_LENGTH_BYTES) {
+                  if (addr < 0 && addressEnd > 0) 
+                     break;  // happens only if addressEnd is 0x7ffffffc
+                  if (addr != addressStart) {
+                     json.append(",");
+                  }
+                  try {
+                     json.append(getMemoryWordForDisplay(addr));
+                  }
+                     catch (AddressErrorException aee) {
+                        json.append("null");
+                     }
+               }
+               json.append("]");
+            }
+            json.append(memIter.hasNext() ? "}," : "}");
+         }
+         json.append("],\"error\":");
+         if (errorReport == null) {
+            json.append("null");
+         } 
+         else {
+            json.append("\"");
+            for (int i=0; i<errorReport.length(); i++) {
+               char c = errorReport.charAt(i);
+               if (c == '"' || c == '\\') {
+                  json.append('\\').append(c);
+               } 
+               else if (c < ' ') {
+                  json.append(String.format("\\u%04x", (int) c));
+               } 
+               else {
+                  json.append(c);
+               }
+            }
+            json.append("\"");
+         }
+         json.append("}");
+         out.println();
+         out.println(json);
+      }
+   
+   	//////////////////////////////////////////////////////////////////////
+   	// Appends one cache of the hierarchy to the JSON record, if modeled.
+   	
+      private void appendCacheLevelJson(StringBuilder json, String name, CacheModel cache) {
+         if (cache == null) {
+            return;
+         }
+         json.append(",\"").append(name).append("\":{\"blocks\":").append(cache.getNumberOfBlocks());
+         json.append(",\"blockWords\":").append(cache.getBlockSizeInWords());
+         json.append(",\"setBlocks\":").append(cache.getSetSizeInBlocks());
+         json.append(",\"writePolicy\":\"").append(CacheHierarchy.getWritePolicyName(cache)).append("\"");
+         json.append(",\"hits\":").append(cache.getHitCount());
+         json.append(",\"misses\":").append(cache.getMissCount());
+         json.append(",\"writes\":").append(cache.getWriteCount());
+         json.append(",\"dirtyEvictions\":").append(cache.getDirtyEvictionCount()).append("}");
+      }
+   
+   	//////////////////////////////////////////////////////////////////////
+   	// Name of reason simulation ended: a resource limit that stopped it, 
+   	// or else the Simulator's reason.
+   	
+      private String getTerminationReasonName() {
+         if (wallTimeLimitReached) {
+            return "WALL_TIME_LIMIT";
+         }
+         if (SystemIO.isOutputLimitReached()) {
+            return "OUTPUT_LIMIT";
+         }
+         return getReturnReasonName(Simulator.getInstance().getReturnReason());
+      }
+   
+   	//////////////////////////////////////////////////////////////////////
+   	// Name of Simulator constant for reason simulation ended.
+   	
+      private String getReturnReasonName(int reason) {
+         switch (reason) {
+            case Simulator.BREAKPOINT :
+               return "BREAKPOINT";
+            case Simulator.EXCEPTION :
+               return "EXCEPTION";
+            case Simulator.MAX_STEPS :
+               return "MAX_STEPS";
+            case Simulator.NORMAL_TERMINATION :
+               return "NORMAL_TERMINATION";
+            case Simulator.CLIFF_TERMINATION :
+               return "CLIFF_TERMINATION";
+            case Simulator.PAUSE_OR_STOP :
+               return "PAUSE_OR_STOP";
+            default :
+               return "UNKNOWN";
+         }
+      }
+   
       ///////////////////////////////////////////////////////////////////////
    	//  If option to display MARS messages to standard err (System.err) is
    	//  present, it must be processed before all others.  Since messages may
@@ -792,6 +1441,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          out.println("  ae<n>  -- terminate MARS with integer exit code <n> if an assemble error occurs.");
          out.println("  ascii  -- display memory or register contents interpreted as ASCII codes.");
          out.println("      b  -- brief - do not display register/memory address along with contents");
+         out.println("  bp <spec>  -- evaluate branch predictors during the run and display the accuracy");
+         out.println("            of each, overall and for the most executed branches.  <spec> is a comma-");
+         out.println("            separated list of bimodal[:<entries>], gshare[:<entries>[:<history bits>]],");
+         out.println("            tournament[:<entries>[:<history bits>]], tage[:<entries>[:<tables>]] and");
+         out.println("            btb[:<entries>[:<return stack depth>]], e.g. bimodal,gshare:4096:12,btb");
+         out.println("  cache <spec>  -- evaluate data cache configurations during the run and display");
+         out.println("            hits and misses for each.  <spec> is <blocks>:<words>:<set sizes>:<policies>,");
+         out.println("            each a comma-separated list, e.g. 8,16,32:1,4:1,2,full:lru,random;");
+         out.println("            every combination is evaluated.  Set sizes and policies may be omitted.");
          out.println("      d  -- display MARS debugging statements");
          out.println("     db  -- MIPS delayed branching is enabled");
          out.println("    dec  -- display memory or register contents in decimal.");
@@ -799,11 +1457,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          out.println("            in specified format to specified file.  Option may be repeated."); 
          out.println("            Dump occurs at the end of simulation unless 'a' option is used.");
          out.println("            Segment and format are case-sensitive and possible values are:");
-         out.println("            <segment> = "+segments);
+         out.println("            <segment> = "+segments+", or "+allSegments+" for all memory with a sparse format");
          out.println("            <format> = "+formats);
          out.println("      h  -- display this help.  Use by itself with no filename.");
          out.println("    hex  -- display memory or register contents in hexadecimal (default)");
+         out.println("  hierarchy <spec>  -- model L1 instruction and data caches and an optional L2 cache");
+         out.println("            during the run and display hits, misses, dirty evictions, memory traffic and");
+         out.println("            average memory access time.  <spec> is comma-separated entries such as");
+         out.println("            l1i=64:4,l1d=64:4:2:wt:nwa,l2=512:8:4,cycles=1:10:100; each cache is");
+         out.println("            <blocks>:<words>[:<set size>][:lru|random][:wb|wt][:wa|nwa].");
+         out.println("  fl<n>  -- limit the MIPS program to opening <n> files in all; further opens fail");
+         out.println("  hl<n>  -- limit the MIPS program to allocating <n> bytes from the heap (sbrk)");
          out.println("     ic  -- display count of MIPS basic instructions 'executed'");
+         out.println("   json  -- display results as one JSON record instead: exit code, termination");
+         out.println("            reason, instruction count, resources used, requested registers and memory, errors");
          out.println("     mc <config>  -- set memory configuration.  Argument <config> is");
          out.println("            case-sensitive and possible values are: Default for the default");
          out.println("            32-bit address space, CompactDataAtZero for a 32KB memory with");
@@ -813,10 +1480,30 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          out.println("            Can separate messages from program output using redirection");
          out.println("     nc  -- do not display copyright notice (for cleaner redirected/piped output).");
          out.println("     np  -- use of pseudo instructions and formats not permitted");
+         out.println("  ol<n>  -- stop the MIPS program once it has output <n> bytes, to console and files");
+         out.println("   mobj <file>  -- write the assembled program to binary object file <file>.");
+         out.println("            A main filename ending in .mobj is loaded as an object file");
+         out.println("            and run without being assembled again.");
+         out.println("   mimg <file>  -- restore memory and registers from memory image <file>, written by");
+         out.println("            dump in Image format, after assembly and before simulation.  Not with pa.");
+         out.println("   mmio <spec>  -- attach GUI-free MMIO devices, e.g. keyboard=in.txt:100,display=-:5,segments=lab.txt");
+         out.println("            keyboard reads characters from a file (- or omitted: stdin), each ready <n> instructions");
+         out.println("            after the last is read; display writes them to a file (default stdout), ready again");
+         out.println("            <n> instructions later (default 5); segments records Digital Lab Sim seven-segment bytes");
          out.println("      p  -- Project mode - assemble all files in the same directory as given file.");
+         out.println("  rs<n>  -- seed the random number streams of syscalls 40-44 from integer <n>,");
+         out.println("            for reproducible runs.  Syscall 40 (RandSeed) still reseeds a stream.");
+         out.println("     rr  -- display resource report: steps, heap bytes allocated, bytes output,");
+         out.println("            files opened, elapsed time and MIPS instructions per second");
          out.println("  se<n>  -- terminate MARS with integer exit code <n> if a simulation (run) error occurs.");
          out.println("     sm  -- start execution at statement with global label main, if defined");
          out.println("    smc  -- Self Modifying Code - Program can write and branch to either text or data segment");
+         out.println("   trace <file>  -- record the run to binary trace <file>: instructions fetched, memory");
+         out.println("            accesses and register writes, for analysis with java mars.tools.TraceAnalyzer");
+         out.println("  vt<n>  -- syscalls Time and Sleep use a simulated clock starting at 0 that advances");
+         out.println("            <n> nanoseconds per instruction executed; Sleep advances it without waiting");
+         out.println("  wt<n>  -- stop the MIPS program after <n> milliseconds of wall-clock time,");
+         out.println("            even if it is sleeping or waiting for input");
          out.println("    <n>  -- where <n> is an integer maximum count of steps to simulate.");
          out.println("            If 0, negative or not specified, there is no maximum.");
          out.println(" $<reg>  -- where <reg> is number or name (e.g. 5, t3, f10) of register whose ");
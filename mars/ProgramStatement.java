@@ -145,8 +145,30 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          this.altered = false;
          this.basicStatementList = buildBasicStatementListFromBinaryCode(binaryStatement, instr, operands, numOperands);
       }
-   	
-   
+
+
+    //////////////////////////////////////////////////////////////////////////////////
+    /**
+     * Constructor for ProgramStatement used when restoring a previously assembled
+     * program from an object file.  The statement is decoded from its binary machine
+     * code as in the constructor above, but the source code and line number are
+     * retained so the Text Segment display and error messages can still refer back to them.
+     * @param sourceMIPSprogram The MIPSprogram object that contains this statement
+     * @param source The corresponding MIPS source statement.
+     * @param sourceLine The line number from source code where this statement appears.
+     * @param binaryStatement The 32-bit machine code.
+     * @param textAddress The Text Segment address in memory where the binary machine code for this statement
+     * is stored.
+     **/
+       public ProgramStatement(MIPSprogram sourceMIPSprogram, String source, int sourceLine, int binaryStatement, int textAddress) {
+         this(binaryStatement, textAddress);
+         this.sourceMIPSprogram = sourceMIPSprogram;
+         this.source = source;
+         this.sourceLine = sourceLine;
+         this.basicAssemblyStatement = basicStatementList.toString();
+      }
+
+
     /////////////////////////////////////////////////////////////////////////////
     /**
      * Given specification of BasicInstruction for this operator, build the
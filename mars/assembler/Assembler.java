@@ -1,8 +1,6 @@
    package mars.assembler;
 
    import java.util.ArrayList;
-   import java.util.Collections;
-   import java.util.Comparator;
 
    import mars.ErrorList;
    import mars.ErrorMessage;
@@ -15,6 +13,7 @@
    import mars.mips.instructions.BasicInstruction;
    import mars.mips.instructions.ExtendedInstruction;
    import mars.mips.instructions.Instruction;
+   import mars.mips.instructions.syscalls.RandomStreams;
    import mars.util.Binary;
    import mars.util.SystemIO;
 
@@ -262,6 +261,9 @@
                .getLocalSymbolTable());
             accumulatedDataSegmentForwardReferences.add(currentFileDataSegmentForwardReferences);
             currentFileDataSegmentForwardReferences.clear();
+         // Token lists are not needed beyond this point (macros are local to the file)
+         // so let them go now rather than holding every file's tokens until assembly ends.
+            fileCurrentlyBeingAssembled.releaseTokenList();
          } // end of first-pass loop for each MIPSprogram
       
       
@@ -288,6 +290,7 @@
             ProgramStatement statement;
             for (int i = 0; i < parsedList.size(); i++) {
                statement = (ProgramStatement) parsedList.get(i);
+               parsedList.set(i, null); // machineList holds what is still needed
                statement.buildBasicStatementFromBasicInstruction(errors);
                if (errors.errorsOccurred()) {
                   throw new ProcessingException(errors);
@@ -371,12 +374,20 @@
                } // end of ELSE part for extended instruction.
               	
             } // end of assembler second pass.
+            fileCurrentlyBeingAssembled.releaseParsedList();
          }
          if (Globals.debug)
             System.out.println("Code generation begins");
       ///////////// THIRD MAJOR STEP IS PRODUCE MACHINE CODE FROM ASSEMBLY //////////
       // Generates machine code statements from the list of basic assembler statements
-      // and writes the statement to memory.
+      // and places each at its address in a text segment image, which is then written
+      // to memory a block at a time.
+      // Use of .ktext and .text with address operands has two implications:
+      // (1) the addresses may not be ordered at this point.  Placing statements
+      // directly by address means no sort is needed afterward.
+      // (2) It is possible for two instructions to be placed at the same address.
+      // Such occurances are caught as they are placed and flagged as errors.
+         TextSegmentImage image = new TextSegmentImage();
          ProgramStatement statement;
          for (int i = 0; i < this.machineList.size(); i++) {
             if (errors.errorLimitExceeded())
@@ -385,57 +396,22 @@
             statement.buildMachineStatementFromBasicStatement(errors);
             if (Globals.debug)
                System.out.println(statement);
-            try {
-               Globals.memory.setStatement(statement.getAddress(), statement);
-            } 
-               catch (AddressErrorException e) {
-                  Token t = statement.getOriginalTokenList().get(0);
-                  errors.add(new ErrorMessage(t.getSourceMIPSprogram(), t.getSourceLine(), t
-                     .getStartPos(), "Invalid address for text segment: " + e.getAddress()));
-               }
+            image.place(statement, errors);
          }
+         image.install();
       // Aug. 24, 2005 Ken Vollmar
       // Ensure that I/O "file descriptors" are initialized for a new program run
          SystemIO.resetFiles();
-      // DPS 6 Dec 2006:
-      // We will now sort the ArrayList of ProgramStatements by getAddress() value.
-      // This is for display purposes, since they have already been stored to Memory.
-      // Use of .ktext and .text with address operands has two implications:
-      // (1) the addresses may not be ordered at this point. Requires unsigned int
-      // sort because kernel addresses are negative. See special Comparator.
-      // (2) It is possible for two instructions to be placed at the same address.
-      // Such occurances will be flagged as errors.
-      // Yes, I would not have to sort here if I used SortedSet rather than ArrayList
-      // but in case of duplicate I like having both statements handy for error message.
-         Collections.sort(this.machineList, new ProgramStatementComparator());
-         catchDuplicateAddresses(this.machineList, errors);
+         RandomStreams.reset();
+      // The machine list is kept in address order for display purposes; unsigned
+      // order, so kernel statements follow user statements.
+         this.machineList = image.getStatements();
          if (errors.errorsOccurred() || errors.warningsOccurred() && warningsAreErrors) {
             throw new ProcessingException(errors);
          }
          return this.machineList;
       } // assemble()
    
-   // //////////////////////////////////////////////////////////////////////
-   // Will check for duplicate text addresses, which can happen inadvertantly when using
-   // operand on .text directive. Will generate error message for each one that occurs.
-      private void catchDuplicateAddresses(ArrayList instructions, ErrorList errors) {
-         for (int i = 0; i < instructions.size() - 1; i++) {
-            ProgramStatement ps1 = (ProgramStatement) instructions.get(i);
-            ProgramStatement ps2 = (ProgramStatement) instructions.get(i + 1);
-            if (ps1.getAddress() == ps2.getAddress()) {
-               errors.add(new ErrorMessage(ps2.getSourceMIPSprogram(), ps2.getSourceLine(), 0,
-                  "Duplicate text segment address: "
-                  		+ mars.venus.NumberDisplayBaseChooser.formatUnsignedInteger(ps2
-                  				.getAddress(), (Globals.getSettings()
-                  				.getDisplayAddressesInHex()) ? 16 : 10)
-                  		+ " already occupied by " + ps1.getSourceFile() + " line "
-                  		+ ps1.getSourceLine() + " (caused by use of "
-                  		+ ((Memory.inTextSegment(ps2.getAddress())) ? ".text" : ".ktext")
-                  		+ " operand)"));
-            }
-         }
-      }
-   
    /**
     * This method parses one line of MIPS source code. It works with the list
     * of tokens, but original source is also provided. It also carries out
@@ -1344,30 +1320,101 @@
       }
    
    // ///////////////////////////////////////////////////////////////////////////////////
-   // Private class used as Comparator to sort the final ArrayList of
-   // ProgramStatements.
-   // Sorting is based on unsigned integer value of
-   // ProgramStatement.getAddress()
-      private class ProgramStatementComparator implements Comparator {
-      // Will be used to sort the collection. Unsigned int compare, because
-      // all kernel 32-bit
-      // addresses have 1 in high order bit, which makes the int negative.
-      // "Unsigned" compare
-      // is needed when signs of the two operands differ.
-         public int compare(Object obj1, Object obj2) {
-            if (obj1 instanceof ProgramStatement && obj2 instanceof ProgramStatement) {
-               int addr1 = ((ProgramStatement) obj1).getAddress();
-               int addr2 = ((ProgramStatement) obj2).getAddress();
-               return (addr1 < 0 && addr2 >= 0 || addr1 >= 0 && addr2 < 0) ? addr2 : addr1 - addr2;
+   // Private class to hold the assembled text and kernel text segments while they are
+   // being built.  Statements are placed directly by address into blocks laid out the
+   // same as Memory's text block tables, so a filled slot reveals a duplicate address,
+   // whole blocks can be installed in Memory at once, and walking the blocks gives the
+   // statements in address order.
+      private class TextSegmentImage {
+         private final int WORDS_PER_BLOCK = Memory.TEXT_BLOCK_LENGTH_BYTES / Memory.WORD_LENGTH_BYTES;
+         private int[] baseAddress;
+         private ProgramStatement[][][] blocks;
+         private int count;
+         private final int USER = 0, KERNEL = 1;
+      
+         private TextSegmentImage() {
+            baseAddress = new int[] { Memory.textBaseAddress, Memory.kernelTextBaseAddress };
+            int[] limitAddress = { Memory.textLimitAddress, Memory.kernelTextLimitAddress };
+            blocks = new ProgramStatement[2][][];
+            for (int space = USER; space <= KERNEL; space++) {
+               int length = limitAddress[space] - baseAddress[space];
+               blocks[space] = new ProgramStatement[(length + Memory.TEXT_BLOCK_LENGTH_BYTES - 1)
+                                                    / Memory.TEXT_BLOCK_LENGTH_BYTES][];
+            }
+            count = 0;
+         }
+      
+      // Put statement at its address.  Errors are the same as those Memory.setStatement()
+      // would have produced, plus duplicate address detection.  A statement at a duplicate
+      // address replaces the earlier one, just as it would have in memory.
+         private void place(ProgramStatement statement, ErrorList errors) {
+            int address = statement.getAddress();
+            int space = Memory.inTextSegment(address) ? USER 
+                      : Memory.inKernelTextSegment(address) ? KERNEL : -1;
+            if (space < 0 || address % Memory.WORD_LENGTH_BYTES != 0) {
+               Token t = statement.getOriginalTokenList().get(0);
+               errors.add(new ErrorMessage(t.getSourceMIPSprogram(), t.getSourceLine(), t
+                  .getStartPos(), "Invalid address for text segment: " + address));
+               return;
+            }
+            int relative = (address - baseAddress[space]) / Memory.WORD_LENGTH_BYTES;
+            int block = relative / WORDS_PER_BLOCK;
+            int offset = relative % WORDS_PER_BLOCK;
+            if (blocks[space][block] == null) {
+               blocks[space][block] = new ProgramStatement[WORDS_PER_BLOCK];
+            }
+            ProgramStatement previous = blocks[space][block][offset];
+            if (previous != null) {
+               errors.add(new ErrorMessage(statement.getSourceMIPSprogram(), statement.getSourceLine(), 0,
+                  "Duplicate text segment address: "
+                  		+ mars.venus.NumberDisplayBaseChooser.formatUnsignedInteger(address,
+                  				(Globals.getSettings().getDisplayAddressesInHex()) ? 16 : 10)
+                  		+ " already occupied by " + previous.getSourceFile() + " line "
+                  		+ previous.getSourceLine() + " (caused by use of "
+                  		+ ((space == USER) ? ".text" : ".ktext") + " operand)"));
             } 
             else {
-               throw new ClassCastException();
+               count++;
             }
+            blocks[space][block][offset] = statement;
+            if (Globals.debug) System.out.println("memory["+address+"] set to "+statement.getBinaryStatement());
          }
       
-      // Take a hard line.
-         public boolean equals(Object obj) {
-            return this == obj;
+      // Write every non-empty block to memory.
+         private void install() {
+            for (int space = USER; space <= KERNEL; space++) {
+               for (int block = 0; block < blocks[space].length; block++) {
+                  if (blocks[space][block] != null) {
+                     try {
+                        Globals.memory.setStatementBlock(baseAddress[space] + block * Memory.TEXT_BLOCK_LENGTH_BYTES,
+                           blocks[space][block]);
+                     } 
+                        catch (AddressErrorException e) {
+                           // place() accepted only text segment addresses, so the block table is inconsistent.
+                           throw new InternalError("text segment block could not be installed: " + e.getMessage());
+                        }
+                  }
+               }
+            }
+         }
+      
+      // Produce list of all placed statements in unsigned address order.
+         private ArrayList getStatements() {
+            ArrayList statements = new ArrayList(count);
+            boolean kernelFirst = (baseAddress[KERNEL] ^ Integer.MIN_VALUE) < (baseAddress[USER] ^ Integer.MIN_VALUE);
+            for (int i = 0; i < 2; i++) {
+               int space = (kernelFirst == (i == 0)) ? KERNEL : USER;
+               for (int block = 0; block < blocks[space].length; block++) {
+                  if (blocks[space][block] != null) {
+                     for (int offset = 0; offset < WORDS_PER_BLOCK; offset++) {
+                        if (blocks[space][block][offset] != null) {
+                           statements.add(blocks[space][block][offset]);
+                        }
+                     }
+                  }
+               }
+            }
+            return statements;
          }
       }
    
@@ -56,6 +56,13 @@ public class Macro {
  * arguments like <code>%arg</code> will be substituted by macro expansion
  */
    private ArrayList<String> args;
+/**
+ * expansion template of the macro body, one entry per line between
+ * <code>.macro</code> and <code>.end_macro</code>. Built by {@link #readyForCommit()}.
+ */
+   private TemplateLine[] template;
+   private static final int LABEL = -1;
+   private static final int UNKNOWN_PARAMETER = -2;
 
    public Macro() {
       name = "";
@@ -156,36 +163,62 @@ public class Macro {
  */
 
    public String getSubstitutedLine(int line, TokenList args, long counter, ErrorList errors) {
-      TokenList tokens = (TokenList) program.getTokenList().get(line - 1);
-      String s = program.getSourceLine(line);
-   
-      for (int i = tokens.size() - 1; i >= 0; i--) {
-         Token token = tokens.get(i);
-         if (tokenIsMacroParameter(token.getValue(), true)) {
-            int repl = -1;
-            for (int j = 0; j < this.args.size(); j++) {
-               if (this.args.get(j).equals(token.getValue())) {
-                  repl = j;
-                  break;
-               }
-            }
-            String substitute = token.getValue();
-            if (repl != -1)
-               substitute = args.get(repl + 1).toString();
-            else {
-               errors.add(new ErrorMessage(program, token.getSourceLine(),
-                  token.getStartPos(), "Unknown macro parameter"));
-            } 
-            s = replaceToken(s, token, substitute);
+      if (template == null)
+         buildTemplate();
+      TemplateLine templateLine = template[line - fromLine - 1];
+      String s = templateLine.source;
+      for (int i = 0; i < templateLine.tokens.length; i++) {
+         Token token = templateLine.tokens[i];
+         int repl = templateLine.argIndex[i];
+         if (repl == LABEL) {
+            s = replaceToken(s, token, token.getValue() + "_M" + counter);
          } 
-         else if (tokenIsMacroLabel(token.getValue())){
-            String substitute = token.getValue()+"_M"+counter;
-            s=replaceToken(s, token, substitute); 
+         else if (repl == UNKNOWN_PARAMETER) {
+            errors.add(new ErrorMessage(program, token.getSourceLine(),
+               token.getStartPos(), "Unknown macro parameter"));
+         } 
+         else {
+            s = replaceToken(s, token, args.get(repl + 1).toString());
          }
       }
       return s;
    }
 
+/**
+ * Builds the expansion template from the macro body. For each body line this
+ * records its source and, in right-to-left order, the tokens that expansion must
+ * replace along with what replaces them, so that expanding a call does not have to
+ * classify every token of the body again.
+ */
+   private void buildTemplate() {
+      template = new TemplateLine[Math.max(0, toLine - fromLine - 1)];
+      ArrayList<Token> replaced = new ArrayList<Token>();
+      ArrayList<Integer> argIndex = new ArrayList<Integer>();
+      for (int line = fromLine + 1; line < toLine; line++) {
+         TokenList tokens = (TokenList) program.getTokenList().get(line - 1);
+         replaced.clear();
+         argIndex.clear();
+         for (int i = tokens.size() - 1; i >= 0; i--) {
+            Token token = tokens.get(i);
+            if (tokenIsMacroParameter(token.getValue(), true)) {
+               int repl = this.args.indexOf(token.getValue());
+               replaced.add(token);
+               argIndex.add((repl < 0) ? UNKNOWN_PARAMETER : repl);
+            } 
+            else if (tokenIsMacroLabel(token.getValue())) {
+               replaced.add(token);
+               argIndex.add(LABEL);
+            }
+         }
+         TemplateLine templateLine = new TemplateLine();
+         templateLine.source = program.getSourceLine(line);
+         templateLine.tokens = replaced.toArray(new Token[replaced.size()]);
+         templateLine.argIndex = new int[argIndex.size()];
+         for (int i = 0; i < templateLine.argIndex.length; i++)
+            templateLine.argIndex[i] = argIndex.get(i);
+         template[line - fromLine - 1] = templateLine;
+      }
+   }
 
 /**
  * returns true if <code>value</code> is name of a label defined in this macro's body.
@@ -247,6 +280,16 @@ public class Macro {
  */
    public void readyForCommit() {
       Collections.sort(labels);
+      buildTemplate();
+   }
+
+/**
+ * One line of a macro body, prepared for expansion.
+ */
+   private static class TemplateLine {
+      String source;
+      Token[] tokens;
+      int[] argIndex;
    }
 
 
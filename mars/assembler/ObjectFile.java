@@ -0,0 +1,287 @@
+   package mars.assembler;
+   import mars.*;
+   import mars.mips.hardware.*;
+   import mars.mips.instructions.syscalls.RandomStreams;
+   import mars.util.*;
+   import java.util.*;
+   import java.io.*;
+   import java.nio.*;
+   import java.nio.channels.*;
+
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining
+a copy of this software and associated documentation files (the
+"Software"), to deal in the Software without restriction, including
+without limitation the rights to use, copy, modify, merge, publish,
+distribute, sublicense, and/or sell copies of the Software, and to
+permit persons to whom the Software is furnished to do so, subject
+to the following conditions:
+
+The above copyright notice and this permission notice shall be
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+ /**
+  *  Reads and writes the binary object file (.mobj) form of an assembled program.
+  *  An object file holds everything the simulator needs to run the program without
+  *  tokenizing or assembling it again: the machine code of each text segment statement
+  *  along with its source code and line number, the initialized data, kernel data and
+  *  MMIO blocks, the global and local symbol tables, and the memory configuration and
+  *  delayed branching setting in effect when it was assembled.
+  *  <p>
+  *  The file is a sequence of big-endian ints.  Strings are kept once in a string table
+  *  and referred to by index.  Text statements are fixed-length records and data is
+  *  stored as whole 4K memory blocks, so the file is read through a memory-mapped
+  *  buffer and blocks are copied straight into the Memory block tables.
+  */
+    public class ObjectFile {
+      /** File extension used for object files, including the leading dot. **/
+      public static final String EXTENSION = ".mobj";
+      private static final int MAGIC = 0x4D4F424A; // "MOBJ"
+      private static final int VERSION = 1;
+      private static final int DELAYED_BRANCHING_FLAG = 1;
+
+   /**
+    * Determine whether the given file name refers to an object file, by extension.
+    * @param filename name of file
+    * @return true if filename ends with the object file extension, false otherwise.
+    **/
+       public static boolean isObjectFile(String filename) {
+         return filename != null && filename.toLowerCase().endsWith(EXTENSION);
+      }
+
+   /**
+    * Write the assembled program to an object file.  The program must have been
+    * successfully assembled and memory must not yet have been altered by simulation,
+    * since the data segment is taken directly from Memory.
+    * @param program the lead MIPSprogram of the assembly
+    * @param file the object file to create or overwrite
+    * @throws ProcessingException if the program has not been assembled or there is
+    * any problem writing the file.
+    **/
+       public static void write(MIPSprogram program, File file) throws ProcessingException {
+         ArrayList machineList = program.getMachineList();
+         if (machineList == null) {
+            throw error("program must be assembled before writing object file");
+         }
+         ArrayList<String> strings = new ArrayList<String>();
+         HashMap<String,Integer> stringIndex = new HashMap<String,Integer>();
+         String configuration = MemoryConfigurations.getCurrentConfiguration().getConfigurationIdentifier();
+         internString(configuration, strings, stringIndex);
+         ArrayList globalSymbols = Globals.symbolTable.getAllSymbols();
+         ArrayList localSymbols = program.getLocalSymbolTable().getAllSymbols();
+         for (int i = 0; i < globalSymbols.size(); i++) {
+            internString(((Symbol) globalSymbols.get(i)).getName(), strings, stringIndex);
+         }
+         for (int i = 0; i < localSymbols.size(); i++) {
+            internString(((Symbol) localSymbols.get(i)).getName(), strings, stringIndex);
+         }
+         for (int i = 0; i < machineList.size(); i++) {
+            internString(sourceOf((ProgramStatement) machineList.get(i)), strings, stringIndex);
+         }
+         DataOutputStream out = null;
+         try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(Globals.getSettings().getBooleanSetting(Settings.DELAYED_BRANCHING_ENABLED) ? DELAYED_BRANCHING_FLAG : 0);
+            out.writeInt(stringIndex.get(configuration));
+            out.writeInt(strings.size());
+            for (int i = 0; i < strings.size(); i++) {
+               byte[] bytes = strings.get(i).getBytes("UTF-8");
+               out.writeInt(bytes.length);
+               out.write(bytes);
+            }
+            writeSymbols(out, globalSymbols, stringIndex);
+            writeSymbols(out, localSymbols, stringIndex);
+            out.writeInt(machineList.size());
+            for (int i = 0; i < machineList.size(); i++) {
+               ProgramStatement statement = (ProgramStatement) machineList.get(i);
+               out.writeInt(statement.getAddress());
+               out.writeInt(statement.getBinaryStatement());
+               out.writeInt(statement.getSourceLine());
+               out.writeInt(stringIndex.get(sourceOf(statement)));
+            }
+            // Segment base addresses depend on the memory configuration so look them up now.
+            int[] segments = { Memory.dataSegmentBaseAddress, Memory.kernelDataBaseAddress,
+                               Memory.memoryMapBaseAddress };
+            ArrayList<int[]> blocks = new ArrayList<int[]>();
+            ArrayList<Integer> blockAddresses = new ArrayList<Integer>();
+            HashSet<Integer> blocksSeen = new HashSet<Integer>();
+            for (int s = 0; s < segments.length; s++) {
+               int[] addresses = Globals.memory.getAllocatedBlockAddresses(segments[s]);
+               for (int i = 0; i < addresses.length; i++) {
+                  int[] words = Globals.memory.getRawBlockOrNull(addresses[i]);
+                  if (words != null && blocksSeen.add(addresses[i])) {
+                     blocks.add(words);
+                     blockAddresses.add(addresses[i]);
+                  }
+               }
+            }
+            out.writeInt(blocks.size());
+            for (int i = 0; i < blocks.size(); i++) {
+               out.writeInt(blockAddresses.get(i));
+               int[] words = blocks.get(i);
+               for (int j = 0; j < words.length; j++) {
+                  out.writeInt(words[j]);
+               }
+            }
+            out.close();
+            out = null;
+         }
+             catch (IOException e) {
+               throw error("cannot write object file " + file + ": " + e);
+            }
+         finally {
+            if (out != null) {
+               try { out.close(); }
+                   catch (IOException e) { }
+            }
+         }
+      }
+
+   /**
+    * Load an object file, replacing the current contents of memory and the symbol
+    * tables.  If the object file was produced under a different memory configuration,
+    * that configuration becomes the current one.  The text segment statements are
+    * attributed to the given MIPSprogram, whose local symbol table receives the
+    * saved local symbols.
+    * @param program the MIPSprogram that will represent the loaded program
+    * @param file the object file to read
+    * @return ArrayList of ProgramStatement in address order, as produced by the assembler.
+    * @throws ProcessingException if the file cannot be read, is not a valid object
+    * file, or was assembled with a different delayed branching setting.
+    **/
+       public static ArrayList load(MIPSprogram program, File file) throws ProcessingException {
+         RandomAccessFile raf = null;
+         try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+               throw error(file + " is not a MARS object file");
+            }
+            if (buffer.getInt() != VERSION) {
+               throw error(file + " was written by an incompatible version of MARS");
+            }
+            boolean delayedBranching = (buffer.getInt() & DELAYED_BRANCHING_FLAG) != 0;
+            if (delayedBranching != Globals.getSettings().getBooleanSetting(Settings.DELAYED_BRANCHING_ENABLED)) {
+               throw error(file + " was assembled with delayed branching "
+                  + (delayedBranching ? "enabled" : "disabled"));
+            }
+            int configurationIndex = buffer.getInt();
+            String[] strings = new String[buffer.getInt()];
+            for (int i = 0; i < strings.length; i++) {
+               byte[] bytes = new byte[buffer.getInt()];
+               buffer.get(bytes);
+               strings[i] = new String(bytes, "UTF-8");
+            }
+            MemoryConfiguration configuration = MemoryConfigurations.getConfigurationByName(strings[configurationIndex]);
+            if (configuration == null) {
+               throw error(file + " uses unknown memory configuration " + strings[configurationIndex]);
+            }
+            MemoryConfigurations.setCurrentConfiguration(configuration);
+            Globals.memory.clear();
+            Globals.symbolTable.clear();
+            program.getLocalSymbolTable().clear();
+            readSymbols(buffer, Globals.symbolTable, strings);
+            readSymbols(buffer, program.getLocalSymbolTable(), strings);
+            int statementCount = buffer.getInt();
+            ArrayList machineList = new ArrayList(statementCount);
+            IntBuffer records = buffer.asIntBuffer();
+            int[] record = new int[4];
+            for (int i = 0; i < statementCount; i++) {
+               records.get(record);
+               ProgramStatement statement = new ProgramStatement(program, strings[record[3]], record[2], record[1], record[0]);
+               Globals.memory.setStatement(record[0], statement);
+               machineList.add(statement);
+            }
+            buffer.position(buffer.position() + statementCount * 4 * Memory.WORD_LENGTH_BYTES);
+            int blockCount = buffer.getInt();
+            records = buffer.asIntBuffer();
+            int[] words = new int[Memory.BLOCK_LENGTH_BYTES / Memory.WORD_LENGTH_BYTES];
+            for (int i = 0; i < blockCount; i++) {
+               int address = records.get();
+               records.get(words);
+               Globals.memory.setRawBlock(address, words);
+            }
+            SystemIO.resetFiles();
+            RandomStreams.reset();
+            return machineList;
+         }
+             catch (BufferUnderflowException e) {
+               throw error(file + " is truncated or corrupt");
+            }
+             catch (ArrayIndexOutOfBoundsException e) {
+               throw error(file + " is corrupt");
+            }
+             catch (AddressErrorException e) {
+               throw error(file + " contains invalid address " + Binary.intToHexString(e.getAddress()));
+            }
+             catch (IOException e) {
+               throw error("cannot read object file " + file + ": " + e);
+            }
+         finally {
+            if (raf != null) {
+               try { raf.close(); }
+                   catch (IOException e) { }
+            }
+         }
+      }
+
+      // Source of statement, never null.
+       private static String sourceOf(ProgramStatement statement) {
+         return (statement.getSource() == null) ? "" : statement.getSource();
+      }
+
+      // Add string to table if not already there.
+       private static void internString(String s, ArrayList<String> strings, HashMap<String,Integer> stringIndex) {
+         if (!stringIndex.containsKey(s)) {
+            stringIndex.put(s, strings.size());
+            strings.add(s);
+         }
+      }
+
+       private static void writeSymbols(DataOutputStream out, ArrayList symbols, HashMap<String,Integer> stringIndex)
+              throws IOException {
+         out.writeInt(symbols.size());
+         for (int i = 0; i < symbols.size(); i++) {
+            Symbol symbol = (Symbol) symbols.get(i);
+            out.writeInt(stringIndex.get(symbol.getName()));
+            out.writeInt(symbol.getAddress());
+            out.writeInt(symbol.getType() ? 1 : 0);
+         }
+      }
+
+       private static void readSymbols(ByteBuffer buffer, SymbolTable table, String[] strings) {
+         int count = buffer.getInt();
+         for (int i = 0; i < count; i++) {
+            String name = strings[buffer.getInt()];
+            int address = buffer.getInt();
+            boolean type = buffer.getInt() != 0;
+            table.addSymbol(new Symbol(name, address, type));
+         }
+      }
+
+       private static ProcessingException error(String message) {
+         ErrorList errors = new ErrorList();
+         errors.add(new ErrorMessage((MIPSprogram)null,0,0,message));
+         return new ProcessingException(errors);
+      }
+   }
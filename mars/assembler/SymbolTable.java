@@ -73,6 +73,16 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             if (Globals.debug) System.out.println("The symbol " + label + " with address " + address + " has been added to the "+this.filename+" symbol table.");
          }
       }
+
+   	/**
+   	  *  Adds an existing Symbol object into the array of Symbols without checking
+   	  *  for duplicates.  Used when restoring a symbol table saved from an earlier
+   	  *  assembly, which is known to be duplicate-free.
+   	  *   @param symbol The Symbol to add.
+   	  **/
+       public void addSymbol(Symbol symbol) {
+         table.add(symbol);
+      }
    
    
    	/**
@@ -2,6 +2,7 @@
 	import mars.*;
 	import mars.util.*;
 	import mars.mips.hardware.*;
+	import java.util.*;
 	
 	/*
 Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
@@ -70,6 +71,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       public static final TokenTypes MACRO_PARAMETER = new TokenTypes("MACRO_PARAMETER");
    
       private String descriptor;
+      // Reserved words (registers, operators, directives) and their types.  Rebuilt
+      // whenever the instruction set is repopulated, e.g. when the language changes.
+      private static volatile KeywordMap keywords = null;
    
        private TokenTypes() {
       // private ctor assures no objects can be created other than those above.
@@ -100,7 +104,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     
        public static TokenTypes matchTokenType(String value)
       {
-      
+         Keyword keyword = matchKeyword(value);
+         return (keyword != null) ? keyword.type : matchNonKeywordTokenType(value);
+      }
+
+   /**
+    * Classifies the given token, which has already been looked up by matchKeyword()
+    * and not found, into one of the MIPS types.
+    * 
+    * @param value String containing candidate language element, extracted from MIPS program.
+    * 
+    * @return Returns the corresponding TokenTypes object, ERROR if none.
+    **/
+       static TokenTypes matchNonKeywordTokenType(String value)
+      {
          TokenTypes type = null;
 		 // If it starts with single quote ('), it is a mal-formed character literal
 		 // because a well-formed character literal was converted to string-ified 
@@ -150,7 +167,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        // Classify based on # bits needed to represent in binary
        // This is needed because most immediate operands limited to 16 bits
        // others limited to 5 bits unsigned (shift amounts) others 32 bits.
-         try {
+         // Only attempt the conversion if it could succeed; a failed conversion throws,
+         // and exceptions are far too costly to pay for every identifier.
+         if (mayBeNumber(value)) try {
 
             int i = Binary.stringToInt(value);   // KENV 1/6/05
 				
@@ -212,7 +231,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       
        // See if it is a real (fixed or floating point) number.  Note that parseDouble()
        // accepts integer values but if it were an integer literal we wouldn't get this far.
-         try {
+         if (mayBeNumber(value)) try {
             Double.parseDouble(value);
             return TokenTypes.REAL_NUMBER;
          }
@@ -269,6 +288,108 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return type == TokenTypes.REAL_NUMBER;
       }	
    
+
+   /**
+    * Looks up the given token in the table of reserved words: register names and
+    * numbers, floating point registers, instruction mnemonics and directives.  Each
+    * matching token can then share the table's single copy of its value rather than
+    * keep its own.  Only exact matches are found; anything else, such as a mnemonic
+    * written in upper case, is left to matchTokenType().
+    *
+    * @param value String containing candidate language element
+    * @return the Keyword for value, or null if value is not a reserved word.
+    **/
+       static Keyword matchKeyword(String value) {
+         if (Globals.instructionSet == null)
+            return null;
+         Map operators = Globals.instructionSet.getOperatorMap();
+         KeywordMap current = keywords;
+         if (current == null || current.operators != operators) {
+            current = new KeywordMap(operators);
+            keywords = current;
+         }
+         return current.map.get(value);
+      }
+
+       // Cheap test for whether Binary.stringToInt() or Double.parseDouble() could
+       // possibly accept value.  Both require a leading digit, sign or decimal point,
+       // apart from the special values below.  parseDouble() also skips leading white space.
+       private static boolean mayBeNumber(String value) {
+         char c = value.charAt(0);
+         return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c <= ' '
+                || value.equals("NaN") || value.equals("Infinity");
+      }
+
+   /**
+    * A reserved word: its canonical String value and its token type.
+    **/
+       static final class Keyword {
+         final String value;
+         final TokenTypes type;
+          Keyword(String value, TokenTypes type) {
+            this.value = value;
+            this.type = type;
+         }
+      }
+
+    // The reserved word table, together with the instruction set operator map it
+    // was built from so it can tell when it has gone stale.
+       private static final class KeywordMap {
+         final Map operators;
+         final HashMap<String,Keyword> map = new HashMap<String,Keyword>();
+          KeywordMap(Map operators) {
+            this.operators = operators;
+            // Order matters where a string could fall in more than one group: later
+            // puts win, mirroring the order in which matchTokenType() checks.
+            ArrayList directives = Directives.getDirectiveList();
+            for (int i = 0; i < directives.size(); i++) {
+               add(((Directives) directives.get(i)).getName(), DIRECTIVE);
+            }
+            Iterator names = operators.keySet().iterator();
+            while (names.hasNext()) {
+               add((String) names.next(), OPERATOR);
+            }
+            Iterator lists = operators.values().iterator();
+            while (lists.hasNext()) {
+               ArrayList instructions = (ArrayList) lists.next();
+               for (int i = 0; i < instructions.size(); i++) {
+                  add(((mars.mips.instructions.Instruction) instructions.get(i)).getName(), OPERATOR);
+               }
+            }
+            Register[] fpRegisters = Coprocessor1.getRegisters();
+            for (int i = 0; i < fpRegisters.length; i++) {
+               add("$f" + i, FP_REGISTER_NAME);
+            }
+            Register[] registers = RegisterFile.getRegisters();
+            for (int i = 0; i < registers.length; i++) {
+               add("$" + i, REGISTER_NUMBER);
+               add(registers[i].getName(), REGISTER_NAME);
+            }
+         }
+         // Only words that cannot be mistaken for a comment, character literal, simple
+         // token, macro parameter or number go in the table; matchTokenType() checks
+         // for those first.
+          private void add(String value, TokenTypes type) {
+            if ((isValidIdentifier(value) || value.charAt(0) == '$') && !isNumber(value)) {
+               map.put(value, new Keyword(value, type));
+            }
+         }
+          private static boolean isNumber(String value) {
+            try {
+               Binary.stringToInt(value);
+               return true;
+            }
+                catch (NumberFormatException e) {
+               }
+            try {
+               Double.parseDouble(value);
+               return true;
+            }
+                catch (NumberFormatException e) {
+               }
+            return false;
+         }
+      }
    
        // COD2, A-51:  "Identifiers are a sequence of alphanumeric characters,
        //               underbars (_), and dots (.) that do not begin with a number."
@@ -56,6 +56,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	// tab, backspace, return, form feed.  The characters and their corresponding decimal codes:
       private static final String escapedCharacters = "'\"\\ntbrf0";
       private static final String[] escapedCharactersValues = {"39","34","92","10","9","8","13","12","0"};
+      private static final TokenList EMPTY_TOKEN_LIST = new TokenList(); // shared, never modified
+      // Per-thread scratch space for tokenizeLine(): [0] holds the line, [1] the token being built.
+      // Lines are tokenized many times over during assembly, so reuse saves a lot of garbage.
+      private static final ThreadLocal<char[][]> scratch = 
+          new ThreadLocal<char[][]>() {
+             protected char[][] initialValue() {
+               return new char[][] { new char[256], new char[256] };
+            }
+         };
    
    /**
     *  Simple constructor. Initializes empty error list.
@@ -86,9 +95,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public ArrayList tokenize(MIPSprogram p) throws ProcessingException {
          sourceMIPSprogram = p;
          equivalents = new HashMap<String,String>(); // DPS 11-July-2012
-         ArrayList tokenList = new ArrayList();
          //ArrayList source = p.getSourceList();
          ArrayList<SourceLine> source = processIncludes(p, new HashMap<String,String>()); // DPS 9-Jan-2013
+         ArrayList tokenList = new ArrayList(source.size());
          p.setSourceLineList(source);
          TokenList currentLineTokens;
          String sourceLine;
@@ -125,8 +134,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          ArrayList<SourceLine> result = new ArrayList<SourceLine>(source.size());
          for (int i=0; i<source.size(); i++) {
             String line = (String) source.get(i);
-            TokenList tl = tokenizeLine(program, i+1, line, false);
             boolean hasInclude = false;
+            // Only lines that mention .include need tokenizing here; the rest are
+            // tokenized once, by tokenize(), after includes have been expanded.
+            TokenList tl = mentionsInclude(line) ? tokenizeLine(program, i+1, line, false) : EMPTY_TOKEN_LIST;
             for (int ii=0; ii<tl.size(); ii++) {
                if (tl.get(ii).getValue().equalsIgnoreCase(Directives.INCLUDE.getName()) 
                       && (tl.size() > ii+1) 
@@ -167,6 +178,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
          return result;
       }
+
+   // Cheap case-insensitive check for the .include directive name anywhere in the line,
+   // so processIncludes() can skip tokenizing lines that cannot contain it.
+       private static boolean mentionsInclude(String line) {
+         String directive = Directives.INCLUDE.getName();
+         int last = line.length() - directive.length();
+         for (int i = line.indexOf('.'); i >= 0 && i <= last; i = line.indexOf('.', i+1)) {
+            if (line.regionMatches(true, i, directive, 0, directive.length())) {
+               return true;
+            }
+         }
+         return false;
+      }
    	
    /**
     * Used only to create a token list for the example provided with each instruction
@@ -280,18 +304,27 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          TokenList result = new TokenList();
          if (theLine.length() == 0)
             return result;
-      // will be faster to work with char arrays instead of strings
+      // will be faster to work with char arrays instead of strings.  The arrays are
+      // reused from one call to the next.  That is safe because the only re-entry, via
+      // processEqv(), happens after this method is done with them.
          char c;
-         char[] line = theLine.toCharArray();
+         int lineLength = theLine.length();
+         char[][] buffers = scratch.get();
+         if (buffers[0].length < lineLength) {
+            buffers[0] = new char[Math.max(lineLength, 2 * buffers[0].length)];
+            buffers[1] = new char[buffers[0].length];
+         }
+         char[] line = buffers[0];
+         theLine.getChars(0, lineLength, line, 0);
          int linePos = 0;
-         char[] token = new char[line.length];
+         char[] token = buffers[1];
          int tokenPos = 0;
          int tokenStartPos = 1;
          boolean insideQuotedString = false;  
          if (Globals.debug) 
             System.out.println("source line --->"+theLine+"<---");
       // Each iteration of this loop processes one character in the source line.
-         while (linePos < line.length) {
+         while (linePos < lineLength) {
             c = line[linePos];
             if (insideQuotedString) { // everything goes into token
                token[tokenPos++] = c;
@@ -309,10 +342,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                         tokenPos = 0;
                      }
                      tokenStartPos = linePos+1;
-                     tokenPos = line.length-linePos;
+                     tokenPos = lineLength-linePos;
                      System.arraycopy(line, linePos, token, 0, tokenPos);
                      this.processCandidateToken(token, program, lineNum, theLine, tokenPos, tokenStartPos, result);
-                     linePos = line.length;
+                     linePos = lineLength;
                      tokenPos = 0;
                      break;
                   case ' ' :
@@ -331,7 +364,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   case '-' :
                       // Here's the REAL hack: recognizing signed exponent in E-notation floating point!
                   	 // (e.g. 1.2e-5) Add the + or - to the token and keep going.  DPS 17 Aug 2005
-                     if (tokenPos > 0 && line.length >= linePos+2 && Character.isDigit(line[linePos+1]) &&
+                     if (tokenPos > 0 && lineLength >= linePos+2 && Character.isDigit(line[linePos+1]) &&
                                                        (line[linePos-1]=='e' || line[linePos-1]=='E')) {
                         token[tokenPos++] = c;
                         break;
@@ -344,7 +377,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                      tokenStartPos = linePos+1;
                      token[tokenPos++] = c;
                      if ( !((result.isEmpty() || ((Token)result.get(result.size()-1)).getType() != TokenTypes.IDENTIFIER) &&
-                           (line.length >= linePos+2 && Character.isDigit(line[linePos+1]))) ) {
+                           (lineLength >= linePos+2 && Character.isDigit(line[linePos+1]))) ) {
                            // treat it as binary.....
                         this.processCandidateToken(token, program, lineNum, theLine, tokenPos, tokenStartPos, result);
                         tokenPos = 0;
@@ -380,7 +413,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   	// Our strategy is to process the whole thing right now...
                      tokenStartPos = linePos+1;
                      token[tokenPos++] = c; // Put the quote in token[0]
-                     int lookaheadChars = line.length - linePos - 1;
+                     int lookaheadChars = lineLength - linePos - 1;
                   	// need minimum 2 more characters, 1 for char and 1 for ending quote
                      if (lookaheadChars < 2) 
                         break;  // gonna be an error
@@ -533,7 +566,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        int tokenPos, int tokenStartPos, TokenList tokenList) {
          String value = new String(token, 0, tokenPos);
          if (value.length() > 0 && value.charAt(0)=='\'') value = preprocessCharacterLiteral(value);
-         TokenTypes type = TokenTypes.matchTokenType(value);
+         TokenTypes type;
+         // Registers, mnemonics and directives share one String per keyword, so the
+         // copy just made can be dropped right away rather than kept by the Token.
+         TokenTypes.Keyword keyword = TokenTypes.matchKeyword(value);
+         if (keyword != null) {
+            value = keyword.value;
+            type = keyword.type;
+         } 
+         else {
+            type = TokenTypes.matchNonKeywordTokenType(value);
+         }
          if (type == TokenTypes.ERROR) {
             errors.add(new ErrorMessage(program, line, tokenStartPos, 
                        theLine+"\nInvalid language element: "+value));
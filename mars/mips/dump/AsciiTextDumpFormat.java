@@ -61,7 +61,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 	*  followed by single-character code, e.g. \t for tab, \0 for null.
 	*  Non-printing character (control code,
 	*  values above 127) is rendered as a period (.).  Written
-	*  using PrintStream's println() method.
+	*  through a buffered file channel.
    *  Adapted by Pete Sanderson from code written by Greg Gibeling.
    *
    *  @param  file  File in which to store MIPS memory contents.  
@@ -74,14 +74,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    */
        public void dumpMemoryRange(File file, int firstAddress, int lastAddress) 
         throws AddressErrorException, IOException {
-         PrintStream out = new PrintStream(new FileOutputStream(file));
-         String string = null;
+         DumpFileWriter out = new DumpFileWriter(file);
          try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-               Integer temp = Globals.memory.getRawWordOrNull(address);
-               if (temp == null) 
-                  break;
-               out.println(Binary.intToAscii(temp.intValue()));
+            Memory.RawBlockIterator blocks = Globals.memory.getRawBlockIterator(firstAddress, lastAddress);
+            while (blocks.next()) {
+               int[] words = blocks.getWords();
+               for (int i = 0; i < blocks.getLength(); i++) {
+                  out.println(Binary.intToAscii(words[i]));
+               }
             }
          } 
          finally { 
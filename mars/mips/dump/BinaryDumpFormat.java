@@ -3,6 +3,7 @@
    import mars.Globals;
    import mars.mips.hardware.*;
    import java.io.*;
+   import java.nio.ByteOrder;
 /*
 Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
 
@@ -34,7 +35,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 /**
  * Class that represents the "binary" memory dump format.  The output 
  * is a binary file containing the memory words as a byte stream.  Output
- * is produced using PrintStream's write() method.
+ * is written a block of memory at a time through a buffered file channel.
  * @author Pete Sanderson 
  * @version December 2007
  */
@@ -51,8 +52,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
    
    /**
-   *  Write MIPS memory contents in pure binary format.  One byte at a time
-	*  using PrintStream's write() method.  Adapted by Pete Sanderson from
+   *  Write MIPS memory contents in pure binary format, each word as 4 bytes
+	*  in little-endian order.  Words are gathered a memory block at a time and
+	*  written through a buffered file channel.  Adapted by Pete Sanderson from
 	*  code written by Greg Gibeling.
 	*
    *  @param  file  File in which to store MIPS memory contents.  
@@ -65,15 +67,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    */
        public void dumpMemoryRange(File file, int firstAddress, int lastAddress) 
         throws AddressErrorException, IOException {
-         PrintStream out = new PrintStream(new FileOutputStream(file));
+         DumpFileWriter out = new DumpFileWriter(file);
          try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-               Integer temp = Globals.memory.getRawWordOrNull(address);
-               if (temp == null) 
-                  break;
-               int word = temp.intValue();
-               for (int i = 0; i < 4; i++) 
-                  out.write((word >>> (i << 3)) & 0xFF);
+            Memory.RawBlockIterator blocks = Globals.memory.getRawBlockIterator(firstAddress, lastAddress);
+            while (blocks.next()) {
+               out.writeWords(blocks.getWords(), 0, blocks.getLength(), ByteOrder.LITTLE_ENDIAN);
             }
          } 
          finally { 
@@ -53,7 +53,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    /**
    *  Write MIPS memory contents in binary text format.  Each line of
    *  text contains one memory word written as 32 '0' and '1' characters.  Written
-   *  using PrintStream's println() method.
+   *  through a buffered file channel.
    *  Adapted by Pete Sanderson from code written by Greg Gibeling.
    *
    *  @param  file  File in which to store MIPS memory contents.  
@@ -66,18 +66,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    */
        public void dumpMemoryRange(File file, int firstAddress, int lastAddress) 
         throws AddressErrorException, IOException {
-         PrintStream out = new PrintStream(new FileOutputStream(file));
-         String string = null;
+         DumpFileWriter out = new DumpFileWriter(file);
          try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-               Integer temp = Globals.memory.getRawWordOrNull(address);
-               if (temp == null) 
-                  break;
-               string = Integer.toBinaryString(temp.intValue());
-               while (string.length() < 32) {
-                  string = '0' + string;
+            Memory.RawBlockIterator blocks = Globals.memory.getRawBlockIterator(firstAddress, lastAddress);
+            while (blocks.next()) {
+               int[] words = blocks.getWords();
+               for (int i = 0; i < blocks.getLength(); i++) {
+                  out.printBinary(words[i]);
+                  out.println();
                }
-               out.println(string);
             }
          } 
          finally { 
@@ -0,0 +1,211 @@
+   package mars.mips.dump;
+
+   import java.io.*;
+   import java.nio.*;
+   import java.nio.channels.*;
+   import java.nio.charset.*;
+/*
+Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Buffered output for the memory dump formats.  Text and binary words are collected
+ * in a direct buffer and written to the file's channel a buffer at a time, so dumping
+ * a large memory range costs one system call per 64K bytes rather than one per line
+ * (or per byte).  Text is encoded with the platform default character set and lines
+ * end with the platform line separator, as PrintStream's println() would produce.
+ */
+
+    class DumpFileWriter {
+   
+      private static final int BUFFER_SIZE = 1 << 16;
+      private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+      private static final char[] LINE_SEPARATOR = System.getProperty("line.separator").toCharArray();
+   
+      private FileOutputStream stream;
+      private FileChannel channel;
+      private ByteBuffer bytes;
+      private CharBuffer chars;
+      private CharsetEncoder encoder;
+   
+   /**
+   *  Open the file for writing, replacing any existing contents.
+   *  @param file File to write.
+   *  @throws IOException if the file cannot be opened.
+   */
+       DumpFileWriter(File file) throws IOException {
+         stream = new FileOutputStream(file);
+         channel = stream.getChannel();
+         bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+         chars = CharBuffer.allocate(BUFFER_SIZE);
+         encoder = Charset.defaultCharset().newEncoder()
+                      .onMalformedInput(CodingErrorAction.REPLACE)
+                      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+      }
+   
+   /**
+   *  Write words as 4 bytes each in the given byte order.
+   *  @param words array holding the words.
+   *  @param offset index of first word to write.
+   *  @param length number of words to write.
+   *  @param order byte order of each word in the file.
+   *  @throws IOException if error occurs during file output.
+   */
+       void writeWords(int[] words, int offset, int length, ByteOrder order) throws IOException {
+         flushChars();
+         bytes.order(order);
+         while (length > 0) {
+            if (bytes.remaining() < 4) {
+               flushBytes();
+            }
+            int count = Math.min(length, bytes.remaining() >> 2);
+            bytes.asIntBuffer().put(words, offset, count);
+            bytes.position(bytes.position() + (count << 2));
+            offset += count;
+            length -= count;
+         }
+      }
+   
+   /**
+   *  Write bytes as is.
+   *  @param data bytes to write.
+   *  @throws IOException if error occurs during file output.
+   */
+       void writeBytes(byte[] data) throws IOException {
+         flushChars();
+         int start = 0;
+         while (start < data.length) {
+            if (!bytes.hasRemaining()) {
+               flushBytes();
+            }
+            int count = Math.min(data.length - start, bytes.remaining());
+            bytes.put(data, start, count);
+            start += count;
+         }
+      }
+   
+   /**
+   *  Write a string of text.
+   *  @param string text to write.
+   *  @throws IOException if error occurs during file output.
+   */
+       void print(String string) throws IOException {
+         int start = 0;
+         int length = string.length();
+         while (start < length) {
+            if (!chars.hasRemaining()) {
+               flushChars();
+            }
+            int count = Math.min(length - start, chars.remaining());
+            chars.put(string, start, start + count);
+            start += count;
+         }
+      }
+   
+   /**
+   *  Write the low order digits of a value in hexadecimal, padded with leading zeroes.
+   *  @param value value to write, treated as unsigned.
+   *  @param digits number of hex digits to write.
+   *  @param upperCase true for A-F, false for a-f.
+   *  @throws IOException if error occurs during file output.
+   */
+       void printHex(int value, int digits, boolean upperCase) throws IOException {
+         if (chars.remaining() < digits) {
+            flushChars();
+         }
+         for (int shift = (digits - 1) << 2; shift >= 0; shift -= 4) {
+            char digit = HEX_DIGITS[(value >>> shift) & 0xF];
+            chars.put(upperCase ? Character.toUpperCase(digit) : digit);
+         }
+      }
+   
+   /**
+   *  Write all 32 bits of a value as binary digits, most significant first.
+   *  @param value value to write.
+   *  @throws IOException if error occurs during file output.
+   */
+       void printBinary(int value) throws IOException {
+         if (chars.remaining() < 32) {
+            flushChars();
+         }
+         for (int shift = 31; shift >= 0; shift--) {
+            chars.put(((value >>> shift) & 1) == 0 ? '0' : '1');
+         }
+      }
+   
+   /**
+   *  End the current line of text.
+   *  @throws IOException if error occurs during file output.
+   */
+       void println() throws IOException {
+         if (chars.remaining() < LINE_SEPARATOR.length) {
+            flushChars();
+         }
+         chars.put(LINE_SEPARATOR);
+      }
+   
+   /**
+   *  Write a string of text followed by a line separator.
+   *  @param string text to write.
+   *  @throws IOException if error occurs during file output.
+   */
+       void println(String string) throws IOException {
+         print(string);
+         println();
+      }
+   
+   /**
+   *  Write out anything still buffered and close the file.
+   *  @throws IOException if error occurs during file output.
+   */
+       void close() throws IOException {
+         try {
+            flushChars();
+            flushBytes();
+         } 
+         finally {
+            stream.close();
+         }
+      }
+   
+      // Encode buffered text into the byte buffer, writing the byte buffer out whenever it fills.
+       private void flushChars() throws IOException {
+         chars.flip();
+         while (encoder.encode(chars, bytes, false).isOverflow()) {
+            flushBytes();
+         }
+         chars.compact();
+      }
+   
+       private void flushBytes() throws IOException {
+         bytes.flip();
+         while (bytes.hasRemaining()) {
+            channel.write(bytes);
+         }
+         bytes.clear();
+      }
+   }
@@ -33,36 +33,32 @@
    */
        public void dumpMemoryRange(File file, int firstAddress, int lastAddress)
           throws AddressErrorException, IOException {
-            PrintStream out = new PrintStream(new FileOutputStream(file));
-            String string = null;
+            DumpFileWriter out = new DumpFileWriter(file);
             try {
-               for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                  Integer temp = Globals.memory.getRawWordOrNull(address);
-                  if (temp == null) 
-                     break;
-                  string = Integer.toHexString(temp.intValue());
-                  while (string.length() < 8) {
-                     string = '0' + string;
+               Memory.RawBlockIterator blocks = Globals.memory.getRawBlockIterator(firstAddress, lastAddress);
+               while (blocks.next()) {
+                  int[] words = blocks.getWords();
+                  for (int i = 0; i < blocks.getLength(); i++) {
+                     int word = words[i];
+                     int offset = blocks.getAddress() + i * Memory.WORD_LENGTH_BYTES - firstAddress;
+                     int tmp_chksum = 0;
+                     tmp_chksum += 4;
+                     tmp_chksum += 0xFF & offset;
+                     tmp_chksum += 0xFF & (offset>>8);
+                     tmp_chksum += 0xFF & word;
+                     tmp_chksum += 0xFF & (word>>8);
+                     tmp_chksum += 0xFF & (word>>16);
+                     tmp_chksum += 0xFF & (word>>24);
+                     tmp_chksum = tmp_chksum % 256;
+                     tmp_chksum = ~tmp_chksum + 1;
+                     // record address is at least 4 hex digits, more if the offset needs them
+                     out.print(":04");
+                     out.printHex(offset, Math.max(4, (35 - Integer.numberOfLeadingZeros(offset)) >> 2), true);
+                     out.print("00");
+                     out.printHex(word, 8, true);
+                     out.printHex(tmp_chksum, 2, true);
+                     out.println();
                   }
-                  String addr = Integer.toHexString(address-firstAddress);
-                  while (addr.length() < 4) {
-                     addr = '0' + addr;
-                  }
-                  String chksum;
-                  int tmp_chksum = 0;
-                  tmp_chksum += 4;
-                  tmp_chksum += 0xFF & (address-firstAddress);
-                  tmp_chksum += 0xFF & ((address-firstAddress)>>8);
-                  tmp_chksum += 0xFF & temp.intValue();
-                  tmp_chksum += 0xFF & (temp.intValue()>>8);
-                  tmp_chksum += 0xFF & (temp.intValue()>>16);
-                  tmp_chksum += 0xFF & (temp.intValue()>>24);
-                  tmp_chksum = tmp_chksum % 256;
-                  tmp_chksum = ~tmp_chksum + 1;
-                  chksum = Integer.toHexString(0xFF & tmp_chksum);
-                  if(chksum.length()==1) chksum = '0' + chksum;
-                  String finalstr = ":04"+addr+"00"+string+chksum;
-                  out.println(finalstr.toUpperCase());
                }
                out.println(":00000001FF");
             } 
@@ -0,0 +1,349 @@
+   package mars.mips.dump;
+
+   import mars.Globals;
+   import mars.ProgramStatement;
+   import mars.simulator.Exceptions;
+   import mars.mips.hardware.*;
+   import java.io.*;
+   import java.nio.*;
+   import java.nio.channels.*;
+   import java.util.*;
+/*
+Copyright (c) 2003-2013,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+
+/**
+ * Class that represents the "memory image" dump format.  Unlike the other formats,
+ * which stop at the first word never written, the output holds every populated
+ * block of memory in the range, from every segment, along with the register
+ * contents, so the image can be reloaded later with loadMemoryImage() to restore
+ * or compare the state of a program without assembling it again.
+ * <p>
+ * The file is a sequence of big-endian ints.  A header (magic number, version and
+ * the memory configuration identifier as a length-prefixed UTF-8 string) is
+ * followed by chunks, each a segment tag, a base address, a word count and that
+ * many words, and ends with a chunk whose tag is END.  Memory chunks are whole 4K
+ * blocks wherever possible; text segment chunks are runs of consecutive statements.
+ * Register chunks are tagged CPU_REGISTERS (base address holds the program counter,
+ * words are $0-$31 then hi and lo), FPU_REGISTERS (base address holds the condition
+ * flags, words are $f0-$f31) and COP0_REGISTERS (number/value pairs).  A HEAP chunk
+ * has no words; its base address holds the heap break, the address the next sbrk
+ * allocation starts at.  Version 1 images have no HEAP chunk.
+ * @version October 2026
+ */
+
+    public class MemoryImageDumpFormat extends AbstractDumpFormat {
+   
+      /** File extension used for memory images, without the leading dot. **/
+      public static final String EXTENSION = "mimg";
+      private static final int MAGIC = 0x4D494D47; // "MIMG"
+      private static final int VERSION = 2;
+   	
+      /** Chunk tags. **/
+      public static final int END = 0;
+      public static final int TEXT = 1;
+      public static final int KERNEL_TEXT = 2;
+      public static final int DATA = 3;
+      public static final int STACK = 4;
+      public static final int KERNEL_DATA = 5;
+      public static final int MMIO = 6;
+      public static final int CPU_REGISTERS = 16;
+      public static final int FPU_REGISTERS = 17;
+      public static final int COP0_REGISTERS = 18;
+      public static final int HEAP = 19;
+      private static final int CPU_REGISTER_COUNT = 34; // $0-$31, hi, lo
+      private static final int FPU_REGISTER_COUNT = 32;
+   
+   /**
+   *  Constructor.  File extention is "mimg".
+   */
+       public MemoryImageDumpFormat() {
+         super("Memory Image", "Image", "Sparse image of all populated memory and registers", EXTENSION);
+      }
+   
+   
+   /**
+   *  Write every populated block of MIPS memory within the address range, together
+   *  with the registers.  Addresses are compared as unsigned values, so the range
+   *  0x00000000 to 0xfffffffc covers all of memory.  Memory outside the range or never
+   *  written is left out rather than ending the dump.
+   *
+   *  @param  file  File in which to store MIPS memory contents.  
+   *  @param firstAddress first (lowest) memory address to dump.  In bytes but
+   *  must be on word boundary.
+   *  @param lastAddress last (highest) memory address to dump.  In bytes but
+   *  must be on word boundary.  Will dump the word that starts at this address.
+   *  @throws AddressErrorException if firstAddress is invalid or not on a word boundary.
+   *  @throws IOException if error occurs during file output.
+   */
+       public void dumpMemoryRange(File file, int firstAddress, int lastAddress) 
+        throws AddressErrorException, IOException {
+         if (!Memory.wordAligned(firstAddress)) {
+            throw new AddressErrorException("address for fetch not aligned on word boundary",
+                  Exceptions.ADDRESS_EXCEPTION_LOAD, firstAddress);
+         }
+         DumpFileWriter out = new DumpFileWriter(file);
+         try {
+            byte[] configuration = MemoryConfigurations.getCurrentConfiguration()
+                                      .getConfigurationIdentifier().getBytes("UTF-8");
+            writeInts(out, MAGIC, VERSION, configuration.length);
+            out.writeBytes(configuration);
+            // Segment base addresses depend on the memory configuration so look them up now.
+            int[] segments = { Memory.textBaseAddress, Memory.kernelTextBaseAddress, Memory.dataSegmentBaseAddress, 
+                               Memory.stackBaseAddress, Memory.kernelDataBaseAddress, Memory.memoryMapBaseAddress };
+            HashSet<Integer> written = new HashSet<Integer>(); // in case segments share a block table
+            int[] statementWords = new int[Memory.TEXT_BLOCK_LENGTH_BYTES / Memory.WORD_LENGTH_BYTES];
+            for (int s = 0; s < segments.length; s++) {
+               int[] addresses = Globals.memory.getAllocatedBlockAddresses(segments[s]);
+               for (int i = 0; i < addresses.length; i++) {
+                  if (!written.add(addresses[i])) {
+                     continue;
+                  }
+                  int tag = getSegmentTag(addresses[i]);
+                  if (tag == TEXT || tag == KERNEL_TEXT) {
+                     // write each run of consecutive statements as a chunk
+                     int run = 0;
+                     for (int j = 0; j <= statementWords.length; j++) {
+                        int address = addresses[i] + j * Memory.WORD_LENGTH_BYTES;
+                        ProgramStatement statement = (j == statementWords.length || getSegmentTag(address) != tag) 
+                           ? null : Globals.memory.getStatementNoNotify(address);
+                        if (statement != null) {
+                           statementWords[j] = statement.getBinaryStatement();
+                           run++;
+                        } 
+                        else if (run > 0) {
+                           writeChunk(out, tag, addresses[i], statementWords, j - run, j, firstAddress, lastAddress);
+                           run = 0;
+                        }
+                     }
+                  } 
+                  else {
+                     int[] words = Globals.memory.getRawBlockOrNull(addresses[i]);
+                     if (words != null) {
+                        writeChunk(out, tag, addresses[i], words, 0, words.length, firstAddress, lastAddress);
+                     }
+                  }
+               }
+            }
+            int[] cpu = new int[CPU_REGISTER_COUNT];
+            for (int i = 0; i < 32; i++) {
+               cpu[i] = RegisterFile.getValue(i);
+            }
+            cpu[32] = RegisterFile.getValue(33);
+            cpu[33] = RegisterFile.getValue(34);
+            writeInts(out, CPU_REGISTERS, RegisterFile.getProgramCounter(), cpu.length);
+            out.writeWords(cpu, 0, cpu.length, ByteOrder.BIG_ENDIAN);
+            int[] fpu = new int[FPU_REGISTER_COUNT];
+            for (int i = 0; i < fpu.length; i++) {
+               fpu[i] = Coprocessor1.getValue(i);
+            }
+            writeInts(out, FPU_REGISTERS, Coprocessor1.getConditionFlags(), fpu.length);
+            out.writeWords(fpu, 0, fpu.length, ByteOrder.BIG_ENDIAN);
+            Register[] cop0 = Coprocessor0.getRegisters();
+            int[] pairs = new int[2 * cop0.length];
+            for (int i = 0; i < cop0.length; i++) {
+               pairs[2 * i] = cop0[i].getNumber();
+               pairs[2 * i + 1] = cop0[i].getValueNoNotify();
+            }
+            writeInts(out, COP0_REGISTERS, 0, pairs.length);
+            out.writeWords(pairs, 0, pairs.length, ByteOrder.BIG_ENDIAN);
+            writeInts(out, HEAP, Memory.heapAddress, 0);
+            writeInts(out, END, 0, 0);
+         } 
+         finally { 
+            out.close(); 
+         }
+      }
+   
+   /**
+   *  Restore memory and registers from a memory image written by this format.  Each
+   *  block and statement in the image replaces what is at that address, and registers
+   *  in the image are set.  Memory not in the image is left alone, so an image can be
+   *  restored over the freshly assembled program it was taken from: text segment
+   *  statements whose machine code is unchanged keep their source code.  The heap
+   *  break is restored too, so later sbrk allocations do not reuse restored heap
+   *  memory.  Observers are notified of register changes but not of block stores.
+   *
+   *  @param file memory image to read.
+   *  @throws IOException if the file cannot be read, is not a memory image, or was
+   *  written under a different memory configuration.
+   *  @throws AddressErrorException if the image holds an address outside the segment
+   *  it is tagged with.
+   */
+       public static void loadMemoryImage(File file) throws IOException, AddressErrorException {
+         RandomAccessFile raf = new RandomAccessFile(file, "r");
+         try {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.BIG_ENDIAN);
+            if (buffer.remaining() < 12 || buffer.getInt() != MAGIC) {
+               throw new IOException(file + " is not a MARS memory image");
+            }
+            int version = buffer.getInt();
+            if (version < 1 || version > VERSION) {
+               throw new IOException(file + " was written by an incompatible version of MARS");
+            }
+            byte[] configuration = new byte[buffer.getInt()];
+            buffer.get(configuration);
+            String configurationName = new String(configuration, "UTF-8");
+            if (!configurationName.equals(MemoryConfigurations.getCurrentConfiguration().getConfigurationIdentifier())) {
+               throw new IOException(file + " was written under memory configuration " + configurationName);
+            }
+            int[] words = new int[Math.max(Memory.BLOCK_LENGTH_BYTES, Memory.TEXT_BLOCK_LENGTH_BYTES) / Memory.WORD_LENGTH_BYTES];
+            for (;;) {
+               int tag = buffer.getInt();
+               int address = buffer.getInt();
+               int count = buffer.getInt();
+               if (tag == END) {
+                  break;
+               }
+               if (count < 0 || count > words.length) {
+                  throw new IOException(file + " is corrupt");
+               }
+               buffer.asIntBuffer().get(words, 0, count);
+               buffer.position(buffer.position() + count * Memory.WORD_LENGTH_BYTES);
+               switch (tag) {
+                  case CPU_REGISTERS :
+                     restoreRegisters(address, words, count);
+                     break;
+                  case FPU_REGISTERS :
+                     for (int i = 0; i < count; i++) {
+                        Coprocessor1.updateRegister(i, words[i]);
+                     }
+                     for (int flag = 0; flag < Coprocessor1.getConditionFlagCount(); flag++) {
+                        if (((address >> flag) & 1) == 0) {
+                           Coprocessor1.clearConditionFlag(flag);
+                        } 
+                        else {
+                           Coprocessor1.setConditionFlag(flag);
+                        }
+                     }
+                     break;
+                  case COP0_REGISTERS :
+                     for (int i = 0; i + 1 < count; i += 2) {
+                        Coprocessor0.updateRegister(words[i], words[i + 1]);
+                     }
+                     break;
+                  case HEAP :
+                     Memory.heapAddress = address;
+                     break;
+                  default :
+                     restoreMemory(tag, address, words, count);
+               }
+            }
+         }
+             catch (BufferUnderflowException e) {
+               throw new IOException(file + " is truncated or corrupt");
+            }
+         finally {
+            raf.close();
+         }
+      }
+   
+      // Segment tag for the memory at address, with the precedence Memory gives
+      // overlapping segments.  0 if not in any segment.
+       private static int getSegmentTag(int address) {
+         if (Memory.inTextSegment(address)) 
+            return TEXT;
+         if (Memory.inKernelTextSegment(address)) 
+            return KERNEL_TEXT;
+         if (Memory.inDataSegment(address)) 
+            return DATA;
+         if (address > Memory.stackLimitAddress && address <= Memory.stackBaseAddress) 
+            return STACK;
+         if (address >= Memory.memoryMapBaseAddress && address < Memory.memoryMapLimitAddress) 
+            return MMIO;
+         if (Memory.inKernelDataSegment(address)) 
+            return KERNEL_DATA;
+         return END;
+      }
+   
+      // Write words[from..to) of the block starting at blockAddress, less any words
+      // outside the unsigned range firstAddress..lastAddress.
+       private static void writeChunk(DumpFileWriter out, int tag, int blockAddress, int[] words, int from, int to,
+                                      int firstAddress, int lastAddress) throws IOException {
+         while (from < to && !inRange(blockAddress + from * Memory.WORD_LENGTH_BYTES, firstAddress, lastAddress)) {
+            from++;
+         }
+         while (to > from && !inRange(blockAddress + (to - 1) * Memory.WORD_LENGTH_BYTES, firstAddress, lastAddress)) {
+            to--;
+         }
+         if (from < to) {
+            writeInts(out, tag, blockAddress + from * Memory.WORD_LENGTH_BYTES, to - from);
+            out.writeWords(words, from, to - from, ByteOrder.BIG_ENDIAN);
+         }
+      }
+   
+       private static boolean inRange(int address, int firstAddress, int lastAddress) {
+         return (address ^ Integer.MIN_VALUE) >= (firstAddress ^ Integer.MIN_VALUE)
+             && (address ^ Integer.MIN_VALUE) <= (lastAddress ^ Integer.MIN_VALUE);
+      }
+   
+       private static void writeInts(DumpFileWriter out, int tag, int address, int count) throws IOException {
+         out.writeWords(new int[] {tag, address, count}, 0, 3, ByteOrder.BIG_ENDIAN);
+      }
+   
+       private static void restoreRegisters(int programCounter, int[] words, int count) {
+         for (int i = 0; i < count && i < 32; i++) {
+            RegisterFile.updateRegister(i, words[i]);
+         }
+         if (count >= CPU_REGISTER_COUNT) {
+            RegisterFile.updateRegister(33, words[32]);
+            RegisterFile.updateRegister(34, words[33]);
+         }
+         RegisterFile.initializeProgramCounter(programCounter);
+      }
+   
+      // Store a memory chunk.  Whole blocks go in with a single block store.
+       private static void restoreMemory(int tag, int address, int[] words, int count) throws AddressErrorException {
+         if (count == 0) {
+            return;
+         }
+         int lastAddress = address + (count - 1) * Memory.WORD_LENGTH_BYTES;
+         if (tag != getSegmentTag(address) || tag != getSegmentTag(lastAddress)) {
+            throw new AddressErrorException("memory image chunk outside its segment ",
+                  Exceptions.ADDRESS_EXCEPTION_STORE, address);
+         }
+         if (tag == TEXT || tag == KERNEL_TEXT) {
+            for (int i = 0; i < count; i++) {
+               int wordAddress = address + i * Memory.WORD_LENGTH_BYTES;
+               ProgramStatement statement = Globals.memory.getStatementNoNotify(wordAddress);
+               if (statement == null || statement.getBinaryStatement() != words[i]) {
+                  Globals.memory.setStatement(wordAddress, new ProgramStatement(words[i], wordAddress));
+               }
+            }
+         } 
+         else if (count == Memory.BLOCK_LENGTH_BYTES / Memory.WORD_LENGTH_BYTES 
+                  && Globals.memory.getBlockBaseAddress(address) == address) {
+            Globals.memory.setRawBlock(address, words.length == count ? words : Arrays.copyOf(words, count));
+         } 
+         else {
+            for (int i = 0; i < count; i++) {
+               Globals.memory.setRawWord(address + i * Memory.WORD_LENGTH_BYTES, words[i]);
+            }
+         }
+      }
+   }
@@ -38,7 +38,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  * Dump MIPS memory contents in Segment Window format.  Each line of
  * text output resembles the Text Segment Window or Data Segment Window
  * depending on which segment is selected for the dump.  Written
- * using PrintStream's println() method.  Each line of Text Segment
+ * through a buffered file channel.  Each line of Text Segment
  * Window represents one word of text segment memory.  The line
  * includes (1) address, (2) machine code in hex, (3) basic instruction,
  * (4) source line.  Each line of Data Segment Window represents 8
@@ -67,7 +67,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    *  Write MIPS memory contents in Segment Window format.  Each line of
 	*  text output resembles the Text Segment Window or Data Segment Window
 	*  depending on which segment is selected for the dump.  Written
-   *  using PrintStream's println() method.
+   *  through a buffered file channel.
    *
    *  @param  file  File in which to store MIPS memory contents.  
    *  @param firstAddress first (lowest) memory address to dump.  In bytes but
@@ -80,7 +80,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public void dumpMemoryRange(File file, int firstAddress, int lastAddress) 
         throws AddressErrorException, IOException {
       
-         PrintStream out = new PrintStream(new FileOutputStream(file));
+         DumpFileWriter out = new DumpFileWriter(file);
       
          boolean hexAddresses = Globals.getSettings().getDisplayAddressesInHex();
       	
@@ -88,23 +88,26 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          if (Memory.inDataSegment(firstAddress)) {
             boolean hexValues = Globals.getSettings().getDisplayValuesInHex();
             int offset = 0;
-            String string="";
+            StringBuilder string = new StringBuilder();
             try {
-               for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-                  if (offset % 8 == 0) {
-                     string = ((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address))  + "    ";
-                  }
-                  offset++;
-                  Integer temp = Globals.memory.getRawWordOrNull(address);
-                  if (temp == null) 
-                     break;
-                  string += ((hexValues) 
-                             ? Binary.intToHexString(temp.intValue()) 
-                     		  : ("           "+temp).substring(temp.toString().length()) 
-                     		 ) + " ";
-                  if (offset % 8 == 0) {
-                     out.println(string);
-                     string = "";
+               Memory.RawBlockIterator blocks = Globals.memory.getRawBlockIterator(firstAddress, lastAddress);
+               while (blocks.next()) {
+                  int[] words = blocks.getWords();
+                  for (int i = 0; i < blocks.getLength(); i++) {
+                     if (offset % 8 == 0) {
+                        int address = blocks.getAddress() + i * Memory.WORD_LENGTH_BYTES;
+                        string.append((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address)).append("    ");
+                     }
+                     offset++;
+                     String temp = Integer.toString(words[i]);
+                     string.append((hexValues) 
+                                ? Binary.intToHexString(words[i]) 
+                        		  : ("           "+temp).substring(temp.length()) 
+                        		 ).append(' ');
+                     if (offset % 8 == 0) {
+                        out.println(string.toString());
+                        string.setLength(0);
+                     }
                   }
                }
             } 
@@ -114,31 +117,32 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             return;
          }
       	
-         if (!Memory.inTextSegment(firstAddress)) {
-            return;
-         }
-      	// If address in text segment, print in same format as Text Segment Window
-         out.println(" Address    Code        Basic                     Source");
-      	//           12345678901234567890123456789012345678901234567890
-      	//                    1         2         3         4         5
-         out.println();
-         String string = null;
          try {
-            for (int address = firstAddress; address <= lastAddress; address += Memory.WORD_LENGTH_BYTES) {
-               string = ((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address))  + "  ";
-               Integer temp = Globals.memory.getRawWordOrNull(address);
-               if (temp == null) 
-                  break;
-               string += Binary.intToHexString(temp.intValue()) + "  ";
-               try {
-                  ProgramStatement ps = Globals.memory.getStatement(address);
-                  string += (ps.getPrintableBasicAssemblyStatement()+"                      ").substring(0,22);
-                  string += (((ps.getSource()=="") ? "" : new Integer(ps.getSourceLine()).toString())+"     ").substring(0,5);
-                  string += ps.getSource();
-               } 
-                   catch (AddressErrorException aee) {
-                  }
-               out.println(string);
+            if (!Memory.inTextSegment(firstAddress)) {
+               return;
+            }
+         	// If address in text segment, print in same format as Text Segment Window
+            out.println(" Address    Code        Basic                     Source");
+         	//           12345678901234567890123456789012345678901234567890
+         	//                    1         2         3         4         5
+            out.println();
+            Memory.RawBlockIterator blocks = Globals.memory.getRawBlockIterator(firstAddress, lastAddress);
+            while (blocks.next()) {
+               int[] words = blocks.getWords();
+               for (int i = 0; i < blocks.getLength(); i++) {
+                  int address = blocks.getAddress() + i * Memory.WORD_LENGTH_BYTES;
+                  String string = ((hexAddresses) ? Binary.intToHexString(address) : Binary.unsignedIntToIntString(address))  + "  ";
+                  string += Binary.intToHexString(words[i]) + "  ";
+                  try {
+                     ProgramStatement ps = Globals.memory.getStatement(address);
+                     string += (ps.getPrintableBasicAssemblyStatement()+"                      ").substring(0,22);
+                     string += (((ps.getSource()=="") ? "" : new Integer(ps.getSourceLine()).toString())+"     ").substring(0,5);
+                     string += ps.getSource();
+                  } 
+                      catch (AddressErrorException aee) {
+                     }
+                  out.println(string);
+               }
             }
          } 
          finally { 
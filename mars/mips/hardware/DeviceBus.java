@@ -0,0 +1,306 @@
+   package mars.mips.hardware;
+
+/*
+Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+  *  Routes the MIPS program's accesses to memory-mapped I/O to the devices attached 
+  *  to them.  The MMIO area is divided into 4K byte blocks; each block that has a 
+  *  device attached gets a table holding the device for each of its words, so the 
+  *  device for an address is found by two array lookups.  Blocks without devices 
+  *  cost one lookup, and nothing at all is done while no device is attached.
+  *  <p>
+  *  Devices can also ask to be woken after a number of instructions have executed,
+  *  for delays measured in instruction time (e.g. the time a display takes to 
+  *  accept a character).  The simulator calls instructionExecuted() for each
+  *  instruction only while a wake-up is pending.
+  *  @see MemoryMappedDevice
+  **/
+
+    public class DeviceBus {
+   
+      private static final int BLOCK_LENGTH_WORDS = 1024;
+      private static final int BLOCK_SHIFT = 10;   // log2 of BLOCK_LENGTH_WORDS
+   
+      private static MemoryMappedDevice[][] routes = new MemoryMappedDevice[0][];
+      private static MemoryMappedDevice[] devices = new MemoryMappedDevice[0];
+      private static int routesBaseAddress;
+      private static volatile boolean active = false;
+      private static volatile boolean counting = false;
+      private static long instructionCount = 0;
+      private static volatile long nextWakeUpTime = Long.MAX_VALUE;
+      private static boolean dispatching = false;   // only used by the MIPS thread
+   
+   /**
+    * Attach a device to a range of MMIO addresses.  A device may be attached to several
+    * ranges.  Reads and writes by the MIPS program in the range are passed to it from 
+    * now on.
+    * @param device the device
+    * @param lowAddress first address of the range, word-aligned
+    * @param highAddress last address of the range; the word containing it is included
+    * @throws IllegalArgumentException if the range is not within the MMIO area or part
+    * of it is already attached to a different device
+    */
+       public static synchronized void attach(MemoryMappedDevice device, int lowAddress, int highAddress) {
+         if (routes.length == 0 || routesBaseAddress != Memory.memoryMapBaseAddress) {
+            // The limit address is the last byte of the MMIO area, so the area may end
+            // part way through a block; that block needs a table too.
+            routes = new MemoryMappedDevice[(Memory.memoryMapLimitAddress - Memory.memoryMapBaseAddress) / 
+                                          (BLOCK_LENGTH_WORDS * Memory.WORD_LENGTH_BYTES) + 1][];
+            routesBaseAddress = Memory.memoryMapBaseAddress;
+         }
+         if (lowAddress % Memory.WORD_LENGTH_BYTES != 0 || !inMemoryMap(lowAddress) 
+             || !inMemoryMap(highAddress) || highAddress - lowAddress < 0) {
+            throw new IllegalArgumentException("device window "+mars.util.Binary.intToHexString(lowAddress)+
+                                              "-"+mars.util.Binary.intToHexString(highAddress)+" is not in the MMIO area");
+         }
+         int lowWord = (lowAddress - routesBaseAddress) >>> 2;
+         int highWord = (highAddress - routesBaseAddress) >>> 2;
+         for (int word = lowWord; word <= highWord; word++) {
+            MemoryMappedDevice[] block = routes[word >>> BLOCK_SHIFT];
+            if (block != null && block[word & (BLOCK_LENGTH_WORDS-1)] != null 
+                && block[word & (BLOCK_LENGTH_WORDS-1)] != device) {
+               throw new IllegalArgumentException("address "+mars.util.Binary.intToHexString(routesBaseAddress + (word << 2))+
+                                                 " is already attached to another device");
+            }
+         }
+         for (int word = lowWord; word <= highWord; word++) {
+            if (routes[word >>> BLOCK_SHIFT] == null) {
+               routes[word >>> BLOCK_SHIFT] = new MemoryMappedDevice[BLOCK_LENGTH_WORDS];
+            }
+            routes[word >>> BLOCK_SHIFT][word & (BLOCK_LENGTH_WORDS-1)] = device;
+         }
+         for (int i=0; i<devices.length; i++) {
+            if (devices[i] == device) {
+               return;
+            }
+         }
+         MemoryMappedDevice[] newDevices = new MemoryMappedDevice[devices.length+1];
+         System.arraycopy(devices, 0, newDevices, 0, devices.length);
+         newDevices[devices.length] = device;
+         devices = newDevices;
+         active = true;
+      }
+   
+   /**
+    * Detach a device from all its ranges and cancel its wake-up.  It is not called
+    * after this returns.  Does nothing if the device is not attached.
+    * @param device the device
+    */
+       public static synchronized void detach(MemoryMappedDevice device) {
+         for (int b=0; b<routes.length; b++) {
+            MemoryMappedDevice[] block = routes[b];
+            if (block == null) {
+               continue;
+            }
+            boolean empty = true;
+            for (int w=0; w<block.length; w++) {
+               if (block[w] == device) {
+                  block[w] = null;
+               } 
+               else if (block[w] != null) {
+                  empty = false;
+               }
+            }
+            if (empty) {
+               routes[b] = null;
+            }
+         }
+         for (int i=0; i<devices.length; i++) {
+            if (devices[i] == device) {
+               MemoryMappedDevice[] newDevices = new MemoryMappedDevice[devices.length-1];
+               System.arraycopy(devices, 0, newDevices, 0, i);
+               System.arraycopy(devices, i+1, newDevices, i, devices.length-i-1);
+               devices = newDevices;
+               break;
+            }
+         }
+         active = devices.length > 0;
+         cancelWakeUp(device);
+      }
+   
+   /**
+    * Whether any device is attached.  Memory tests this before calling read() or
+    * written(), so there is no cost beyond the test when no device is attached.
+    * @return true if at least one device is attached
+    */
+       public static boolean isActive() {
+         return active;
+      }
+   
+   /**
+    * Pass a read of an MMIO address to the device attached to it, if any, before the
+    * value is read.  Ignored unless made by the MIPS program outside a device callback.
+    * @param address address to be read
+    * @param length number of bytes to be read
+    */
+       public static void read(int address, int length) {
+         MemoryMappedDevice device = findDevice(address);
+         if (device != null && !dispatching && isFromMIPS()) {
+            dispatching = true;
+            try {
+               device.deviceRead(address, length);
+            } 
+            finally {
+               dispatching = false;
+            }
+         }
+      }
+   
+   /**
+    * Pass a write of an MMIO address to the device attached to it, if any, after the
+    * value is stored.  Ignored unless made by the MIPS program outside a device callback.
+    * @param address address written
+    * @param length number of bytes written
+    * @param value value written
+    */
+       public static void written(int address, int length, int value) {
+         MemoryMappedDevice device = findDevice(address);
+         if (device != null && !dispatching && isFromMIPS()) {
+            dispatching = true;
+            try {
+               device.deviceWritten(address, length, value);
+            } 
+            finally {
+               dispatching = false;
+            }
+         }
+      }
+   
+   /**
+    * Ask for a device's wakeUp() method to be called once the given number of further
+    * instructions have executed.  Replaces any wake-up the device already asked for.
+    * @param device the device
+    * @param instructions number of instructions; 0 wakes the device before the next one
+    */
+       public static synchronized void wakeUpAfter(MemoryMappedDevice device, int instructions) {
+         device.wakeUpTime = instructionCount + Math.max(instructions, 0);
+         nextWakeUpTime = Math.min(nextWakeUpTime, device.wakeUpTime);
+         counting = true;
+      }
+   
+   /**
+    * Cancel the wake-up a device asked for, if any.
+    * @param device the device
+    */
+       public static synchronized void cancelWakeUp(MemoryMappedDevice device) {
+         device.wakeUpTime = -1;
+         scheduleNextWakeUp();
+      }
+   
+   /**
+    * Whether any device is waiting to be woken.  The simulator tests this before
+    * calling instructionExecuted().
+    * @return true if a wake-up is pending
+    */
+       public static boolean isCounting() {
+         return counting;
+      }
+   
+   /**
+    * Count an executed instruction and wake the devices whose time has come.  Called
+    * by the simulator for each instruction while isCounting() is true, holding 
+    * Globals.memoryAndRegistersLock like the other device callbacks.
+    */
+       public static void instructionExecuted() {
+         if (++instructionCount >= nextWakeUpTime) {
+            wakeUpDevices();
+         }
+      }
+   
+   /**
+    * Number of instructions counted so far.  The count advances only while a wake-up
+    * is pending, so it is for measuring delays, not for timing a whole program.
+    * @return the instruction count
+    */
+       public static synchronized long getInstructionCount() {
+         return instructionCount;
+      }
+   
+       private static void wakeUpDevices() {
+         MemoryMappedDevice[] due;
+         synchronized (DeviceBus.class) {
+            int count = 0;
+            for (int i=0; i<devices.length; i++) {
+               if (devices[i].wakeUpTime >= 0 && devices[i].wakeUpTime <= instructionCount) {
+                  count++;
+               }
+            }
+            due = new MemoryMappedDevice[count];
+            count = 0;
+            for (int i=0; i<devices.length; i++) {
+               if (devices[i].wakeUpTime >= 0 && devices[i].wakeUpTime <= instructionCount) {
+                  devices[i].wakeUpTime = -1;
+                  due[count++] = devices[i];
+               }
+            }
+            scheduleNextWakeUp();
+         }
+         dispatching = true;
+         try {
+            for (int i=0; i<due.length; i++) {
+               due[i].wakeUp();
+            }
+         } 
+         finally {
+            dispatching = false;
+         }
+      }
+   
+    // Set nextWakeUpTime to the earliest wake-up time of any device.  Caller holds the lock.
+       private static void scheduleNextWakeUp() {
+         long next = Long.MAX_VALUE;
+         for (int i=0; i<devices.length; i++) {
+            if (devices[i].wakeUpTime >= 0 && devices[i].wakeUpTime < next) {
+               next = devices[i].wakeUpTime;
+            }
+         }
+         nextWakeUpTime = next;
+         counting = next != Long.MAX_VALUE;
+      }
+   
+       private static MemoryMappedDevice findDevice(int address) {
+         MemoryMappedDevice[][] current = routes;
+         int word = (address - routesBaseAddress) >>> 2;
+         if ((word >>> BLOCK_SHIFT) >= current.length) {
+            return null;
+         }
+         MemoryMappedDevice[] block = current[word >>> BLOCK_SHIFT];
+         return (block == null) ? null : block[word & (BLOCK_LENGTH_WORDS-1)];
+      }
+   
+    // Whether the address is in the MMIO area, by the same test Memory uses.
+       private static boolean inMemoryMap(int address) {
+         return address >= Memory.memoryMapBaseAddress && address < Memory.memoryMapLimitAddress;
+      }
+   
+    // Thread to execute the MIPS program is named "MIPS"; see AccessNotice.accessIsFromMIPS().
+       private static boolean isFromMIPS() {
+         return Thread.currentThread().getName().startsWith("MIPS");
+      }
+   }
@@ -90,6 +90,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private static boolean byteOrder = LITTLE_ENDIAN;
    	
       public static int heapAddress;
+      // Maximum number of bytes the MIPS program may allocate from the heap, -1 for no limit.
+      private static int heapAllocationLimit = -1;
    
     // Memory will maintain a collection of observables.  Each one is associated
     // with a specific memory address or address range, and each will have at least
@@ -130,6 +132,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     // bytes of space available without going indirect.
     
       private static final int BLOCK_LENGTH_WORDS = 1024;  // allocated blocksize 1024 ints == 4K bytes
+    /** Number of bytes in each allocation block of data, kernel data, stack and MMIO memory. **/
+      public static final int BLOCK_LENGTH_BYTES = BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES;
       private static final int BLOCK_TABLE_LENGTH = 1024; // Each entry of table points to a block.
       private int[][] dataBlockTable;
       private int[][] kernelDataBlockTable;
@@ -171,6 +175,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     // references to ProgramStatement objects.  
    
       private static final int TEXT_BLOCK_LENGTH_WORDS = 1024;  // allocated blocksize 1024 ints == 4K bytes
+    /** Number of bytes of text segment address space covered by each allocation block. **/
+      public static final int TEXT_BLOCK_LENGTH_BYTES = TEXT_BLOCK_LENGTH_WORDS * WORD_LENGTH_BYTES;
       private static final int TEXT_BLOCK_TABLE_LENGTH = 1024; // Each entry of table points to a block.
       private ProgramStatement[][] textBlockTable;
       private ProgramStatement[][] kernelTextBlockTable;
@@ -315,11 +321,34 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          if (newHeapAddress >= dataSegmentLimitAddress) {
             throw new IllegalArgumentException("request ("+numBytes+") exceeds available heap storage");
          }
+         if (heapAllocationLimit >= 0 && newHeapAddress - heapBaseAddress > heapAllocationLimit) {
+            throw new IllegalArgumentException("request ("+numBytes+") exceeds heap allocation limit of "+heapAllocationLimit+" bytes");
+         }
          heapAddress = newHeapAddress;
          return result;
       }
    
    
+   	/**
+   	 * Set the maximum number of bytes that may be allocated from the heap, in total.
+   	 * Requests that would take the heap beyond it are rejected by allocateBytesFromHeap.
+   	 *
+   	 * @param limit maximum number of heap bytes, or -1 for no limit
+   	 */
+       public static void setHeapAllocationLimit(int limit) {
+         heapAllocationLimit = limit;
+      }
+   
+   	/**
+   	 * Returns the number of bytes allocated from the heap so far, including the padding
+   	 * that keeps each allocation word-aligned.
+   	 *
+   	 * @return number of heap bytes allocated
+   	 */
+       public static int getHeapBytesAllocated() {
+         return heapAddress - heapBaseAddress;
+      }
+   
      /**
       * Set byte order to either LITTLE_ENDIAN or BIG_ENDIAN.  Default is LITTLE_ENDIAN.
    	*
@@ -391,6 +420,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
            // memory mapped I/O.
             relativeByteAddress = address - memoryMapBaseAddress;
             oldValue = storeBytesInTable(memoryMapBlockTable, relativeByteAddress, length, value);
+            if (DeviceBus.isActive()) DeviceBus.written(address, length, value);
          }
          else if (inKernelDataSegment(address)) {
            // in kernel data segment.  Will write one byte at a time, w/o regard to boundaries.
@@ -408,6 +438,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             throw new AddressErrorException("address out of range ",
                Exceptions.ADDRESS_EXCEPTION_STORE, address);
          }
+         if (ExecutionHook.isActive()) ExecutionHook.fireMemoryWritten(address, length, value);
          notifyAnyObservers(AccessNotice.WRITE, address, length, value);
          return oldValue;
       }
@@ -460,6 +491,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
            // memory mapped I/O.
             relative = (address - memoryMapBaseAddress) >> 2; // convert byte address to word
             oldValue = storeWordInTable(memoryMapBlockTable, relative, value);
+            if (DeviceBus.isActive()) DeviceBus.written(address, WORD_LENGTH_BYTES, value);
          }
          else if (inKernelDataSegment(address)) {
            // in data segment
@@ -477,6 +509,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             throw new AddressErrorException("store address out of range ",
                Exceptions.ADDRESS_EXCEPTION_STORE,	address);
          }
+         if (ExecutionHook.isActive()) ExecutionHook.fireMemoryWritten(address, WORD_LENGTH_BYTES, value);
          notifyAnyObservers(AccessNotice.WRITE, address, WORD_LENGTH_BYTES, value);
          if (Globals.getSettings().getBackSteppingEnabled()) {
             Globals.program.getBackStepper().addMemoryRestoreRawWord(address,oldValue);
@@ -541,6 +574,193 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             : set(address, value, 1);
       }
    
+     /**
+      *  Return a copy of the 4K byte memory block containing the given address.  Words
+   	*  are ordered by ascending address starting at the block's base address (see
+   	*  getBlockBaseAddress), even for the stack which is stored "backward".  Only data,
+   	*  kernel data, stack and memory-mapped I/O are held in blocks; text segment
+   	*  addresses always produce null.  Observers are NOT notified.
+   	*
+   	*  @param address any address within the desired block
+   	*  @return array of BLOCK_LENGTH_WORDS ints, or null if the block has not been
+   	*  allocated (never written) or address is not in a block-structured segment.
+   	*/
+       public synchronized int[] getRawBlockOrNull(int address) {
+         int[][] blockTable = getBlockTable(address);
+         if (blockTable == null) {
+            return null;
+         }
+         int block = getBlockNumber(blockTable, address);
+         if (block < 0 || block >= blockTable.length || blockTable[block] == null) {
+            return null;
+         }
+         int[] words = new int[BLOCK_LENGTH_WORDS];
+         if (blockTable == stackBlockTable) {
+            for (int i = 0; i < BLOCK_LENGTH_WORDS; i++) {
+               words[i] = blockTable[block][BLOCK_LENGTH_WORDS - 1 - i];
+            }
+         }
+         else {
+            System.arraycopy(blockTable[block], 0, words, 0, BLOCK_LENGTH_WORDS);
+         }
+         return words;
+      }
+
+     /**
+      *  Replace the entire 4K byte memory block containing the given address.  This is
+   	*  the bulk counterpart of getRawBlockOrNull() and is used to restore memory contents
+   	*  without going through per-word stores.  Observers are NOT notified and no
+   	*  back-step information is recorded.
+   	*
+   	*  @param address any address within the block to be replaced
+   	*  @param words BLOCK_LENGTH_WORDS ints ordered by ascending address
+   	*  @throws AddressErrorException if address is not in a block-structured segment
+   	*  or the array is of the wrong length.
+   	*/
+       public synchronized void setRawBlock(int address, int[] words) throws AddressErrorException {
+         int[][] blockTable = getBlockTable(address);
+         int block = (blockTable == null) ? -1 : getBlockNumber(blockTable, address);
+         if (block < 0 || block >= blockTable.length || words == null || words.length != BLOCK_LENGTH_WORDS) {
+            throw new AddressErrorException("block store address out of range ",
+               Exceptions.ADDRESS_EXCEPTION_STORE, address);
+         }
+         if (blockTable[block] == null) {
+            blockTable[block] = new int[BLOCK_LENGTH_WORDS];
+         }
+         if (blockTable == stackBlockTable) {
+            for (int i = 0; i < BLOCK_LENGTH_WORDS; i++) {
+               blockTable[block][BLOCK_LENGTH_WORDS - 1 - i] = words[i];
+            }
+         }
+         else {
+            System.arraycopy(words, 0, blockTable[block], 0, BLOCK_LENGTH_WORDS);
+         }
+      }
+
+     /**
+      *  Return the lowest address of the 4K byte memory block containing the given address.
+   	*  Blocks are aligned relative to the base address of their segment, so this is not
+   	*  necessarily a multiple of 4096.
+   	*
+   	*  @param address any address within a data, kernel data, stack or MMIO block
+   	*  @return lowest address in that block, or the address itself if it does not fall
+   	*  in a block-structured segment.
+   	*/
+       public int getBlockBaseAddress(int address) {
+         int[][] blockTable = getBlockTable(address);
+         if (blockTable == null) {
+            return address;
+         }
+         int block = getBlockNumber(blockTable, address);
+         if (blockTable == stackBlockTable) {
+            return stackBaseAddress - (block * BLOCK_LENGTH_WORDS + BLOCK_LENGTH_WORDS - 1) * WORD_LENGTH_BYTES;
+         }
+         return getBlockTableBaseAddress(blockTable) + block * BLOCK_LENGTH_BYTES;
+      }
+
+     /**
+      *  Return, in ascending address order, the lowest address of every allocated
+   	*  block in the same segment as the given address.  Blocks never written to are
+   	*  skipped, so this is an inexpensive way to visit only the memory in use.  For
+   	*  the text and kernel text segments the blocks are TEXT_BLOCK_LENGTH_BYTES long
+   	*  and hold statements, which may still be missing at some addresses in the block.
+   	*
+   	*  @param address any address within a text, kernel text, data, kernel data, stack
+   	*  or MMIO segment
+   	*  @return array of block base addresses; empty if none allocated or address not
+   	*  in a block-structured segment.
+   	*/
+       public synchronized int[] getAllocatedBlockAddresses(int address) {
+         if (inTextSegment(address) || inKernelTextSegment(address)) {
+            ProgramStatement[][] textTable = inTextSegment(address) ? textBlockTable : kernelTextBlockTable;
+            int textBase = inTextSegment(address) ? textBaseAddress : kernelTextBaseAddress;
+            int count = 0;
+            for (int i = 0; i < textTable.length; i++) {
+               if (textTable[i] != null) {
+                  count++;
+               }
+            }
+            int[] addresses = new int[count];
+            count = 0;
+            for (int i = 0; i < textTable.length; i++) {
+               if (textTable[i] != null) {
+                  addresses[count++] = textBase + i * TEXT_BLOCK_LENGTH_BYTES;
+               }
+            }
+            return addresses;
+         }
+         int[][] blockTable = getBlockTable(address);
+         if (blockTable == null) {
+            return new int[0];
+         }
+         int count = 0;
+         for (int i = 0; i < blockTable.length; i++) {
+            if (blockTable[i] != null) {
+               count++;
+            }
+         }
+         int[] addresses = new int[count];
+         int next = 0;
+         if (blockTable == stackBlockTable) {
+            // stack table is stored backward, so walk it from the top to get ascending order
+            for (int i = blockTable.length - 1; i >= 0; i--) {
+               if (blockTable[i] != null) {
+                  addresses[next++] = stackBaseAddress - (i * BLOCK_LENGTH_WORDS + BLOCK_LENGTH_WORDS - 1) * WORD_LENGTH_BYTES;
+               }
+            }
+         }
+         else {
+            int base = getBlockTableBaseAddress(blockTable);
+            for (int i = 0; i < blockTable.length; i++) {
+               if (blockTable[i] != null) {
+                  addresses[next++] = base + i * BLOCK_LENGTH_BYTES;
+               }
+            }
+         }
+         return addresses;
+      }
+
+     // Returns the block table that holds the given address, or null if address is
+     // in the text segment or unmapped.  Same segment precedence as setRawWord().
+       private int[][] getBlockTable(int address) {
+         if (inDataSegment(address)) {
+            return dataBlockTable;
+         }
+         else if (address > stackLimitAddress && address <= stackBaseAddress) {
+            return stackBlockTable;
+         }
+         else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
+            return memoryMapBlockTable;
+         }
+         else if (inKernelDataSegment(address)) {
+            return kernelDataBlockTable;
+         }
+         return null;
+      }
+
+     // Returns index into blockTable of the block holding the given address.
+       private int getBlockNumber(int[][] blockTable, int address) {
+         if (blockTable == stackBlockTable) {
+            return ((stackBaseAddress - address) >> 2) / BLOCK_LENGTH_WORDS;
+         }
+         return ((address - getBlockTableBaseAddress(blockTable)) >> 2) / BLOCK_LENGTH_WORDS;
+      }
+
+     // Returns the address corresponding to element 0 of the first block of blockTable.
+       private int getBlockTableBaseAddress(int[][] blockTable) {
+         if (blockTable == dataBlockTable) {
+            return dataSegmentBaseAddress;
+         }
+         else if (blockTable == kernelDataBlockTable) {
+            return kernelDataBaseAddress;
+         }
+         else if (blockTable == memoryMapBlockTable) {
+            return memoryMapBaseAddress;
+         }
+         return stackBaseAddress;
+      }
+
+
     ///////////////////////////////////////////////////////////////////////////////////////
     /** 
      *  Writes 64 bit double value starting at specified Memory address.  Note that 
@@ -584,6 +804,53 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             storeProgramStatement(address, statement, kernelTextBaseAddress, kernelTextBlockTable);
          }
       }
+
+   ///////////////////////////////////////////////////////////////////////////////
+   /**
+    * Store a whole block of program statements into the text or kernel text segment.
+    * This is the bulk counterpart of setStatement(), used by the assembler to install
+    * its output one block at a time.  Blocks are TEXT_BLOCK_LENGTH_BYTES long and
+    * aligned relative to the base address of their segment.  Null elements leave
+    * the existing contents of memory at that address unchanged.
+    *
+    * @param address Lowest address of the block, i.e. segment base address plus a
+    * multiple of TEXT_BLOCK_LENGTH_BYTES.
+    * @param statements array of TEXT_BLOCK_LENGTH_BYTES/4 statements, one per word in
+    * ascending address order.  Not retained.
+    * @throws AddressErrorException If address is not the start of a text or kernel text
+    * block or the array is of the wrong length.
+    **/
+
+       public synchronized void setStatementBlock(int address, ProgramStatement[] statements) throws AddressErrorException {
+         ProgramStatement[][] blockTable = null;
+         int relative = 0;
+         if (inTextSegment(address)) {
+            blockTable = textBlockTable;
+            relative = (address - textBaseAddress) >> 2;
+         } 
+         else if (inKernelTextSegment(address)) {
+            blockTable = kernelTextBlockTable;
+            relative = (address - kernelTextBaseAddress) >> 2;
+         }
+         if (blockTable == null || relative % TEXT_BLOCK_LENGTH_WORDS != 0
+                || relative / TEXT_BLOCK_LENGTH_WORDS >= TEXT_BLOCK_TABLE_LENGTH
+                || statements.length != TEXT_BLOCK_LENGTH_WORDS) {
+            throw new AddressErrorException(
+               "store address to text segment out of range or not aligned to block boundary ",
+               Exceptions.ADDRESS_EXCEPTION_STORE, address);
+         }
+         int block = relative / TEXT_BLOCK_LENGTH_WORDS;
+         if (blockTable[block] == null) {
+            blockTable[block] = statements.clone();
+         } 
+         else {
+            for (int i = 0; i < TEXT_BLOCK_LENGTH_WORDS; i++) {
+               if (statements[i] != null) {
+                  blockTable[block][i] = statements[i];
+               }
+            }
+         }
+      }
    	
    
    
@@ -621,6 +888,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
            // memory mapped I/O.
             relativeByteAddress = address - memoryMapBaseAddress;
+            if (notify && DeviceBus.isActive()) DeviceBus.read(address, length);
             value = fetchBytesFromTable(memoryMapBlockTable, relativeByteAddress, length);
          }
          else if (inTextSegment(address)) {
@@ -652,7 +920,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             throw new AddressErrorException("address out of range ",
                Exceptions.ADDRESS_EXCEPTION_LOAD, address);
          }
-         if (notify) notifyAnyObservers(AccessNotice.READ, address, length, value);
+         if (notify) {
+            if (ExecutionHook.isActive()) ExecutionHook.fireMemoryRead(address, length, value);
+            notifyAnyObservers(AccessNotice.READ, address, length, value);
+         }
          return value;
       }
    
@@ -674,6 +945,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     // Doing so would be detrimental to simulation runtime performance, so
     // I decided to keep the duplicate logic.
        public int getRawWord(int address) throws AddressErrorException {
+         return getRawWord(address, true);
+      }
+   
+   	// Does the real work, but includes option to NOT notify observers.  Like get(), only
+   	// a notifying read is passed to the device attached to a memory-mapped address.
+       private int getRawWord(int address, boolean notify) throws AddressErrorException {
          int value = 0;
          int relative;
          if (address % WORD_LENGTH_BYTES != 0) {
@@ -693,6 +970,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          else if (address >= memoryMapBaseAddress && address < memoryMapLimitAddress) {
            // memory mapped I/O.
             relative = (address - memoryMapBaseAddress) >> 2;
+            if (notify && DeviceBus.isActive()) DeviceBus.read(address, WORD_LENGTH_BYTES);
             value = fetchWordFromTable(memoryMapBlockTable, relative);
          }
          else if (inTextSegment(address)) {
@@ -724,7 +1002,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             throw new AddressErrorException("address out of range ", 
                Exceptions.ADDRESS_EXCEPTION_LOAD, address);
          }
-         notifyAnyObservers(AccessNotice.READ, address, Memory.WORD_LENGTH_BYTES,value);
+         if (notify) {
+            if (ExecutionHook.isActive()) ExecutionHook.fireMemoryRead(address, Memory.WORD_LENGTH_BYTES, value);
+            notifyAnyObservers(AccessNotice.READ, address, Memory.WORD_LENGTH_BYTES,value);
+         }
          return value;
       } 
    
@@ -800,14 +1081,38 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	*  @throws AddressErrorException if the base address is not on a word boundary
    	*/
        public int getAddressOfFirstNull(int baseAddress, int limitAddress) throws AddressErrorException {
+         if (limitAddress <= baseAddress) {
+            return baseAddress;
+         }
          int address = baseAddress;
-         for (; address < limitAddress; address += Memory.WORD_LENGTH_BYTES) {
-            if (getRawWordOrNull(address) == null) {
-               break;
-            }
+         RawBlockIterator blocks = getRawBlockIterator(baseAddress, limitAddress - 1);
+         while (blocks.next()) {
+            address = blocks.getAddress() + blocks.getLength() * WORD_LENGTH_BYTES;
          }
          return address;
       }
+
+     /**
+      *  Return an iterator that reads an address range in bulk, one populated block at a
+   	*  time.  Each step yields up to one block (BLOCK_LENGTH_BYTES, or TEXT_BLOCK_LENGTH_BYTES
+   	*  in the text segments) of consecutive words in ascending address order, exactly the
+   	*  values getRawWordOrNull() would return for them.  Iteration ends after lastAddress
+   	*  or at the first word getRawWordOrNull() would report as null, so the words visited
+   	*  are those a word-by-word loop over getRawWordOrNull() would visit before breaking.
+   	*  Observers are NOT notified.  This is used by the dump formats.
+   	*
+   	*  @param firstAddress first (lowest) address to read.  Must be on word boundary.
+   	*  @param lastAddress last (highest) address to read; the word starting here is included.
+   	*  @return iterator positioned before the first block.
+   	*  @throws AddressErrorException if firstAddress is not on a word boundary.
+   	*/
+       public RawBlockIterator getRawBlockIterator(int firstAddress, int lastAddress) throws AddressErrorException {
+         if (firstAddress % WORD_LENGTH_BYTES != 0) {
+            throw new AddressErrorException("address for fetch not aligned on word boundary",
+                  Exceptions.ADDRESS_EXCEPTION_LOAD, firstAddress);
+         }
+         return new RawBlockIterator(firstAddress, lastAddress);
+      }
    
    
     ///////////////////////////////////////////////////////////////////////////////////////
@@ -843,7 +1148,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             throw new AddressErrorException("fetch address not aligned on word boundary ",
                Exceptions.ADDRESS_EXCEPTION_LOAD, address);
          }
-         return get(address, WORD_LENGTH_BYTES, false);
+         return getRawWord(address, false);
       } 
    
    
@@ -1211,7 +1516,128 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
       
    
+      /////////////////////////////////////////////////////////////////////////
+      /**
+       *  Bulk reader returned by getRawBlockIterator().  Call next() to advance to
+       *  each block in turn, then getAddress(), getLength() and getWords() to retrieve it.
+       */
+       public class RawBlockIterator {
+         private int address;
+         private long remaining; // words left in the range
+         private int length;
+         private int[] words = new int[Math.max(BLOCK_LENGTH_WORDS, TEXT_BLOCK_LENGTH_WORDS)];
+
+          private RawBlockIterator(int firstAddress, int lastAddress) {
+            address = firstAddress;
+            remaining = (lastAddress < firstAddress) ? 0 : (((long) lastAddress - firstAddress) >> 2) + 1;
+            length = 0;
+         }
+
+      	/**
+      	 *  Advance to the next block of words.
+      	 *  @return true if there is another block, false if the range is exhausted or
+      	 *  the next word has never been written.
+      	 *  @throws AddressErrorException if the next address falls outside the MARS
+      	 *  addressing range, as getRawWordOrNull() would.
+      	 */
+          public boolean next() throws AddressErrorException {
+            address += length * WORD_LENGTH_BYTES;
+            remaining -= length;
+            length = 0;
+            if (remaining <= 0) {
+               return false;
+            }
+            length = readRawWords(address, (int) Math.min(remaining, words.length), words);
+            return length > 0;
+         }
+
+      	/** @return address of the first word of the current block. */
+          public int getAddress() {
+            return address;
+         }
+
+      	/** @return number of words in the current block. */
+          public int getLength() {
+            return length;
+         }
+
+      	/**
+      	 *  @return the words of the current block, in ascending address order starting at
+      	 *  index 0.  Only the first getLength() elements are meaningful, and the array is
+      	 *  reused by the next call to next().
+      	 */
+          public int[] getWords() {
+            return words;
+         }
+      }
+
+
    /*********************************  THE HELPERS  *************************************/
+
+   ////////////////////////////////////////////////////////////////////////////////
+   // Copies into words[] the values of consecutive words starting at address, stopping
+   // at the end of its block or segment, after maxWords words, or before the first word
+   // getRawWordOrNull() would report as null.  Returns number of words copied, which is 0
+   // if the word at address is itself null.  Segment precedence is that of getRawWordOrNull().
+       private synchronized int readRawWords(int address, int maxWords, int[] words) throws AddressErrorException {
+         int relative, block, offset, count;
+         if (inDataSegment(address)) {
+            return readRawWordsFromTable(dataBlockTable, dataSegmentBaseAddress, dataSegmentLimitAddress,
+                                         address, maxWords, words);
+         }
+         else if (address > stackLimitAddress && address <= stackBaseAddress) {
+            // stack is stored backward, so ascending addresses run toward offset 0 of the block
+            relative = (stackBaseAddress - address) >> 2;
+            block = relative / BLOCK_LENGTH_WORDS;
+            offset = relative % BLOCK_LENGTH_WORDS;
+            if (stackBlockTable[block] == null) {
+               return 0;
+            }
+            count = Math.min(maxWords, offset + 1);
+            for (int i = 0; i < count; i++) {
+               words[i] = stackBlockTable[block][offset - i];
+            }
+            return count;
+         }
+         else if (inTextSegment(address) || inKernelTextSegment(address)) {
+            ProgramStatement[][] blockTable = inTextSegment(address) ? textBlockTable : kernelTextBlockTable;
+            int base = inTextSegment(address) ? textBaseAddress : kernelTextBaseAddress;
+            int limit = inTextSegment(address) ? textLimitAddress : kernelTextLimitAddress;
+            relative = (address - base) >> 2;
+            block = relative / TEXT_BLOCK_LENGTH_WORDS;
+            offset = relative % TEXT_BLOCK_LENGTH_WORDS;
+            if (block >= TEXT_BLOCK_TABLE_LENGTH || blockTable[block] == null) {
+               return 0;
+            }
+            int max = (int) Math.min(Math.min(maxWords, TEXT_BLOCK_LENGTH_WORDS - offset),
+                                     (((long) limit - address) + WORD_LENGTH_BYTES - 1) >> 2);
+            for (count = 0; count < max && blockTable[block][offset + count] != null; count++) {
+               words[count] = blockTable[block][offset + count].getBinaryStatement();
+            }
+            return count;
+         }
+         else if (inKernelDataSegment(address)) {
+            return readRawWordsFromTable(kernelDataBlockTable, kernelDataBaseAddress, kernelDataSegmentLimitAddress,
+                                         address, maxWords, words);
+         }
+         throw new AddressErrorException("address out of range ", Exceptions.ADDRESS_EXCEPTION_LOAD, address);
+      }
+
+   // Helper for readRawWords(), for a segment stored forward in blockTable starting at
+   // baseAddress.  Stops at the end of the block, at limitAddress or after maxWords words.
+       private int readRawWordsFromTable(int[][] blockTable, int baseAddress, int limitAddress,
+                                         int address, int maxWords, int[] words) {
+         int relative = (address - baseAddress) >> 2;
+         int block = relative / BLOCK_LENGTH_WORDS;
+         int offset = relative % BLOCK_LENGTH_WORDS;
+         if (blockTable[block] == null) {
+            return 0;
+         }
+         int count = (int) Math.min(Math.min(maxWords, BLOCK_LENGTH_WORDS - offset),
+                                    (((long) limitAddress - address) + WORD_LENGTH_BYTES - 1) >> 2);
+         System.arraycopy(blockTable[block], offset, words, 0, count);
+         return count;
+      }
      
    
    ////////////////////////////////////////////////////////////////////////////////
@@ -0,0 +1,119 @@
+   package mars.mips.hardware;
+   import mars.Globals;
+   import mars.simulator.Simulator;
+
+/*
+Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+  *  A device that responds to a MIPS program's accesses to memory-mapped I/O.  The
+  *  device is attached to one or more address windows in the MMIO area with 
+  *  DeviceBus.attach(), then Memory calls it directly for each read and write the MIPS 
+  *  program makes in those windows, instead of notifying Observers.  Device registers 
+  *  are ordinary MMIO memory: the program reads and writes them as usual, and the 
+  *  device updates them with setRegister().  Subclasses override the methods they
+  *  need; the others do nothing.
+  *  <p>
+  *  Callbacks are made on the thread running the MIPS program while it holds 
+  *  Globals.memoryAndRegistersLock.  Accesses made during a callback, including the
+  *  device's own register updates, are not passed back to devices.
+  *  @see DeviceBus
+  **/
+
+    public abstract class MemoryMappedDevice {
+   
+      // Instruction count at which DeviceBus calls wakeUp(), or -1 for none.  Used by DeviceBus.
+      long wakeUpTime = -1;
+   
+   /**
+    * Called before the MIPS program reads an address in one of the device's windows,
+    * so the device can bring the register up to date first.
+    * @param address address to be read
+    * @param length number of bytes to be read (1, 2 or 4)
+    */
+       public void deviceRead(int address, int length) {
+      }
+   
+   /**
+    * Called after the MIPS program writes an address in one of the device's windows.
+    * @param address address written
+    * @param length number of bytes written (1, 2 or 4)
+    * @param value value written
+    */
+       public void deviceWritten(int address, int length, int value) {
+      }
+   
+   /**
+    * Called when the instruction count requested by DeviceBus.wakeUpAfter() is reached,
+    * before the next instruction is executed.
+    */
+       public void wakeUp() {
+      }
+   
+   /**
+    * Get the value of a device register without it being seen as an access by the
+    * MIPS program.
+    * @param address word-aligned address of the register
+    * @return the register value, or 0 if the address is not valid
+    */
+       protected static int getRegister(int address) {
+         try {
+            return Globals.memory.getWordNoNotify(address);
+         } 
+             catch (AddressErrorException aee) {
+               return 0;
+            }
+      }
+   
+   /**
+    * Set the value of a device register.  May be called from any thread.
+    * @param address word-aligned address of the register
+    * @param value value to store
+    * @throws IllegalArgumentException if the address is not a valid register address
+    */
+       protected static void setRegister(int address, int value) {
+         synchronized (Globals.memoryAndRegistersLock) {
+            try {
+               Globals.memory.setRawWord(address, value);
+            } 
+                catch (AddressErrorException aee) {
+                  throw new IllegalArgumentException("device register address "+
+                        mars.util.Binary.intToHexString(address)+" is not valid: "+aee.getMessage());
+               }
+         }
+      }
+   
+   /**
+    * Raise an external interrupt.  It is taken before the next instruction executes.
+    * The caller is responsible for checking that interrupts are enabled.
+    * @param cause interrupt code, e.g. Exceptions.EXTERNAL_INTERRUPT_KEYBOARD
+    */
+       protected static void raiseInterrupt(int cause) {
+         Simulator.externalInterruptingDevice = cause;
+      }
+   }
@@ -47,6 +47,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    {
       private ArrayList instructionList;
 	  private ArrayList opcodeMatchMaps;
+      private HashMap operatorMap = new HashMap(); // lower case mnemonic -> ArrayList of Instruction
       private SyscallLoader syscallLoader;
     /**
      * Creates a new InstructionSet object.
@@ -104,6 +105,23 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
         ////////////// GET AND CREATE LIST OF SYSCALL FUNCTION OBJECTS ////////////////////
          syscallLoader = new SyscallLoader();
          syscallLoader.loadSyscalls();
+
+        // Index instructions by mnemonic so matchOperator() need not search the whole
+        // list.  Must precede creation of the example token lists below, since the
+        // tokenizer recognizes operators.  A new map is built each time so anything
+        // caching it can tell that the instruction set has changed.
+         HashMap operators = new HashMap();
+         for (int i = 0; i < instructionList.size(); i++) {
+            Instruction inst = (Instruction) instructionList.get(i);
+            String key = inst.getName().toLowerCase(Locale.ROOT);
+            ArrayList matches = (ArrayList) operators.get(key);
+            if (matches == null) {
+               matches = new ArrayList();
+               operators.put(key, matches);
+            }
+            matches.add(inst);
+         }
+         this.operatorMap = operators;
       	
         // Initialization step.  Create token list for each instruction example.  This is
         // used by parser to determine user program correct syntax.
@@ -221,24 +239,28 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
     /**
      *  Given an operator mnemonic, will return the corresponding Instruction object(s)
-     *  from the instruction set.  Uses straight linear search technique.
+     *  from the instruction set.  Case-insensitive.  Uses the mnemonic index built by
+     *  populate().
      *  @param name operator mnemonic (e.g. addi, sw,...)
      *  @return list of corresponding Instruction object(s), or null if not found.
      */
        public ArrayList matchOperator(String name)
       {
-         ArrayList matchingInstructions = null;
-        // Linear search for now....
-         for (int i = 0; i < instructionList.size(); i++)
-         {
-            if (((Instruction) instructionList.get(i)).getName().equalsIgnoreCase(name))
-            {
-               if (matchingInstructions == null) 
-                  matchingInstructions = new ArrayList();
-               matchingInstructions.add(instructionList.get(i));
-            }
-         }
-         return matchingInstructions;
+         ArrayList matchingInstructions = (ArrayList) operatorMap.get(name.toLowerCase(Locale.ROOT));
+         // Caller gets its own list, as it did when this was a linear search.
+         return (matchingInstructions == null) ? null : new ArrayList(matchingInstructions);
+      }
+
+    /**
+     *  Produces the mnemonic index built by populate(): a map from lower case operator
+     *  mnemonic to the ArrayList of Instruction objects having that mnemonic.  The map
+     *  is replaced, not modified, whenever the instruction set is repopulated.
+     *  Callers must not modify it.
+     *  @return map of lower case mnemonic to list of Instruction.
+     */
+       public Map getOperatorMap()
+      {
+         return operatorMap;
       }
    
    
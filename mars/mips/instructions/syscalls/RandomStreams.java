@@ -1,5 +1,6 @@
    package mars.mips.instructions.syscalls;
 	import java.util.HashMap;
+	import java.util.SplittableRandom;
 
 /*
 Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
@@ -31,13 +32,78 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 
 
 /** 
- * This small class serves only to hold a static HashMap for storing
- * random number generators for use by all the random number generator
- * syscalls.
+ * This small class holds the random number generators (streams) used by
+ * all the random number generator syscalls, keyed by stream index.  The
+ * streams belong to the current program run: they are discarded when a
+ * program is assembled or loaded.  Streams are SplittableRandom, which is
+ * faster than Random and not synchronized; only the simulator thread uses them.
  */
  
     public class RandomStreams {
-      /** Collection of pseudorandom number streams available for use in Rand-type syscalls.
-       * The streams are by default not seeded. */
-		 static final HashMap randomStreams = new HashMap();
+      /** Collection of pseudorandom number streams available for use in Rand-type syscalls,
+       * keyed by Integer index. */
+		 private static final HashMap randomStreams = new HashMap();
+		 // If seeded, each new stream is seeded from this seed and its index instead of randomly.
+		 private static boolean seeded = false;
+		 private static long baseSeed = 0;
+   
+   /**
+    * Seed every stream not explicitly seeded by the RandSeed syscall, so that runs
+    * are reproducible.  Each stream index gets a different seed derived from this one.
+    *
+    * @param seed the seed from which stream seeds are derived
+    */
+       public static void setBaseSeed(long seed) {
+         seeded = true;
+         baseSeed = seed;
+      }
+   
+   /**
+    * Discard all streams, for a new program run.
+    */
+       public static void reset() {
+         randomStreams.clear();
+      }
+   
+   /**
+    * Get the stream with the given index, creating it if necessary.  A new stream
+    * is seeded from the base seed if there is one, otherwise it is not seeded.
+    *
+    * @param index stream index, as given to the syscall in $a0
+    * @return the stream
+    */
+       public static SplittableRandom getStream(int index) {
+         Integer key = new Integer(index);
+         SplittableRandom stream = (SplittableRandom) randomStreams.get(key);
+         if (stream == null) {
+            // The base seed and index are mixed by a throwaway stream, so nearby
+            // indexes do not get overlapping sequences.
+            stream = seeded ? new SplittableRandom(new SplittableRandom(baseSeed + index).nextLong())
+                            : new SplittableRandom();
+            randomStreams.put(key, stream);
+         }
+         return stream;
+      }
+   
+   /**
+    * Replace the stream with the given index by one with the given seed.
+    *
+    * @param index stream index, as given to the syscall in $a0
+    * @param seed seed for the stream
+    */
+       public static void setSeed(int index, long seed) {
+         randomStreams.put(new Integer(index), new SplittableRandom(seed));
+      }
+   
+   /**
+    * Next float from the stream, uniformly distributed between 0.0 (inclusive)
+    * and 1.0 (exclusive).  SplittableRandom has no nextFloat, so this uses the
+    * same 24 random bits as Random.nextFloat.
+    *
+    * @param stream the stream
+    * @return the float value
+    */
+       public static float nextFloat(SplittableRandom stream) {
+         return (stream.nextInt() >>> 8) / ((float) (1 << 24));
+      }
    }
\ No newline at end of file
@@ -3,7 +3,7 @@
    import mars.mips.hardware.*;
    import mars.simulator.*;
    import mars.*;
-   import java.util.Random;
+   import java.util.SplittableRandom;
 
 /*
 Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
@@ -56,12 +56,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
           // Input arguments: $a0 = index of pseudorandom number generator
           // Return: $f0 = the next pseudorandom, uniformly distributed float value between 0.0 and 1.0
           // from this random number generator's sequence.
-         Integer index = new Integer(RegisterFile.getValue(4));
-         Random stream = (Random) RandomStreams.randomStreams.get(index);
-         if (stream == null) {
-            stream = new Random(); // create a non-seeded stream
-            RandomStreams.randomStreams.put(index, stream);
-         } 
-         Coprocessor1.setRegisterToFloat(0, stream.nextFloat( ));
+         SplittableRandom stream = RandomStreams.getStream(RegisterFile.getValue(4));
+         Coprocessor1.setRegisterToFloat(0, RandomStreams.nextFloat(stream));
       }
    }
\ No newline at end of file
@@ -50,9 +50,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    /**
    * System call to cause the MARS Java thread to sleep for (at least) the specified number of milliseconds.
    * This timing will not be precise as the Java implementation will add some overhead.
+   * If VirtualClock is enabled, its simulated time is advanced instead and there is no wait.
    */
        public void simulate(ProgramStatement statement) throws ProcessingException {
           // Input arguments: $a0 is the length of time to sleep in milliseconds.
+               if (VirtualClock.isEnabled())
+               {
+                  VirtualClock.sleep(RegisterFile.getValue(4));
+                  return;
+               }
 
                try
                {
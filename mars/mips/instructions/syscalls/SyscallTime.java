@@ -48,10 +48,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       
    /**
    * Performs syscall function to place current system time into $a0 (low order 32 bits)
-	* and $a1 (high order 32 bits).
+	* and $a1 (high order 32 bits).  Uses the simulated time of VirtualClock if it is enabled.
    */
        public void simulate(ProgramStatement statement) throws ProcessingException {
-			long value = new java.util.Date().getTime();
+			long value = VirtualClock.isEnabled() ? VirtualClock.currentTimeMillis() : new java.util.Date().getTime();
          RegisterFile.updateRegister(4, Binary.lowOrderLongToInt(value)); // $a0 
 			RegisterFile.updateRegister(5, Binary.highOrderLongToInt(value)); // $a1
       }
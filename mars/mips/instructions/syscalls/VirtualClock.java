@@ -0,0 +1,85 @@
+   package mars.mips.instructions.syscalls;
+   import mars.simulator.*;
+
+/*
+Copyright (c) 2003-2008,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/** 
+ * Simulated clock for the Time and Sleep syscalls, used in place of the host clock
+ * when enabled.  Time starts at 0 and advances by a fixed number of nanoseconds for
+ * each MIPS instruction executed, plus the time requested by each Sleep, which then
+ * returns at once instead of blocking.  Timing results are thus the same from run
+ * to run.  Instructions are counted by the command-line simulation, so the clock is
+ * enabled only from the command line.
+ */
+ 
+    public class VirtualClock {
+      private static boolean enabled = false;
+      private static long nanosPerInstruction = 0;
+      private static long nanosSlept = 0;
+   
+   /**
+    * Use the simulated clock from now on, starting at time 0.
+    *
+    * @param nanos number of nanoseconds each MIPS instruction takes
+    */
+       public static void enable(long nanos) {
+         enabled = true;
+         nanosPerInstruction = nanos;
+         nanosSlept = 0;
+      }
+   
+   /**
+    * Whether the simulated clock is in use.
+    *
+    * @return true if Time and Sleep syscalls use the simulated clock, false if the host clock.
+    */
+       public static boolean isEnabled() {
+         return enabled;
+      }
+   
+   /**
+    * Current simulated time.
+    *
+    * @return milliseconds since the start of the simulated clock
+    */
+       public static long currentTimeMillis() {
+         return (Simulator.getInstance().getStepCount() * nanosPerInstruction + nanosSlept) / 1000000;
+      }
+   
+   /**
+    * Advance the simulated clock by the given time, as if sleeping.
+    *
+    * @param milliseconds time to sleep; 0 or negative has no effect
+    */
+       public static void sleep(int milliseconds) {
+         if (milliseconds > 0) {
+            nanosSlept += milliseconds * 1000000L;
+         }
+      }
+   }
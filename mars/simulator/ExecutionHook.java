@@ -0,0 +1,201 @@
+package mars.simulator;
+
+import mars.ProgramStatement;
+
+/*
+Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Receives the memory accesses of a running MIPS program as direct method calls
+ * from Memory, for analyses that look at every access (e.g. cache models) and run
+ * without the GUI.  This avoids the cost of observing Memory, which creates a
+ * notice object for each access and goes through Observable's synchronized
+ * notification.  Subclasses override the methods they need; the others do nothing.
+ * <p>
+ * Hooks are installed with add() and removed with remove().  While any hook is
+ * installed, every notifying access to memory (those an Observer would also see) is
+ * passed to it, whatever thread makes it; install hooks just before simulating so
+ * they see only the MIPS program's accesses.  Instruction fetches are not memory reads;
+ * the simulator passes each one, with its decoded statement, to instructionFetched()
+ * before executing it, and
+ * writes to the general-purpose, HI and LO registers are passed to registerWritten().
+ */
+
+    public abstract class ExecutionHook {
+
+      private static volatile ExecutionHook[] hooks = new ExecutionHook[0];
+      private static volatile boolean active = false;
+
+   /**
+    * Install a hook.  It is called for accesses from now on.
+    * @param hook the hook to install
+    */
+       public static synchronized void add(ExecutionHook hook) {
+         ExecutionHook[] newHooks = new ExecutionHook[hooks.length+1];
+         System.arraycopy(hooks, 0, newHooks, 0, hooks.length);
+         newHooks[hooks.length] = hook;
+         hooks = newHooks;
+         active = true;
+      }
+
+   /**
+    * Remove a hook installed by add().  It is not called after this returns.
+    * @param hook the hook to remove
+    */
+       public static synchronized void remove(ExecutionHook hook) {
+         for (int i=0; i<hooks.length; i++) {
+            if (hooks[i] == hook) {
+               ExecutionHook[] newHooks = new ExecutionHook[hooks.length-1];
+               System.arraycopy(hooks, 0, newHooks, 0, i);
+               System.arraycopy(hooks, i+1, newHooks, i, hooks.length-i-1);
+               hooks = newHooks;
+               active = hooks.length > 0;
+               return;
+            }
+         }
+      }
+
+   /**
+    * Whether any hook is installed.  Callers test this before calling the fire methods,
+    * so there is no cost beyond the test when no hook is installed.
+    * @return true if at least one hook is installed
+    */
+       public static boolean isActive() {
+         return active;
+      }
+
+   /**
+    * Pass a memory read to the installed hooks.
+    * @param address address read
+    * @param length number of bytes read
+    * @param value value read
+    */
+       public static void fireMemoryRead(int address, int length, int value) {
+         ExecutionHook[] current = hooks;
+         for (int i=0; i<current.length; i++) {
+            current[i].memoryRead(address, length, value);
+         }
+      }
+
+   /**
+    * Pass an instruction fetch to the installed hooks.
+    * @param address address of the instruction
+    * @param binaryStatement the 32-bit machine code fetched
+    */
+       public static void fireInstructionFetched(int address, int binaryStatement) {
+         ExecutionHook[] current = hooks;
+         for (int i=0; i<current.length; i++) {
+            current[i].instructionFetched(address, binaryStatement);
+         }
+      }
+
+   /**
+    * Pass an instruction fetch, with the statement the simulator decoded, to the
+    * installed hooks.
+    * @param address address of the instruction
+    * @param statement the statement fetched
+    */
+       public static void fireInstructionFetched(int address, ProgramStatement statement) {
+         ExecutionHook[] current = hooks;
+         for (int i=0; i<current.length; i++) {
+            current[i].instructionFetched(address, statement);
+         }
+      }
+
+   /**
+    * Pass a register write to the installed hooks.
+    * @param number register number: 0-31, or 33 for HI and 34 for LO
+    * @param value value written
+    */
+       public static void fireRegisterWritten(int number, int value) {
+         ExecutionHook[] current = hooks;
+         for (int i=0; i<current.length; i++) {
+            current[i].registerWritten(number, value);
+         }
+      }
+
+   /**
+    * Pass a memory write to the installed hooks.
+    * @param address address written
+    * @param length number of bytes written
+    * @param value value written
+    */
+       public static void fireMemoryWritten(int address, int length, int value) {
+         ExecutionHook[] current = hooks;
+         for (int i=0; i<current.length; i++) {
+            current[i].memoryWritten(address, length, value);
+         }
+      }
+
+   /**
+    * Called when memory is read.
+    * @param address address read
+    * @param length number of bytes read (1, 2 or 4)
+    * @param value value read
+    */
+       public void memoryRead(int address, int length, int value) {
+      }
+
+   /**
+    * Called when the simulator fetches an instruction, before executing it.
+    * @param address address of the instruction
+    * @param binaryStatement the 32-bit machine code fetched
+    */
+       public void instructionFetched(int address, int binaryStatement) {
+      }
+
+   /**
+    * Called when the simulator fetches an instruction, before executing it, with the
+    * statement it decoded.  Override this instead of the other instructionFetched() to
+    * use the decoded instruction; by default it passes on the machine code.  Hooks
+    * replayed from a trace have only the machine code, so get only the other call.
+    * @param address address of the instruction
+    * @param statement the statement fetched
+    */
+       public void instructionFetched(int address, ProgramStatement statement) {
+         instructionFetched(address, statement.getBinaryStatement());
+      }
+
+   /**
+    * Called when a general-purpose, HI or LO register is written.  Writes to $zero
+    * are not passed.
+    * @param number register number: 1-31, or 33 for HI and 34 for LO
+    * @param value value written
+    */
+       public void registerWritten(int number, int value) {
+      }
+
+   /**
+    * Called when memory is written.
+    * @param address address written
+    * @param length number of bytes written (1, 2 or 4)
+    * @param value value written
+    */
+       public void memoryWritten(int address, int length, int value) {
+      }
+   }
@@ -7,6 +7,9 @@
    import java.util.*;
    import javax.swing.*;
    import java.awt.event.*;
+   import java.awt.DisplayMode;
+   import java.awt.GraphicsEnvironment;
+   import java.util.concurrent.atomic.AtomicBoolean;
 	
 	/*
 Copyright (c) 2003-2010,  Pete Sanderson and Kenneth Vollmar
@@ -43,9 +46,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  **/
 
     public class Simulator extends Observable {
-      private SimThread simulatorThread;
+      private volatile SimThread simulatorThread;
       private static Simulator simulator = null;  // Singleton object
-      private static Runnable interactiveGUIUpdater = null;
+      private static UpdateGUI interactiveGUIUpdater = null;
+      private volatile int returnReason = 0; // why the most recent simulation ended
+      private volatile long stepCount = 0; // steps taken by the most recent simulation
+      private volatile SimThread commandLineThread; // command-line simulation in progress, if any
       // Others can set this true to indicate external interrupt.  Initially used
    	// to simulate keyboard and display interrupts.  The device is identified
    	// by the address of its MMIO control register.  keyboard 0xFFFF0000 and
@@ -112,15 +118,24 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     **/
     
        public boolean simulate(MIPSprogram p, int pc, int maxSteps, int[] breakPoints, AbstractAction actor) throws ProcessingException {
-         simulatorThread = new SimThread(p,pc,maxSteps,breakPoints,actor);
-         simulatorThread.start();
+         SimThread thread = new SimThread(p,pc,maxSteps,breakPoints,actor);
+         simulatorThread = thread;
+      	// Set before starting, so a wall-time watchdog always finds the thread to stop.
+         if (actor == null) {
+            commandLineThread = thread;
+         }
+         thread.start();
       	
       	// Condition should only be true if run from command-line instead of GUI.
-      	// If so, just stick around until execution thread is finished.
+      	// If so, just stick around until execution thread is finished.  The local
+      	// reference is used because stopExecution() may clear simulatorThread.
          if (actor == null) {
-            Object dun = simulatorThread.get(); // this should emulate join()
-            ProcessingException pe = simulatorThread.pe;
-            boolean done = simulatorThread.done;
+            Object dun = thread.get(); // this should emulate join()
+            commandLineThread = null;
+            ProcessingException pe = thread.pe;
+            boolean done = thread.done;
+            returnReason = thread.constructReturnReason;
+            stepCount = thread.steps;
             if (done) SystemIO.resetFiles(); // close any files opened in MIPS progra
             this.simulatorThread = null;
             if (pe != null) {
@@ -131,6 +146,27 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return true;
       }
    		
+   /**
+    * Get the reason the most recent command-line simulation (one with no GUI actor)
+    * returned: BREAKPOINT, EXCEPTION, MAX_STEPS, NORMAL_TERMINATION, CLIFF_TERMINATION
+    * or PAUSE_OR_STOP.
+    * @return one of the reason constants above, or 0 if no such simulation has run.
+    **/
+       public int getReturnReason() {
+         return returnReason;
+      }
+   
+   /**
+    * Get the number of steps (MIPS instructions) executed by the most recent command-line 
+    * simulation, including the one that ended it.  If that simulation is still in progress,
+    * the count so far.
+    * @return number of steps executed, or 0 if no such simulation has run.
+    **/
+       public long getStepCount() {
+         SimThread thread = commandLineThread;
+         return (thread != null) ? thread.steps : stepCount;
+      }
+   
    
        /**
    	  *  Set the volatile stop boolean variable checked by the execution
@@ -150,6 +186,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
       }
    
+       /**
+   	  *  Stop execution as stopExecution does, and also interrupt the execution
+   	  *  thread so that a Sleep syscall in progress returns at once.  Used by
+   	  *  command-line MARS to enforce its wall-time limit.
+   	  */     		
+       public void interruptExecution() {
+         SimThread thread = simulatorThread;
+         if (thread != null) {
+            stopExecution(null);
+            thread.interrupt();
+         }
+      }
+   
       /* This interface is required by the Asker class in MassagesPane
        * to be notified about the fact that the user has requested to
        * stop the execution. When that happens, it must unblock the
@@ -207,6 +256,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          private volatile AbstractAction stopper;
          private AbstractAction starter;
          private int constructReturnReason;
+         private volatile long steps; // read by other threads through getStepCount()
       
       
          /**
@@ -288,7 +338,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
                   return new Boolean(done);
                }
-            int steps = 0;
+            steps = 0;
          	
          	// *******************  PS addition 26 July 2006  **********************
          	// A couple statements below were added for the purpose of assuring that when
@@ -325,11 +375,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             while (statement != null) {
                pc = RegisterFile.getProgramCounter(); // added: 7/26/06 (explanation above)
                RegisterFile.incrementPC();           	
+               steps++;
+               if (ExecutionHook.isActive()) {
+                  ExecutionHook.fireInstructionFetched(pc, statement);
+               }
             	// Perform the MIPS instruction in synchronized block.  If external threads agree
             	// to access MIPS memory and registers only through synchronized blocks on same 
             	// lock variable, then full (albeit heavy-handed) protection of MIPS memory and 
             	// registers is assured.  Not as critical for reading from those resources.
                synchronized (Globals.memoryAndRegistersLock) {
+               	// Devices are woken under the lock, and before the interrupt check so an
+               	// interrupt they raise is taken before this instruction.
+                  if (DeviceBus.isCounting()) {
+                     DeviceBus.instructionExecuted();
+                  }
                   try {                      
                      if (Simulator.externalInterruptingDevice != NO_DEVICE) {
                         int deviceInterruptCode = externalInterruptingDevice;
@@ -410,14 +469,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   return new Boolean(done); // false;
                }
             	// Check number of MIPS instructions executed.  Return if at limit (-1 is no limit).
-               if (maxSteps > 0) {
-                  steps++;
-                  if (steps >= maxSteps) {
-                     this.constructReturnReason = MAX_STEPS;
-                     this.done = false;
-                     Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
-                     return new Boolean(done);// false;
-                  }
+               if (maxSteps > 0 && steps >= maxSteps) {
+                  this.constructReturnReason = MAX_STEPS;
+                  this.done = false;
+                  Simulator.getInstance().notifyObserversOfExecutionStop(maxSteps, pc);
+                  return new Boolean(done);// false;
                }
             	
             	// schedule GUI update only if: there is in fact a GUI! AND
@@ -426,7 +482,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                //if (Globals.getGui() != null && maxSteps != 1 &&             
                if (interactiveGUIUpdater != null && maxSteps != 1 && 
                           RunSpeedPanel.getInstance().getRunSpeed() < RunSpeedPanel.UNLIMITED_SPEED) {
-                  SwingUtilities.invokeLater(interactiveGUIUpdater);
+                  interactiveGUIUpdater.schedule();
                }
                if (Globals.getGui() != null || Globals.runSpeedPanelExists) { // OR added by DPS 24 July 2008 to enable speed control by stand-alone tool
                   if (maxSteps != 1 && 
@@ -518,8 +574,46 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          
       }
    	
-       private class UpdateGUI implements Runnable {
+   	/**
+   	 *  Refreshes the register, data segment and text segment displays while running in
+   	 *  timed mode.  Requests are coalesced: while a refresh is queued on the event
+   	 *  dispatch thread, further requests are ignored since the queued one will show the
+   	 *  latest state anyway.  Refreshes are also limited to the display's frame rate; one
+   	 *  that comes too soon after the previous is deferred by a timer, not dropped, so the
+   	 *  final state is always shown.
+   	 */
+       private class UpdateGUI implements Runnable, ActionListener {
+         private static final int DEFAULT_FRAME_RATE = 60;
+         private final AtomicBoolean pending = new AtomicBoolean(false);
+         private final long frameInterval; // nanoseconds
+         private final javax.swing.Timer deferTimer;
+         private long lastUpdate;
+      
+          public UpdateGUI() {
+            frameInterval = 1000000000L / getFrameRate();
+            lastUpdate = System.nanoTime() - frameInterval;
+            deferTimer = new javax.swing.Timer(0, this);
+            deferTimer.setRepeats(false);
+         }
+      
+         /**
+          * Request a refresh.  May be called from any thread.
+          */
+          public void schedule() {
+            if (pending.compareAndSet(false, true)) {
+               SwingUtilities.invokeLater(this);
+            }
+         }
+      
           public void run() {
+            long wait = lastUpdate + frameInterval - System.nanoTime();
+            if (wait > 0) {
+               deferTimer.setInitialDelay((int) Math.max(1, wait / 1000000));
+               deferTimer.restart();
+               return;
+            }
+            pending.set(false);
+            lastUpdate = System.nanoTime();
             if (Globals.getGui().getRegistersPane().getSelectedComponent() == 
                                                      Globals.getGui().getMainPane().getExecutePane().getRegistersWindow()) {
                Globals.getGui().getMainPane().getExecutePane().getRegistersWindow().updateRegisters();
@@ -531,6 +625,25 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             Globals.getGui().getMainPane().getExecutePane().getTextSegmentWindow().setCodeHighlighting(true);
             Globals.getGui().getMainPane().getExecutePane().getTextSegmentWindow().highlightStepAtPC();   
          }
+      
+         // Deferred refresh is due.
+          public void actionPerformed(ActionEvent e) {
+            run();
+         }
+      
+         // Refresh rate of the screen, or a typical rate if it cannot be determined.
+          private int getFrameRate() {
+            try {
+               int rate = GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice()
+                                             .getDisplayMode().getRefreshRate();
+               if (rate != DisplayMode.REFRESH_RATE_UNKNOWN) {
+                  return rate;
+               }
+            } 
+                catch (Exception e) { // e.g. HeadlessException
+               }
+            return DEFAULT_FRAME_RATE;
+         }
       }
    
    }
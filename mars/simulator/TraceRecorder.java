@@ -0,0 +1,224 @@
+package mars.simulator;
+
+   import java.io.*;
+   import java.nio.ByteBuffer;
+   import java.nio.channels.FileChannel;
+
+/*
+Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Records the execution of a MIPS program to a binary trace file, so analyses such
+ * as cache and branch prediction models can be run on it afterward, any number of
+ * times and with different parameters, without simulating the program again (see
+ * TraceReplayer).  As an ExecutionHook it records each instruction fetch with its
+ * machine code, each memory read and write with its address, length and value, and
+ * each register write, in the order they happen.
+ * <p>
+ * The file starts with a header: the int MAGIC, a VERSION byte and a flags byte
+ * (FLAG_DELAYED_BRANCHING).  Records follow, each a byte giving the kind in its low
+ * 3 bits and flags above, then the kind's fields.  Numbers are delta encoded as
+ * zigzag variable-length ints (7 bits per byte, low bits first), so the typical
+ * record takes 1 to 4 bytes:
+ * <ul>
+ * <li>FETCH: unless the SEQUENTIAL flag is set, the difference between the address and 
+ * the previous fetch address plus 4; then, unless the WORD_REPEATED flag is set, 
+ * the 4-byte machine code.  WORD_REPEATED means the code is the one last recorded 
+ * for this address in a table of WORD_TABLE_SIZE entries indexed by word address.
+ * <li>READ, WRITE: length in bits 3-4 as a power of two, then the difference between
+ * the address and the previous READ or WRITE address, then the value.
+ * <li>REGISTER: register number byte (as in ExecutionHook.registerWritten), then the 
+ * difference between the value and that register's previously recorded value (0 at
+ * first).
+ * <li>END: the difference between the address execution would continue at and the
+ * last fetch address plus 4, so an analysis can resolve a branch fetched last.  
+ * Written by close(); version 1 traces do not have it.
+ * </ul>
+ * Records are collected in a direct buffer and written through a FileChannel.
+ */
+
+    public class TraceRecorder extends ExecutionHook {
+      static final int MAGIC = 0x4D545243; // "MTRC"
+      static final int VERSION = 2;
+      static final int FLAG_DELAYED_BRANCHING = 1;
+      static final int FETCH = 0, READ = 1, WRITE = 2, REGISTER = 3, END = 4;
+      static final int KIND_MASK = 0x07;
+      static final int SEQUENTIAL = 0x08, WORD_REPEATED = 0x10;
+      static final int LENGTH_SHIFT = 3;
+      static final int WORD_TABLE_SIZE = 4096; // power of 2
+      static final int REGISTER_COUNT = 35;
+      static final int MAX_RECORD_BYTES = 16;
+      private static final int BUFFER_BYTES = 1 << 16;
+   
+      private FileChannel channel;
+      private ByteBuffer buffer;
+      private int lastFetchAddress, lastDataAddress;
+      private int[] registerValues = new int[REGISTER_COUNT];
+      private int[] wordTableAddresses = new int[WORD_TABLE_SIZE];
+      private int[] wordTableWords = new int[WORD_TABLE_SIZE];
+      private long stepCount, recordCount;
+      private IOException error;
+   
+   	/**
+   	 * Create the trace file and write its header.
+   	 * @param fileName name of the trace file, replaced if it exists
+   	 * @param delayedBranching whether the program runs with delayed branching, 
+   	 * which trace analyses need to tell a branch's outcome from the next fetch
+   	 * @throws IOException if the file cannot be created
+   	 */
+       public TraceRecorder(String fileName, boolean delayedBranching) throws IOException {
+         channel = new FileOutputStream(fileName).getChannel();
+         buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+         buffer.putInt(MAGIC);
+         buffer.put((byte) VERSION);
+         buffer.put((byte) (delayedBranching ? FLAG_DELAYED_BRANCHING : 0));
+         java.util.Arrays.fill(wordTableAddresses, 1); // never an instruction address
+      }
+   
+       public void instructionFetched(int address, int binaryStatement) {
+         if (!reserve()) {
+            return;
+         }
+         stepCount++;
+         int index = (address >>> 2) & (WORD_TABLE_SIZE-1);
+         boolean sequential = (address == lastFetchAddress + 4);
+         boolean repeated = (wordTableAddresses[index] == address && wordTableWords[index] == binaryStatement);
+         buffer.put((byte) (FETCH | (sequential ? SEQUENTIAL : 0) | (repeated ? WORD_REPEATED : 0)));
+         if (!sequential) {
+            putVarint(address - lastFetchAddress - 4);
+         }
+         if (!repeated) {
+            buffer.putInt(binaryStatement);
+            wordTableAddresses[index] = address;
+            wordTableWords[index] = binaryStatement;
+         }
+         lastFetchAddress = address;
+      }
+   
+       public void memoryRead(int address, int length, int value) {
+         putMemoryAccess(READ, address, length, value);
+      }
+   
+       public void memoryWritten(int address, int length, int value) {
+         putMemoryAccess(WRITE, address, length, value);
+      }
+   
+       private void putMemoryAccess(int kind, int address, int length, int value) {
+         if (!reserve()) {
+            return;
+         }
+         buffer.put((byte) (kind | (Integer.numberOfTrailingZeros(length) << LENGTH_SHIFT)));
+         putVarint(address - lastDataAddress);
+         putVarint(value);
+         lastDataAddress = address;
+      }
+   
+       public void registerWritten(int number, int value) {
+         if (number < 0 || number >= REGISTER_COUNT || !reserve()) {
+            return;
+         }
+         buffer.put((byte) REGISTER);
+         buffer.put((byte) number);
+         putVarint(value - registerValues[number]);
+         registerValues[number] = value;
+      }
+   
+   	// Make room for a record, writing out the buffer if needed.  False if recording
+   	// has failed, in which case nothing more is recorded.
+       private boolean reserve() {
+         if (error != null) {
+            return false;
+         }
+         if (buffer.remaining() < MAX_RECORD_BYTES) {
+            try {
+               flush();
+            } 
+                catch (IOException e) {
+                  error = e;
+                  return false;
+               }
+         }
+         recordCount++;
+         return true;
+      }
+   
+       private void putVarint(int value) {
+         int zigzag = (value << 1) ^ (value >> 31);
+         while ((zigzag & ~0x7F) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+         }
+         buffer.put((byte) zigzag);
+      }
+   
+       private void flush() throws IOException {
+         buffer.flip();
+         while (buffer.hasRemaining()) {
+            channel.write(buffer);
+         }
+         buffer.clear();
+      }
+   
+   	/**
+   	 * End the trace, write out any buffered records and close the file.  Remove the 
+   	 * recorder as a hook first.
+   	 * @param nextAddress address execution would continue at, i.e. the program counter
+   	 * @throws IOException if writing the trace failed, now or during recording
+   	 */
+       public void close(int nextAddress) throws IOException {
+         if (reserve()) {
+            buffer.put((byte) END);
+            putVarint(nextAddress - lastFetchAddress - 4);
+         }
+         try {
+            if (error == null) {
+               flush();
+            }
+         } 
+         finally {
+            channel.close();
+         }
+         if (error != null) {
+            throw error;
+         }
+      }
+   
+   	/**
+   	 * @return number of instruction fetches recorded
+   	 */
+       public long getStepCount() {
+         return stepCount;
+      }
+   
+   	/**
+   	 * @return number of records of all kinds recorded
+   	 */
+       public long getRecordCount() {
+         return recordCount;
+      }
+   }
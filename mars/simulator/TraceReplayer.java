@@ -0,0 +1,218 @@
+package mars.simulator;
+
+   import java.io.*;
+   import java.nio.BufferUnderflowException;
+   import java.nio.ByteBuffer;
+   import java.nio.channels.FileChannel;
+
+/*
+Copyright (c) 2003-2009,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Replays a trace file written by TraceRecorder to ExecutionHooks, calling them as 
+ * the simulator did while the program was recorded, but at the speed the file can be
+ * read.  A trace can be replayed any number of times; each replay reads the file 
+ * again through a FileChannel into a direct buffer.
+ */
+
+    public class TraceReplayer {
+      private static final int BUFFER_BYTES = 1 << 16;
+      private static final int HEADER_BYTES = 6;
+      private String fileName;
+      private boolean delayedBranching;
+      private boolean ended;
+      private int endAddress;
+   
+   	/**
+   	 * Open a trace file and check its header.
+   	 * @param fileName name of the trace file
+   	 * @throws IOException if the file cannot be read or is not a trace file
+   	 */
+       public TraceReplayer(String fileName) throws IOException {
+         this.fileName = fileName;
+         FileChannel channel = new FileInputStream(fileName).getChannel();
+         try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+            }
+            header.flip();
+            if (header.remaining() < HEADER_BYTES || header.getInt() != TraceRecorder.MAGIC) {
+               throw new IOException(fileName+" is not a MARS trace file");
+            }
+            int version = header.get();
+            if (version < 1 || version > TraceRecorder.VERSION) {
+               throw new IOException(fileName+" is trace version "+version+", expected 1 to "+TraceRecorder.VERSION);
+            }
+            delayedBranching = (header.get() & TraceRecorder.FLAG_DELAYED_BRANCHING) != 0;
+         } 
+         finally {
+            channel.close();
+         }
+      }
+   
+   	/**
+   	 * @return whether the traced program ran with delayed branching
+   	 */
+       public boolean isDelayedBranching() {
+         return delayedBranching;
+      }
+   
+   	/**
+   	 * @return whether the last replay found the address execution would have continued
+   	 * at after the trace, which version 1 traces do not record
+   	 */
+       public boolean hasEndAddress() {
+         return ended;
+      }
+   
+   	/**
+   	 * @return the address execution would have continued at after the trace, if 
+   	 * hasEndAddress()
+   	 */
+       public int getEndAddress() {
+         return endAddress;
+      }
+   
+   	/**
+   	 * Replay the whole trace to one hook.
+   	 * @param hook the hook to call
+   	 * @return number of instruction fetches replayed
+   	 * @throws IOException if the file cannot be read or is damaged
+   	 */
+       public long replay(ExecutionHook hook) throws IOException {
+         return replay(new ExecutionHook[] { hook });
+      }
+   
+   	/**
+   	 * Replay the whole trace to several hooks in one pass.  Each record is passed to
+   	 * the hooks in array order.
+   	 * @param hooks the hooks to call
+   	 * @return number of instruction fetches replayed
+   	 * @throws IOException if the file cannot be read or is damaged
+   	 */
+       public long replay(ExecutionHook[] hooks) throws IOException {
+         FileChannel channel = new FileInputStream(fileName).getChannel();
+         ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+         int lastFetchAddress = 0, lastDataAddress = 0;
+         int[] registerValues = new int[TraceRecorder.REGISTER_COUNT];
+         int[] wordTableWords = new int[TraceRecorder.WORD_TABLE_SIZE];
+         long steps = 0;
+         ended = false;
+         try {
+            channel.position(HEADER_BYTES);
+            boolean endOfFile = false;
+            buffer.flip();
+            while (true) {
+               if (!endOfFile && buffer.remaining() < TraceRecorder.MAX_RECORD_BYTES) {
+                  buffer.compact();
+                  while (buffer.hasRemaining() && !endOfFile) {
+                     endOfFile = channel.read(buffer) < 0;
+                  }
+                  buffer.flip();
+               }
+               if (!buffer.hasRemaining()) {
+                  break;
+               }
+               int tag = buffer.get() & 0xFF;
+               switch (tag & TraceRecorder.KIND_MASK) {
+                  case TraceRecorder.FETCH :
+                     int address = lastFetchAddress + 4;
+                     if ((tag & TraceRecorder.SEQUENTIAL) == 0) {
+                        address += getVarint(buffer);
+                     }
+                     int index = (address >>> 2) & (TraceRecorder.WORD_TABLE_SIZE-1);
+                     int binaryStatement;
+                     if ((tag & TraceRecorder.WORD_REPEATED) != 0) {
+                        binaryStatement = wordTableWords[index];
+                     } 
+                     else {
+                        binaryStatement = buffer.getInt();
+                        wordTableWords[index] = binaryStatement;
+                     }
+                     lastFetchAddress = address;
+                     steps++;
+                     for (int i=0; i<hooks.length; i++) {
+                        hooks[i].instructionFetched(address, binaryStatement);
+                     }
+                     break;
+                  case TraceRecorder.READ :
+                  case TraceRecorder.WRITE :
+                     int length = 1 << (tag >>> TraceRecorder.LENGTH_SHIFT);
+                     int dataAddress = lastDataAddress + getVarint(buffer);
+                     int value = getVarint(buffer);
+                     lastDataAddress = dataAddress;
+                     boolean write = (tag & TraceRecorder.KIND_MASK) == TraceRecorder.WRITE;
+                     for (int i=0; i<hooks.length; i++) {
+                        if (write) {
+                           hooks[i].memoryWritten(dataAddress, length, value);
+                        } 
+                        else {
+                           hooks[i].memoryRead(dataAddress, length, value);
+                        }
+                     }
+                     break;
+                  case TraceRecorder.REGISTER :
+                     int number = buffer.get() & 0xFF;
+                     if (number >= TraceRecorder.REGISTER_COUNT) {
+                        throw new IOException(fileName+" is damaged: register number "+number);
+                     }
+                     registerValues[number] += getVarint(buffer);
+                     for (int i=0; i<hooks.length; i++) {
+                        hooks[i].registerWritten(number, registerValues[number]);
+                     }
+                     break;
+                  case TraceRecorder.END :
+                     endAddress = lastFetchAddress + 4 + getVarint(buffer);
+                     ended = true;
+                     break;
+                  default :
+                     throw new IOException(fileName+" is damaged: unknown record kind "+(tag & TraceRecorder.KIND_MASK));
+               }
+            }
+         } 
+             catch (BufferUnderflowException e) {
+               throw new IOException(fileName+" is truncated");
+            }
+         finally {
+            channel.close();
+         }
+         return steps;
+      }
+   
+       private static int getVarint(ByteBuffer buffer) {
+         int zigzag = 0;
+         int shift = 0;
+         int b;
+         do {
+            b = buffer.get();
+            zigzag |= (b & 0x7F) << shift;
+            shift += 7;
+         } while ((b & 0x80) != 0);
+         return (zigzag >>> 1) ^ -(zigzag & 1);
+      }
+   }
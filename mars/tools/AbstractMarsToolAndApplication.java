@@ -532,6 +532,32 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             }		 
       }
    
+      /**
+   	 *  Attach a device to the specified subrange of MIPS memory-mapped I/O, reporting
+   	 *  failure the same way as addAsObserver().  Use instead of registering as an Observer
+   	 *  when the tool simulates a device; detach it in deleteAsObserver().
+   	 *  @param device the device
+   	 *  @param lowEnd low end of memory address range, word-aligned.
+   	 *  @param highEnd high end of memory address range; must be >= lowEnd
+   	 *  @return true if the device was attached
+   	 */
+       protected boolean attachDevice(MemoryMappedDevice device, int lowEnd, int highEnd) {
+         try {
+            DeviceBus.attach(device, lowEnd, highEnd);
+            return true;
+         } 
+             catch (IllegalArgumentException iae) {
+               String errorMessage = "Error connecting to MIPS memory: "+iae.getMessage();
+               if (this.isBeingUsedAsAMarsTool) {
+                  headingLabel.setText(errorMessage);
+               } 
+               else {
+                  operationStatusMessages.displayTerminatingMessage(errorMessage);
+               }
+               return false;
+            }		 
+      }
+   
       /**
    	 *  Add this app/tool as an Observer of the specified MIPS register.
    	 */
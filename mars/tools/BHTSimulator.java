@@ -55,6 +55,9 @@ import mars.mips.hardware.RegisterFile;
  * <p>
  * The tool can be used to show how branch prediction works in case of loops and how effective such simple methods are. 
  * In case of nested loops the difference of BHT with 1 or 2 Bit history can be explored and visualized.
+ * <p>
+ * To compare other predictors (bimodal, gshare, tournament, TAGE, branch target buffer) on larger
+ * programs without a display, see {@link BranchPredictorEvaluator}.
  * 
  * @author ingo.kofler@itec.uni-klu.ac.at
  */
@@ -244,13 +247,24 @@ public class BHTSimulator extends AbstractMarsToolAndApplication implements Acti
 	 * @return true, if stmt is a branch instruction, otherwise false
 	 */
 	protected static boolean isBranchInstruction(ProgramStatement stmt) {
+		return isBranchInstruction(stmt.getBinaryStatement());
+	}
+	
+	
+	/**
+	 * Determines if the 32-bit instruction is a branch instruction or not.
+	 * 
+	 * @param binaryStatement the machine code of the instruction to investigate
+	 * @return true, if it is a branch instruction, otherwise false
+	 */
+	protected static boolean isBranchInstruction(int binaryStatement) {
 		
-		int opCode = stmt.getBinaryStatement() >>> (32-6);
-		int funct = stmt.getBinaryStatement() & 0x1F;
+		int opCode = binaryStatement >>> (32-6);
+		int rt = (binaryStatement >>> 16) & 0x1F; // REGIMM instructions are told apart by rt
 				
 		if (opCode == 0x01) {
-			if (0x00 <= funct && funct <= 0x07) return true; //  bltz, bgez, bltzl, bgezl
-			if (0x10 <= funct && funct <= 0x13) return true; // bltzal, bgezal, bltzall, bgczall			
+			if (0x00 <= rt && rt <= 0x03) return true; //  bltz, bgez, bltzl, bgezl
+			if (0x10 <= rt && rt <= 0x13) return true; // bltzal, bgezal, bltzall, bgczall			
 		}
 
 		if (0x04 <= opCode && opCode <= 0x07) return true; // beq, bne, blez, bgtz
@@ -268,7 +282,6 @@ public class BHTSimulator extends AbstractMarsToolAndApplication implements Acti
 	 */	
 	protected static boolean willBranch(ProgramStatement stmt) {
 		int opCode = stmt.getBinaryStatement() >>> (32-6);
-		int funct = stmt.getBinaryStatement() & 0x1F;
 		int rs = stmt.getBinaryStatement() >>> (32-6-5) & 0x1F;
 		int rt = stmt.getBinaryStatement() >>> (32-6-5-5) & 0x1F;
 		
@@ -277,11 +290,15 @@ public class BHTSimulator extends AbstractMarsToolAndApplication implements Acti
 					
 		
 		if (opCode == 0x01) {
-			switch (funct) {			
+			switch (rt) {			
 			case 0x00: return valRS < 0; // bltz
 			case 0x01: return valRS >= 0; // bgez
 			case 0x02: return valRS < 0; // bltzl
 			case 0x03: return valRS >= 0; // bgezl			
+			case 0x10: return valRS < 0; // bltzal
+			case 0x11: return valRS >= 0; // bgezal
+			case 0x12: return valRS < 0; // bltzall
+			case 0x13: return valRS >= 0; // bgezall
 			}
 		}
 
@@ -310,8 +327,20 @@ public class BHTSimulator extends AbstractMarsToolAndApplication implements Acti
 	 * @return the address of the instruction that is executed if the branch is taken
 	 */
 	protected static int extractBranchAddress(ProgramStatement stmt) {
-		short offset = (short)(stmt.getBinaryStatement() & 0xFFFF); 						
-		return stmt.getAddress() + (offset<<2) + 4;				
+		return extractBranchAddress(stmt.getAddress(), stmt.getBinaryStatement());
+	}
+	
+	
+	/**
+	 * Extracts the target address of the branch at the given address.
+	 * 
+	 * @param address the address of the branch instruction
+	 * @param binaryStatement the machine code of the branch instruction
+	 * @return the address of the instruction that is executed if the branch is taken
+	 */
+	protected static int extractBranchAddress(int address, int binaryStatement) {
+		short offset = (short)(binaryStatement & 0xFFFF); 						
+		return address + (offset<<2) + 4;				
 	}
 	
 	
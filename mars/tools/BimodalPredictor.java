@@ -0,0 +1,62 @@
+   package mars.tools;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Bimodal branch predictor: a table of 2-bit saturating counters indexed by the 
+ * low bits of the branch's word address.  A counter of 2 or 3 predicts taken.
+ * Counters start at 1, weakly not taken.
+ */
+ 
+    public class BimodalPredictor extends BranchPredictor {
+      private byte[] counters;
+      private int mask;
+   
+   	/**
+   	 * @param entries number of counters, a power of 2
+   	 */
+       public BimodalPredictor(int entries) {
+         counters = new byte[entries];
+         java.util.Arrays.fill(counters, (byte) 1);
+         mask = entries - 1;
+      }
+   
+       public String getName() {
+         return "bimodal "+counters.length;
+      }
+   
+       public boolean predict(int address) {
+         return counters[(address >>> 2) & mask] >= 2;
+      }
+   
+       public void update(int address, boolean taken) {
+         int index = (address >>> 2) & mask;
+         counters[index] = (byte) count(counters[index], taken, 3);
+      }
+   }
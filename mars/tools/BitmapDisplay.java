@@ -4,6 +4,7 @@
    import javax.swing.event.*;
    import java.awt.*;
    import java.awt.event.*;
+   import java.awt.image.*;
    import java.util.*;
    import mars.tools.*;
    import mars.mips.hardware.*;
@@ -42,7 +43,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 	 * maximum use of methods inherited from its abstract superclass AbstractMarsToolAndApplication.
 	 * Pete Sanderson, verison 1.0, 23 December 2010.
 	 */
-    public class BitmapDisplay extends AbstractMarsToolAndApplication {
+    public class BitmapDisplay extends TimedRepaintTool {
    
       private static String version = "Version 1.0";
       private static String heading =  "Bitmap Display";
@@ -85,6 +86,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private int baseAddress;
    	
       private Grid theGrid;
+   	
+   	// About 30 frames a second, so that animation drawn by the MIPS program looks smooth.
+      private static final int REPAINT_INTERVAL_MILLIS = 30;
    	         	
    	/**
    	 * Simple constructor, likely used to run a stand-alone bitmap display tool.
@@ -92,14 +96,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 * @param heading String containing text for heading shown in upper part of window.
    	 */
        public BitmapDisplay(String title, String heading) {
-         super(title,heading);
+         super(title,heading,REPAINT_INTERVAL_MILLIS);
       }
    	 
    	 /**
    	  *  Simple constructor, likely used by the MARS Tools menu mechanism
    	  */
        public BitmapDisplay() {
-         super ("Bitmap Display, "+version, heading);
+         super ("Bitmap Display, "+version, heading, REPAINT_INTERVAL_MILLIS);
       }
    		 
    		 
@@ -200,6 +204,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        protected void initializePostGUI() {
          theGrid = createNewGrid();
          updateBaseAddress();
+         startRepaintTimer();
       }
    	
    	
@@ -213,12 +218,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    
    	/**
-   	 *  Updates display immediately after each update (AccessNotice) is processed, after
-   	 *  display configuration changes as needed, and after each execution step when Mars
-   	 *  is running in timed mode.  Overrides inherited method that does nothing.
+   	 *  Repaints the given rectangle of grid elements, scaled to the unit size.
    	 */
-       protected void updateDisplay() {
-         canvas.repaint();
+       protected void repaintUnits(Rectangle units) {
+         canvas.repaint(units.x*unitPixelWidth, units.y*unitPixelHeight, 
+                        units.width*unitPixelWidth, units.height*unitPixelHeight);
       }
    
        
@@ -462,10 +466,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return new Grid(rows,columns);
       }
    	
-   	 // Given memory address, update color for the corresponding grid element.
+   	 // Given memory address, update color for the corresponding grid element.  A byte or
+   	 // halfword write changes only part of the color, so the whole word is read back.
        private void updateColorForAddress(MemoryAccessNotice notice) {
          int address = notice.getAddress();
          int value   = notice.getValue();
+         if (notice.getLength() != Memory.WORD_LENGTH_BYTES) {
+            address -= address & (Memory.WORD_LENGTH_BYTES-1);
+            try {
+               value = Memory.getInstance().getWordNoNotify(address);
+            } 
+                catch (AddressErrorException e) {
+                  return;
+               }
+         }
          int offset = (address - baseAddress)/Memory.WORD_LENGTH_BYTES;
          try {
             theGrid.setElement(offset / theGrid.getColumns(), offset % theGrid.getColumns(), value);
@@ -487,41 +501,36 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        private class GraphicsPanel extends JPanel {
       	
           // override default paint method to assure display updated correctly every time
-      	 // the panel is repainted.
+      	 // the panel is repainted.  The grid's image has one pixel per unit, so it is scaled
+      	 // to the unit size; only the part within the clip (the changed area) is drawn.
           public void paint(Graphics g) {
-               paintGrid(g, theGrid);
-         }
-      
-      	// Paint the color codes.
-          private void paintGrid(Graphics g, Grid grid) {
-            int upperLeftX = 0, upperLeftY = 0;
-            for (int i=0; i<grid.getRows(); i++) {
-               for (int j=0; j<grid.getColumns(); j++) {
-                  g.setColor(grid.getElementFast(i,j));
-                  g.fillRect(upperLeftX, upperLeftY, unitPixelWidth, unitPixelHeight); 
-                  upperLeftX += unitPixelWidth;   // faster than multiplying
-               }
-            	// get ready for next row...
-               upperLeftX = 0;
-               upperLeftY += unitPixelHeight;     // faster than multiplying
-            }
+            Grid grid = theGrid;
+            g.drawImage(grid.getImage(), 0, 0, grid.getColumns()*unitPixelWidth, 
+                        grid.getRows()*unitPixelHeight, null);
          }
       }
    
    	
       ////////////////////////////////////////////////////////////////////////
-   	// Represents grid of colors
+   	// Represents grid of colors, as the pixels of an image whose raster is written
+   	// directly.  Changed elements are added to the tool's area to be repainted.
        private class Grid {
       
-         Color[][] grid;
+         BufferedImage image;
+         int[] pixels; // the image's raster, in row-major order
          int rows, columns;
       	 		  
           private Grid(int rows, int columns) {
-            grid = new Color[rows][columns];
+            image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
             this.rows = rows;
             this.columns = columns;
             reset();
          }
+      
+          private BufferedImage getImage() {
+            return image;
+         }
        
           private int getRows() {
             return rows;
@@ -531,35 +540,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             return columns;
          }
       
-      	// Returns value in given grid element; null if row or column is out of range.			
-          private Color getElement(int row, int column) {
-            return (row>=0 && row<=rows && column>=0 && column<=columns) ? grid[row][column] : null;			
-         }
-      
-      	// Returns value in given grid element without doing any row/column index checking.
-      	// Is faster than getElement but will throw array index out of bounds exception if
-      	// parameter values are outside the bounds of the grid.			
-          private Color getElementFast(int row, int column) {
-            return grid[row][column];			
-         }
-      	      	
-      	// Set the grid element.
+      	// Set the grid element to a 24-bit RGB color.  Throws IndexOutOfBoundsException
+      	// if row or column is out of range.
           private void setElement(int row, int column, int color) {
-            grid[row][column] = new Color(color);
-         }
-      	
-      	// Set the grid element.
-          private void setElement(int row, int column, Color color) {
-            grid[row][column] = color;
+            if (row < 0 || row >= rows || column < 0 || column >= columns) {
+               throw new IndexOutOfBoundsException();
+            }
+            pixels[row*columns + column] = color & 0xFFFFFF;
+            addChangedArea(row, column, row, column);
          }
       
       	// Just set all grid elements to black.
           private void reset() {
-            for (int i=0; i<rows; i++) {
-               for (int j=0; j<columns; j++) {
-                  grid[i][j] = Color.BLACK;
-               }
-            }
+            Arrays.fill(pixels, 0);
+            addChangedArea(0, 0, rows-1, columns-1);
          }
       }  	
    
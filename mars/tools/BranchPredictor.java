@@ -0,0 +1,131 @@
+   package mars.tools;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * A conditional branch direction predictor without any display, evaluated by 
+ * BranchPredictorEvaluator over a running program or a recorded trace.  For each
+ * branch executed, predict() is called with its address, then update() with its 
+ * outcome, before the next branch is predicted.  Implementations keep their tables
+ * in primitive arrays so millions of branches can be evaluated per second.
+ * <p>
+ * create() builds a predictor from a specification such as <tt>gshare:4096:12</tt>;
+ * the names and parameters of the predictors provided are listed there.
+ */
+ 
+    public abstract class BranchPredictor {
+   
+   	/**
+   	 * @return short description of the predictor and its parameters, for reports
+   	 */
+       public abstract String getName();
+   
+   	/**
+   	 * Predict whether the branch at the given address will be taken.
+   	 * @param address address of the branch instruction
+   	 * @return true to predict taken, false for not taken
+   	 */
+       public abstract boolean predict(int address);
+   
+   	/**
+   	 * Learn the outcome of the branch just predicted.
+   	 * @param address address of the branch instruction
+   	 * @param taken whether the branch was taken
+   	 */
+       public abstract void update(int address, boolean taken);
+   
+   	/**
+   	 * Create a predictor from a specification: a name then colon-separated parameters,
+   	 * each optional and each table size a power of 2 of at least 2 entries.
+   	 * <ul>
+   	 * <li><tt>bimodal[:&lt;entries&gt;]</tt>: table of 2-bit counters indexed by address (4096).
+   	 * <li><tt>gshare[:&lt;entries&gt;[:&lt;history bits&gt;]]</tt>: 2-bit counters indexed by
+   	 * address XOR global history (4096:12).
+   	 * <li><tt>tournament[:&lt;entries&gt;[:&lt;history bits&gt;]]</tt>: bimodal and gshare with
+   	 * a table of 2-bit counters choosing between them (4096:12).
+   	 * <li><tt>tage[:&lt;entries&gt;[:&lt;tables&gt;]]</tt>: bimodal base predictor and up to 
+   	 * 5 tagged tables using global histories of 4, 8, 16, 32 and 64 branches (1024:4).
+   	 * </ul>
+   	 * @param specification the specification
+   	 * @return the predictor
+   	 * @throws IllegalArgumentException if the specification is not valid
+   	 */
+       public static BranchPredictor create(String specification) {
+         String[] parts = specification.split(":");
+         String name = parts[0].toLowerCase();
+         if (name.equals("bimodal") && parts.length <= 2) {
+            return new BimodalPredictor(getParameter(parts, 1, 4096, true));
+         }
+         if (name.equals("gshare") && parts.length <= 3) {
+            return new GsharePredictor(getParameter(parts, 1, 4096, true), getParameter(parts, 2, 12, false));
+         }
+         if (name.equals("tournament") && parts.length <= 3) {
+            return new TournamentPredictor(getParameter(parts, 1, 4096, true), getParameter(parts, 2, 12, false));
+         }
+         if (name.equals("tage") && parts.length <= 3) {
+            return new TagePredictor(getParameter(parts, 1, 1024, true), getParameter(parts, 2, 4, false));
+         }
+         throw new IllegalArgumentException("invalid branch predictor "+specification);
+      }
+   
+       private static int getParameter(String[] parts, int index, int defaultValue, boolean powerOfTwo) {
+         if (parts.length <= index) {
+            return defaultValue;
+         }
+         int value;
+         try {
+            value = Integer.parseInt(parts[index]);
+         } 
+             catch (NumberFormatException nfe) {
+               throw new IllegalArgumentException("invalid branch predictor parameter "+parts[index]);
+            }
+         if (value <= 0 || (powerOfTwo && (value & (value-1)) != 0)) {
+            throw new IllegalArgumentException("branch predictor parameter "+parts[index]
+                                               +(powerOfTwo ? " is not a power of 2" : " is not positive"));
+         }
+         if (powerOfTwo && value < 2) {
+            throw new IllegalArgumentException("branch predictor table size "+parts[index]+" is less than 2");
+         }
+         return value;
+      }
+   
+   	/**
+   	 * Step a saturating counter toward taken (up) or not taken (down).
+   	 * @param counter the counter value, 0 to max
+   	 * @param taken direction to step
+   	 * @param max largest counter value
+   	 * @return the new counter value
+   	 */
+       static int count(int counter, boolean taken, int max) {
+         if (taken) {
+            return (counter < max) ? counter+1 : counter;
+         }
+         return (counter > 0) ? counter-1 : counter;
+      }
+   }
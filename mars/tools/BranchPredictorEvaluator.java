@@ -0,0 +1,360 @@
+   package mars.tools;
+   import mars.simulator.ExecutionHook;
+   import mars.util.Binary;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Evaluates several branch predictors side by side over the instructions of a 
+ * running MIPS program or a recorded trace, without any display.  The predictors are
+ * given by a comma-separated specification such as 
+ * <tt>bimodal,gshare:4096:12,tournament,tage,btb:512:16</tt>: any number of 
+ * direction predictors (see BranchPredictor.create()) and at most one branch target
+ * buffer (see BranchTargetBuffer.create()).
+ * <p>
+ * As an ExecutionHook it sees each instruction fetched.  Each conditional branch is 
+ * predicted by every direction predictor when it is fetched, and its outcome is 
+ * known from the next address fetched (after its delay slot, with delayed branching):
+ * taken if that is the branch target.  The BTB predicts the target of every control
+ * transfer that is taken.  Accuracy is counted for each predictor in all, and for 
+ * each static branch, in a hash table of primitive arrays keyed by branch address.
+ */
+ 
+    public class BranchPredictorEvaluator extends ExecutionHook {
+      private static final int KIND_NONE = 0, KIND_BRANCH = 1, KIND_JUMP = 2, KIND_RETURN = 3;
+      private static final int REPORTED_BRANCHES = 20;
+      private BranchPredictor[] predictors;
+      private BranchTargetBuffer targetBuffer;
+      private boolean delayedBranching;
+      private long[] mispredictions;
+      private long branchCount, takenCount, jumpCount;
+      // control transfer awaiting its outcome
+      private int pendingKind, pendingAddress, pendingTarget, pendingSlot, pendingReturnAddress;
+      private boolean delaySlotSeen, pendingLink;
+      private boolean[] pendingPredictions;
+      // per-branch statistics, in a hash table with open addressing
+      private boolean[] branchSlotUsed;
+      private int[] branchAddresses;
+      private long[] branchCounts, branchTakenCounts;
+      private long[] branchMispredictions; // predictor p's count for slot s at s*predictors+p
+      private int staticBranches;
+   
+   	/**
+   	 * Create the predictors in the given specification, untrained.
+   	 * @param specification the predictors, as described above
+   	 * @param delayedBranching whether the program runs with delayed branching
+   	 * @throws IllegalArgumentException if the specification is not valid
+   	 */
+       public BranchPredictorEvaluator(String specification, boolean delayedBranching) {
+         String[] items = specification.split(",");
+         java.util.ArrayList list = new java.util.ArrayList();
+         for (int i=0; i<items.length; i++) {
+            if (items[i].toLowerCase().startsWith("btb")) {
+               if (targetBuffer != null) {
+                  throw new IllegalArgumentException("only one branch target buffer may be given");
+               }
+               targetBuffer = BranchTargetBuffer.create(items[i]);
+            } 
+            else {
+               list.add(BranchPredictor.create(items[i]));
+            }
+         }
+         predictors = (BranchPredictor[]) list.toArray(new BranchPredictor[list.size()]);
+         this.delayedBranching = delayedBranching;
+         mispredictions = new long[predictors.length];
+         pendingPredictions = new boolean[predictors.length];
+         allocateBranchTable(64);
+      }
+   
+       private void allocateBranchTable(int slots) {
+         branchSlotUsed = new boolean[slots];
+         branchAddresses = new int[slots];
+         branchCounts = new long[slots];
+         branchTakenCounts = new long[slots];
+         branchMispredictions = new long[slots * predictors.length];
+      }
+   
+       public void instructionFetched(int address, int binaryStatement) {
+         if (pendingKind != KIND_NONE) {
+            if (delayedBranching && !delaySlotSeen) {
+               delaySlotSeen = true;
+            } 
+            else {
+               resolve(address);
+            }
+         }
+         int opCode = binaryStatement >>> 26;
+         int funct = binaryStatement & 0x3F;
+         int rs = (binaryStatement >>> 21) & 0x1F;
+         int rt = (binaryStatement >>> 16) & 0x1F;
+         int returnAddress = address + (delayedBranching ? 8 : 4);
+         if (BHTSimulator.isBranchInstruction(binaryStatement)) {
+            begin(KIND_BRANCH, address);
+            pendingTarget = BHTSimulator.extractBranchAddress(address, binaryStatement);
+            pendingSlot = findBranchSlot(address);
+            for (int p=0; p<predictors.length; p++) {
+               pendingPredictions[p] = predictors[p].predict(address);
+            }
+            if (opCode == 0x01 && (rt == 0x10 || rt == 0x11 || rt == 0x12 || rt == 0x13) && targetBuffer != null) {
+               targetBuffer.pushReturnAddress(returnAddress); // bltzal, bgezal and likely forms link always
+            }
+         } 
+         else if (opCode == 0x02 || opCode == 0x03) { // j, jal
+            begin(KIND_JUMP, address);
+            if (opCode == 0x03 && targetBuffer != null) {
+               targetBuffer.pushReturnAddress(returnAddress);
+            }
+         } 
+         else if (opCode == 0x00 && (funct == 0x08 || funct == 0x09)) { // jr, jalr
+            begin((funct == 0x08 && rs == 31) ? KIND_RETURN : KIND_JUMP, address);
+            pendingLink = (funct == 0x09); // pushed after the jump's target is predicted
+            pendingReturnAddress = returnAddress;
+         }
+      }
+   
+       private void begin(int kind, int address) {
+         pendingKind = kind;
+         pendingAddress = address;
+         pendingLink = false;
+         delaySlotSeen = false;
+      }
+   
+   	// The instruction after the pending control transfer is at nextAddress.
+       private void resolve(int nextAddress) {
+         int kind = pendingKind;
+         pendingKind = KIND_NONE;
+         if (kind == KIND_BRANCH) {
+            boolean taken = (nextAddress == pendingTarget);
+            branchCount++;
+            branchCounts[pendingSlot]++;
+            if (taken) {
+               takenCount++;
+               branchTakenCounts[pendingSlot]++;
+            }
+            for (int p=0; p<predictors.length; p++) {
+               if (pendingPredictions[p] != taken) {
+                  mispredictions[p]++;
+                  branchMispredictions[pendingSlot*predictors.length + p]++;
+               }
+               predictors[p].update(pendingAddress, taken);
+            }
+            if (taken && targetBuffer != null) {
+               targetBuffer.predictAndUpdate(pendingAddress, nextAddress, false);
+            }
+            return;
+         }
+         jumpCount++;
+         if (targetBuffer != null) {
+            targetBuffer.predictAndUpdate(pendingAddress, nextAddress, kind == KIND_RETURN);
+            if (pendingLink) {
+               targetBuffer.pushReturnAddress(pendingReturnAddress);
+            }
+         }
+      }
+   
+   	// Slot of the branch at the given address in the per-branch table, added if new.
+       private int findBranchSlot(int address) {
+         int mask = branchAddresses.length - 1;
+         int slot = hash(address) & mask;
+         while (branchSlotUsed[slot]) {
+            if (branchAddresses[slot] == address) {
+               return slot;
+            }
+            slot = (slot + 1) & mask;
+         }
+         if (2 * (staticBranches + 1) > branchAddresses.length) {
+            growBranchTable();
+            return findBranchSlot(address);
+         }
+         branchSlotUsed[slot] = true;
+         branchAddresses[slot] = address;
+         staticBranches++;
+         return slot;
+      }
+   
+       private static int hash(int address) {
+         return ((address >>> 2) * 0x9E3779B1) >>> 8;
+      }
+   
+       private void growBranchTable() {
+         boolean[] oldUsed = branchSlotUsed;
+         int[] oldAddresses = branchAddresses;
+         long[] oldCounts = branchCounts;
+         long[] oldTakenCounts = branchTakenCounts;
+         long[] oldMispredictions = branchMispredictions;
+         allocateBranchTable(oldAddresses.length * 2);
+         int mask = branchAddresses.length - 1;
+         for (int old=0; old<oldAddresses.length; old++) {
+            if (!oldUsed[old]) {
+               continue;
+            }
+            int slot = hash(oldAddresses[old]) & mask;
+            while (branchSlotUsed[slot]) {
+               slot = (slot + 1) & mask;
+            }
+            branchSlotUsed[slot] = true;
+            branchAddresses[slot] = oldAddresses[old];
+            branchCounts[slot] = oldCounts[old];
+            branchTakenCounts[slot] = oldTakenCounts[old];
+            System.arraycopy(oldMispredictions, old*predictors.length, branchMispredictions, slot*predictors.length, predictors.length);
+         }
+      }
+   
+   	/**
+   	 * @return the direction predictors, in specification order
+   	 */
+       public BranchPredictor[] getPredictors() {
+         return predictors;
+      }
+   
+   	/**
+   	 * @return the branch target buffer, or null if none was given
+   	 */
+       public BranchTargetBuffer getTargetBuffer() {
+         return targetBuffer;
+      }
+   
+   	/**
+   	 * @return number of conditional branches executed
+   	 */
+       public long getBranchCount() {
+         return branchCount;
+      }
+   
+       public long getTakenCount() {
+         return takenCount;
+      }
+   
+   	/**
+   	 * @return number of jumps executed, including returns
+   	 */
+       public long getJumpCount() {
+         return jumpCount;
+      }
+   
+   	/**
+   	 * @return number of different conditional branch instructions executed
+   	 */
+       public int getStaticBranchCount() {
+         return staticBranches;
+      }
+   
+   	/**
+   	 * @param predictor index of the predictor in getPredictors()
+   	 * @return number of branches the predictor mispredicted
+   	 */
+       public long getMispredictionCount(int predictor) {
+         return mispredictions[predictor];
+      }
+   
+   	/**
+   	 * @param predictor index of the predictor in getPredictors()
+   	 * @return fraction of branches the predictor predicted correctly, 0 if none
+   	 */
+       public double getAccuracy(int predictor) {
+         return (branchCount == 0) ? 0.0 : (branchCount - mispredictions[predictor]) / (double) branchCount;
+      }
+   
+   	/**
+   	 * Resolve the branch or jump still pending when the run ends, so it is counted.  
+   	 * Call once after the last instruction.  With delayed branching, a transfer whose
+   	 * delay slot was not reached is left out, since its outcome is unknown.
+   	 * @param nextAddress address execution would continue at, i.e. the program counter
+   	 */
+       public void finish(int nextAddress) {
+         if (pendingKind != KIND_NONE && (!delayedBranching || delaySlotSeen)) {
+            resolve(nextAddress);
+         }
+         pendingKind = KIND_NONE;
+      }
+   
+   	/**
+   	 * Results as text: accuracy of each predictor and the BTB, then the accuracy of
+   	 * each predictor for the most executed branches.
+   	 * @return the report, with a newline ending each line
+   	 */
+       public String getReport() {
+         StringBuilder report = new StringBuilder();
+         report.append("Branch prediction: "+branchCount+" conditional branches ("+staticBranches+" static, "
+                       +String.format("%.2f%%", (branchCount == 0) ? 0.0 : takenCount*100.0/branchCount)
+                       +" taken), "+jumpCount+" jumps\n");
+         report.append(String.format("%-20s %14s %14s %9s%n", "predictor", "predictions", "mispredicted", "accuracy"));
+         for (int p=0; p<predictors.length; p++) {
+            report.append(String.format("%-20s %14d %14d %8.2f%%%n", predictors[p].getName(), 
+                          branchCount, mispredictions[p], getAccuracy(p)*100));
+         }
+         if (targetBuffer != null) {
+            long targets = targetBuffer.getPredictionCount();
+            long returns = targetBuffer.getReturnPredictionCount();
+            report.append(String.format("%-20s %14d %14d %8.2f%%%n", targetBuffer.getName(), targets,
+                          targets - targetBuffer.getCorrectPredictionCount(),
+                          (targets == 0) ? 0.0 : targetBuffer.getCorrectPredictionCount()*100.0/targets));
+            report.append(String.format("%-20s %14d %14d %8.2f%%%n", "  returns from RAS", returns,
+                          returns - targetBuffer.getCorrectReturnPredictionCount(),
+                          (returns == 0) ? 0.0 : targetBuffer.getCorrectReturnPredictionCount()*100.0/returns));
+         }
+         if (staticBranches == 0 || predictors.length == 0) {
+            return report.toString();
+         }
+         // most executed branches first
+         Integer[] slots = new Integer[staticBranches];
+         int n = 0;
+         for (int s=0; s<branchSlotUsed.length; s++) {
+            if (branchSlotUsed[s]) {
+               slots[n++] = new Integer(s);
+            }
+         }
+         java.util.Arrays.sort(slots, 
+                new java.util.Comparator() {
+                   public int compare(Object a, Object b) {
+                     long countA = branchCounts[((Integer) a).intValue()];
+                     long countB = branchCounts[((Integer) b).intValue()];
+                     return (countA > countB) ? -1 : (countA < countB) ? 1 : 0;
+                  }
+               });
+         report.append("Accuracy by branch, most executed first:\n");
+         report.append(String.format("%-10s %12s %7s", "address", "executed", "taken"));
+         for (int p=0; p<predictors.length; p++) {
+            report.append(String.format(" %20s", predictors[p].getName()));
+         }
+         report.append("\n");
+         for (int i=0; i<slots.length && i<REPORTED_BRANCHES; i++) {
+            int s = slots[i].intValue();
+            long count = branchCounts[s];
+            report.append(String.format("%-10s %12d %6.1f%%", Binary.intToHexString(branchAddresses[s]), count,
+                          (count == 0) ? 0.0 : branchTakenCounts[s]*100.0/count));
+            for (int p=0; p<predictors.length; p++) {
+               long missed = branchMispredictions[s*predictors.length + p];
+               report.append(String.format(" %19.2f%%", (count == 0) ? 0.0 : (count - missed)*100.0/count));
+            }
+            report.append("\n");
+         }
+         return report.toString();
+      }
+   }
@@ -0,0 +1,155 @@
+   package mars.tools;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Branch target buffer (BTB) with a return address stack (RAS), without any display,
+ * evaluated by BranchPredictorEvaluator.  The BTB is a direct-mapped table, indexed 
+ * by word address, of the target each control transfer last went to; the RAS holds
+ * the return addresses of the most recent calls, so returns (<tt>jr $ra</tt>) are 
+ * predicted by popping it rather than from the BTB.  When the RAS overflows, the 
+ * oldest return address is lost; when it is empty, the BTB predicts returns too.
+ */
+ 
+    public class BranchTargetBuffer {
+      private int[] addresses;
+      private int[] targets;
+      private boolean[] valid;
+      private int mask;
+      private int[] returnStack;
+      private int returnStackTop, returnStackSize; // top is index of next push
+      private long predictions, correctPredictions, returnPredictions, correctReturnPredictions;
+   
+   	/**
+   	 * @param entries number of BTB entries, a power of 2
+   	 * @param returnStackDepth number of return addresses the RAS holds
+   	 */
+       public BranchTargetBuffer(int entries, int returnStackDepth) {
+         if (entries <= 0 || (entries & (entries-1)) != 0 || returnStackDepth <= 0) {
+            throw new IllegalArgumentException("invalid branch target buffer size "+entries+":"+returnStackDepth);
+         }
+         addresses = new int[entries];
+         targets = new int[entries];
+         valid = new boolean[entries];
+         mask = entries - 1;
+         returnStack = new int[returnStackDepth];
+      }
+   
+   	/**
+   	 * Create a BTB from a specification <tt>btb[:&lt;entries&gt;[:&lt;RAS depth&gt;]]</tt>;
+   	 * the defaults are 512 and 16.
+   	 * @param specification the specification
+   	 * @return the BTB
+   	 * @throws IllegalArgumentException if the specification is not valid
+   	 */
+       public static BranchTargetBuffer create(String specification) {
+         String[] parts = specification.split(":");
+         if (!parts[0].equalsIgnoreCase("btb") || parts.length > 3) {
+            throw new IllegalArgumentException("invalid branch target buffer "+specification);
+         }
+         try {
+            return new BranchTargetBuffer((parts.length > 1) ? Integer.parseInt(parts[1]) : 512,
+                                          (parts.length > 2) ? Integer.parseInt(parts[2]) : 16);
+         } 
+             catch (NumberFormatException nfe) {
+               throw new IllegalArgumentException("invalid branch target buffer "+specification);
+            }
+      }
+   
+       public String getName() {
+         return "BTB "+targets.length+", RAS "+returnStack.length;
+      }
+   
+   	/**
+   	 * Predict the target of a control transfer that was taken, then learn the actual
+   	 * target.
+   	 * @param address address of the branch or jump instruction
+   	 * @param target address it went to
+   	 * @param isReturn true for a jump through $ra, predicted from the RAS
+   	 * @return true if the target was predicted correctly
+   	 */
+       public boolean predictAndUpdate(int address, int target, boolean isReturn) {
+         boolean correct;
+         int index = (address >>> 2) & mask;
+         if (isReturn && returnStackSize > 0) {
+            returnStackTop = (returnStackTop == 0) ? returnStack.length-1 : returnStackTop-1;
+            returnStackSize--;
+            correct = (returnStack[returnStackTop] == target);
+            returnPredictions++;
+            if (correct) {
+               correctReturnPredictions++;
+            }
+         } 
+         else {
+            correct = valid[index] && addresses[index] == address && targets[index] == target;
+         }
+         predictions++;
+         if (correct) {
+            correctPredictions++;
+         }
+         valid[index] = true;
+         addresses[index] = address;
+         targets[index] = target;
+         return correct;
+      }
+   
+   	/**
+   	 * Push the return address of a call (jal, jalr, bltzal, bgezal) on the RAS.
+   	 * @param returnAddress address the call will return to
+   	 */
+       public void pushReturnAddress(int returnAddress) {
+         returnStack[returnStackTop] = returnAddress;
+         returnStackTop = (returnStackTop + 1) % returnStack.length;
+         if (returnStackSize < returnStack.length) {
+            returnStackSize++;
+         }
+      }
+   
+   	/**
+   	 * @return number of targets predicted, including returns
+   	 */
+       public long getPredictionCount() {
+         return predictions;
+      }
+   
+       public long getCorrectPredictionCount() {
+         return correctPredictions;
+      }
+   
+   	/**
+   	 * @return number of returns predicted from the RAS
+   	 */
+       public long getReturnPredictionCount() {
+         return returnPredictions;
+      }
+   
+       public long getCorrectReturnPredictionCount() {
+         return correctReturnPredictions;
+      }
+   }
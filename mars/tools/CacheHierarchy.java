@@ -0,0 +1,433 @@
+   package mars.tools;
+   import java.io.*;
+   import java.util.*;
+   import mars.mips.hardware.Memory;
+   import mars.simulator.ExecutionHook;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Models a two-level cache hierarchy without any display: separate level 1 
+ * instruction and data caches (L1I, L1D) in front of an optional unified level 2
+ * cache (L2), then memory.  Each cache has its own size, placement, replacement
+ * policy and write policies (write-back or write-through, write-allocate or not).
+ * The hierarchy counts hits, misses and dirty evictions at each level and the reads
+ * and writes that reach memory, and estimates the cycles spent and the average
+ * memory access time (AMAT) from per-level access times.
+ * <p>
+ * The specification is a comma-separated list of <tt>name=value</tt> entries, e.g.
+ * <tt>l1i=64:4,l1d=64:4:2:wt:nwa,l2=512:8:4,cycles=1:10:100</tt>.  A cache value 
+ * is <tt>&lt;blocks&gt;:&lt;words&gt;[:&lt;set size&gt;][:&lt;option&gt;...]</tt>,
+ * the set size in blocks ("full" for fully associative) and each option one of
+ * lru, random, wb (write-back), wt (write-through), wa (write-allocate) and nwa 
+ * (no write-allocate); the defaults are direct mapping, LRU, wb and wa.  The 
+ * <tt>cycles</tt> value gives the time of an L1 hit, an L2 hit and a memory access; 
+ * the default is 1:10:100.  At least one of l1i and l1d is required; without l1i,
+ * instruction fetches are not modeled, and likewise loads and stores without l1d.
+ * <p>
+ * Every access to an L1 cache costs the L1 hit time.  A read miss, or a write miss 
+ * in a write-allocate cache, also costs the time to read the block from L2, plus the 
+ * memory time if it misses there too (with no L2, the memory time).  Writes passed 
+ * down, by write-through or no-allocate write misses and by dirty evictions, are 
+ * assumed buffered and cost no cycles, but are applied to L2 and counted.
+ * <p>
+ * As an ExecutionHook, a hierarchy sees the instruction fetches, loads and stores of
+ * a running MIPS program, so it needs no Observer; memory-mapped I/O accesses are not
+ * cached.  The stand-alone main() instead reads a recorded Dinero "din" trace.
+ */
+ 
+    public class CacheHierarchy extends ExecutionHook {
+      private CacheModel l1i, l1d, l2;
+      private int l1HitCycles = 1, l2HitCycles = 10, memoryCycles = 100;
+      private long fetchCount, loadCount, storeCount;
+      private long memoryReadCount, memoryWriteCount;
+      private long cycleCount;
+   
+   	/**
+   	 * Create the hierarchy in the given specification, with empty caches.
+   	 * @param specification the caches and access times, as described above
+   	 * @throws IllegalArgumentException if the specification is not valid
+   	 */
+       public CacheHierarchy(String specification) {
+         String[] entries = specification.split(",");
+         for (int i=0; i<entries.length; i++) {
+            int equals = entries[i].indexOf('=');
+            if (equals < 0) {
+               throw new IllegalArgumentException("hierarchy entry "+entries[i]+" must be <name>=<value>");
+            }
+            String name = entries[i].substring(0, equals).trim().toLowerCase();
+            String value = entries[i].substring(equals+1).trim();
+            if (name.equals("l1i")) {
+               l1i = parseCache(name, value);
+            } 
+            else if (name.equals("l1d")) {
+               l1d = parseCache(name, value);
+            } 
+            else if (name.equals("l2")) {
+               l2 = parseCache(name, value);
+            } 
+            else if (name.equals("cycles")) {
+               parseCycles(value);
+            } 
+            else {
+               throw new IllegalArgumentException("unknown hierarchy entry "+name);
+            }
+         }
+         if (l1i == null && l1d == null) {
+            throw new IllegalArgumentException("hierarchy needs an l1i or l1d cache");
+         }
+      }
+   
+       private static CacheModel parseCache(String name, String value) {
+         String[] parts = value.split(":");
+         if (parts.length < 2) {
+            throw new IllegalArgumentException(name+" must be <blocks>:<words>[:<set size>][:<options>]");
+         }
+         int blocks = parseSize(parts[0]);
+         int words = parseSize(parts[1]);
+         int setSize = 1;
+         int policy = CacheModel.LRU;
+         boolean writeBack = true, writeAllocate = true;
+         for (int i=2; i<parts.length; i++) {
+            String part = parts[i].toLowerCase();
+            if (part.equals("lru")) {
+               policy = CacheModel.LRU;
+            } 
+            else if (part.equals("random")) {
+               policy = CacheModel.RANDOM;
+            } 
+            else if (part.equals("wb")) {
+               writeBack = true;
+            } 
+            else if (part.equals("wt")) {
+               writeBack = false;
+            } 
+            else if (part.equals("wa")) {
+               writeAllocate = true;
+            } 
+            else if (part.equals("nwa")) {
+               writeAllocate = false;
+            } 
+            else if (i == 2) {
+               setSize = part.equals("full") ? blocks : parseSize(part);
+            } 
+            else {
+               throw new IllegalArgumentException("invalid "+name+" option "+parts[i]);
+            }
+         }
+         if (setSize > blocks) {
+            throw new IllegalArgumentException(name+" set size "+setSize+" exceeds its "+blocks+" blocks");
+         }
+         CacheModel cache = new CacheModel(blocks, words, setSize, policy);
+         cache.setWritePolicy(writeBack, writeAllocate);
+         return cache;
+      }
+   
+       private static int parseSize(String size) {
+         int value;
+         try {
+            value = Integer.parseInt(size);
+         } 
+             catch (NumberFormatException nfe) {
+               throw new IllegalArgumentException("invalid cache size "+size);
+            }
+         if (value <= 0 || (value & (value-1)) != 0) {
+            throw new IllegalArgumentException("cache size "+size+" is not a power of 2");
+         }
+         return value;
+      }
+   
+       private void parseCycles(String value) {
+         String[] parts = value.split(":");
+         if (parts.length != 3) {
+            throw new IllegalArgumentException("cycles must be <L1 hit>:<L2 hit>:<memory>");
+         }
+         int[] cycles = new int[3];
+         for (int i=0; i<3; i++) {
+            try {
+               cycles[i] = Integer.parseInt(parts[i]);
+            } 
+                catch (NumberFormatException nfe) {
+                  cycles[i] = -1;
+               }
+            if (cycles[i] < 0) {
+               throw new IllegalArgumentException("invalid cycle count "+parts[i]);
+            }
+         }
+         l1HitCycles = cycles[0];
+         l2HitCycles = cycles[1];
+         memoryCycles = cycles[2];
+      }
+   
+   	/**
+   	 * Apply an instruction fetch.  Ignored if there is no L1 instruction cache.
+   	 * @param address the instruction address
+   	 */
+       public void fetch(int address) {
+         if (l1i != null) {
+            fetchCount++;
+            accessLevel1(l1i, address, false);
+         }
+      }
+   
+   	/**
+   	 * Apply a load.  Ignored if there is no L1 data cache.
+   	 * @param address the memory address
+   	 */
+       public void load(int address) {
+         if (l1d != null) {
+            loadCount++;
+            accessLevel1(l1d, address, false);
+         }
+      }
+   
+   	/**
+   	 * Apply a store.  Ignored if there is no L1 data cache.
+   	 * @param address the memory address
+   	 */
+       public void store(int address) {
+         if (l1d != null) {
+            storeCount++;
+            accessLevel1(l1d, address, true);
+         }
+      }
+   
+   	// A demand access by the processor to an L1 cache.
+       private void accessLevel1(CacheModel cache, int address, boolean write) {
+         cycleCount += l1HitCycles;
+         boolean hit = write ? cache.write(address) : cache.access(address);
+         if (cache.lastAccessEvictedDirtyBlock()) {
+            writeNextLevel(cache.getLastEvictedAddress());
+         }
+         if (!hit && (!write || cache.isWriteAllocate())) {
+            readNextLevel(address);
+         }
+         if (write && (!cache.isWriteBack() || (!hit && !cache.isWriteAllocate()))) {
+            writeNextLevel(address);
+         }
+      }
+   
+   	// Read a block missing from L1, which the processor waits for.
+       private void readNextLevel(int address) {
+         if (l2 == null) {
+            cycleCount += memoryCycles;
+            memoryReadCount++;
+            return;
+         }
+         cycleCount += l2HitCycles;
+         boolean hit = l2.access(address);
+         if (l2.lastAccessEvictedDirtyBlock()) {
+            memoryWriteCount++;
+         }
+         if (!hit) {
+            cycleCount += memoryCycles;
+            memoryReadCount++;
+         }
+      }
+   
+   	// Write passed down from L1; buffered, so it costs the processor no time.
+       private void writeNextLevel(int address) {
+         if (l2 == null) {
+            memoryWriteCount++;
+            return;
+         }
+         boolean hit = l2.write(address);
+         if (l2.lastAccessEvictedDirtyBlock()) {
+            memoryWriteCount++;
+         }
+         if (!hit && l2.isWriteAllocate()) {
+            memoryReadCount++;
+         }
+         if (!l2.isWriteBack() || (!hit && !l2.isWriteAllocate())) {
+            memoryWriteCount++;
+         }
+      }
+   
+       public void instructionFetched(int address, int binaryStatement) {
+         fetch(address);
+      }
+   
+       public void memoryRead(int address, int length, int value) {
+         if (!Memory.inMemoryMapSegment(address)) {
+            load(address);
+         }
+      }
+   
+       public void memoryWritten(int address, int length, int value) {
+         if (!Memory.inMemoryMapSegment(address)) {
+            store(address);
+         }
+      }
+   
+   	/**
+   	 * @return the L1 instruction cache, or null if not modeled
+   	 */
+       public CacheModel getInstructionCache() {
+         return l1i;
+      }
+   
+   	/**
+   	 * @return the L1 data cache, or null if not modeled
+   	 */
+       public CacheModel getDataCache() {
+         return l1d;
+      }
+   
+   	/**
+   	 * @return the L2 cache, or null if there is none
+   	 */
+       public CacheModel getLevel2Cache() {
+         return l2;
+      }
+   
+       public long getFetchCount() {
+         return fetchCount;
+      }
+   
+       public long getLoadCount() {
+         return loadCount;
+      }
+   
+       public long getStoreCount() {
+         return storeCount;
+      }
+   
+   	/**
+   	 * @return number of blocks read from memory
+   	 */
+       public long getMemoryReadCount() {
+         return memoryReadCount;
+      }
+   
+   	/**
+   	 * @return number of writes to memory, of blocks or (write-through) words
+   	 */
+       public long getMemoryWriteCount() {
+         return memoryWriteCount;
+      }
+   
+   	/**
+   	 * @return estimated cycles spent on all accesses
+   	 */
+       public long getCycleCount() {
+         return cycleCount;
+      }
+   
+   	/**
+   	 * @return estimated average memory access time in cycles, 0 if there were no accesses
+   	 */
+       public double getAverageMemoryAccessTime() {
+         long accesses = fetchCount + loadCount + storeCount;
+         return (accesses == 0) ? 0.0 : (double) cycleCount / accesses;
+      }
+   
+   	/**
+   	 * Results as text: one line per cache after a heading, then memory traffic and timing.
+   	 * @return the report, with a newline ending each line
+   	 */
+       public String getReport() {
+         StringBuilder report = new StringBuilder();
+         report.append("Cache hierarchy: "+fetchCount+" instruction fetches, "+loadCount+" loads, "+storeCount+" stores\n");
+         report.append(String.format("%5s %7s %6s %8s %7s %6s %9s %12s %12s %12s %9s %12s %12s%n",
+                       "level", "blocks", "words", "set size", "policy", "write", "bytes", 
+                       "accesses", "hits", "misses", "hit rate", "writes", "dirty evict"));
+         appendLevel(report, "L1I", l1i);
+         appendLevel(report, "L1D", l1d);
+         appendLevel(report, "L2", l2);
+         report.append("Memory block reads: "+memoryReadCount+"\n");
+         report.append("Memory writes: "+memoryWriteCount+"\n");
+         report.append("Estimated cycles: "+cycleCount+" ("+l1HitCycles+"/"+l2HitCycles+"/"+memoryCycles
+                       +" per L1 hit/L2 hit/memory access)\n");
+         report.append(String.format("Average memory access time: %.2f cycles%n", getAverageMemoryAccessTime()));
+         return report.toString();
+      }
+   
+       private static void appendLevel(StringBuilder report, String name, CacheModel c) {
+         if (c == null) {
+            return;
+         }
+         report.append(String.format("%5s %7d %6d %8d %7s %6s %9d %12d %12d %12d %8.2f%% %12d %12d%n",
+                       name, c.getNumberOfBlocks(), c.getBlockSizeInWords(), c.getSetSizeInBlocks(),
+                       (c.getReplacementPolicy() == CacheModel.RANDOM) ? "Random" : "LRU",
+                       getWritePolicyName(c), c.getCacheSizeInBytes(), c.getAccessCount(), c.getHitCount(),
+                       c.getMissCount(), c.getHitRate()*100, c.getWriteCount(), c.getDirtyEvictionCount()));
+      }
+   
+   	/**
+   	 * Short name of a cache's write policies, e.g. "WB/WA" or "WT/NWA".
+   	 * @param cache the cache
+   	 * @return the name
+   	 */
+       public static String getWritePolicyName(CacheModel cache) {
+         return (cache.isWriteBack() ? "WB" : "WT") + (cache.isWriteAllocate() ? "/WA" : "/NWA");
+      }
+   
+   	/**
+   	 * Run a hierarchy over a recorded Dinero "din" trace and display the report.  Usage:
+   	 * <tt>java mars.tools.CacheHierarchy &lt;specification&gt; &lt;trace file&gt;</tt>.  
+   	 * Each trace line is a label (0 read, 1 write, 2 instruction fetch, ...) and a 
+   	 * hexadecimal address; other labels are skipped.
+   	 */
+       public static void main(String[] args) {
+         if (args.length != 2) {
+            System.out.println("Usage: java mars.tools.CacheHierarchy <specification> <trace file>");
+            return;
+         }
+         try {
+            CacheHierarchy hierarchy = new CacheHierarchy(args[0]);
+            BufferedReader in = new BufferedReader(new FileReader(args[1]), 1 << 16);
+            String line;
+            while ((line = in.readLine()) != null) {
+               StringTokenizer tokens = new StringTokenizer(line);
+               if (tokens.countTokens() < 2) {
+                  continue;
+               }
+               String label = tokens.nextToken();
+               int address = CacheSweep.parseHexAddress(tokens.nextToken());
+               if (label.equals("0")) {
+                  hierarchy.load(address);
+               } 
+               else if (label.equals("1")) {
+                  hierarchy.store(address);
+               } 
+               else if (label.equals("2")) {
+                  hierarchy.fetch(address);
+               }
+            }
+            in.close();
+            System.out.print(hierarchy.getReport());
+         } 
+             catch (IllegalArgumentException e) {
+               System.out.println("Error: "+e.getMessage());
+            }
+             catch (IOException e) {
+               System.out.println("Error reading trace: "+e.getMessage());
+            }
+      }
+   }
@@ -0,0 +1,405 @@
+   package mars.tools;
+   import java.util.Random;
+   import mars.mips.hardware.Memory;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Model of a cache's behavior, independent of any display: it records which memory
+ * blocks the cache holds and counts hits and misses, but stores no memory contents.
+ * Placement is direct mapped (1 block per set), n-way set associative, or fully
+ * associative (1 set), and replacement within a set is LRU or random.  Writes are
+ * write-back or write-through, with or without write-allocate; the model counts the
+ * dirty blocks evicted so a CacheHierarchy can pass them to the next level.  Block
+ * tags, valid and dirty flags and last-use times are kept in primitive arrays indexed
+ * by block number, so an access allocates nothing.  Used by the Data Cache Simulator
+ * tool, and by CacheSweep and CacheHierarchy for command-line runs.
+ * <p>
+ * The number of blocks, block size and set size must be powers of two.  Addresses
+ * are treated as unsigned; each is partitioned as [ tag | set | word | byte ].
+ */
+ 
+    public class CacheModel {
+      /** Replacement policy: replace least recently used block in the set. */
+      public static final int LRU = 0;
+      /** Replacement policy: replace randomly chosen block in the set. */
+      public static final int RANDOM = 1;
+   	
+      private int numberOfBlocks, blockSizeInWords, setSizeInBlocks, numberOfSets;
+      private int replacementPolicy;
+      private boolean writeBack = true, writeAllocate = true;
+      private int blockOffsetBits; // log2 of bytes per block
+      private int setBits; // log2 of number of sets
+      private int[] tags;
+      private boolean[] valid;
+      private boolean[] dirty;
+      private long[] lastAccess; // access count at block's most recent access, for LRU
+      private long accessCount, hitCount, writeCount, writeHitCount, dirtyEvictionCount;
+      private int lastBlock;
+      private boolean lastEvictionDirty;
+      private int lastEvictedAddress;
+      // RNG used for random replacement policy, seeded for reproducible results
+      private Random randu;
+   
+   	/**
+   	 * Create an empty cache.
+   	 * @param numberOfBlocks total number of blocks in the cache
+   	 * @param blockSizeInWords number of memory words in each block
+   	 * @param setSizeInBlocks number of blocks in each set: 1 for direct mapping, numberOfBlocks for fully associative
+   	 * @param replacementPolicy LRU or RANDOM
+   	 * @throws IllegalArgumentException if a size is not a power of two, or set size exceeds number of blocks
+   	 */
+       public CacheModel(int numberOfBlocks, int blockSizeInWords, int setSizeInBlocks, int replacementPolicy) {
+         if (!isPowerOfTwo(numberOfBlocks) || !isPowerOfTwo(blockSizeInWords) || !isPowerOfTwo(setSizeInBlocks)) {
+            throw new IllegalArgumentException("cache block count, block size and set size must be powers of 2");
+         }
+         if (setSizeInBlocks > numberOfBlocks) {
+            throw new IllegalArgumentException("cache set size "+setSizeInBlocks+" exceeds block count "+numberOfBlocks);
+         }
+         this.numberOfBlocks = numberOfBlocks;
+         this.blockSizeInWords = blockSizeInWords;
+         this.setSizeInBlocks = setSizeInBlocks;
+         this.numberOfSets = numberOfBlocks / setSizeInBlocks;
+         this.replacementPolicy = replacementPolicy;
+         this.blockOffsetBits = Integer.numberOfTrailingZeros(blockSizeInWords * Memory.WORD_LENGTH_BYTES);
+         this.setBits = Integer.numberOfTrailingZeros(numberOfSets);
+         this.tags = new int[numberOfBlocks];
+         this.valid = new boolean[numberOfBlocks];
+         this.dirty = new boolean[numberOfBlocks];
+         this.lastAccess = new long[numberOfBlocks];
+         reset();
+      }
+   
+       private static boolean isPowerOfTwo(int n) {
+         return n > 0 && (n & (n - 1)) == 0;
+      }
+   
+   	/**
+   	 * Empty the cache and clear the counts.
+   	 */
+       public void reset() {
+         java.util.Arrays.fill(valid, false);
+         java.util.Arrays.fill(dirty, false);
+         java.util.Arrays.fill(lastAccess, -1);
+         accessCount = 0;
+         hitCount = 0;
+         writeCount = 0;
+         writeHitCount = 0;
+         dirtyEvictionCount = 0;
+         lastBlock = 0;
+         lastEvictionDirty = false;
+         lastEvictedAddress = 0;
+         randu = new Random(0);
+      }
+   
+   	//////////////////////////////////////////////////////////////////////////////
+   	// The memory address is partitioned depending on organization:
+   	//    Direct Mapping:    [ tag | block | word | byte ]
+   	//    Fully Associative: [ tag | word | byte ]
+   	//    Set Associative:   [ tag | set | word | byte ]
+   	//
+   	// Bit lengths of each part are determined as follows:
+   	// Direct Mapping:
+   	//   byte  = log2 of #bytes in a word (typically 4)
+   	//   word  = log2 of #words in a block
+   	//   block = log2 of #blocks in the cache
+   	//   tag   = #bytes in address - (byte+word+block)
+   	// Fully Associative:
+   	//   byte  = log2 of #bytes in a word (typically 4)
+   	//   word  = log2 of #words in a block
+   	//   tag   = #bytes in address - (byte+word)
+   	// Set Associative:
+   	//   byte  = log2 of #bytes in a word (typically 4)
+   	//   word  = log2 of #words in a block
+   	//   set   = log2 of #sets in the cache
+   	//   tag   = #bytes in address - (byte+word+set)
+   	//
+   	// Direct Mapping (1 way set associative):
+   	// The block value for a given address identifies its block index into the cache.
+   	// That's why its called "direct mapped."  This is the only cache block it can
+   	// occupy.  If that cache block is empty or if it is occupied by a different tag,
+   	// this is a MISS.  If that cache block is occupied by the same tag, this is a HIT.
+   	// There is no replacement policy: upon a cache miss of an occupied block, the old
+   	// block is written out (unless write-through) and the new one read in.
+   	// Those actions are not simulated here.
+   	//
+   	// Fully Associative:
+   	// There is one set, and very tag has to be searched before determining hit or miss.
+   	// If tag is matched, it is a hit.  If tag is not matched and there is at least one
+   	// empty block, it is a miss and the new tag will occupy it.  If tag is not matched
+   	// and every block is occupied, it is a miss and one of the occupied blocks will be
+   	// selected for removal and the new tag will replace it.
+   	//
+   	// n-way Set Associative:
+   	// Each set consists of n blocks, and the number of sets in the cache is total number
+   	// of blocks divided by n.  The set bits in the address will identify which set to
+   	// search, and every tag in that set has to be searched before determining hit or miss.
+   	// If tag is matched, it is a hit.  If tag is not matched and there is at least one
+   	// empty block, it is a miss and the new tag will occupy it.  If tag is not matched
+   	// and every block is occupied, it is a miss and one of the occupied blocks will be
+   	// selected for removal and the new tag will replace it.
+   	//
+   	/**
+   	 * Read the given memory address.  On a miss, the address's block is brought into
+   	 * the cache, into an empty block of its set if there is one, otherwise replacing 
+   	 * one chosen by the replacement policy.
+   	 * @param address the memory address
+   	 * @return true if hit, false if miss
+   	 */
+       public boolean access(int address) {
+         return reference(address, false);
+      }
+   
+   	/**
+   	 * Write the given memory address.  A hit marks the block dirty if the cache is
+   	 * write-back.  A miss brings the block in as a read miss does, and marks it dirty
+   	 * if write-back, unless the cache is not write-allocate; then the cache is unchanged.
+   	 * @param address the memory address
+   	 * @return true if hit, false if miss
+   	 */
+       public boolean write(int address) {
+         return reference(address, true);
+      }
+   
+       private boolean reference(int address, boolean write) {
+         accessCount++;
+         if (write) {
+            writeCount++;
+         }
+         lastEvictionDirty = false;
+         int tag = getTag(address);
+         int first = getFirstBlockToSearch(address);
+         int last = first + setSizeInBlocks - 1;
+         int empty = -1;
+         // Will do a sequential instead of associative search!  Blocks are never
+         // invalidated, so the valid blocks of a set are always the first ones.
+         for (int block = first; block <= last; block++) {
+            if (!valid[block]) {
+               empty = block;
+               break;
+            }
+            if (tags[block] == tag) { // it's a hit!
+               lastAccess[block] = accessCount;
+               lastBlock = block;
+               hitCount++;
+               if (write) {
+                  writeHitCount++;
+                  if (writeBack) {
+                     dirty[block] = true;
+                  }
+               }
+               return true;
+            }
+         }
+         if (write && !writeAllocate) {
+            return false;
+         }
+         // It's a miss: use the empty block if there is one, else replace one.
+         int block = empty;
+         if (block < 0) {
+            block = selectBlockToReplace(first, last);
+            if (dirty[block]) {
+               lastEvictionDirty = true;
+               lastEvictedAddress = getBlockAddress(tags[block], block / setSizeInBlocks);
+               dirtyEvictionCount++;
+            }
+         }
+         valid[block] = true;
+         dirty[block] = write && writeBack;
+         tags[block] = tag;
+         lastAccess[block] = accessCount;
+         lastBlock = block;
+         return false;
+      }
+   
+   	// First address of the memory block with given tag in given set.
+       private int getBlockAddress(int tag, int set) {
+         int tagAddress = (blockOffsetBits + setBits >= 32) ? 0 : tag << (blockOffsetBits + setBits);
+         return tagAddress | (set << blockOffsetBits);
+      }
+   
+   	// Call this if all blocks in the set are full.  If the set contains more than one block,
+   	// it will pick one to replace based on the replacement policy.
+       private int selectBlockToReplace(int first, int last) {
+         int replaceBlock = first;
+         if (first != last) {
+            if (replacementPolicy == RANDOM) {
+               replaceBlock = first + randu.nextInt(last - first + 1);
+            } 
+            else {
+               long leastRecentAccess = accessCount; // all of them have to be less than this
+               for (int block = first; block <= last; block++) {
+                  if (lastAccess[block] < leastRecentAccess) {
+                     leastRecentAccess = lastAccess[block];
+                     replaceBlock = block;
+                  }
+               }
+            }
+         }
+         return replaceBlock;
+      }
+   
+   	/**
+   	 * @param address a memory address
+   	 * @return the number of the set that may hold the address
+   	 */
+       public int getSetNumber(int address) {
+         return (address >>> blockOffsetBits) & (numberOfSets - 1);
+      }
+   
+   	/**
+   	 * @param address a memory address
+   	 * @return the tag that identifies the address's block within its set
+   	 */
+       public int getTag(int address) {
+         return (blockOffsetBits + setBits >= 32) ? 0 : address >>> (blockOffsetBits + setBits);
+      }
+   
+   	/**
+   	 * @param address a memory address
+   	 * @return number of the first cache block in the address's set
+   	 */
+       public int getFirstBlockToSearch(int address) {
+         return getSetNumber(address) * setSizeInBlocks;
+      }
+   
+   	/**
+   	 * @param address a memory address
+   	 * @return number of the last cache block in the address's set
+   	 */
+       public int getLastBlockToSearch(int address) {
+         return getFirstBlockToSearch(address) + setSizeInBlocks - 1;
+      }
+   
+   	/**
+   	 * Set the write policies.  Blocks already in the cache are not affected.
+   	 * @param writeBack true for write-back, false for write-through
+   	 * @param writeAllocate true to bring the block in on a write miss, false to write around the cache
+   	 */
+       public void setWritePolicy(boolean writeBack, boolean writeAllocate) {
+         this.writeBack = writeBack;
+         this.writeAllocate = writeAllocate;
+      }
+   
+       public boolean isWriteBack() {
+         return writeBack;
+      }
+   
+       public boolean isWriteAllocate() {
+         return writeAllocate;
+      }
+   
+   	/**
+   	 * Whether the most recent access evicted a dirty block, which a write-back cache
+   	 * must write to the next level of memory.
+   	 * @return true if a dirty block was evicted
+   	 */
+       public boolean lastAccessEvictedDirtyBlock() {
+         return lastEvictionDirty;
+      }
+   
+   	/**
+   	 * @return first address of the dirty block evicted by the most recent access, if any
+   	 */
+       public int getLastEvictedAddress() {
+         return lastEvictedAddress;
+      }
+   
+   	/**
+   	 * Change the replacement policy.  Blocks already in the cache are not affected.
+   	 * @param replacementPolicy LRU or RANDOM
+   	 */
+       public void setReplacementPolicy(int replacementPolicy) {
+         this.replacementPolicy = replacementPolicy;
+      }
+   
+       public int getReplacementPolicy() {
+         return replacementPolicy;
+      }
+   
+       public int getNumberOfBlocks() {
+         return numberOfBlocks;
+      }
+   
+       public int getBlockSizeInWords() {
+         return blockSizeInWords;
+      }
+   
+       public int getSetSizeInBlocks() {
+         return setSizeInBlocks;
+      }
+   
+       public int getNumberOfSets() {
+         return numberOfSets;
+      }
+   
+       public int getCacheSizeInBytes() {
+         return numberOfBlocks * blockSizeInWords * Memory.WORD_LENGTH_BYTES;
+      }
+   
+   	/**
+   	 * Block number (0 to number of blocks - 1) used by the most recent access: the block
+   	 * that held the address on a hit, or the block it was brought into on a miss.
+   	 * @return the block number
+   	 */
+       public int getLastBlock() {
+         return lastBlock;
+      }
+   
+       public long getAccessCount() {
+         return accessCount;
+      }
+   
+       public long getHitCount() {
+         return hitCount;
+      }
+   
+       public long getMissCount() {
+         return accessCount - hitCount;
+      }
+   
+       public long getWriteCount() {
+         return writeCount;
+      }
+   
+       public long getWriteHitCount() {
+         return writeHitCount;
+      }
+   
+       public long getDirtyEvictionCount() {
+         return dirtyEvictionCount;
+      }
+   
+   	/**
+   	 * @return hits as a fraction of accesses, 0.0 if there have been no accesses
+   	 */
+       public double getHitRate() {
+         return (accessCount == 0) ? 0.0 : hitCount / (double) accessCount;
+      }
+   }
@@ -0,0 +1,229 @@
+   package mars.tools;
+   import java.io.*;
+   import java.util.*;
+   import mars.mips.hardware.Memory;
+   import mars.simulator.ExecutionHook;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Evaluates many data cache configurations in one pass over a stream of memory
+ * accesses, without any display.  The configurations are all combinations of the
+ * block counts, block sizes, set sizes and replacement policies in a specification
+ * such as <tt>8,16,32:1,4:1,2,full:lru,random</tt>, whose colon-separated parts are:
+ * number of blocks, block size in words, set size in blocks ("full" for fully 
+ * associative) and replacement policy.  Trailing parts may be omitted; the defaults 
+ * are direct mapping and LRU.  Combinations whose set size exceeds the number of
+ * blocks are skipped.
+ * <p>
+ * As an ExecutionHook, a sweep sees the memory accesses of a running MIPS program.
+ * Like the Data Cache Simulator tool it counts those from the data segment base 
+ * through the stack base.  The stand-alone main() instead reads a recorded address trace.
+ */
+ 
+    public class CacheSweep extends ExecutionHook {
+      private CacheModel[] caches;
+      private int lowAddress, highAddress;
+   
+   	/**
+   	 * Create the caches in the given specification, empty.
+   	 * @param specification the configurations, as described above
+   	 * @throws IllegalArgumentException if the specification is not valid
+   	 */
+       public CacheSweep(String specification) {
+         String[] parts = specification.split(":");
+         if (parts.length < 2 || parts.length > 4) {
+            throw new IllegalArgumentException("cache specification must be <blocks>:<words>[:<set sizes>[:<policies>]]");
+         }
+         int[] blockCounts = parseSizes(parts[0], false);
+         int[] blockSizes = parseSizes(parts[1], false);
+         int[] setSizes = (parts.length > 2) ? parseSizes(parts[2], true) : new int[] { 1 };
+         int[] policies = (parts.length > 3) ? parsePolicies(parts[3]) : new int[] { CacheModel.LRU };
+         ArrayList list = new ArrayList();
+         for (int b=0; b<blockCounts.length; b++) {
+            for (int w=0; w<blockSizes.length; w++) {
+               for (int s=0; s<setSizes.length; s++) {
+                  int setSize = (setSizes[s] == 0) ? blockCounts[b] : setSizes[s];
+                  if (setSize > blockCounts[b]) {
+                     continue;
+                  }
+                  for (int p=0; p<policies.length; p++) {
+                     list.add(new CacheModel(blockCounts[b], blockSizes[w], setSize, policies[p]));
+                  }
+               }
+            }
+         }
+         if (list.size() == 0) {
+            throw new IllegalArgumentException("cache specification "+specification+" has no valid configuration");
+         }
+         caches = (CacheModel[]) list.toArray(new CacheModel[list.size()]);
+         lowAddress = Memory.dataSegmentBaseAddress;
+         highAddress = Memory.stackBaseAddress + Memory.WORD_LENGTH_BYTES - 1;
+      }
+   
+   	// Comma-separated list of powers of two; "full" is returned as 0 if allowed.
+       private static int[] parseSizes(String list, boolean fullAllowed) {
+         String[] items = list.split(",");
+         int[] sizes = new int[items.length];
+         for (int i=0; i<items.length; i++) {
+            if (fullAllowed && items[i].equalsIgnoreCase("full")) {
+               sizes[i] = 0;
+               continue;
+            }
+            try {
+               sizes[i] = Integer.parseInt(items[i]);
+            } 
+                catch (NumberFormatException nfe) {
+                  throw new IllegalArgumentException("invalid cache size "+items[i]);
+               }
+            if (sizes[i] <= 0 || (sizes[i] & (sizes[i]-1)) != 0) {
+               throw new IllegalArgumentException("cache size "+items[i]+" is not a power of 2");
+            }
+         }
+         return sizes;
+      }
+   
+       private static int[] parsePolicies(String list) {
+         String[] items = list.split(",");
+         int[] policies = new int[items.length];
+         for (int i=0; i<items.length; i++) {
+            if (items[i].equalsIgnoreCase("lru")) {
+               policies[i] = CacheModel.LRU;
+            } 
+            else if (items[i].equalsIgnoreCase("random")) {
+               policies[i] = CacheModel.RANDOM;
+            } 
+            else {
+               throw new IllegalArgumentException("invalid cache replacement policy "+items[i]);
+            }
+         }
+         return policies;
+      }
+   
+   	/**
+   	 * Apply one memory access to every cache.
+   	 * @param address the memory address
+   	 */
+       public void access(int address) {
+         for (int i=0; i<caches.length; i++) {
+            caches[i].access(address);
+         }
+      }
+   
+       public void memoryRead(int address, int length, int value) {
+         if (address >= lowAddress && address <= highAddress) {
+            access(address);
+         }
+      }
+   
+       public void memoryWritten(int address, int length, int value) {
+         if (address >= lowAddress && address <= highAddress) {
+            access(address);
+         }
+      }
+   
+   	/**
+   	 * @return the caches, in the order of the specification's combinations
+   	 */
+       public CacheModel[] getCaches() {
+         return caches;
+      }
+   
+   	/**
+   	 * @return number of memory accesses applied to each cache
+   	 */
+       public long getAccessCount() {
+         return caches[0].getAccessCount();
+      }
+   
+   	/**
+   	 * Results as text, one line per configuration after a heading.
+   	 * @return the report, with a newline ending each line
+   	 */
+       public String getReport() {
+         StringBuilder report = new StringBuilder();
+         report.append("Cache sweep of "+getAccessCount()+" memory accesses\n");
+         report.append(String.format("%8s %8s %8s %8s %10s %12s %12s %9s%n", 
+                       "blocks", "words", "set size", "policy", "bytes", "hits", "misses", "hit rate"));
+         for (int i=0; i<caches.length; i++) {
+            CacheModel c = caches[i];
+            report.append(String.format("%8d %8d %8d %8s %10d %12d %12d %8.2f%%%n",
+                          c.getNumberOfBlocks(), c.getBlockSizeInWords(), c.getSetSizeInBlocks(),
+                          (c.getReplacementPolicy() == CacheModel.RANDOM) ? "Random" : "LRU",
+                          c.getCacheSizeInBytes(), c.getHitCount(), c.getMissCount(), c.getHitRate()*100));
+         }
+         return report.toString();
+      }
+   
+   	/**
+   	 * Run a sweep over a recorded address trace and display the report.  Usage:
+   	 * <tt>java mars.tools.CacheSweep &lt;specification&gt; &lt;trace file&gt;</tt>.  The
+   	 * trace has one access per line, either a hexadecimal address or a Dinero "din"
+   	 * record: a label (0 read, 1 write, 2 instruction fetch, ...) and a hexadecimal 
+   	 * address.  Only reads and writes are applied; every address in the trace is used.
+   	 */
+       public static void main(String[] args) {
+         if (args.length != 2) {
+            System.out.println("Usage: java mars.tools.CacheSweep <specification> <trace file>");
+            return;
+         }
+         try {
+            CacheSweep sweep = new CacheSweep(args[0]);
+            BufferedReader in = new BufferedReader(new FileReader(args[1]), 1 << 16);
+            String line;
+            while ((line = in.readLine()) != null) {
+               StringTokenizer tokens = new StringTokenizer(line);
+               if (tokens.countTokens() == 1) {
+                  sweep.access(parseHexAddress(tokens.nextToken()));
+               } 
+               else if (tokens.countTokens() >= 2) {
+                  String label = tokens.nextToken();
+                  if (label.equals("0") || label.equals("1")) {
+                     sweep.access(parseHexAddress(tokens.nextToken()));
+                  }
+               }
+            }
+            in.close();
+            System.out.print(sweep.getReport());
+         } 
+             catch (IllegalArgumentException e) {
+               System.out.println("Error: "+e.getMessage());
+            }
+             catch (IOException e) {
+               System.out.println("Error reading trace: "+e.getMessage());
+            }
+      }
+   
+       static int parseHexAddress(String address) {
+         if (address.startsWith("0x") || address.startsWith("0X")) {
+            address = address.substring(2);
+         }
+         return (int) Long.parseLong(address, 16);
+      }
+   }
@@ -9,8 +9,9 @@ import javax.swing.Timer;
 import mars.Globals;
 import mars.mips.hardware.AddressErrorException;
 import mars.mips.hardware.Coprocessor0;
+import mars.mips.hardware.DeviceBus;
 import mars.mips.hardware.Memory;
-import mars.mips.hardware.MemoryAccessNotice;
+import mars.mips.hardware.MemoryMappedDevice;
 import mars.simulator.Exceptions;
 @SuppressWarnings("serial")
 /* Add these two lines in exceptions.java file
@@ -44,7 +45,6 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
 	private static boolean KeyboardInterruptOnOff=false;
 	// Counter
 	private static int CounterValueMax=30; 
-	private static int CounterValue=CounterValueMax;
 	private static boolean CounterInterruptOnOff=false;
 	private static OneSecondCounter SecondCounter;
 
@@ -60,36 +60,38 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
 	public String getName() {
 		return "Digital Lab Sim";
 	}
+	// The command bytes 0xFFFF0010 to 0xFFFF0013 form one word, which is attached to the device
+	// on the DeviceBus instead of observing memory.
 	protected void addAsObserver(){
-    	addAsObserver(IN_ADRESS_DISPLAY_1, IN_ADRESS_DISPLAY_1);
-    	addAsObserver(Memory.textBaseAddress, Memory.textLimitAddress);
+    	attachDevice(device, IN_ADRESS_DISPLAY_1, IN_ADRESS_DISPLAY_1);
     }
-	public void update(Observable ressource, Object accessNotice){
-    	MemoryAccessNotice notice = (MemoryAccessNotice) accessNotice;
-    	int address=notice.getAddress();
-    	char value=(char)notice.getValue();
-    	if(address == IN_ADRESS_DISPLAY_1)
-    			updateSevenSegment(1, value);
-    	else
-    		if  (address == IN_ADRESS_DISPLAY_2)
-    			updateSevenSegment(0, value);
-    		else
-    			if (address == IN_ADRESS_HEXA_KEYBOARD)
-    				updateHexaKeyboard(value);
-    			else
-    				if (address == IN_ADRESS_COUNTER)
-    					updateOneSecondCounter(value);
-    	if  (CounterInterruptOnOff)
-    		if (CounterValue >0){
-    			CounterValue--;
-    		}
-    		else{
-    			CounterValue=CounterValueMax;
-    			if((Coprocessor0.getValue(Coprocessor0.STATUS) & 2)==0){
-    				mars.simulator.Simulator.externalInterruptingDevice = /*Exceptions.*/EXTERNAL_INTERRUPT_TIMER;
-    			}
-    		}
-	}
+	protected void deleteAsObserver(){
+    	DeviceBus.detach(device);
+    }
+	// Called directly for MIPS writes to the command bytes.  The counter asks to be woken
+	// every CounterValueMax instructions while its interrupt is enabled.
+	private final MemoryMappedDevice device = new MemoryMappedDevice(){
+		public void deviceWritten(int address, int length, int intValue){
+	    	char value=(char)intValue;
+	    	if(address == IN_ADRESS_DISPLAY_1)
+	    			updateSevenSegment(1, value);
+	    	else
+	    		if  (address == IN_ADRESS_DISPLAY_2)
+	    			updateSevenSegment(0, value);
+	    		else
+	    			if (address == IN_ADRESS_HEXA_KEYBOARD)
+	    				updateHexaKeyboard(value);
+	    			else
+	    				if (address == IN_ADRESS_COUNTER)
+	    					updateOneSecondCounter(value);
+		}
+		public void wakeUp(){
+			if((Coprocessor0.getValue(Coprocessor0.STATUS) & 2)==0){
+				raiseInterrupt(/*Exceptions.*/EXTERNAL_INTERRUPT_TIMER);
+			}
+			DeviceBus.wakeUpAfter(this, CounterValueMax);
+		}
+	};
 	protected void reset(){
     	sevenSegPanel.resetSevenSegment();
     	hexaKeyPanel.resetHexaKeyboard();
@@ -338,10 +340,11 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
     public void updateOneSecondCounter(char value) {
     	if (value !=0){
     		CounterInterruptOnOff=true;
-    		CounterValue=CounterValueMax;
+    		DeviceBus.wakeUpAfter(device, CounterValueMax);
     	}
     	else{
     		CounterInterruptOnOff=false;
+    		DeviceBus.cancelWakeUp(device);
     	}
     }
     public class OneSecondCounter{
@@ -350,7 +353,7 @@ public class DigitalLabSim extends AbstractMarsToolAndApplication {
     	}
  	    public void resetOneSecondCounter(){
 	    	CounterInterruptOnOff=false;
-	    	CounterValue=CounterValueMax;
+	    	DeviceBus.cancelWakeUp(device);
 	    }
     }
 }
\ No newline at end of file
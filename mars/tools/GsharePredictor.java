@@ -0,0 +1,71 @@
+   package mars.tools;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Gshare branch predictor: a table of 2-bit saturating counters indexed by the 
+ * branch's word address XOR the global history of recent branch outcomes, so a 
+ * branch can be predicted differently depending on the path that led to it.
+ */
+ 
+    public class GsharePredictor extends BranchPredictor {
+      private byte[] counters;
+      private int mask;
+      private int historyBits, historyMask;
+      private int history; // most recent outcome in bit 0, 1 for taken
+   
+   	/**
+   	 * @param entries number of counters, a power of 2
+   	 * @param historyBits number of branch outcomes in the global history, at most 31
+   	 */
+       public GsharePredictor(int entries, int historyBits) {
+         if (historyBits > 31) {
+            throw new IllegalArgumentException("gshare history is at most 31 bits");
+         }
+         counters = new byte[entries];
+         java.util.Arrays.fill(counters, (byte) 1);
+         mask = entries - 1;
+         this.historyBits = historyBits;
+         historyMask = (1 << historyBits) - 1;
+      }
+   
+       public String getName() {
+         return "gshare "+counters.length+"/"+historyBits;
+      }
+   
+       public boolean predict(int address) {
+         return counters[((address >>> 2) ^ history) & mask] >= 2;
+      }
+   
+       public void update(int address, boolean taken) {
+         int index = ((address >>> 2) ^ history) & mask;
+         counters[index] = (byte) count(counters[index], taken, 3);
+         history = ((history << 1) | (taken ? 1 : 0)) & historyMask;
+      }
+   }
@@ -0,0 +1,365 @@
+   package mars.tools;
+   import java.io.*;
+   import mars.mips.hardware.Coprocessor0;
+   import mars.mips.hardware.DeviceBus;
+   import mars.mips.hardware.Memory;
+   import mars.mips.hardware.MemoryMappedDevice;
+   import mars.simulator.Exceptions;
+   import mars.util.Binary;
+   import mars.util.SystemIO;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * GUI-free stand-ins for the memory-mapped I/O tools, so MMIO programs can be run
+ * from the command line.  The devices are given by a comma-separated specification
+ * such as <tt>keyboard=input.txt:100,display=-:5,segments=lab.txt</tt>:
+ * <ul>
+ * <li><tt>keyboard[=&lt;file&gt;][:&lt;latency&gt;]</tt> -- the Receiver Control and Data
+ * registers of the Keyboard and Display MMIO Simulator.  Characters come from the file,
+ * or standard input if omitted or <tt>-</tt>.  Each becomes ready &lt;latency&gt;
+ * instructions (default 0) after the program reads the one before.</li>
+ * <li><tt>display[=&lt;file&gt;][:&lt;delay&gt;]</tt> -- the Transmitter Control and Data
+ * registers.  Characters go to the file, or standard output if omitted or <tt>-</tt>.
+ * The transmitter is ready again &lt;delay&gt; instructions (default 5) after each one.</li>
+ * <li><tt>segments[=&lt;file&gt;]</tt> -- the two seven-segment displays of the Digital Lab
+ * Sim.  Each byte written to them is recorded as a line giving the address and the
+ * byte, e.g. <tt>0xffff0010 0x0000003f</tt>.</li>
+ * </ul>
+ * Device output to standard output goes through SystemIO, so it counts against the
+ * output limit along with the print syscalls.
+ * Delays are counted in executed instructions, not host time, so runs are reproducible.
+ * As with the tools, interrupts are raised when the Interrupt-Enable bit of a control
+ * register is set.  The devices do no work between accesses and have no threads of
+ * their own.
+ */
+ 
+    public class HeadlessDevices {
+      private static final int DEFAULT_LATENCY = 0;
+      private static final int DEFAULT_DELAY = 5;
+      private static final String STANDARD_STREAM = "-";
+   
+      private String keyboardFile, displayFile, segmentsFile;
+      private int keyboardLatency = DEFAULT_LATENCY;
+      private int displayDelay = DEFAULT_DELAY;
+      private Keyboard keyboard;
+      private Display display;
+      private Segments segments;
+   
+   	/**
+   	 * Create the devices in the given specification, not yet attached.
+   	 * @param specification the devices, as described above
+   	 * @throws IllegalArgumentException if the specification is not valid
+   	 */
+       public HeadlessDevices(String specification) {
+         String[] items = specification.split(",");
+         for (int i=0; i<items.length; i++) {
+            String name = items[i];
+            String file = STANDARD_STREAM;
+            int count = -1;
+            int colon = name.lastIndexOf(':');
+            if (colon >= 0 && isNumber(name.substring(colon+1))) {
+               count = Integer.parseInt(name.substring(colon+1));
+               name = name.substring(0, colon);
+            }
+            int equals = name.indexOf('=');
+            if (equals >= 0) {
+               file = name.substring(equals+1);
+               name = name.substring(0, equals);
+               if (file.length() == 0) {
+                  throw new IllegalArgumentException("missing file name for "+name);
+               }
+            }
+            if (name.equalsIgnoreCase("keyboard") && keyboardFile == null) {
+               keyboardFile = file;
+               if (count >= 0) keyboardLatency = count;
+            } 
+            else if (name.equalsIgnoreCase("display") && displayFile == null) {
+               displayFile = file;
+               if (count >= 0) displayDelay = count;
+            } 
+            else if (name.equalsIgnoreCase("segments") && segmentsFile == null && count < 0) {
+               segmentsFile = file;
+            } 
+            else {
+               throw new IllegalArgumentException("invalid device "+items[i]);
+            }
+         }
+      }
+   
+       private static boolean isNumber(String s) {
+         if (s.length() == 0) {
+            return false;
+         }
+         for (int i=0; i<s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) {
+               return false;
+            }
+         }
+         return true;
+      }
+   
+   	/**
+   	 * Open the devices' files and attach the devices to their MMIO registers.  Call
+   	 * once the program is loaded, before it runs.
+   	 * @throws IOException if a file cannot be opened
+   	 */
+       public void attach() throws IOException {
+         try {
+            if (keyboardFile != null) {
+               InputStream in = keyboardFile.equals(STANDARD_STREAM) ? null 
+                                : new BufferedInputStream(new FileInputStream(keyboardFile));
+               keyboard = new Keyboard(in, keyboardLatency);
+            }
+            if (displayFile != null) {
+               display = new Display(openOutput(displayFile), displayDelay);
+            }
+            if (segmentsFile != null) {
+               OutputStream out = openOutput(segmentsFile);
+               segments = new Segments((out == null) ? null : new PrintStream(out));
+            }
+         } 
+             catch (IOException e) {
+               detach();
+               throw e;
+            }
+         if (keyboard != null) {
+            keyboard.attach();
+         }
+         if (display != null) {
+            display.attach();
+         }
+         if (segments != null) {
+            segments.attach();
+         }
+      }
+   
+   	// Null for standard output, which the devices write through SystemIO like the print
+   	// syscalls, so it stays in order with their output and counts against its limit.
+       private static OutputStream openOutput(String file) throws IOException {
+         return file.equals(STANDARD_STREAM) ? null 
+                : new BufferedOutputStream(new FileOutputStream(file));
+      }
+   
+   	/**
+   	 * Detach the devices, flush their output and close their files.
+   	 */
+       public void detach() {
+         if (keyboard != null) {
+            DeviceBus.detach(keyboard);
+            keyboard.close();
+            keyboard = null;
+         }
+         if (display != null) {
+            DeviceBus.detach(display);
+            display.close();
+            display = null;
+         }
+         if (segments != null) {
+            DeviceBus.detach(segments);
+            segments.close();
+            segments = null;
+         }
+      }
+   
+   	// True if an interrupt may be raised for the given control register: its
+   	// Interrupt-Enable bit and the Coprocessor0 Status Interrupt Enable bit are set,
+   	// and the Exception Level bit is clear.
+       private static boolean isInterruptEnabled(int control) {
+         int status = Coprocessor0.getValue(Coprocessor0.STATUS);
+         return (control & 2) != 0 && (status & 2) == 0 && (status & 1) == 1;
+      }
+   
+       private static void close(Closeable stream) {
+         if (stream == System.in || stream == System.out) {
+            return;
+         }
+         try {
+            stream.close();
+         } 
+             catch (IOException e) {
+            }
+      }
+   
+   	//////////////////////////////////////////////////////////////////////
+   	// Keyboard: the next character is stored in Receiver Data and the Ready bit set
+   	// when the device wakes up.  Reading Receiver Data clears the Ready bit and
+   	// starts the latency for the next character.  Nothing happens after end of file.
+   	// Standard input is read a character at a time through SystemIO, which the read 
+   	// syscalls share, so the keyboard and the syscalls consume it in turn.
+   	
+       private static class Keyboard extends MemoryMappedDevice {
+         private InputStream in; // null for standard input
+         private int latency;
+         private int receiverControl, receiverData;
+      
+          Keyboard(InputStream in, int latency) {
+            this.in = in;
+            this.latency = latency;
+         }
+      
+          void attach() {
+            receiverControl = Memory.memoryMapBaseAddress;
+            receiverData = Memory.memoryMapBaseAddress + 4;
+            setRegister(receiverControl, getRegister(receiverControl) & 2);
+            DeviceBus.attach(this, receiverData, receiverData);
+            DeviceBus.wakeUpAfter(this, latency);
+         }
+      
+          public void deviceRead(int address, int length) {
+            int control = getRegister(receiverControl);
+            if ((control & 1) != 0) {
+               setRegister(receiverControl, control & 2);
+               DeviceBus.wakeUpAfter(this, latency);
+            }
+         }
+      
+          public void wakeUp() {
+            int character;
+            try {
+               character = (in == null) ? SystemIO.readStandardInputCharacter() : in.read();
+            } 
+                catch (IOException e) {
+                  character = -1;
+               }
+            if (character < 0) {
+               return;
+            }
+            int control = getRegister(receiverControl) | 1;
+            setRegister(receiverData, character);
+            setRegister(receiverControl, control);
+            if (isInterruptEnabled(control)) {
+               raiseInterrupt(Exceptions.EXTERNAL_INTERRUPT_KEYBOARD);
+            }
+         }
+      
+          void close() {
+            if (in != null) {
+               HeadlessDevices.close(in);
+            }
+         }
+      }
+   
+   	//////////////////////////////////////////////////////////////////////
+   	// Display: a character stored to Transmitter Data while the Ready bit is set is
+   	// written out at once, and the Ready bit is cleared until the device wakes up.
+   	
+       private static class Display extends MemoryMappedDevice {
+         private OutputStream out; // null for standard output
+         private int delay;
+         private int transmitterControl, transmitterData;
+      
+          Display(OutputStream out, int delay) {
+            this.out = out;
+            this.delay = delay;
+         }
+      
+          void attach() {
+            transmitterControl = Memory.memoryMapBaseAddress + 8;
+            transmitterData = Memory.memoryMapBaseAddress + 12;
+            setRegister(transmitterControl, getRegister(transmitterControl) | 1);
+            DeviceBus.attach(this, transmitterData, transmitterData);
+         }
+      
+          public void deviceWritten(int address, int length, int value) {
+            int control = getRegister(transmitterControl);
+            if ((control & 1) == 0 || address != transmitterData) {
+               return;
+            }
+            if (out == null) {
+               SystemIO.printString(new Character((char) (value & 0xff)).toString());
+            } 
+            else {
+               try {
+                  out.write(value & 0xff);
+               } 
+                   catch (IOException e) {
+                  }
+            }
+            setRegister(transmitterControl, control & 2);
+            DeviceBus.wakeUpAfter(this, delay);
+         }
+      
+          public void wakeUp() {
+            int control = getRegister(transmitterControl) | 1;
+            setRegister(transmitterControl, control);
+            if (isInterruptEnabled(control)) {
+               raiseInterrupt(Exceptions.EXTERNAL_INTERRUPT_DISPLAY);
+            }
+         }
+      
+          void close() {
+            if (out != null) {
+               try {
+                  out.flush();
+               } 
+                   catch (IOException e) {
+                  }
+               HeadlessDevices.close(out);
+            }
+         }
+      }
+   
+   	//////////////////////////////////////////////////////////////////////
+   	// Seven-segment displays: bytes stored to the two display addresses are recorded.
+   	
+       private static class Segments extends MemoryMappedDevice {
+         private PrintStream out; // null for standard output
+         private int display1, display2;
+      
+          Segments(PrintStream out) {
+            this.out = out;
+         }
+      
+          void attach() {
+            display1 = Memory.memoryMapBaseAddress + 0x10;
+            display2 = Memory.memoryMapBaseAddress + 0x11;
+            DeviceBus.attach(this, display1, display1);
+         }
+      
+          public void deviceWritten(int address, int length, int value) {
+            if (address == display1 || address == display2) {
+               String line = Binary.intToHexString(address)+" "+Binary.intToHexString(value & 0xff);
+               if (out == null) {
+                  SystemIO.printString(line+"\n");
+               } 
+               else {
+                  out.println(line);
+               }
+            }
+         }
+      
+          void close() {
+            if (out != null) {
+               out.flush();
+               HeadlessDevices.close(out);
+            }
+         }
+      }
+   }
@@ -0,0 +1,109 @@
+   package mars.tools;
+   import java.util.IdentityHashMap;
+   import mars.ProgramStatement;
+   import mars.mips.instructions.BasicInstruction;
+   import mars.simulator.ExecutionHook;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Counts the instructions a MIPS program executes, by category, for the Instruction
+ * Counter and Instruction Statistics tools.  As an ExecutionHook it is called directly
+ * by the simulator with each decoded statement, so no memory notices are involved.
+ * The category of each BasicInstruction is computed once, by getCategory(), and
+ * remembered.  The counts are plain ints updated by the simulator thread; the tools
+ * read them from the GUI thread at a fixed refresh rate rather than after every
+ * instruction.
+ */
+ 
+    public abstract class InstructionCategoryCounter extends ExecutionHook {
+      private IdentityHashMap categories = new IdentityHashMap();
+      private int[] counts;
+      private int total;
+   
+   	/**
+   	 * Create a counter with all counts zero.
+   	 * @param numberOfCategories the number of categories, numbered from 0
+   	 */
+       protected InstructionCategoryCounter(int numberOfCategories) {
+         counts = new int[numberOfCategories];
+      }
+   
+   	/**
+   	 * Determine the category of an instruction.  Called once for each instruction.
+   	 * @param instruction the instruction
+   	 * @param binaryStatement machine code of a statement using it
+   	 * @return the category, from 0 to the number of categories - 1, or -1 to count
+   	 * the instruction only in the total
+   	 */
+       protected abstract int getCategory(BasicInstruction instruction, int binaryStatement);
+   
+       public void instructionFetched(int address, ProgramStatement statement) {
+         BasicInstruction instruction = (BasicInstruction) statement.getInstruction();
+         if (instruction == null) {
+            return; // undefined instruction; the simulator raises an exception
+         }
+         Integer category = (Integer) categories.get(instruction);
+         if (category == null) {
+            category = new Integer(getCategory(instruction, statement.getBinaryStatement()));
+            categories.put(instruction, category);
+         }
+         if (category.intValue() >= 0) {
+            counts[category.intValue()]++;
+         }
+         total++;
+      }
+   
+   	/**
+   	 * Get the number of instructions executed in a category.
+   	 * @param category the category
+   	 * @return the count
+   	 */
+       public int getCount(int category) {
+         return counts[category];
+      }
+   
+   	/**
+   	 * Get the number of instructions executed in all.
+   	 * @return the count
+   	 */
+       public int getTotal() {
+         return total;
+      }
+   
+   	/**
+   	 * Set all counts to zero.
+   	 */
+       public void reset() {
+         for (int i=0; i<counts.length; i++) {
+            counts[i] = 0;
+         }
+         total = 0;
+      }
+   }
@@ -29,7 +29,8 @@ package mars.tools;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
 import java.awt.Insets;
-import java.util.Observable;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 
 import javax.swing.JComponent;
 import javax.swing.JLabel;
@@ -37,13 +38,9 @@ import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.JTextField;
 
-import mars.ProgramStatement;
-import mars.mips.hardware.AccessNotice;
-import mars.mips.hardware.AddressErrorException;
-import mars.mips.hardware.Memory;
-import mars.mips.hardware.MemoryAccessNotice;
 import mars.mips.instructions.BasicInstruction;
 import mars.mips.instructions.BasicInstructionFormat;
+import mars.simulator.ExecutionHook;
 
 /**
  * 
@@ -58,11 +55,41 @@ import mars.mips.instructions.BasicInstructionFormat;
 //@SuppressWarnings("serial")
 public class InstructionCounter extends AbstractMarsToolAndApplication {
     private static String name    = "Instruction Counter";
-    private static String version = "Version 1.0 (Felipe Lessa)";
+    private static String version = "Version 1.1 (Felipe Lessa)";
     private static String heading = "Counting the number of instructions executed";
     
     /**
-     * Number of instructions executed until now.
+     * Instruction types counted.
+     */
+    private static final int TYPE_R = 0;
+    private static final int TYPE_I = 1;
+    private static final int TYPE_J = 2;
+    
+    /**
+     * Interval at which the display is refreshed from the counter while connected.
+     */
+    private static final int REFRESH_INTERVAL_MILLIS = 100;
+    
+    /**
+     * Counts the instructions executed, in all and of each type.  The simulator 
+     * calls it directly for each instruction executed.
+     */
+    private InstructionCategoryCounter categoryCounter = new InstructionCategoryCounter(3) {
+		protected int getCategory(BasicInstruction instr, int binaryStatement) {
+			BasicInstructionFormat format = instr.getInstructionFormat();
+			if (format == BasicInstructionFormat.R_FORMAT)
+				return TYPE_R;
+			else if (format == BasicInstructionFormat.I_FORMAT
+					|| format == BasicInstructionFormat.I_BRANCH_FORMAT)
+				return TYPE_I;
+			else if (format == BasicInstructionFormat.J_FORMAT)
+				return TYPE_J;
+			return -1;
+		}
+	};
+    
+    /**
+     * Number of instructions executed until now, as of the last display refresh.
      */
     protected int counter = 0;
     private JTextField counterField;
@@ -88,13 +115,10 @@ public class InstructionCounter extends AbstractMarsToolAndApplication {
 	private JTextField counterJField;
 	private JProgressBar progressbarJ;
     
-    
     /**
-     * The last address we saw. We ignore it because the only way for a
-     * program to execute twice the same instruction is to enter an infinite
-     * loop, which is not insteresting in the POV of counting instructions.
+     * Refreshes the display while connected.
      */
-    protected int lastAddress = -1;
+    private javax.swing.Timer refreshTimer;
     
    	/**
    	 * Simple constructor, likely used to run a stand-alone memory reference visualizer.
@@ -198,51 +222,42 @@ public class InstructionCounter extends AbstractMarsToolAndApplication {
 	
 //	@Override
 	protected void addAsObserver() {
-		addAsObserver(Memory.textBaseAddress, Memory.textLimitAddress);
+		ExecutionHook.add(categoryCounter);
+		if (refreshTimer == null) {
+			refreshTimer = new javax.swing.Timer(REFRESH_INTERVAL_MILLIS, new ActionListener() {
+				public void actionPerformed(ActionEvent e) {
+					updateDisplay();
+				}
+			});
+		}
+		refreshTimer.start();
 	}
 
 //	@Override
-	protected void processMIPSUpdate(Observable resource, AccessNotice notice) {
-		if (!notice.accessIsFromMIPS()) return;
-		if (notice.getAccessType() != AccessNotice.READ) return;
-		MemoryAccessNotice m = (MemoryAccessNotice) notice;
-		int a = m.getAddress();
-		if (a == lastAddress) return;
-		lastAddress = a;
-		counter++;
-		try {
-			ProgramStatement stmt = Memory.getInstance().getStatement(a);
-			BasicInstruction instr = (BasicInstruction) stmt.getInstruction();
-			BasicInstructionFormat format = instr.getInstructionFormat();
-			if (format == BasicInstructionFormat.R_FORMAT)
-				counterR++;
-			else if (format == BasicInstructionFormat.I_FORMAT
-					|| format == BasicInstructionFormat.I_BRANCH_FORMAT)
-				counterI++;
-			else if (format == BasicInstructionFormat.J_FORMAT)
-				counterJ++;
-		} catch (AddressErrorException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+	protected void deleteAsObserver() {
+		ExecutionHook.remove(categoryCounter);
+		if (refreshTimer != null)
+			refreshTimer.stop();
 		updateDisplay();
 	}
 	
 //	@Override
 	protected void initializePreGUI() {
-		counter = counterR = counterI = counterJ = 0;
-		lastAddress = -1;
+		categoryCounter.reset();
 	}
 	
 // @Override
 	protected void reset() {
-		counter = counterR = counterI = counterJ = 0;
-		lastAddress = -1;		
+		categoryCounter.reset();
 		updateDisplay();
 	}
 	
 //	@Override
 	protected void updateDisplay() {
+		counter = categoryCounter.getTotal();
+		counterR = categoryCounter.getCount(TYPE_R);
+		counterI = categoryCounter.getCount(TYPE_I);
+		counterJ = categoryCounter.getCount(TYPE_J);
 		counterField.setText(String.valueOf(counter));
 		
 		counterRField.setText(String.valueOf(counterR));
@@ -30,7 +30,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    import java.awt.GridBagConstraints;
    import java.awt.GridBagLayout;
    import java.awt.Insets;
-   import java.util.Observable;
+   import java.awt.event.ActionEvent;
+   import java.awt.event.ActionListener;
 
    import javax.swing.JComponent;
    import javax.swing.JLabel;
@@ -39,10 +40,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    import javax.swing.JTextField;
 
    import mars.ProgramStatement;
-   import mars.mips.hardware.AccessNotice;
-   import mars.mips.hardware.AddressErrorException;
-   import mars.mips.hardware.Memory;
-   import mars.mips.hardware.MemoryAccessNotice;
+   import mars.mips.instructions.BasicInstruction;
+   import mars.simulator.ExecutionHook;
 
 
 /**
@@ -61,7 +60,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private static String NAME    = "Instruction Statistics";
    
    /** version and author information of the tool */
-      private static String VERSION = "Version 1.0 (Ingo Kofler)";
+      private static String VERSION = "Version 1.1 (Ingo Kofler)";
     
     /** heading of the tool */
       private static String HEADING = "";
@@ -69,7 +68,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     
     
     /** number of instruction categories used by this tool */
-      private static final int MAX_CATEGORY = 5;
+      static final int MAX_CATEGORY = 5;
     
     /** constant for ALU instructions category */
       private static final int CATEGORY_ALU = 0;
@@ -99,24 +98,23 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private JProgressBar m_pbCounters[];
     
     
-    /** counter for the total number of instructions processed */
-      private int m_totalCounter = 0;
-   
-    /** array of counter variables - one for each instruction category */
-      private int m_counters[] = new int[MAX_CATEGORY];     
+    /** interval at which the display is refreshed from the counters while connected */
+      private static final int REFRESH_INTERVAL_MILLIS = 100;
+    
+    /** counts the instructions executed, by category, as the simulator executes them */
+      private InstructionCategoryCounter m_counter = 
+          new InstructionCategoryCounter(MAX_CATEGORY) {
+             protected int getCategory(BasicInstruction instruction, int binaryStatement) {
+               return getInstructionCategory(binaryStatement);
+            }
+         };
+    
+    /** timer that refreshes the display while connected */
+      private javax.swing.Timer m_refreshTimer;
     
     /** names of the instruction categories as array */
-      private String m_categoryLabels[] = { "ALU", "Jump", "Branch", "Memory", "Other" };
+      private static String m_categoryLabels[] = { "ALU", "Jump", "Branch", "Memory", "Other" };
     
-   
-    // From Felipe Lessa's instruction counter.  Prevent double-counting of instructions 
-    // which happens because 2 read events are generated.   
-    /**
-     * The last address we saw. We ignore it because the only way for a
-     * program to execute twice the same instruction is to enter an infinite
-     * loop, which is not insteresting in the POV of counting instructions.
-     */
-      protected int lastAddress = -1;  
     
    	/**
    	 * Simple constructor, likely used to run a stand-alone enhanced instruction counter.
@@ -200,11 +198,35 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
    
    /**
-    * registers the tool as observer for the text segment of the MIPS program
+    * installs the counter in the simulator, so it sees each instruction executed, and
+    * starts refreshing the display from it.  The tool does not observe memory.
     * 
     */
        protected void addAsObserver() { 
-         addAsObserver(Memory.textBaseAddress, Memory.textLimitAddress);
+         ExecutionHook.add(m_counter);
+         if (m_refreshTimer == null) {
+            m_refreshTimer = new javax.swing.Timer(REFRESH_INTERVAL_MILLIS, 
+                   new ActionListener() {
+                      public void actionPerformed(ActionEvent e) {
+                        updateDisplay();
+                     }
+                  });
+         }
+         m_refreshTimer.start();
+      }
+   
+   
+   /**
+    * removes the counter from the simulator and stops refreshing the display, after 
+    * showing the final counts.
+    * 
+    */
+       protected void deleteAsObserver() { 
+         ExecutionHook.remove(m_counter);
+         if (m_refreshTimer != null) {
+            m_refreshTimer.stop();
+         }
+         updateDisplay();
       }
    
    
@@ -223,9 +245,22 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     * @see InstructionStatistics#CATEGORY_OTHER
     */	
        protected int getInstructionCategory(ProgramStatement stmt) {
+         return getInstructionCategory(stmt.getBinaryStatement());
+      }
+   
+   
+   /**
+    * decodes a 32-bit instruction and determines its category, as above.  Needs no 
+    * ProgramStatement, so it also serves for instructions replayed from a trace.
+    * 
+    * @param binaryStatement the machine code of the instruction to decode
+    * @return the category of the instruction
+    */	
+       static int getInstructionCategory(int binaryStatement) {
       
-         int opCode = stmt.getBinaryStatement() >>> (32-6);
-         int funct = stmt.getBinaryStatement() & 0x1F;
+         int opCode = binaryStatement >>> (32-6);
+         int funct = binaryStatement & 0x3F;
+         int rt = (binaryStatement >>> 16) & 0x1F;
       
          if (opCode == 0x00) {			
             if (funct == 0x00 ) 
@@ -239,9 +274,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             return InstructionStatistics.CATEGORY_OTHER;			
          }
          if (opCode == 0x01) {
-            if (0x00 <= funct && funct <= 0x07) 
+            if (0x00 <= rt && rt <= 0x07) 
                return InstructionStatistics.CATEGORY_BRANCH; // bltz, bgez, bltzl, bgezl
-            if (0x10 <= funct && funct <= 0x13) 
+            if (0x10 <= rt && rt <= 0x13) 
                return InstructionStatistics.CATEGORY_BRANCH; // bltzal, bgezal, bltzall, bgczall
             return InstructionStatistics.CATEGORY_OTHER;
          }
@@ -263,62 +298,22 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    
    	
    /**
-    * method that is called each time the MIPS simulator accesses the text segment.
-    * Before an instruction is executed by the simulator, the instruction is fetched from the program memory. 
-    * This memory access is observed and the corresponding instruction is decoded and categorized by the tool.
-    * According to the category the counter values are increased and the display gets updated. 
+    * returns the name of an instruction category, as displayed by the tool.
     * 
-    * @param resource the observed resource
-    * @param notice signals the type of access (memory, register etc.)
+    * @param category the category, from 0 to MAX_CATEGORY-1
+    * @return the name of the category
     */
-       protected void processMIPSUpdate(Observable resource, AccessNotice notice) {
-      		
-         if (!notice.accessIsFromMIPS()) 
-            return;			
-      
-      // check for a read access in the text segment 
-         if (notice.getAccessType() == AccessNotice.READ && notice instanceof MemoryAccessNotice) {
-         
-         // now it is safe to make a cast of the notice
-            MemoryAccessNotice memAccNotice = (MemoryAccessNotice) notice;		
-         
-         // The next three statments are from Felipe Lessa's instruction counter.  Prevents double-counting.			
-            int a = memAccNotice.getAddress();
-            if (a == lastAddress) 
-               return;
-            lastAddress = a;
-         
-            try {
-            
-            // access the statement in the text segment without notifying other tools etc.
-               ProgramStatement stmt = Memory.getInstance().getStatementNoNotify(memAccNotice.getAddress());
-            
-            // necessary to handle possible null pointers at the end of the program 
-            // (e.g., if the simulator tries to execute the next instruction after the last instruction in the text segment) 
-               if (stmt != null) {				
-                  int category = getInstructionCategory(stmt);
-               			
-                  m_totalCounter ++;
-                  m_counters[category] ++;
-                  updateDisplay();					
-               }								
-            } 
-                catch (AddressErrorException e) {			
-               // silently ignore these exceptions
-               }			
-         }			
+       static String getCategoryLabel(int category) {
+         return m_categoryLabels[category];
       }
    
-   
+   	
    /**
     * performs initialization tasks of the counters before the GUI is created.
     * 
     */
        protected void initializePreGUI() {
-         m_totalCounter = 0; 
-			lastAddress = -1; // from Felipe Lessa's instruction counter tool
-         for (int i=0; i < InstructionStatistics.MAX_CATEGORY; i++) 
-            m_counters[i] = 0;		
+         m_counter.reset();
       }
    
    
@@ -327,25 +322,25 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     * 
     */
        protected void reset() {
-         m_totalCounter = 0; 
-			lastAddress = -1; // from Felipe Lessa's instruction counter tool
-         for (int i=0; i < InstructionStatistics.MAX_CATEGORY; i++) 
-            m_counters[i] = 0;		
+         m_counter.reset();
          updateDisplay();
       }
    
    
    /**
     * updates the text fields and progress bars according to the current counter values.
+    * Called by the refresh timer while connected, rather than for each instruction.
     * 
     */
        protected void updateDisplay() {
-         m_tfTotalCounter.setText(String.valueOf(m_totalCounter));
+         int totalCounter = m_counter.getTotal();
+         m_tfTotalCounter.setText(String.valueOf(totalCounter));
       
          for (int i=0; i < InstructionStatistics.MAX_CATEGORY; i++) {
-            m_tfCounters[i].setText(String.valueOf(m_counters[i]));
-            m_pbCounters[i].setMaximum(m_totalCounter);
-            m_pbCounters[i].setValue(m_counters[i]);
+            int counter = m_counter.getCount(i);
+            m_tfCounters[i].setText(String.valueOf(counter));
+            m_pbCounters[i].setMaximum(totalCounter);
+            m_pbCounters[i].setValue(counter);
          }
       }
    }
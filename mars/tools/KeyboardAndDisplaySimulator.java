@@ -64,11 +64,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
     *    transmitted will clear the Display window.  (2) ASCII control character 7 (bell) when
     *    transmitted with properly coded (X,Y) values will reposition the cursor to the specified
     *    position of a virtual text-based terminal.  X represents column, Y represents row.
+	 *
+	 * Version 1.5 is attached to the MMIO registers through DeviceBus instead of observing memory.  It
+	 *    no longer observes the text segments to count instructions; the transmitter delay is a
+	 *    DeviceBus wake-up.
 	 */
     
    public class KeyboardAndDisplaySimulator extends AbstractMarsToolAndApplication {
    
-      private static String version = "Version 1.4";
+      private static String version = "Version 1.5";
       private static String heading =  "Keyboard and Display MMIO Simulator";
       private static String displayPanelTitle, keyboardPanelTitle;
       private static char VT_FILL = ' ';  // fill character for virtual terminal (random access mode)
@@ -87,9 +91,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       public static int RECEIVER_DATA;       // keyboard character in low-order byte
       public static int TRANSMITTER_CONTROL; // display Ready in low-order bit
       public static int TRANSMITTER_DATA;    // display character in low-order byte
-   	// These are used to track instruction counts to simulate driver delay of Transmitter Data
-      private boolean countingInstructions;
-      private int instructionCount;
+   	// Number of instructions executed before Transmitter Ready is set after a write to Transmitter Data
       private int transmitDelayInstructionCountLimit;
       private int currentDelayInstructionLimit;
    
@@ -176,26 +178,35 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  (starting address 0x10010000) only.
    	 *
    	 *  When user enters keystroke, set RECEIVER_CONTROL and RECEIVER_DATA using the action listener.
-   	 *  When user loads word (lw) from RECEIVER_DATA (we are notified of the read), then clear RECEIVER_CONTROL.
-   	 *  When user stores word (sw) to TRANSMITTER_DATA (we are notified of the write), then clear TRANSMITTER_CONTROL, read TRANSMITTER_DATA,
+   	 *  When user loads word (lw) from RECEIVER_DATA (the device is called for the read), then clear RECEIVER_CONTROL.
+   	 *  When user stores word (sw) to TRANSMITTER_DATA (the device is called for the write), then clear TRANSMITTER_CONTROL, read TRANSMITTER_DATA,
    	 *  echo the character to display, wait for delay period, then set TRANSMITTER_CONTROL.
    	 *
+   	 *  Rather than registering as an Observer, attaches the tool's device to those two registers
+   	 *  on the DeviceBus.
+   	 *
    	 *  If you use the inherited GUI buttons, this method is invoked when you click "Connect" button on MarsTool or the
    	 *  "Assemble and Run" button on a Mars-based app.
    	 */
       protected void addAsObserver() {
        	// Set transmitter Control ready bit to 1, means we're ready to accept display character.
          updateMMIOControl(TRANSMITTER_CONTROL, readyBitSet(TRANSMITTER_CONTROL));
-          // We want to be an observer only of MIPS reads from RECEIVER_DATA and writes to TRANSMITTER_DATA.
-          // Use the Globals.memory.addObserver() methods instead of inherited method to achieve this.
-         addAsObserver(RECEIVER_DATA,RECEIVER_DATA);
-         addAsObserver(TRANSMITTER_DATA, TRANSMITTER_DATA);
-      	// We want to be notified of each instruction execution, because instruction count is the
-      	// basis for delay in re-setting (literally) the TRANSMITTER_CONTROL register.  SPIM does
-      	// this too.  This simulates the time required for the display unit to process the
-      	// TRANSMITTER_DATA.
-         addAsObserver(Memory.textBaseAddress, Memory.textLimitAddress);
-         addAsObserver(Memory.kernelTextBaseAddress, Memory.kernelTextLimitAddress);
+          // We want to be called only for MIPS reads from RECEIVER_DATA and writes to TRANSMITTER_DATA.
+      	// Instruction count is the basis for delay in re-setting (literally) the TRANSMITTER_CONTROL 
+      	// register.  SPIM does this too.  This simulates the time required for the display unit to 
+      	// process the TRANSMITTER_DATA.  The device asks DeviceBus to wake it when the delay is over.
+         if (attachDevice(device, RECEIVER_DATA, RECEIVER_DATA)) {
+            attachDevice(device, TRANSMITTER_DATA, TRANSMITTER_DATA);
+         }
+      }
+   
+   
+   	/**
+   	 *  Detach the tool's device from the DeviceBus.  Overrides inherited method, which
+   	 *  removes the tool as a memory Observer.
+   	 */
+      protected void deleteAsObserver() {
+         DeviceBus.detach(device);
       }
    
    
@@ -228,45 +239,42 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	//  the abstract superclass.
       //////////////////////////////////////////////////////////////////////////////////////
    
-      /**
-   	 * Update display when connected MIPS program accesses (data) memory.
-   	 * @param memory the attached memory
-   	 * @param accessNotice information provided by memory in MemoryAccessNotice object
-   	 */
-      protected void processMIPSUpdate(Observable memory, AccessNotice accessNotice) {
-         MemoryAccessNotice notice = (MemoryAccessNotice) accessNotice;
-      	// If MIPS program has just read (loaded) the receiver (keyboard) data register,
-      	// then clear the Ready bit to indicate there is no longer a keystroke available.
-      	// If Ready bit was initially clear, they'll get the old keystroke -- serves 'em right
-      	// for not checking!
-         if (notice.getAddress()==RECEIVER_DATA && notice.getAccessType()==AccessNotice.READ) {
-            updateMMIOControl(RECEIVER_CONTROL, readyBitCleared(RECEIVER_CONTROL));
-         }
-      	// MIPS program has just written (stored) the transmitter (display) data register.  If transmitter
-      	// Ready bit is clear, device is not ready yet so ignore this event -- serves 'em right for not checking!
-      	// If transmitter Ready bit is set, then clear it to indicate the display device is processing the character.
-      	// Also start an intruction counter that will simulate the delay of the slower
-      	// display device processing the character.
-         if (isReadyBitSet(TRANSMITTER_CONTROL) && notice.getAddress()==TRANSMITTER_DATA && notice.getAccessType()==AccessNotice.WRITE) {
-            updateMMIOControl(TRANSMITTER_CONTROL, readyBitCleared(TRANSMITTER_CONTROL));
-            intWithCharacterToDisplay = notice.getValue();
-            if (!displayAfterDelay) displayCharacter(intWithCharacterToDisplay); 
-            this.countingInstructions = true;
-            this.instructionCount = 0;
-            this.transmitDelayInstructionCountLimit = generateDelay();
-         }
-      	// We have been notified of a MIPS instruction execution.
-      	// If we are in transmit delay period, increment instruction count and if limit
-      	// has been reached, set the transmitter Ready flag to indicate the MIPS program
-      	// can write another character to the transmitter data register.  If the Interrupt-Enabled
-      	// bit had been set by the MIPS program, generate an interrupt!
-         if (   this.countingInstructions &&
-                notice.getAccessType()==AccessNotice.READ &&
-                (Memory.inTextSegment(notice.getAddress()) || Memory.inKernelTextSegment(notice.getAddress()))) {
-            this.instructionCount++;
-            if (this.instructionCount >= this.transmitDelayInstructionCountLimit) {
+   	///////////////////////////////////////////////////////////////////////////////////
+   	//
+   	//  The device on the DeviceBus.  It is called directly for MIPS accesses to the
+   	//  Receiver Data and Transmitter Data registers, and woken when the transmit delay ends.
+   	//
+      private final MemoryMappedDevice device = 
+         new MemoryMappedDevice() {
+         	// If MIPS program is about to read (load) the receiver (keyboard) data register,
+         	// then clear the Ready bit to indicate there is no longer a keystroke available.
+         	// If Ready bit was initially clear, they'll get the old keystroke -- serves 'em right
+         	// for not checking!
+            public void deviceRead(int address, int length) {
+               if (address==RECEIVER_DATA) {
+                  updateMMIOControl(RECEIVER_CONTROL, readyBitCleared(RECEIVER_CONTROL));
+               }
+            }
+         
+         	// MIPS program has just written (stored) the transmitter (display) data register.  If transmitter
+         	// Ready bit is clear, device is not ready yet so ignore this event -- serves 'em right for not checking!
+         	// If transmitter Ready bit is set, then clear it to indicate the display device is processing the character.
+         	// Also ask to be woken after the delay of the slower display device processing the character.
+            public void deviceWritten(int address, int length, int value) {
+               if (isReadyBitSet(TRANSMITTER_CONTROL) && address==TRANSMITTER_DATA) {
+                  updateMMIOControl(TRANSMITTER_CONTROL, readyBitCleared(TRANSMITTER_CONTROL));
+                  intWithCharacterToDisplay = value;
+                  if (!displayAfterDelay) displayCharacter(intWithCharacterToDisplay); 
+                  transmitDelayInstructionCountLimit = generateDelay();
+                  DeviceBus.wakeUpAfter(this, transmitDelayInstructionCountLimit);
+               }
+            }
+         
+         	// The transmit delay is over.  Set the transmitter Ready flag to indicate the MIPS program
+         	// can write another character to the transmitter data register.  If the Interrupt-Enabled
+         	// bit had been set by the MIPS program, generate an interrupt!
+            public void wakeUp() {
                if (displayAfterDelay) displayCharacter(intWithCharacterToDisplay);
-               this.countingInstructions = false;
                int updatedTransmitterControl =  readyBitSet(TRANSMITTER_CONTROL);
                updateMMIOControl(TRANSMITTER_CONTROL, updatedTransmitterControl);
                if (updatedTransmitterControl != 1
@@ -274,11 +282,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                    && (Coprocessor0.getValue(Coprocessor0.STATUS) & 1)==1) {
                // interrupt-enabled bit is set in both Tranmitter Control and in
                // Coprocessor0 Status register, and Interrupt Level Bit is 0, so trigger external interrupt.
-                  mars.simulator.Simulator.externalInterruptingDevice = Exceptions.EXTERNAL_INTERRUPT_DISPLAY;
+                  raiseInterrupt(Exceptions.EXTERNAL_INTERRUPT_DISPLAY);
                }
             }
-         }
-      }
+         };
    
       private static final char CLEAR_SCREEN  = 12; // ASCII Form Feed
       private static final char SET_CURSOR_X_Y = 7; // ASCII Bell  (ding ding!)
@@ -773,8 +780,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	// Transmit delay is simulated by counting instruction executions.
    	// Here we simly initialize (or reset) the variables.
       private void initializeTransmitDelaySimulator() {
-         this.countingInstructions = false;
-         this.instructionCount = 0;
+         DeviceBus.cancelWakeUp(device);
          this.transmitDelayInstructionCountLimit = this.generateDelay();
       }
    
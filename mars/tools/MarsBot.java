@@ -10,7 +10,7 @@
  * Simple Demo of Mars tool capability
  */
 
-    public class MarsBot implements Observer, MarsTool
+    public class MarsBot implements MarsTool
    {
       private static final int GRAPHIC_WIDTH = 512;
       private static final int GRAPHIC_HEIGHT = 512;
@@ -26,6 +26,13 @@
       private double MarsBotYPosition = 0; // Y pixel position of MarsBot
       private boolean MarsBotMoving = false; // true --> MarsBot is moving, false --> MarsBot not moving
    
+    // The bot moves one pixel every MOVE_INTERVAL_MILLIS while moving.  Its position is brought
+    // up to date when the MIPS program reads it and when the display is repainted, rather than
+    // by a thread that polls.
+      private static final int MOVE_INTERVAL_MILLIS = 40;
+      private long lastMoveTime = System.currentTimeMillis();
+      private javax.swing.Timer repaintTimer;
+   
     // The begin and end points of a "track" segment are kept in neighboring pairs
     // of elements of the array. arrayOfTrack[i] is the start pt, arrayOfTrack[i+1] is
     // the end point of a path that should leave a track.
@@ -34,12 +41,13 @@
       private int trackIndex = 0;
    
     // private inner class
-       private class BotRunnable implements Runnable
+       private class BotWindow
       {
          JPanel panel;
-          public BotRunnable() // constructor
+         JFrame frame;
+          public BotWindow() // constructor
          {
-            final JFrame frame = new JFrame("Bot");
+            frame = new JFrame("Bot");
             panel = new JPanel(new BorderLayout());
             graphicArea = new MarsBotDisplay(GRAPHIC_WIDTH, GRAPHIC_HEIGHT);
             JPanel buttonPanel = new JPanel();
@@ -67,7 +75,7 @@
                   {
                       public void actionPerformed(ActionEvent e)
                      {
-                        frame.setVisible(false);
+                        frame.dispose();
                      
                      }
                   
@@ -80,83 +88,22 @@
             frame.setVisible(true);
             frame.setTitle(" This is the MarsBot");
             frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE); // changed 12/12/09 DPS (was EXIT)
-            frame.setSize(GRAPHIC_WIDTH + 200, GRAPHIC_HEIGHT + 100); // TBD  SIZE
-            frame.setVisible(true); // show();
-         
-         } // end BotRunnable() constructor
-      
-          public void run()
-         {
-         
-            double tempAngle;
-            // infinite loop: move the bot according to the current directives
-            // (which may be to NOT move)
-            do
-            {
-               if (MarsBotMoving)
-               {
-                    //System.out.println("BotRunnable.run: bot IS moving.");
-                    // TBD This is an arbitrary distance for bot movement. This could just
-                    // as easily be a random distance to simulate terrain, etc.
-                    // adjust bot position.
-                    // The "mathematical angle" is zero at east, 90 at north, etc.
-                    // The "heading" is 0 at north, 90 at east, etc.
-                    // Conversion: MathAngle = [(360 - heading) + 90] mod 360
-                  tempAngle = ((360 - MarsBotHeading) + 90) % 360;
-                  MarsBotXPosition += Math.cos(Math.toRadians(tempAngle)); // Math.cos parameter unit is radians
-                  MarsBotYPosition += -Math.sin(Math.toRadians(tempAngle)); // Negate value because Y coord grows down
-               
-                    // Write this new information to MARS memory area
-                  try
+            frame.addWindowListener(
+                   new WindowAdapter()
                   {
-                     Globals.memory.setWord(ADDR_WHEREAREWEX, (int) MarsBotXPosition);
-                     Globals.memory.setWord(ADDR_WHEREAREWEY, (int) MarsBotYPosition);
-                  
-                  }
-                      catch ( AddressErrorException e)
+                      public void windowClosed(WindowEvent e)
                      {
-                        // TBD TBD TBD No action
+                        repaintTimer.stop();
+                        DeviceBus.detach(device);
                      }
-                    
-                    //System.out.println(" ------- Heading is " + MarsBotHeading + ", angle is " + tempAngle);
-                    //System.out.println(" ------- New X,Y is (" + MarsBotXPosition + "," + MarsBotYPosition + ")" );
-               
-                    // Whether or not we're leaving a track, write the current point to the
-                    // current position in the array.
-                    //   -- If we are not leaving a track now, we will need the current point to
-                    //      start a future track, and that goes into the array.
-                    //   -- If we are leaving a track now, the current point may end the track,
-                    //      and that goes into the array.
-                  arrayOfTrack[trackIndex] = new Point((int)MarsBotXPosition, (int)MarsBotYPosition);
-               
-               } 
-               else
-               {
-                    // Action for if the MarsBot isn't moving
-                    // System.out.println("BotRunnable.run: bot is not moving.");
-               }
-            
-                // TBD Pause whether the bot is or is not moving. This gives the MIPS program
-                // opportunity to consider results of movement, or to make the bot move.
-                // ??? What is relationship of robot speed to MARS's
-                // execution time for a single instruction? Does the robot speed have to
-                // be slow enough to allow a MARS busy loop to detect the bot position
-                // at a specific pixel?
-               try
-               {
-                    //System.out.println(" Hello from the bot runner");
-                  Thread.sleep(40);
-               }
-                   catch (InterruptedException exception)
-                  {// no action
-                  }
-                
-               panel.repaint(); // show new bot position
-            } while (true);
+                  });
+            frame.setSize(GRAPHIC_WIDTH + 200, GRAPHIC_HEIGHT + 100); // TBD  SIZE
+            frame.setVisible(true); // show();
          
-         } // end run method of BotRunnable class
+         } // end BotWindow() constructor
       
-      } // end BotRunnable class
+      
+      } // end BotWindow class
    
     /* ------------------------------------------------------------------------- */
        private class MarsBotDisplay extends JPanel
@@ -255,101 +202,184 @@
      */
        public void action()
       {
-         BotRunnable br1 = new BotRunnable();
-         Thread t1 = new Thread(br1);
-         t1.start();
+         BotWindow window = new BotWindow();
+         repaintTimer = new javax.swing.Timer(MOVE_INTERVAL_MILLIS, 
+                new ActionListener()
+               {
+                   public void actionPerformed(ActionEvent e)
+                  {
+                     advance();
+                     graphicArea.repaint(); // show new bot position
+                  }
+               });
         // New: DPS 27 Feb 2006.  Register observer for memory subrange.
+        // Now attached to the subrange on the DeviceBus, which calls it directly.
+        // If the range is not MMIO in this memory configuration, or another tool has it, 
+        // say so and close the window, which stops the timer.
          try {
-            Globals.memory.addObserver(this,0xffff8000,0xffff8060);
+            DeviceBus.attach(device,0xffff8000,0xffff8060);
          } 
-             catch (AddressErrorException aee) { 
-               System.out.println(aee);
+             catch (IllegalArgumentException iae) { 
+               JOptionPane.showMessageDialog(window.frame, "MarsBot cannot connect to MIPS memory: "+iae.getMessage(),
+                                             "MarsBot", JOptionPane.ERROR_MESSAGE);
+               window.frame.dispose();
             } 
       }
    
     /*
-     * This method observes MIPS program directives to modify Bot activity (that is,
-     * MIPS program write to MMIO) and updates instance variables to reflect that
-     * directive.
+     * Move the bot by the distance it has travelled since it was last moved, and write its
+     * new position to MARS memory.  Called from the repaint timer as well as the MIPS 
+     * thread, so the memory lock is taken before the bot's own, in the same order as
+     * a device callback.
      */
-       public void update(Observable o, Object arg)
+       private void advance()
       {
-         MemoryAccessNotice notice;
-         int address;
-         if (arg instanceof MemoryAccessNotice)
+         synchronized (Globals.memoryAndRegistersLock)
          {
-            notice = (MemoryAccessNotice) arg;
-            address = notice.getAddress();
-            if (address < 0 && notice.getAccessType() == AccessNotice.WRITE)
+            synchronized (this)
             {
-               String message = "";
-               if (address == ADDR_HEADING)
-               {
-                  message = "MarsBot.update: got move heading value: ";
-                  MarsBotHeading = notice.getValue();
-                    //System.out.println(message + notice.getValue() );
-               }
-               else if (address == ADDR_LEAVETRACK)
-               {
-                  message = "MarsBot.update: got leave track directive value ";
-                    
-                    // If we HAD NOT been leaving a track, but we should NOW leave
-                    // a track, put start point into array.
-                  if (MarsBotLeaveTrack == false && notice.getValue() == 1)
-                  {
-                     MarsBotLeaveTrack = true;
-                     arrayOfTrack[trackIndex] = new Point((int) MarsBotXPosition, (int) MarsBotYPosition);
-                     trackIndex++;  // the index of the end point
-                  }
-                    // If we HAD NOT been leaving a track, and get another directive
-                    // to NOT leave a track, do nothing (nothing to do).
-                  else if (MarsBotLeaveTrack == false && notice.getValue() == 0)
-                  {
-                      // NO ACTION
-                  }
-                    // If we HAD been leaving a track, and get another directive
-                    // to LEAVE a track, do nothing (nothing to do).
-                  else if (MarsBotLeaveTrack == true && notice.getValue() == 1)
-                  {
-                      // NO ACTION
-                  }
-                    // If we HAD been leaving a track, and get another directive
-                    // to NOT leave a track, put end point into array.
-                  else if (MarsBotLeaveTrack == true && notice.getValue() == 0)
-                  {
-                     MarsBotLeaveTrack = false;
-                     arrayOfTrack[trackIndex] = new Point((int) MarsBotXPosition, (int) MarsBotYPosition);
-                     trackIndex++;  // the index of the next start point
-                  }
-               
-                    //System.out.println("MarsBotDisplay.paintComponent: putting point in track array at " + trackIndex);
-               
-                    //System.out.println(message + notice.getValue() );
-               }
-               else if (address == ADDR_MOVE)
-               {
-                  message = "MarsBot.update: got move control value: ";
-                  if (notice.getValue() == 0) MarsBotMoving = false;
-                  else MarsBotMoving = true;
-                    //System.out.println(message + notice.getValue() );
-               }
-               else if (address == ADDR_WHEREAREWEX ||
-                         address == ADDR_WHEREAREWEY)
-               {
-                  // Ignore these memory writes, because the writes originated within
-                  // this tool. This tool is being notified of the writes in the usual
-                  // manner, but the writes are already known to this tool.
-                  // NO ACTION
-               }
-               else
-               {
-                    //message = "MarsBot.update: HEY!!! unknown address of " + Integer.toString(address) + ", value: ";
-                    //System.out.println(message + notice.getValue() );
-               }
-            
+               advanceLocked();
             }
          }
+      }
+   
+       private void advanceLocked()
+      {
+         long now = System.currentTimeMillis();
+         long steps = (now - lastMoveTime) / MOVE_INTERVAL_MILLIS;
+         if (!MarsBotMoving)
+         {
+            lastMoveTime = now;
+            return;
+         }
+         if (steps == 0)
+         {
+            return;
+         }
+         lastMoveTime += steps * MOVE_INTERVAL_MILLIS;
+        // TBD This is an arbitrary distance for bot movement. This could just
+        // as easily be a random distance to simulate terrain, etc.
+        // The "mathematical angle" is zero at east, 90 at north, etc.
+        // The "heading" is 0 at north, 90 at east, etc.
+        // Conversion: MathAngle = [(360 - heading) + 90] mod 360
+         double tempAngle = ((360 - MarsBotHeading) + 90) % 360;
+         MarsBotXPosition += steps * Math.cos(Math.toRadians(tempAngle)); // Math.cos parameter unit is radians
+         MarsBotYPosition += -steps * Math.sin(Math.toRadians(tempAngle)); // Negate value because Y coord grows down
+        // Write this new information to MARS memory area
+         device.setPosition((int) MarsBotXPosition, (int) MarsBotYPosition);
+        // Whether or not we're leaving a track, write the current point to the
+        // current position in the array.
+        //   -- If we are not leaving a track now, we will need the current point to
+        //      start a future track, and that goes into the array.
+        //   -- If we are leaving a track now, the current point may end the track,
+        //      and that goes into the array.
+         arrayOfTrack[trackIndex] = new Point((int)MarsBotXPosition, (int)MarsBotYPosition);
+      }
+   
+    /*
+     * The bot's device on the DeviceBus.  A MIPS program read of the bot position first brings
+     * the position up to date.  A MIPS program write is a directive to modify Bot activity; the
+     * bot is first moved as far as it went under the previous directives.
+     */
+      private final BotDevice device = new BotDevice();
+   
+       private class BotDevice extends MemoryMappedDevice
+      {
+          public void deviceRead(int address, int length)
+         {
+            if (address == ADDR_WHEREAREWEX || address == ADDR_WHEREAREWEY)
+            {
+               advance();
+            }
+         }
+      
+          public void deviceWritten(int address, int length, int value)
+         {
+            advance();
+            update(address, value);
+         }
       
+        // Write the bot position to its registers.  Device register writes are not seen
+        // as accesses by the MIPS program and are not recorded for backstepping.
+          private void setPosition(int x, int y)
+         {
+            setRegister(ADDR_WHEREAREWEX, x);
+            setRegister(ADDR_WHEREAREWEY, y);
+         }
+      }
+   
+    /*
+     * Update instance variables to reflect a directive the MIPS program wrote to MMIO.
+     */
+       private synchronized void update(int address, int value)
+      {
+         String message = "";
+         if (address == ADDR_HEADING)
+         {
+            message = "MarsBot.update: got move heading value: ";
+            MarsBotHeading = value;
+              //System.out.println(message + value );
+         }
+         else if (address == ADDR_LEAVETRACK)
+         {
+            message = "MarsBot.update: got leave track directive value ";
+              
+              // If we HAD NOT been leaving a track, but we should NOW leave
+              // a track, put start point into array.
+            if (MarsBotLeaveTrack == false && value == 1)
+            {
+               MarsBotLeaveTrack = true;
+               arrayOfTrack[trackIndex] = new Point((int) MarsBotXPosition, (int) MarsBotYPosition);
+               trackIndex++;  // the index of the end point
+            }
+              // If we HAD NOT been leaving a track, and get another directive
+              // to NOT leave a track, do nothing (nothing to do).
+            else if (MarsBotLeaveTrack == false && value == 0)
+            {
+                // NO ACTION
+            }
+              // If we HAD been leaving a track, and get another directive
+              // to LEAVE a track, do nothing (nothing to do).
+            else if (MarsBotLeaveTrack == true && value == 1)
+            {
+                // NO ACTION
+            }
+              // If we HAD been leaving a track, and get another directive
+              // to NOT leave a track, put end point into array.
+            else if (MarsBotLeaveTrack == true && value == 0)
+            {
+               MarsBotLeaveTrack = false;
+               arrayOfTrack[trackIndex] = new Point((int) MarsBotXPosition, (int) MarsBotYPosition);
+               trackIndex++;  // the index of the next start point
+            }
+         
+              //System.out.println("MarsBotDisplay.paintComponent: putting point in track array at " + trackIndex);
+         
+              //System.out.println(message + value );
+         }
+         else if (address == ADDR_MOVE)
+         {
+            message = "MarsBot.update: got move control value: ";
+            if (value == 0) MarsBotMoving = false;
+            else MarsBotMoving = true;
+            lastMoveTime = System.currentTimeMillis();
+            if (MarsBotMoving) repaintTimer.start();
+            else repaintTimer.stop();
+              //System.out.println(message + value );
+         }
+         else if (address == ADDR_WHEREAREWEX ||
+                   address == ADDR_WHEREAREWEY)
+         {
+            // Ignore these memory writes, because the writes originated within
+            // this tool. This tool is being notified of the writes in the usual
+            // manner, but the writes are already known to this tool.
+            // NO ACTION
+         }
+         else
+         {
+              //message = "MarsBot.update: HEY!!! unknown address of " + Integer.toString(address) + ", value: ";
+              //System.out.println(message + value );
+         }
       }
    
    }
@@ -4,6 +4,7 @@
    import javax.swing.event.*;
    import java.awt.*;
    import java.awt.event.*;
+   import java.awt.image.*;
    import java.util.*;
    import mars.tools.*;
    import mars.mips.hardware.*;
@@ -42,14 +43,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 	 * maximum use of methods inherited from its abstract superclass AbstractMarsToolAndApplication.
 	 * Pete Sanderson, verison 1.0, 14 November 2006.
 	 */
-    public class MemoryReferenceVisualization extends AbstractMarsToolAndApplication {
+    public class MemoryReferenceVisualization extends TimedRepaintTool {
    
       private static String version = "Version 1.0";
       private static String heading =  "Visualizing memory reference patterns";
    	
    	// Major GUI components
       private JComboBox wordsPerUnitSelector, visualizationUnitPixelWidthSelector, visualizationUnitPixelHeightSelector,
-                        visualizationPixelWidthSelector, visualizationPixelHeightSelector, displayBaseAddressSelector;
+                        visualizationPixelWidthSelector, visualizationPixelHeightSelector, displayBaseAddressSelector,
+                        accessTypeSelector, decayIntervalSelector;
       private JCheckBox drawHashMarksSelector;
       private Graphics drawingArea;
       private JPanel canvas;
@@ -73,6 +75,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private final String[] displayAreaPixelHeightChoices  = {"64","128","256","512","1024"};
       private final int defaultDisplayHeightIndex  = 2;
       private final boolean defaultDrawHashMarks = true;
+      private final String[] accessTypeChoices = {"Reads and writes", "Reads only", "Writes only"};
+      private static final int COUNT_ALL = 0, COUNT_READS = 1, COUNT_WRITES = 2; // indexes of above
+      private final int defaultAccessTypeIndex = COUNT_ALL;
+      private final String[] decayIntervalChoices = {"Never", "250", "500", "1000", "2000", "5000"};
+      private final int defaultDecayIntervalIndex = 0;
    
       // Values for display canvas.  Note their initialization uses the identifiers just above.
    
@@ -81,6 +88,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private int wordsPerUnit = Integer.parseInt(wordsPerUnitChoices[defaultWordsPerUnitIndex]);
       private int visualizationAreaWidthInPixels = Integer.parseInt(displayAreaPixelWidthChoices[defaultDisplayWidthIndex]);
       private int visualizationAreaHeightInPixels = Integer.parseInt(displayAreaPixelHeightChoices[defaultDisplayHeightIndex]);
+      private volatile int accessType = defaultAccessTypeIndex;
+      private int decayIntervalMillis = 0; // 0 for no decay
+      private long lastDecayTime;
+   	
+   	// Reference counts change color gradually, so 20 repaints a second are enough.
+   	// Counts are also decayed at these ticks.
+      private static final int REPAINT_INTERVAL_MILLIS = 50;
    	
    	//`Values for mapping of reference counts to colors for display.
    	
@@ -120,14 +134,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 * @param heading String containing text for heading shown in upper part of window.
    	 */
        public MemoryReferenceVisualization(String title, String heading) {
-         super(title,heading);
+         super(title,heading,REPAINT_INTERVAL_MILLIS);
       }
    	 
    	 /**
    	  *  Simple constructor, likely used by the MARS Tools menu mechanism
    	  */
        public MemoryReferenceVisualization() {
-         super ("Memory Reference Visualization, "+version, heading);
+         super ("Memory Reference Visualization, "+version, heading, REPAINT_INTERVAL_MILLIS);
       }
    		 
    		 
@@ -195,13 +209,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       //////////////////////////////////////////////////////////////////////////////////////
    	
       /**
-   	 * Update display when connected MIPS program accesses (data) memory.
+   	 * Count the access when connected MIPS program accesses (data) memory.
    	 * @param memory the attached memory
    	 * @param accessNotice information provided by memory in MemoryAccessNotice object
    	 */
        protected void processMIPSUpdate(Observable memory, AccessNotice accessNotice) {
-         incrementReferenceCountForAddress(((MemoryAccessNotice)accessNotice).getAddress());
-         updateDisplay();
+         incrementReferenceCountForAddress(((MemoryAccessNotice)accessNotice).getAddress(),
+                                           accessNotice.getAccessType() == AccessNotice.WRITE);
       }
    	
    
@@ -229,6 +243,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          wordsPerUnit = getIntComboBoxSelection(wordsPerUnitSelector);
          theGrid = createNewGrid();
          updateBaseAddress();
+         startRepaintTimer();
+      }
+   	
+   	/**
+   	 *  Decays the counts, when it is time to, before repainting the changed area.
+   	 */
+       protected void repaintTimerFired() {
+         long now = System.currentTimeMillis();
+         if (decayIntervalMillis > 0 && now - lastDecayTime >= decayIntervalMillis) {
+            theGrid.decay();
+            lastDecayTime = now;
+         }
+         updateDisplay();
       }
    	
    	
@@ -242,12 +269,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    
    	/**
-   	 *  Updates display immediately after each update (AccessNotice) is processed, after
-   	 *  display configuration changes as needed, and after each execution step when Mars
-   	 *  is running in timed mode.  Overrides inherited method that does nothing.
+   	 *  Repaints the given rectangle of grid elements, scaled to the unit size.
    	 */
-       protected void updateDisplay() {
-         canvas.repaint();
+       protected void repaintUnits(Rectangle units) {
+         canvas.repaint(units.x*unitPixelWidth, units.y*unitPixelHeight, 
+                        units.width*unitPixelWidth, units.height*unitPixelHeight);
       }
    
        
@@ -274,6 +300,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
 										"This color will apply beginning at the selected count and\n"+
 										"extending up to the next slider-provided count.\n"+
 										"\n"+
+										"Reads and writes are counted separately; choose which to\n"+
+										"display.  To see where the program is active now rather than\n"+
+										"over the whole run, choose an interval at which all counts\n"+
+										"are halved.\n"+
+										"\n"+
 										"Contact Pete Sanderson at psanderson@otterbein.edu with\n"+
 										"questions or comments.\n";
          JButton help = new JButton("Help");
@@ -292,16 +323,42 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       	
    	// UI components and layout for left half of GUI, where settings are specified.
        private JComponent buildOrganizationArea() {
-         JPanel organization = new JPanel(new GridLayout(9,1));
+         JPanel organization = new JPanel(new GridLayout(11,1));
       	
          drawHashMarksSelector = new JCheckBox();
          drawHashMarksSelector.setSelected(defaultDrawHashMarks);
          drawHashMarksSelector.addActionListener(
                 new ActionListener() {
                    public void actionPerformed(ActionEvent e) {
-                     updateDisplay();
+                     canvas.repaint();
                   }
                });	
+         accessTypeSelector = new JComboBox(accessTypeChoices);
+         accessTypeSelector.setEditable(false);
+         accessTypeSelector.setBackground(backgroundColor);
+         accessTypeSelector.setSelectedIndex(defaultAccessTypeIndex);
+         accessTypeSelector.setToolTipText("Kind of memory access whose counts are displayed");
+         accessTypeSelector.addActionListener(
+                new ActionListener() {
+                   public void actionPerformed(ActionEvent e) {
+                     accessType = accessTypeSelector.getSelectedIndex();
+                     theGrid.renderAll();
+                     updateDisplay();
+                  }
+               });
+         decayIntervalSelector = new JComboBox(decayIntervalChoices);
+         decayIntervalSelector.setEditable(false);
+         decayIntervalSelector.setBackground(backgroundColor);
+         decayIntervalSelector.setSelectedIndex(defaultDecayIntervalIndex);
+         decayIntervalSelector.setToolTipText("Interval in milliseconds at which all reference counts are halved");
+         decayIntervalSelector.addActionListener(
+                new ActionListener() {
+                   public void actionPerformed(ActionEvent e) {
+                     decayIntervalMillis = (decayIntervalSelector.getSelectedIndex() == 0) 
+                                           ? 0 : getIntComboBoxSelection(decayIntervalSelector);
+                     lastDecayTime = System.currentTimeMillis();
+                  }
+               });
          wordsPerUnitSelector = new JComboBox(wordsPerUnitChoices);
          wordsPerUnitSelector.setEditable(false);
          wordsPerUnitSelector.setBackground(backgroundColor);
@@ -324,6 +381,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                    public void actionPerformed(ActionEvent e) {
                      unitPixelWidth = getIntComboBoxSelection(visualizationUnitPixelWidthSelector);
                      theGrid = createNewGrid();
+                     canvas.repaint();
                      updateDisplay();
                   }
                });
@@ -337,6 +395,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                    public void actionPerformed(ActionEvent e) {
                      unitPixelHeight = getIntComboBoxSelection(visualizationUnitPixelHeightSelector);
                      theGrid = createNewGrid();
+                     canvas.repaint();
                      updateDisplay();
                   }
                });					
@@ -435,6 +494,16 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          baseAddressRow.add(new JLabel("Base address for display "),BorderLayout.WEST);
          baseAddressRow.add(displayBaseAddressSelector,BorderLayout.EAST);      				
       
+         JPanel accessTypeRow = getPanelWithBorderLayout();
+         accessTypeRow.setBorder(emptyBorder);
+         accessTypeRow.add(new JLabel("Count "),BorderLayout.WEST);
+         accessTypeRow.add(accessTypeSelector,BorderLayout.EAST);
+      
+         JPanel decayIntervalRow = getPanelWithBorderLayout();
+         decayIntervalRow.setBorder(emptyBorder);
+         decayIntervalRow.add(new JLabel("Halve counts every (ms) "),BorderLayout.WEST);
+         decayIntervalRow.add(decayIntervalSelector,BorderLayout.EAST);
+      
          ColorChooserControls colorChooserControls = new ColorChooserControls();
       
       	// Lay 'em out in the grid...
@@ -445,6 +514,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          organization.add(widthInPixelsRow);
          organization.add(heightInPixelsRow);  
          organization.add(baseAddressRow); 
+         organization.add(accessTypeRow); 
+         organization.add(decayIntervalRow); 
          organization.add(colorChooserControls.colorChooserRow);
          organization.add(colorChooserControls.countDisplayRow);
          return organization;
@@ -526,15 +597,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return new Grid(rows,columns);
       }
    	
-   	 // Given memory address, increment the counter for the corresponding grid element.
+   	 // Given memory address, increment the read or write counter for the corresponding grid element.
    	 // Need to consider words per unit (number of memory words that each visual element represents).
    	 // If address maps to invalid grid element (e.g. is outside the current bounds based on all
    	 // display settings) then nothing happens.
-       private void incrementReferenceCountForAddress(int address) {
+       private void incrementReferenceCountForAddress(int address, boolean write) {
          int offset = (address - baseAddress)/Memory.WORD_LENGTH_BYTES/wordsPerUnit;
-      	// If you care to do anything with it, the following will return -1 if the address
-      	// maps outside the dimensions of the grid (e.g. below the base address or beyond end).
-         theGrid.incrementElement(offset / theGrid.getColumns(), offset % theGrid.getColumns());
+         theGrid.incrementElement(offset, write);
       }
    	  
    	  
@@ -550,9 +619,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
           // override default paint method to assure visualized reference pattern is produced every time
       	 // the panel is repainted.
           public void paint(Graphics g) {
-            paintGrid(g, theGrid);
+            Grid grid = theGrid;
+            paintGrid(g, grid);
             if (drawHashMarksSelector.isSelected()) {
-               paintHashMarks(g, theGrid);
+               paintHashMarks(g, grid);
             }
          }
       
@@ -577,19 +647,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             }
          }
       	
-      	// Paint the color codes for reference counts.
+      	// Paint the color codes for reference counts.  The grid's image has one pixel per
+      	// unit, so it is scaled to the unit size; only the part within the clip is drawn.
           private void paintGrid(Graphics g, Grid grid) {
-            int upperLeftX = 0, upperLeftY = 0;
-            for (int i=0; i<grid.getRows(); i++) {
-               for (int j=0; j<grid.getColumns(); j++) {
-                  g.setColor(counterColorScale.getColor(grid.getElementFast(i,j)));
-                  g.fillRect(upperLeftX, upperLeftY, unitPixelWidth, unitPixelHeight); 
-                  upperLeftX += unitPixelWidth;   // faster than multiplying
-               }
-            	// get ready for next row...
-               upperLeftX = 0;
-               upperLeftY += unitPixelHeight;     // faster than multiplying
-            }
+            g.drawImage(grid.getImage(), 0, 0, grid.getColumns()*unitPixelWidth, 
+                        grid.getRows()*unitPixelHeight, null);
          }
       	
           private Color getContrastingColor(Color color) {
@@ -642,6 +704,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                         if (newColor != null && !newColor.equals(counterColorScale.getColor(counterValue))) {
                            counterColorScale.insertOrReplace(new CounterColor(counterValue,newColor));
                            currentColorButton.setBackground(newColor);
+                           theGrid.renderAll();
+                           canvas.repaint(); // hash mark color may have changed
                            updateDisplay();
                         } 
                      }
@@ -684,12 +748,32 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    		
    	////////////////////////////////////////////////////////////////////////////////
    	// Object that represents mapping from counter value to color it is displayed as.
-   	//
+   	// Also keeps the mapping as a lookup table of RGB values, for rendering.
        private class CounterColorScale {
          CounterColor[] counterColors;
+         int[] colorLookup; // RGB for each count from 0 to the start of the last range
       	
           CounterColorScale(CounterColor[] colors) {
             counterColors = colors;
+            buildColorLookup();
+         }
+      
+          private void buildColorLookup() {
+            int[] lookup = new int[counterColors[counterColors.length-1].colorRangeStart + 1];
+            int index = 0;
+            for (int count=0; count<lookup.length; count++) {
+               while (index+1 < counterColors.length && count >= counterColors[index+1].colorRangeStart) {
+                  index++;
+               }
+               lookup[count] = counterColors[index].associatedColor.getRGB();
+            }
+            colorLookup = lookup;
+         }
+      
+      	// return RGB value of color associated with specified counter value
+          private int getColorRGB(int count) {
+            int[] lookup = colorLookup;
+            return lookup[(count < lookup.length) ? count : lookup.length-1];
          }
       
       	// return color associated with specified counter value
@@ -733,6 +817,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                newSortedArray[insertIndex] = newColor; 
                counterColors = newSortedArray;
             }
+            buildColorLookup();
          }
       }
    	
@@ -762,17 +847,28 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       
    	
       ////////////////////////////////////////////////////////////////////////
-   	// Represents grid of memory access counts
+   	// Represents grid of memory read and write counts, in row-major order, and their
+   	// colors as the pixels of an image whose raster is written directly.  Elements whose
+   	// color changes are added to the tool's area to be repainted.
        private class Grid {
       
-         int[][] grid;
+         int[] readCounts, writeCounts;
+         BufferedImage image;
+         int[] pixels; // the image's raster
          int rows, columns;
       	 		  
           private Grid(int rows, int columns) {
-            grid = new int[rows][columns];
+            readCounts = new int[rows*columns];
+            writeCounts = new int[rows*columns];
+            image = new BufferedImage(columns, rows, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
             this.rows = rows;
             this.columns = columns;
-          // automatically initialized to 0, so I won't bother to....
+            renderAll();
+         }
+      
+          private BufferedImage getImage() {
+            return image;
          }
        
           private int getRows() {
@@ -783,31 +879,61 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             return columns;
          }
       
-      	// Returns value in given grid element; -1 if row or column is out of range.			
-          private int getElement(int row, int column) {
-            return (row>=0 && row<=rows && column>=0 && column<=columns) ? grid[row][column] : -1;			
+      	// Count of the given grid element (row-major index) for the access type displayed.
+          private int getCount(int element) {
+            switch (accessType) {
+               case COUNT_READS :
+                  return readCounts[element];
+               case COUNT_WRITES :
+                  return writeCounts[element];
+               default :
+                  return readCounts[element] + writeCounts[element];
+            }
+         }
+      	      	
+      	// Increment the read or write count of the given grid element (row-major index) and
+      	// recolor it if displayed.  Does nothing if the element is out of range.
+          private synchronized void incrementElement(int element, boolean write) {
+            if (element < 0 || element >= pixels.length) {
+               return;
+            }
+            if (write) {
+               writeCounts[element]++;
+            } 
+            else {
+               readCounts[element]++;
+            }
+            if (accessType == COUNT_ALL || write == (accessType == COUNT_WRITES)) {
+               int color = counterColorScale.getColorRGB(getCount(element));
+               if (pixels[element] != color) {
+                  pixels[element] = color;
+                  addChangedArea(element / columns, element % columns, element / columns, element % columns);
+               }
+            }
          }
       
-      	// Returns value in given grid element without doing any row/column index checking.
-      	// Is faster than getElement but will throw array index out of bounds exception if
-      	// parameter values are outside the bounds of the grid.			
-          private int getElementFast(int row, int column) {
-            return grid[row][column];			
+      	// Halve all counts, so that older accesses fade from the display.
+          private synchronized void decay() {
+            for (int i=0; i<readCounts.length; i++) {
+               readCounts[i] >>= 1;
+               writeCounts[i] >>= 1;
+            }
+            renderAll();
          }
-      	      	
-      	// Increment the given grid element and return incremented value.
-      	// Returns -1 if row or column is out of range.
-          private int incrementElement(int row, int column) {
-            return (row>=0 && row<=rows && column>=0 && column<=columns) ? ++grid[row][column] : -1;
+      
+      	// Recolor every grid element, after counts or color scale change.
+          private synchronized void renderAll() {
+            for (int i=0; i<pixels.length; i++) {
+               pixels[i] = counterColorScale.getColorRGB(getCount(i));
+            }
+            addChangedArea(0, 0, rows-1, columns-1);
          }
-      	
+      
       	// Just set all grid elements to 0.
-          private void reset() {
-            for (int i=0; i<rows; i++) {
-               for (int j=0; j<columns; j++) {
-                  grid[i][j] = 0;
-               }
-            }
+          private synchronized void reset() {
+            Arrays.fill(readCounts, 0);
+            Arrays.fill(writeCounts, 0);
+            renderAll();
          }
       }  	
    
@@ -19,6 +19,7 @@ import java.awt.Point;
 import java.awt.PointerInfo;
 import java.awt.RenderingHints;
 import java.awt.Toolkit;
+import java.awt.Transparency;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
@@ -31,7 +32,6 @@ import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.Observable;
 import java.util.Vector;
 
@@ -91,7 +91,19 @@ public class MipsXray extends AbstractMarsToolAndApplication{
     
     private VenusUI mainUI;
     private JToolBar toolbar;
-    private Timer time;
+    private Timer time;     // one animation timer, restarted for each instruction
+    
+    // Contents of the X-Ray XML file, parsed once and shared by all animations.  The
+    // mnemonic tables are indexed by the value of the opcode, funct and register fields.
+    private static final String XML_NAME = "/MipsXRayOpcode.xml";
+    private static String[] opcodeMnemonics, functionMnemonics, registerMnemonics;
+    private static ArrayList<DatapathMapEntry> datapathMap;
+    private static BufferedImage datapathImage;
+    
+    // Instruction types, each with its own colors for the datapath lines.
+    private static final int TYPE_I = 0, TYPE_R = 1, TYPE_J = 2, TYPE_LOAD = 3, TYPE_STORE = 4, TYPE_BRANCH = 5;
+    private static final String[] COLOR_TAGS = {"color_Itype", "color_Rtype", "color_Jtype", 
+                                                "color_LOADtype", "color_STOREtype", "color_BRANCHtype"};
     
     public MipsXray(String title, String heading) {
         super(title,heading);
@@ -259,8 +271,6 @@ public class MipsXray extends AbstractMarsToolAndApplication{
    			
    			painel.removeAll();
    			datapathAnimation = new DatapathAnimation(instructionBinary);
-   			this.createActionObjects();
-   			toolbar= this.setUpToolBar();
    			painel.add(toolbar, BorderLayout.NORTH);
    			painel.add(datapathAnimation, BorderLayout.WEST);
    			datapathAnimation.startAnimation(instructionBinary );
@@ -276,6 +286,116 @@ public class MipsXray extends AbstractMarsToolAndApplication{
    		this.repaint();
    	}
    	
+   	//stop the animation timer when the tool is closed.
+   	protected void performSpecialClosingDuties() {
+   		if (time != null) {
+   			time.stop();
+   		}
+   	}
+   	
+   	//parse the XML file into the mnemonic tables and datapath map, and load the datapath image.  
+   	//Done only the first time, later calls return at once.
+   	private static synchronized void loadDatapathModel() {
+   		if (datapathMap != null) return;
+   		opcodeMnemonics = new String[64];
+   		functionMnemonics = new String[64];
+   		registerMnemonics = new String[32];
+   		ArrayList<DatapathMapEntry> map = new ArrayList<DatapathMapEntry>();
+   		try {
+   			DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+   			dbf.setNamespaceAware(false);
+   			DocumentBuilder docBuilder = dbf.newDocumentBuilder();
+   			Document doc = docBuilder.parse(MipsXray.class.getResource(XML_NAME).toString());
+   			Element root = doc.getDocumentElement();
+   			importXmlMnemonics(root, opcodeMnemonics, "equivalence");
+   			importXmlMnemonics(root, functionMnemonics, "function_equivalence");
+   			importXmlMnemonics(root, registerMnemonics, "register_equivalence");
+   			importXmlDatapathMap(root, map);
+   		} 
+   		catch (Exception e) {
+   			e.printStackTrace();
+   		}
+   		datapathMap = map;
+   		try {
+   			BufferedImage im = ImageIO.read(MipsXray.class.getResource(Globals.imagesPath+"datapath.png"));
+   			GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+   					.getDefaultScreenDevice().getDefaultConfiguration();
+   			datapathImage = gc.createCompatibleImage(im.getWidth(), im.getHeight(), 
+   					im.getColorModel().getTransparency());
+   			Graphics2D g2d = datapathImage.createGraphics();
+   			g2d.drawImage(im,0,0,null);
+   			g2d.dispose();
+   		} 
+   		catch(IOException e) {
+   			System.out.println("Load Image error for " +
+   					MipsXray.class.getResource(Globals.imagesPath+"datapath.png") + ":\n" + e); 
+   		}
+   	}
+   	
+   	//fill the table with the mnemonics of the given element, indexed by the value of their bits.
+   	private static void importXmlMnemonics(Element root, String[] table, String elementTree) {
+   		NodeList equivalenceList = root.getElementsByTagName(elementTree);
+   		for(int i = 0; i < equivalenceList.getLength(); i++){
+   			Element equivalenceItem = (Element)equivalenceList.item(i);
+   			NodeList bitsList = equivalenceItem.getElementsByTagName("bits");
+   			NodeList mnemonic = equivalenceItem.getElementsByTagName("mnemonic");
+   			for(int j= 0; j < bitsList.getLength(); j++){
+   				table[Integer.parseInt(bitsList.item(j).getTextContent(), 2)] = mnemonic.item(j).getTextContent();
+   			}
+   		}
+   	}
+   	
+   	//read the vertices of the datapath, with their colors for every instruction type.
+   	private static void importXmlDatapathMap(Element root, ArrayList<DatapathMapEntry> map) {
+   		NodeList datapath_mapList = root.getElementsByTagName("datapath_map");
+   		for(int i = 0; i < datapath_mapList.getLength(); i++){
+   			Element item = (Element)datapath_mapList.item(i);
+   			NodeList index_vertex = item.getElementsByTagName("num_vertex");
+   			NodeList name = item.getElementsByTagName("name");
+   			NodeList init = item.getElementsByTagName("init");
+   			NodeList end = item.getElementsByTagName("end");
+   			NodeList other_axis = item.getElementsByTagName("other_axis");
+   			NodeList isMovingXaxis = item.getElementsByTagName("isMovingXaxis");
+   			NodeList targetVertex = item.getElementsByTagName("target_vertex");
+   			NodeList isText = item.getElementsByTagName("is_text");
+   			NodeList[] colors = new NodeList[COLOR_TAGS.length];
+   			for(int t = 0; t < COLOR_TAGS.length; t++)
+   				colors[t] = item.getElementsByTagName(COLOR_TAGS[t]);
+   			for(int j= 0; j < index_vertex.getLength(); j++){
+   				Color[] typeColors = new Color[COLOR_TAGS.length];
+   				for(int t = 0; t < COLOR_TAGS.length; t++){
+   					String[] listColor = colors[t].item(j).getTextContent().split("#");
+   					typeColors[t] = new Color(Integer.parseInt(listColor[0]), Integer.parseInt(listColor[1]), Integer.parseInt(listColor[2]));
+   				}
+   				String[] list = targetVertex.item(j).getTextContent().split("#");
+   				ArrayList<Integer> targets = new ArrayList<Integer>();
+   				for(int k = 0; k < list.length; k++)
+   					targets.add(Integer.parseInt(list[k]));
+   				map.add(new DatapathMapEntry(Integer.parseInt(index_vertex.item(j).getTextContent()), 
+   						Integer.parseInt(init.item(j).getTextContent()), Integer.parseInt(end.item(j).getTextContent()), 
+   						name.item(j).getTextContent(), Integer.parseInt(other_axis.item(j).getTextContent()),
+   						Boolean.parseBoolean(isMovingXaxis.item(j).getTextContent()), typeColors, targets, 
+   						Boolean.parseBoolean(isText.item(j).getTextContent())));
+   			}
+   		}
+   	}
+   	
+   	//type of the instruction with the given binary code, which selects the colors of its datapath lines.
+   	private static int getInstructionType(String instructionCode) {
+   		String opcode = instructionCode.substring(0,6);
+   		if(opcode.equals("000000"))
+   			return TYPE_R;
+   		if(opcode.matches("00001[0-1]"))
+   			return TYPE_J;
+   		if(opcode.matches("100[0-1][0-1][0-1]"))
+   			return TYPE_LOAD;
+   		if(opcode.matches("101[0-1][0-1][0-1]"))
+   			return TYPE_STORE;
+   		if(opcode.matches("0001[0-1][0-1]"))
+   			return TYPE_BRANCH;
+   		return TYPE_I;
+   	}
+   	
    	//set the tool bar that controls the step in a time instruction running.
        private JToolBar setUpToolBar() {
            JToolBar toolBar = new JToolBar();
@@ -322,6 +442,28 @@ public class MipsXray extends AbstractMarsToolAndApplication{
        }
 
 
+//Vertex of the datapath as read from the XML file.  Never changed; each animation makes its own Vertex from it.
+private static class DatapathMapEntry {
+	private final int index, init, end, oppositeAxis;
+	private final String name;
+	private final boolean isMovingXaxis, isText;
+	private final Color[] colors;		//indexed by instruction type
+	private final ArrayList<Integer> targetVertex;
+	
+	private DatapathMapEntry(int index, int init, int end, String name, int oppositeAxis, boolean isMovingXaxis,
+			Color[] colors, ArrayList<Integer> targetVertex, boolean isText){
+		this.index = index;
+		this.init = init;
+		this.end = end;
+		this.name = name;
+		this.oppositeAxis = oppositeAxis;
+		this.isMovingXaxis = isMovingXaxis;
+		this.colors = colors;
+		this.targetVertex = targetVertex;
+		this.isText = isText;
+	}
+}
+
 class Vertex {
 	private int numIndex;
    	private int init;
@@ -342,7 +484,7 @@ class Vertex {
    	private ArrayList<Integer> targetVertex;
    	
    	public Vertex(int index, int init, int end, String name, int oppositeAxis, boolean isMovingXaxis, 
-   			String listOfColors, String listTargetVertex, boolean isText){
+   			Color color, ArrayList<Integer> targetVertex, boolean isText){
    		this.numIndex = index;
    		this.init = init;
    		this.current = this.init;
@@ -353,7 +495,7 @@ class Vertex {
    		this.first_interaction = true;
    		this.active = false;
    		this.isText = isText;
-   		this.color = new Color(0,153,0);
+   		this.color = color;
    		if(isMovingXaxis == true){
    			if( init < end)
    				direction = movingLeft;
@@ -367,14 +509,7 @@ class Vertex {
    			else 
    				direction = movingDownside;
    		}
-   		String[] list =  listTargetVertex.split("#");
-   		targetVertex = new ArrayList<Integer>();
-   		for(int i = 0; i < list.length; i++){
-   			targetVertex.add(Integer.parseInt(list[i]));
-   		//	System.out.println("Adding " + i + " " +  Integer.parseInt(list[i])+ " in target");
-   		}
-   		String[] listColor =  listOfColors.split("#");
-   		this.color = new Color(Integer.parseInt(listColor[0]) , Integer.parseInt(listColor[1]),  Integer.parseInt(listColor[2]) );
+   		this.targetVertex = targetVertex;		//shared with the datapath map, only read
    	}
  	
    	public int getDirection(){
@@ -487,11 +622,9 @@ class DatapathAnimation extends JPanel
 	 private ArrayList<Vertex> vertexTraversed;
 	 //Screen Label variables
 	 
-	 private HashMap<String, String> opcodeEquivalenceTable;
-	 private HashMap<String, String> functionEquivalenceTable;
-	 private HashMap<String, String> registerEquivalenceTable;
-
 	 private String instructionCode;
+	 private int opcode, funct, rs, rt, rd;		//fields of instructionCode
+	 private boolean animating;		//false once no line of the datapath is moving
 	 
 	 private int countRegLabel;
 	 private int countALULabel;
@@ -531,146 +664,61 @@ class DatapathAnimation extends JPanel
 		 setBackground(Color.white);
 		 setPreferredSize( new Dimension(PWIDTH, PHEIGHT) );
 
-		 // load and initialise the images
-		 initImages();
-		  
 		 vertexList = new ArrayList<Vertex>();
 		 counter = 0;
 		 justStarted = true;
-		 instructionCode = instructionBinary;
-		 
-		 //declaration of labels definition.
-		 opcodeEquivalenceTable = new  HashMap<String, String>();
-		 functionEquivalenceTable = new  HashMap<String, String>();
-		 registerEquivalenceTable = new  HashMap<String, String>();
+		 setInstruction(instructionBinary);
 		 
 		 countRegLabel = 400;
 		 countALULabel = 380;
 		 countPCLabel = 380;
-		 loadHashMapValues();
+		 loadDatapathModel();
+		 buildVertexGraph();
+		 
+		 // draw the background image
+		 initImages();
 		 addMouseListener(this);
 
 		 
 
 	 } // end of ImagesTests()
 
-	 //set the binnary opcode value of the basic instructions of MIPS instruction set
-	 public void loadHashMapValues(){
-		 importXmlStringData("/MipsXRayOpcode.xml",opcodeEquivalenceTable, "equivalence",  "bits", "mnemonic");
-		 importXmlStringData("/MipsXRayOpcode.xml", functionEquivalenceTable, "function_equivalence",  "bits", "mnemonic");
-		 importXmlStringData("/MipsXRayOpcode.xml", registerEquivalenceTable, "register_equivalence",  "bits", "mnemonic");
-	 	 importXmlDatapathMap("/MipsXRayOpcode.xml", "datapath_map"); 
-	 }
-	 
-	 //import the list of opcodes of mips set of instructions
-	 public void importXmlStringData(String xmlName, HashMap table, String elementTree, String tagId, String tagData){
-		 	DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-			dbf.setNamespaceAware(false);
-			DocumentBuilder docBuilder;
-			try {
-				//System.out.println();
-				docBuilder = dbf.newDocumentBuilder();
-				Document doc = docBuilder.parse(getClass().getResource(xmlName).toString());
-				Element root = doc.getDocumentElement();
-				Element equivalenceItem;
-				NodeList bitsList,  mnemonic;
-				NodeList equivalenceList = root.getElementsByTagName(elementTree);
-				for(int i = 0; i < equivalenceList.getLength(); i++){
-					equivalenceItem =  (Element)equivalenceList.item(i);
-					bitsList = equivalenceItem.getElementsByTagName(tagId);
-					mnemonic = equivalenceItem.getElementsByTagName(tagData);
-					for(int j= 0; j < bitsList.getLength(); j++){
-						table.put(bitsList.item(j).getTextContent(),mnemonic.item(j).getTextContent());
-					}
-				}
-			}
-			 catch (Exception e) {
-					e.printStackTrace();
-				}
+	 //set the binary code of the instruction animated, and decode its fields.
+	 private void setInstruction(String instructionBinary){
+		 instructionCode = instructionBinary;
+		 opcode = Integer.parseInt(instructionBinary.substring(0,6), 2);
+		 rs = Integer.parseInt(instructionBinary.substring(6,11), 2);
+		 rt = Integer.parseInt(instructionBinary.substring(11,16), 2);
+		 rd = Integer.parseInt(instructionBinary.substring(16,21), 2);
+		 funct = Integer.parseInt(instructionBinary.substring(26,32), 2);
 	 }
 	 
-	 //import the parameters of the animation on datapath
-	 public void importXmlDatapathMap(String xmlName, String elementTree){
-		 DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-			dbf.setNamespaceAware(false);
-			DocumentBuilder docBuilder;
-			try {
-				docBuilder = dbf.newDocumentBuilder();
-				Document doc = docBuilder.parse(getClass().getResource(xmlName).toString());
-				Element root = doc.getDocumentElement();
-				Element datapath_mapItem;
-				NodeList index_vertex,  name, init, end,color, other_axis, isMovingXaxis, targetVertex, sourceVertex, isText ;
-					NodeList datapath_mapList = root.getElementsByTagName(elementTree);
-				for(int i = 0; i < datapath_mapList.getLength(); i++){ //extract the vertex of the xml input and encapsulate into the vertex object
-					datapath_mapItem =  (Element)datapath_mapList.item(i);
-					index_vertex = datapath_mapItem.getElementsByTagName("num_vertex");
-					name = datapath_mapItem.getElementsByTagName("name");
-					init = datapath_mapItem.getElementsByTagName("init");
-					end = datapath_mapItem.getElementsByTagName("end");
-					//definition of colors line 
-					if(instructionCode.substring(0,6).equals("000000")){//R-type instructions
-						color = datapath_mapItem.getElementsByTagName("color_Rtype"); 
-						//System.out.println("rtype");
-					}
-					else if(instructionCode.substring(0,6).matches("00001[0-1]")){ //J-type instructions
-						color = datapath_mapItem.getElementsByTagName("color_Jtype"); 
-						//System.out.println("jtype");
-					}
-					else if(instructionCode.substring(0,6).matches("100[0-1][0-1][0-1]")){ //LOAD type instructions
-						color = datapath_mapItem.getElementsByTagName("color_LOADtype");
-						//System.out.println("load type");
-					}
-					else if(instructionCode.substring(0,6).matches("101[0-1][0-1][0-1]")){ //LOAD type instructions
-						color = datapath_mapItem.getElementsByTagName("color_STOREtype");
-						//System.out.println("store type");
-					}
-					else if(instructionCode.substring(0,6).matches("0001[0-1][0-1]")){ //BRANCH type instructions
-						color = datapath_mapItem.getElementsByTagName("color_BRANCHtype");
-						//System.out.println("branch type");
-					}
-					else{ //BRANCH type instructions
-						color = datapath_mapItem.getElementsByTagName("color_Itype");
-						//System.out.println("immediate type");
-					}
-					
-					other_axis = datapath_mapItem.getElementsByTagName("other_axis");
-					isMovingXaxis = datapath_mapItem.getElementsByTagName("isMovingXaxis");
-					targetVertex = datapath_mapItem.getElementsByTagName("target_vertex");
-					isText = datapath_mapItem.getElementsByTagName("is_text");
-					
-					for(int j= 0; j < index_vertex.getLength(); j++){
-						Vertex vert = new Vertex(Integer.parseInt(index_vertex.item(j).getTextContent()), Integer.parseInt(init.item(j).getTextContent()),
-								Integer.parseInt(end.item(j).getTextContent()), name.item(j).getTextContent(), Integer.parseInt(other_axis.item(j).getTextContent()),
-								Boolean.parseBoolean(isMovingXaxis.item(j).getTextContent()), color.item(j).getTextContent(), targetVertex.item(j).getTextContent(), Boolean.parseBoolean(isText.item(j).getTextContent()));
-						vertexList.add(vert);
-					}
-				}
-				//loading matrix of control of vertex.
-				outputGraph = new Vector<Vector<Vertex>>();
-				vertexTraversed = new ArrayList<Vertex>();
-				int size = vertexList.size();
-				Vertex vertex;
-				ArrayList<Integer> targetList;
-				for(int i = 0; i < vertexList.size(); i++){
-					vertex = vertexList.get(i);
-					targetList = vertex.getTargetVertex();
-					Vector<Vertex> vertexOfTargets = new Vector<Vertex>();
-					for(int k = 0; k < targetList.size(); k++){
-						vertexOfTargets.add(vertexList.get(targetList.get(k)));
-					}
-					outputGraph.add(vertexOfTargets); 	
-				}
-				for(int i=0; i< outputGraph.size(); i++){
-					Vector<Vertex> vert = outputGraph.get(i);
-				}
-				
-				vertexList.get(0).setActive(true);
-				vertexTraversed.add(vertexList.get(0));
-			}
-			 catch (Exception e) {
-					e.printStackTrace();
-				}
-			
+	 //create the vertices of this animation from the shared datapath map, with the colors of the instruction type.
+	 private void buildVertexGraph(){
+		 int type = getInstructionType(instructionCode);
+		 for(int i = 0; i < datapathMap.size(); i++){
+			 DatapathMapEntry entry = datapathMap.get(i);
+			 vertexList.add(new Vertex(entry.index, entry.init, entry.end, entry.name, entry.oppositeAxis, 
+					 entry.isMovingXaxis, entry.colors[type], entry.targetVertex, entry.isText));
+		 }
+		 //loading matrix of control of vertex.
+		 outputGraph = new Vector<Vector<Vertex>>();
+		 vertexTraversed = new ArrayList<Vertex>();
+		 Vertex vertex;
+		 ArrayList<Integer> targetList;
+		 for(int i = 0; i < vertexList.size(); i++){
+			 vertex = vertexList.get(i);
+			 targetList = vertex.getTargetVertex();
+			 Vector<Vertex> vertexOfTargets = new Vector<Vertex>();
+			 for(int k = 0; k < targetList.size(); k++){
+				 vertexOfTargets.add(vertexList.get(targetList.get(k)));
+			 }
+			 outputGraph.add(vertexOfTargets); 	
+		 }
+		 if(vertexList.isEmpty())
+			 return;
+		 vertexList.get(0).setActive(true);
+		 vertexTraversed.add(vertexList.get(0));
 	 } 
 	 
 	 //Set up the information showed in the screen of the current instruction.
@@ -752,22 +800,22 @@ class DatapathAnimation extends JPanel
 			 textVariable.draw(g2d, 25, 480);
 			 
 			 //instruction name
-			 textVariable = new TextLayout(functionEquivalenceTable.get(instructionCode.substring(26,32)), font, frc);
+			 textVariable = new TextLayout(functionMnemonics[funct], font, frc);
 			 g2d.setColor(Color.BLACK);
 			 textVariable.draw(g2d, 25, 500); 
 			 
 			 //register in RS
-			 textVariable = new TextLayout(registerEquivalenceTable.get(instructionCode.substring(6,11)), font, frc);
+			 textVariable = new TextLayout(registerMnemonics[rs], font, frc);
 			 g2d.setColor(Color.BLACK);
 			 textVariable.draw(g2d, 65, 500); 
 			 
 			 //register in RT
-			 textVariable = new TextLayout(registerEquivalenceTable.get(instructionCode.substring(16,21)), font, frc);
+			 textVariable = new TextLayout(registerMnemonics[rd], font, frc);
 			 g2d.setColor(Color.BLACK);
 			 textVariable.draw(g2d, 105, 500); 
 			 
 			 //register in RD
-			 textVariable = new TextLayout(registerEquivalenceTable.get(instructionCode.substring(11,16)), font, frc);
+			 textVariable = new TextLayout(registerMnemonics[rt], font, frc);
 			 g2d.setColor(Color.BLACK);
 			 textVariable.draw(g2d, 145, 500);  
 		 }
@@ -802,7 +850,7 @@ class DatapathAnimation extends JPanel
 			 textVariable.draw(g2d, 95, 550);	
 			 
 			 //instruction mnemonic
-			 textVariable= new TextLayout(opcodeEquivalenceTable.get(instructionCode.substring(0,6)), font, frc);
+			 textVariable= new TextLayout(opcodeMnemonics[opcode], font, frc);
 			 g2d.setColor(Color.cyan);
 			 textVariable.draw(g2d, 65, 500); 
 			 
@@ -861,15 +909,15 @@ class DatapathAnimation extends JPanel
 			 g2d.setColor(Color.red);
 			 textVariable.draw(g2d, 25, 480);
 			 
-			 textVariable = new TextLayout(opcodeEquivalenceTable.get(instructionCode.substring(0,6)), font, frc);
+			 textVariable = new TextLayout(opcodeMnemonics[opcode], font, frc);
 			 g2d.setColor(Color.BLACK);
 			 textVariable.draw(g2d, 25, 500); 
 
-			 textVariable = new TextLayout(registerEquivalenceTable.get(instructionCode.substring(6,11)), font, frc);
+			 textVariable = new TextLayout(registerMnemonics[rs], font, frc);
 			 g2d.setColor(Color.BLACK);
 			 textVariable.draw(g2d, 65, 500); 
 			 
-			 textVariable = new TextLayout("M[ "+ registerEquivalenceTable.get(instructionCode.substring(16,21)) + " + " + parseBinToInt(instructionCode.substring(6,32))+  " ]", font, frc);
+			 textVariable = new TextLayout("M[ "+ registerMnemonics[rd] + " + " + parseBinToInt(instructionCode.substring(6,32))+  " ]", font, frc);
 			 g2d.setColor(Color.BLACK);
 			 textVariable.draw(g2d, 105, 500); 
 			 
@@ -925,15 +973,15 @@ class DatapathAnimation extends JPanel
 			 g2d.setColor(Color.red);
 			 textVariable.draw(g2d, 25, 480);
 			 
-			 textVariable = new TextLayout(opcodeEquivalenceTable.get(instructionCode.substring(0,6)), font, frc);
+			 textVariable = new TextLayout(opcodeMnemonics[opcode], font, frc);
 			 g2d.setColor(Color.BLACK);
 			 textVariable.draw(g2d, 25, 500); 
 
-			 textVariable = new TextLayout(registerEquivalenceTable.get(instructionCode.substring(6,11)), font, frc);
+			 textVariable = new TextLayout(registerMnemonics[rs], font, frc);
 			 g2d.setColor(Color.BLACK);
 			 textVariable.draw(g2d, 65, 500); 
 			 
-			 textVariable = new TextLayout("M[ "+ registerEquivalenceTable.get(instructionCode.substring(16,21)) + " + " + parseBinToInt(instructionCode.substring(6,32))+  " ]", font, frc);
+			 textVariable = new TextLayout("M[ "+ registerMnemonics[rd] + " + " + parseBinToInt(instructionCode.substring(6,32))+  " ]", font, frc);
 			 g2d.setColor(Color.BLACK);
 			 textVariable.draw(g2d, 105, 500); 
 			 
@@ -998,15 +1046,15 @@ class DatapathAnimation extends JPanel
 			 g2d.setColor(Color.red);
 			 textVariable.draw(g2d, 25, 480);
 			 
-			 textVariable = new TextLayout(opcodeEquivalenceTable.get(instructionCode.substring(0,6)), font, frc);
+			 textVariable = new TextLayout(opcodeMnemonics[opcode], font, frc);
 			 g2d.setColor(Color.black);
 			 textVariable.draw(g2d, 25, 500); 
 			 	 
-			 textVariable = new TextLayout(registerEquivalenceTable.get(instructionCode.substring(6,11)), font, frc);
+			 textVariable = new TextLayout(registerMnemonics[rs], font, frc);
 			 g2d.setColor(Color.black);
 			 textVariable.draw(g2d, 105, 500);
 			 
-			 textVariable = new TextLayout(registerEquivalenceTable.get(instructionCode.substring(11,16)), font, frc);
+			 textVariable = new TextLayout(registerMnemonics[rt], font, frc);
 			 g2d.setColor(Color.black);
 			 textVariable.draw(g2d, 65, 500); 
 	 
@@ -1063,15 +1111,15 @@ class DatapathAnimation extends JPanel
 			 textVariable = new TextLayout("Instruction", fontTitle, frc);
 			 g2d.setColor(Color.red);
 			 textVariable.draw(g2d, 25, 480);
-			 textVariable = new TextLayout(opcodeEquivalenceTable.get(instructionCode.substring(0,6)), font, frc);
+			 textVariable = new TextLayout(opcodeMnemonics[opcode], font, frc);
 			 g2d.setColor(Color.black);
 			 textVariable.draw(g2d, 25, 500); 
 			 	 
-			 textVariable = new TextLayout(registerEquivalenceTable.get(instructionCode.substring(6,11)), font, frc);
+			 textVariable = new TextLayout(registerMnemonics[rs], font, frc);
 			 g2d.setColor(Color.black);
 			 textVariable.draw(g2d, 105, 500);
 			 
-			 textVariable = new TextLayout(registerEquivalenceTable.get(instructionCode.substring(11,16)), font, frc);
+			 textVariable = new TextLayout(registerMnemonics[rt], font, frc);
 			 g2d.setColor(Color.black);
 			 textVariable.draw(g2d, 65, 500); 
 	 
@@ -1101,37 +1149,46 @@ class DatapathAnimation extends JPanel
 	 
 	 
 	//set the initial state of the variables that controls the animation, and start the timer that triggers the animation. 
+	//The timer is shared by all animations; it drives whichever one is current.
 	 public void startAnimation(String codeInstruction){
-	 	instructionCode = codeInstruction;
-	 	time = new Timer(PERIOD, this);    // start timer
-	 	time.start();
-	// 	this.repaint();
+	 	if(!codeInstruction.equals(instructionCode)){
+	 		setInstruction(codeInstruction);
+	 		initImages();
+	 	}
+	 	animating = true;
+	 	if(time == null){
+	 		time = new Timer(PERIOD, 
+	 				new ActionListener() {
+	 					public void actionPerformed(ActionEvent e) {
+	 						if(datapathAnimation != null)
+	 							datapathAnimation.actionPerformed(e);
+	 					}
+	 				});
+	 	}
+	 	time.restart();    // start timer
 	 }
 	 
-	 //initialize the image of datapath.
+	 //draw the datapath and the description of the instruction, neither of which changes while
+	 //the animation runs, into the image that each frame starts from.
 	 private void initImages(){
-		 try {
-			 BufferedImage im =  ImageIO.read( 
-					 getClass().getResource(Globals.imagesPath+"datapath.png") );
-
-			 int transparency = im.getColorModel().getTransparency();
-			 datapath =  gc.createCompatibleImage(
-					 im.getWidth(), im.getHeight(),
-					 transparency );
-			 g2d = datapath.createGraphics();
-			 g2d.drawImage(im,0,0,null);
-			 g2d.dispose();
-		 } 
-		 catch(IOException e) {
-			 System.out.println("Load Image error for " +
-					 getClass().getResource(Globals.imagesPath+"datapath.png") + ":\n" + e); 
-		 }
+		 if(datapathImage == null)
+			 return;
+		 datapath = gc.createCompatibleImage(Math.max(PWIDTH, datapathImage.getWidth()), 
+				 Math.max(PHEIGHT, datapathImage.getHeight()), Transparency.TRANSLUCENT);
+		 Graphics2D g = datapath.createGraphics();
+		 g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+				 RenderingHints.VALUE_ANTIALIAS_ON);
+		 g.drawImage(datapathImage,0,0,null);
+		 setUpInstructionInfo(g);
+		 g.dispose();
 	 } 
 
 	 
 	 public void actionPerformed(ActionEvent e)
 	 // triggered by the timer: update, repaint
 	 { 
+		 if (!animating)    // all lines drawn in full, this is the last frame
+			 time.stop();
 		 if (justStarted)   
 			 justStarted = false;
 		 if(xIsMoving)
@@ -1323,9 +1380,9 @@ class DatapathAnimation extends JPanel
 		 }
 		 if(v.getName().equals("ALUVALUE")){
 			 if( instructionCode.substring(0,6).equals("000000"))//R-type instruction
-				 actionInFunctionalBlock = new TextLayout(functionEquivalenceTable.get(instructionCode.substring(26,32)), new Font("Verdana", Font.BOLD, 13), frc);
+				 actionInFunctionalBlock = new TextLayout(functionMnemonics[funct], new Font("Verdana", Font.BOLD, 13), frc);
 			else //other instructions 
-				actionInFunctionalBlock  = new TextLayout(opcodeEquivalenceTable.get(instructionCode.substring(0,6)), new Font("Verdana", Font.BOLD, 13), frc);
+				actionInFunctionalBlock  = new TextLayout(opcodeMnemonics[opcode], new Font("Verdana", Font.BOLD, 13), frc);
 		 }
 		 
 		 if(instructionCode.substring(0,6).matches("0001[0-1][0-1]")&& v.getName().equals("CP+4")) //branch code
@@ -1363,10 +1420,12 @@ class DatapathAnimation extends JPanel
 	 //verifies the previous status of the animation and increment the position of each line that interconnect the unit function.
 	 private void executeAnimation(Graphics g){
 		 g2d = (Graphics2D)g; 
-		 setUpInstructionInfo(g2d);
 		 Vertex vert;
+		 animating = false;
 		 for(int i = 0; i < vertexTraversed.size(); i++){
 			 vert = vertexTraversed.get(i);
+			 if(vert.isActive())
+				 animating = true;
 			 if(vert.isMovingXaxis == true){
 				 if(vert.getDirection() == vert.movingLeft){
 					 printTrackLtoR(vert);
@@ -15,7 +15,7 @@
  * See accompanying documentation for memory-mapped addresses, rules of the game, etc.
  */
 
-    public class ScavengerHunt implements Observer, MarsTool
+    public class ScavengerHunt implements MarsTool
    {
       private static final int GRAPHIC_WIDTH = 712;
       private static final int GRAPHIC_HEIGHT = 652;
@@ -147,15 +147,17 @@
    
     
     // private inner class
-       private class ScavengerHuntRunnable implements Runnable
+       private class ScavengerHuntWindow
       {
          JPanel panel;
-          public ScavengerHuntRunnable() // constructor
+         JDialog frame;
+         javax.swing.Timer repaintTimer;
+          public ScavengerHuntWindow() // constructor
          {
             // final JFrame frame = new JFrame("ScavengerHunt");
             // Recommended by Pete Sanderson, 2 Nov. 2006, so that the Tool window and
             // MARS window can be on the screen at the same time.
-            final JDialog frame = new JDialog(Globals.getGui(),"ScavengerHunt");
+            frame = new JDialog(Globals.getGui(),"ScavengerHunt");
          
             // System.out.println("ScavengerHuntRunnable.constructor: starting....");
          
@@ -192,6 +194,10 @@
                         frame.setVisible(false);
                         frame.dispose();
                      }
+                      public void windowClosed(WindowEvent e) {
+                        repaintTimer.stop();
+                        DeviceBus.detach(device);
+                     }
                   });
          
             frame.getContentPane().add(panel);
@@ -203,36 +209,21 @@
             frame.setPreferredSize(new Dimension(GRAPHIC_WIDTH, GRAPHIC_HEIGHT)); // TBD  SIZE
             frame.setVisible(true); // show();
          
-         } // end ScavengerHuntRunnable() constructor
-      
-          public void run()
-         {
-         
-            double tempAngle;
          
-            // infinite loop: play the Scavenger Hunt game
-            do
-            {
-            
-                // Pause to slow down the redisplay of the game. This is separate from
-                // the execution speed of the MIPS program, so the display may lag behind
-                // the state of the MIPS program.
-               try
-               {
-                    // System.out.println(" Hello from the ScavengerHuntRunnable runner, sleeping here ...");
-                    // System.out.print(".");
-                  Thread.sleep(100);   // millisec
-               }
-                   catch (InterruptedException exception)
-                  {// no action
-                  }
-            
-               panel.repaint(); // show new ScavengerHunt position
-            } while (true);
+            // Redisplay the game periodically. This is separate from the execution
+            // speed of the MIPS program, so the display may lag behind the state of
+            // the MIPS program.
+            repaintTimer = new javax.swing.Timer(100, 
+                   new ActionListener() {
+                      public void actionPerformed(ActionEvent e) {
+                        panel.repaint(); // show new ScavengerHunt position
+                     }
+                  });
+            repaintTimer.start();
          
-         } // end run method of ScavengerHuntRunnable class
+         } // end ScavengerHuntWindow() constructor
       
-      } // end ScavengerHuntRunnable class
+      } // end ScavengerHuntWindow class
    
     /* ------------------------------------------------------------------------- */
     /** ScavengerHuntDisplay does not have access to the same MIPS Memory class object used by
@@ -443,57 +434,50 @@
       
       
       
-         ScavengerHuntRunnable shr = new ScavengerHuntRunnable();
-         Thread t1 = new Thread(shr);
-         t1.start();
+         ScavengerHuntWindow window = new ScavengerHuntWindow();
         
       
-        // Register as observer for a particular MIPS data range. Other ranges
+        // Attach to a particular MIPS data range on the DeviceBus. Other ranges
         // are not used by this Tool.
          try {
-            Globals.memory.addObserver(this, 0xffff8000, 0xfffffff0);  // must be on word boundaries
+            DeviceBus.attach(device, 0xffff8000, 0xfffffff0);  // must be on word boundaries
          }
-             catch (AddressErrorException e)
+             catch (IllegalArgumentException e)
             {
-               System.out.println("\n\nScavengerHunt.action: Globals.memory.addObserver caused AddressErrorException.\n\n");
-               System.exit(0);
+               // Say so and close the window, which stops its repaint timer.
+               JOptionPane.showMessageDialog(window.frame, "ScavengerHunt cannot connect to MIPS memory: " + e.getMessage(),
+                                             "ScavengerHunt", JOptionPane.ERROR_MESSAGE);
+               window.frame.dispose();
+               return;
             }
       
       } // end ScavengerHunt.action()
    
     /*
-     * This method observes MIPS memory for directives to modify ScavengerHunt activity (that is,
-     * MIPS program write to MMIO) and updates instance variables to reflect that directive.
-     * This method takes action when it "observes" MIPS memory changes -- but this method
-     * must not write to those memory locations in order to prevent an infinite cycle of events.
-     * This method observes certain locations and then may (and does) write to OTHER locations.
+     * The game's device on the DeviceBus.  Only MIPS memory WRITES are of interest.
+     * That's a matter of policy: perhaps players should be prohibited from
+     * reading each other's memory spaces.
+     */
+      private final MemoryMappedDevice device = 
+          new MemoryMappedDevice()
+         {
+             public void deviceWritten(int address, int length, int value)
+            {
+               update(address, value);
+            }
+         };
+   
+    /*
+     * This method handles MIPS memory writes that are directives to modify ScavengerHunt activity
+     * (that is, MIPS program write to MMIO) and updates instance variables to reflect that directive.
+     * Writes this method makes to MIPS memory are not routed back to it by the DeviceBus,
+     * so it may (and does) write to OTHER locations.
      */
-       public void update(Observable o, Object arg)
+       private void update(int address, int data)
       {
-         MemoryAccessNotice notice;
-         int address;
-         int data;
-         boolean isWrite;
-         boolean isRead;
+         boolean isWrite = true;
+         boolean isRead = false;
          int energyLevel;
-      
-        // Here we are only interested in MemoryAccessNotice. For anything else, just return.
-         if ( ! (arg instanceof MemoryAccessNotice)) 
-            return;
-      
-        // Get pertinent information about this MemoryAccessNotice.
-         notice = (MemoryAccessNotice) arg;
-         address = notice.getAddress();
-         data = notice.getValue();
-         isWrite = (notice.getAccessType() == AccessNotice.WRITE);
-         isRead = ! isWrite;
-      
-      
-        // If we are only interested in MIPS memory WRITES, then just return on READS.
-        // That's a matter of policy: perhaps players should be prohibited from
-        // reading each other's memory spaces.
-         if ( ! isWrite)  
-            return;
         
            //System.out.println("ScavengerHunt.update: observed write access by player " + playerID + " on Mem[ " +
            //            Binary.intToHexString(address) + " ]");
@@ -0,0 +1,162 @@
+   package mars.tools;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Simplified TAGE (TAgged GEometric history length) branch predictor.  A bimodal
+ * base predictor is backed by tagged tables indexed by hashes of the branch address
+ * with global histories of geometrically increasing length: 4, 8, 16, 32 and 64 
+ * branches.  The table with the longest history whose entry's tag matches provides
+ * the prediction from its 3-bit counter.  On a misprediction an entry is allocated
+ * in a table with longer history, if one has an entry whose useful counter is 0;
+ * otherwise those useful counters are decremented.  An entry's useful counter rises
+ * when its prediction is right and differs from the one the next shorter matching
+ * history (or the base) would have made, and falls when it is wrong in that case.
+ */
+ 
+    public class TagePredictor extends BranchPredictor {
+      private static final int MAX_TABLES = 5;
+      private static final int TAG_BITS = 9;
+      private static final int TAG_MASK = (1 << TAG_BITS) - 1;
+      private BimodalPredictor base;
+      private int tables, entries, indexBits, mask;
+      private int[] historyLengths;
+      private short[] tags;        // table t's entry i is element t*entries+i
+      private byte[] counters;     // 3-bit, 4 or more predicts taken
+      private byte[] useful;       // 2-bit
+      private long history;        // most recent outcome in bit 0, 1 for taken
+      // results of the last lookup
+      private int[] lookupIndexes, lookupTags;
+      private int provider, alternate; // table numbers, -1 for base
+   
+   	/**
+   	 * @param entries number of entries in each tagged table, a power of 2
+   	 * @param tables number of tagged tables, 1 to 5
+   	 */
+       public TagePredictor(int entries, int tables) {
+         if (tables > MAX_TABLES) {
+            throw new IllegalArgumentException("TAGE has at most "+MAX_TABLES+" tagged tables");
+         }
+         base = new BimodalPredictor(entries * 4);
+         this.tables = tables;
+         this.entries = entries;
+         indexBits = Integer.numberOfTrailingZeros(entries);
+         mask = entries - 1;
+         historyLengths = new int[tables];
+         for (int t=0; t<tables; t++) {
+            historyLengths[t] = 4 << t;
+         }
+         tags = new short[tables * entries];
+         java.util.Arrays.fill(tags, (short) -1); // matches no tag
+         counters = new byte[tables * entries];
+         java.util.Arrays.fill(counters, (byte) 3);
+         useful = new byte[tables * entries];
+         lookupIndexes = new int[tables];
+         lookupTags = new int[tables];
+      }
+   
+       public String getName() {
+         return "tage "+entries+"x"+tables;
+      }
+   
+       public boolean predict(int address) {
+         lookup(address);
+         return (provider < 0) ? base.predict(address) : counters[provider*entries + lookupIndexes[provider]] >= 4;
+      }
+   
+       public void update(int address, boolean taken) {
+         lookup(address);
+         boolean alternatePrediction = (alternate < 0) ? base.predict(address) 
+                                       : counters[alternate*entries + lookupIndexes[alternate]] >= 4;
+         boolean prediction = alternatePrediction;
+         if (provider >= 0) {
+            int entry = provider*entries + lookupIndexes[provider];
+            prediction = counters[entry] >= 4;
+            if (prediction != alternatePrediction) {
+               useful[entry] = (byte) count(useful[entry], prediction == taken, 3);
+            }
+            counters[entry] = (byte) count(counters[entry], taken, 7);
+         } 
+         else {
+            base.update(address, taken);
+         }
+         if (prediction != taken && provider < tables-1) {
+            allocate(taken);
+         }
+         history = (history << 1) | (taken ? 1 : 0);
+      }
+   
+   	// Find the tables whose entry for the address matches its tag: the one with
+   	// the longest history provides, the next longest is the alternate.
+       private void lookup(int address) {
+         int word = address >>> 2;
+         provider = -1;
+         alternate = -1;
+         for (int t=0; t<tables; t++) {
+            int length = historyLengths[t];
+            lookupIndexes[t] = (word ^ (word >>> indexBits) ^ foldHistory(length, indexBits)) & mask;
+            lookupTags[t] = (word ^ foldHistory(length, TAG_BITS) ^ (foldHistory(length, TAG_BITS-1) << 1)) & TAG_MASK;
+            if (tags[t*entries + lookupIndexes[t]] == lookupTags[t]) {
+               alternate = provider;
+               provider = t;
+            }
+         }
+      }
+   
+   	// Newest length bits of the history, XORed together in bits-wide pieces.
+       private int foldHistory(int length, int bits) {
+         long h = (length >= 64) ? history : history & ((1L << length) - 1);
+         int folded = 0;
+         if (bits == 0) {
+            return folded;
+         }
+         while (h != 0) {
+            folded ^= (int) (h & ((1 << bits) - 1));
+            h >>>= bits;
+         }
+         return folded;
+      }
+   
+   	// After a misprediction, take over an entry no longer useful in a table with
+   	// longer history than the provider's, else age those entries.
+       private void allocate(boolean taken) {
+         for (int t=provider+1; t<tables; t++) {
+            int entry = t*entries + lookupIndexes[t];
+            if (useful[entry] == 0) {
+               tags[entry] = (short) lookupTags[t];
+               counters[entry] = (byte) (taken ? 4 : 3);
+               return;
+            }
+         }
+         for (int t=provider+1; t<tables; t++) {
+            int entry = t*entries + lookupIndexes[t];
+            useful[entry]--;
+         }
+      }
+   }
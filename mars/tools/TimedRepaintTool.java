@@ -0,0 +1,151 @@
+   package mars.tools;
+   import java.awt.Rectangle;
+   import java.awt.event.*;
+   import java.util.Observable;
+   import mars.mips.hardware.AccessNotice;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Base for tools that show memory as a grid of units and repaint it at a fixed rate.
+ * Memory notices only record the changed units, through addChangedArea(); a Swing timer
+ * started by startRepaintTimer() calls updateDisplay(), which repaints the rectangle of
+ * units changed since the last repaint.  This lets the tool keep up with a program
+ * running at full speed.
+ */
+ 
+    abstract class TimedRepaintTool extends AbstractMarsToolAndApplication {
+      private int repaintIntervalMillis;
+      private javax.swing.Timer repaintTimer;
+      private int changedTop = 1, changedLeft, changedBottom, changedRight; // none if top > bottom
+   
+   	/**
+   	 * @param title String containing title for title bar
+   	 * @param heading String containing text for heading shown in upper part of window.
+   	 * @param repaintIntervalMillis interval between repaints of the changed area.  While
+   	 * the tool is open the display is repainted at this interval, not after each memory
+   	 * access, so the cost of painting does not grow with the program's speed.
+   	 */
+       protected TimedRepaintTool(String title, String heading, int repaintIntervalMillis) {
+         super(title, heading);
+         this.repaintIntervalMillis = repaintIntervalMillis;
+      }
+   
+      /**
+   	 * Called when receiving notice of access to MIPS memory.  Unlike the inherited version,
+   	 * does not update the display after each notice; the repaint timer does that instead.
+   	 * @param resource the attached MIPS resource 
+   	 * @param accessNotice AccessNotice information provided by the resource
+   	 */
+       public void update(Observable resource, Object accessNotice) {
+         if (((AccessNotice)accessNotice).accessIsFromMIPS()) { 
+            processMIPSUpdate(resource, (AccessNotice)accessNotice);
+         }
+      }
+   
+   	/**
+   	 *  Start the repaint timer.  Call once the display has been built.
+   	 */
+       protected void startRepaintTimer() {
+         repaintTimer = new javax.swing.Timer(repaintIntervalMillis, 
+                new ActionListener() {
+                   public void actionPerformed(ActionEvent e) {
+                     repaintTimerFired();
+                  }
+               });
+         repaintTimer.start();
+      }
+   
+   	/**
+   	 *  Called on the Swing event thread at each tick of the repaint timer.  By default 
+   	 *  just calls updateDisplay().
+   	 */
+       protected void repaintTimerFired() {
+         updateDisplay();
+      }
+   
+   	/**
+   	 *  Stop the repaint timer when the tool is closed.  Subclasses overriding this
+   	 *  must call it.
+   	 */
+       protected void performSpecialClosingDuties() {
+         if (repaintTimer != null) {
+            repaintTimer.stop();
+         }
+      }
+   
+   	/**
+   	 *  Repaints the part of the display changed since it was last painted.  Called by the
+   	 *  repaint timer, after display configuration changes, and after each execution step 
+   	 *  when Mars is running in timed mode.
+   	 */
+       protected void updateDisplay() {
+         Rectangle changed = takeChangedArea();
+         if (changed != null) {
+            repaintUnits(changed);
+         }
+      }
+   
+   	/**
+   	 *  Repaint the given rectangle of units, in rows and columns, on the display.
+   	 *  @param units the rectangle of units to repaint
+   	 */
+       protected abstract void repaintUnits(Rectangle units);
+   
+   	/**
+   	 *  Add a rectangle of units to the area to be repainted.  May be called from any thread.
+   	 */
+       protected synchronized void addChangedArea(int top, int left, int bottom, int right) {
+         if (changedTop > changedBottom) {
+            changedTop = top;
+            changedLeft = left;
+            changedBottom = bottom;
+            changedRight = right;
+            return;
+         }
+         changedTop = Math.min(changedTop, top);
+         changedLeft = Math.min(changedLeft, left);
+         changedBottom = Math.max(changedBottom, bottom);
+         changedRight = Math.max(changedRight, right);
+      }
+   
+   	/**
+   	 *  Returns the rectangle of units changed since the last call, null if none.
+   	 */
+       protected synchronized Rectangle takeChangedArea() {
+         if (changedTop > changedBottom) {
+            return null;
+         }
+         Rectangle changed = new Rectangle(changedLeft, changedTop, changedRight-changedLeft+1, 
+                                           changedBottom-changedTop+1);
+         changedTop = 1;
+         changedBottom = 0;
+         return changed;
+      }
+   }
@@ -0,0 +1,75 @@
+   package mars.tools;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Tournament branch predictor: a bimodal and a gshare predictor of the same size,
+ * and a table of 2-bit chooser counters, indexed by address, that learns which of
+ * the two to believe for each branch.  A chooser counter of 2 or 3 selects gshare.
+ */
+ 
+    public class TournamentPredictor extends BranchPredictor {
+      private BimodalPredictor bimodal;
+      private GsharePredictor gshare;
+      private byte[] choosers;
+      private int mask;
+      private int historyBits;
+   
+   	/**
+   	 * @param entries number of counters in each table, a power of 2
+   	 * @param historyBits number of branch outcomes in gshare's global history
+   	 */
+       public TournamentPredictor(int entries, int historyBits) {
+         bimodal = new BimodalPredictor(entries);
+         gshare = new GsharePredictor(entries, historyBits);
+         choosers = new byte[entries];
+         java.util.Arrays.fill(choosers, (byte) 1);
+         mask = entries - 1;
+         this.historyBits = historyBits;
+      }
+   
+       public String getName() {
+         return "tournament "+choosers.length+"/"+historyBits;
+      }
+   
+       public boolean predict(int address) {
+         return (choosers[(address >>> 2) & mask] >= 2) ? gshare.predict(address) : bimodal.predict(address);
+      }
+   
+       public void update(int address, boolean taken) {
+         boolean bimodalPrediction = bimodal.predict(address);
+         boolean gsharePrediction = gshare.predict(address);
+         if (bimodalPrediction != gsharePrediction) {
+            int index = (address >>> 2) & mask;
+            choosers[index] = (byte) count(choosers[index], gsharePrediction == taken, 3);
+         }
+         bimodal.update(address, taken);
+         gshare.update(address, taken);
+      }
+   }
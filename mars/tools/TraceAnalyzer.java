@@ -0,0 +1,300 @@
+   package mars.tools;
+   import java.io.*;
+   import java.util.*;
+   import mars.mips.hardware.Memory;
+   import mars.simulator.ExecutionHook;
+   import mars.simulator.TraceReplayer;
+   import mars.util.Binary;
+
+/*
+Copyright (c) 2003-2011,  Pete Sanderson and Kenneth Vollmar
+
+Developed by Pete Sanderson (psanderson@otterbein.edu)
+and Kenneth Vollmar (kenvollmar@missouristate.edu)
+
+Permission is hereby granted, free of charge, to any person obtaining 
+a copy of this software and associated documentation files (the 
+"Software"), to deal in the Software without restriction, including 
+without limitation the rights to use, copy, modify, merge, publish, 
+distribute, sublicense, and/or sell copies of the Software, and to 
+permit persons to whom the Software is furnished to do so, subject 
+to the following conditions:
+
+The above copyright notice and this permission notice shall be 
+included in all copies or substantial portions of the Software.
+
+THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, 
+EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF 
+MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. 
+IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR 
+ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF 
+CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION 
+WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+
+(MIT license, http://www.opensource.org/licenses/mit-license.html)
+ */
+
+/**
+ * Runs the analyses of several MARS tools over a trace recorded with the <tt>trace</tt>
+ * command-line option, without a display and without running the program again.  Usage:
+ * <tt>java mars.tools.TraceAnalyzer &lt;trace file&gt; &lt;analysis&gt; ...</tt>, where
+ * each analysis is one of:
+ * <ul>
+ * <li><tt>stats</tt>: instructions executed in each category of the Instruction 
+ * Statistics tool.
+ * <li><tt>refs [&lt;words per unit&gt;]</tt>: data segment references counted per unit 
+ * of memory, as the Memory Reference Visualization tool colors them.
+ * <li><tt>bht [&lt;entries&gt;[:&lt;history&gt;[:t|nt]]]</tt>: branch prediction with the 
+ * Branch History Table of the BHT Simulator tool; defaults are its defaults.
+ * <li><tt>cache &lt;spec&gt;</tt>: data cache configurations, as for CacheSweep and 
+ * the Data Cache Simulator tool.
+ * <li><tt>hierarchy &lt;spec&gt;</tt>: a cache hierarchy, as for CacheHierarchy.
+ * <li><tt>bp &lt;spec&gt;</tt>: branch predictors, as for BranchPredictorEvaluator.
+ * </ul>
+ * All the analyses given share one pass over the trace, and their reports are displayed
+ * in order.  A branch's outcome is taken from the address fetched after it (after its 
+ * delay slot if the trace was recorded with delayed branching), since the trace holds
+ * no register file to evaluate its condition.
+ */
+ 
+    public class TraceAnalyzer {
+   
+       public static void main(String[] args) {
+         if (args.length < 2) {
+            System.out.println("Usage: java mars.tools.TraceAnalyzer <trace file> <analysis> ...");
+            System.out.println("  where each analysis is one of: stats, refs [<words per unit>],");
+            System.out.println("  bht [<entries>[:<history>[:t|nt]]], cache <spec>, hierarchy <spec>, bp <spec>");
+            return;
+         }
+         try {
+            TraceReplayer replayer = new TraceReplayer(args[0]);
+            ArrayList analyses = new ArrayList();
+            for (int i=1; i<args.length; i++) {
+               String name = args[i].toLowerCase();
+               String parameter = (i+1 < args.length && !isAnalysisName(args[i+1])) ? args[i+1] : null;
+               if (name.equals("stats")) {
+                  analyses.add(new InstructionStatisticsAnalysis());
+               } 
+               else if (name.equals("refs")) {
+                  analyses.add(new MemoryReferenceAnalysis(parameter == null ? 1 : parsePositive(parameter)));
+               } 
+               else if (name.equals("bht")) {
+                  analyses.add(new BranchHistoryAnalysis(parameter, replayer.isDelayedBranching()));
+               } 
+               else if (name.equals("cache") && parameter != null) {
+                  analyses.add(new CacheSweep(parameter));
+               } 
+               else if (name.equals("hierarchy") && parameter != null) {
+                  analyses.add(new CacheHierarchy(parameter));
+               } 
+               else if (name.equals("bp") && parameter != null) {
+                  analyses.add(new BranchPredictorEvaluator(parameter, replayer.isDelayedBranching()));
+               } 
+               else {
+                  throw new IllegalArgumentException("invalid analysis "+args[i]);
+               }
+               if (parameter != null) {
+                  i++;
+               }
+            }
+            ExecutionHook[] hooks = (ExecutionHook[]) analyses.toArray(new ExecutionHook[analyses.size()]);
+            long steps = replayer.replay(hooks);
+            if (replayer.hasEndAddress()) {
+               finish(hooks, replayer.getEndAddress());
+            }
+            System.out.println("Trace "+args[0]+": "+steps+" instructions");
+            for (int i=0; i<hooks.length; i++) {
+               System.out.print("\n"+getReport(hooks[i]));
+            }
+         } 
+             catch (IllegalArgumentException e) {
+               System.out.println("Error: "+e.getMessage());
+            }
+             catch (IOException e) {
+               System.out.println("Error reading trace: "+e.getMessage());
+            }
+      }
+   
+       private static boolean isAnalysisName(String arg) {
+         String name = arg.toLowerCase();
+         return name.equals("stats") || name.equals("refs") || name.equals("bht") 
+                || name.equals("cache") || name.equals("hierarchy") || name.equals("bp");
+      }
+   
+       private static int parsePositive(String number) {
+         try {
+            int value = Integer.parseInt(number);
+            if (value > 0) {
+               return value;
+            }
+         } 
+             catch (NumberFormatException e) {
+            }
+         throw new IllegalArgumentException("invalid number "+number);
+      }
+   
+   	// Resolve the branches still pending at the end of the trace, so they are counted.
+       private static void finish(ExecutionHook[] analyses, int nextAddress) {
+         for (int i=0; i<analyses.length; i++) {
+            if (analyses[i] instanceof BranchPredictorEvaluator) {
+               ((BranchPredictorEvaluator) analyses[i]).finish(nextAddress);
+            } 
+            else if (analyses[i] instanceof BranchHistoryAnalysis) {
+               ((BranchHistoryAnalysis) analyses[i]).finish(nextAddress);
+            }
+         }
+      }
+   
+       private static String getReport(ExecutionHook analysis) {
+         if (analysis instanceof CacheSweep) {
+            return ((CacheSweep) analysis).getReport();
+         }
+         if (analysis instanceof CacheHierarchy) {
+            return ((CacheHierarchy) analysis).getReport();
+         }
+         if (analysis instanceof BranchPredictorEvaluator) {
+            return ((BranchPredictorEvaluator) analysis).getReport();
+         }
+         return analysis.toString();
+      }
+   
+   	// Counts instructions by category, as the Instruction Statistics tool does.
+       private static class InstructionStatisticsAnalysis extends ExecutionHook {
+         private long[] counters = new long[InstructionStatistics.MAX_CATEGORY];
+         private long total;
+      
+          public void instructionFetched(int address, int binaryStatement) {
+            counters[InstructionStatistics.getInstructionCategory(binaryStatement)]++;
+            total++;
+         }
+      
+          public String toString() {
+            StringBuilder report = new StringBuilder("Instruction statistics: "+total+" instructions\n");
+            for (int i=0; i<counters.length; i++) {
+               report.append(String.format("%-8s %12d %6.1f%%%n", InstructionStatistics.getCategoryLabel(i), 
+                             counters[i], (total == 0) ? 0.0 : counters[i]*100.0/total));
+            }
+            return report.toString();
+         }
+      }
+   
+   	// Counts references per unit of the data segment, as the Memory Reference 
+   	// Visualization tool does with its default base address.
+       private static class MemoryReferenceAnalysis extends ExecutionHook {
+         private int wordsPerUnit;
+         private HashMap counts = new HashMap(); // unit number (Integer) -> count (long[1])
+      
+          MemoryReferenceAnalysis(int wordsPerUnit) {
+            this.wordsPerUnit = wordsPerUnit;
+         }
+      
+          public void memoryRead(int address, int length, int value) {
+            count(address);
+         }
+      
+          public void memoryWritten(int address, int length, int value) {
+            count(address);
+         }
+      
+          private void count(int address) {
+            if (!Memory.inDataSegment(address)) {
+               return;
+            }
+            Integer unit = new Integer((address - Memory.dataSegmentBaseAddress)/Memory.WORD_LENGTH_BYTES/wordsPerUnit);
+            long[] count = (long[]) counts.get(unit);
+            if (count == null) {
+               count = new long[1];
+               counts.put(unit, count);
+            }
+            count[0]++;
+         }
+      
+          public String toString() {
+            StringBuilder report = new StringBuilder("Memory references: "+counts.size()+" units of "
+                                   +wordsPerUnit+" word(s) referenced\n");
+            Integer[] units = (Integer[]) counts.keySet().toArray(new Integer[counts.size()]);
+            Arrays.sort(units);
+            for (int i=0; i<units.length; i++) {
+               int address = Memory.dataSegmentBaseAddress + units[i].intValue()*wordsPerUnit*Memory.WORD_LENGTH_BYTES;
+               report.append(Binary.intToHexString(address)+" "+((long[]) counts.get(units[i]))[0]+"\n");
+            }
+            return report.toString();
+         }
+      }
+   
+   	// Predicts branches with a Branch History Table of BHTEntry objects, as the 
+   	// BHT Simulator tool does, taking outcomes from the trace's fetch addresses.
+       private static class BranchHistoryAnalysis extends ExecutionHook {
+         private BHTEntry[] entries;
+         private int history;
+         private boolean delayedBranching;
+         private boolean pending, delaySlotSeen;
+         private int pendingIndex, pendingTarget;
+      
+          BranchHistoryAnalysis(String parameter, boolean delayedBranching) {
+            int size = BHTSimulator.BHT_DEFAULT_SIZE;
+            history = BHTSimulator.BHT_DEFAULT_HISTORY;
+            boolean initVal = BHTSimulator.BHT_DEFAULT_INITVAL;
+            if (parameter != null) {
+               String[] parts = parameter.split(":");
+               size = parsePositive(parts[0]);
+               if (parts.length > 1) {
+                  history = parsePositive(parts[1]);
+               }
+               if (parts.length > 2) {
+                  initVal = parts[2].equalsIgnoreCase("t");
+               }
+            }
+            entries = new BHTEntry[size];
+            for (int i=0; i<size; i++) {
+               entries[i] = new BHTEntry(history, initVal);
+            }
+            this.delayedBranching = delayedBranching;
+         }
+      
+          public void instructionFetched(int address, int binaryStatement) {
+            if (pending) {
+               if (delayedBranching && !delaySlotSeen) {
+                  delaySlotSeen = true;
+               } 
+               else {
+                  entries[pendingIndex].updatePrediction(address == pendingTarget);
+                  pending = false;
+               }
+            }
+            if (BHTSimulator.isBranchInstruction(binaryStatement)) {
+               pending = true;
+               delaySlotSeen = false;
+               pendingIndex = (address >>> 2) % entries.length;
+               pendingTarget = BHTSimulator.extractBranchAddress(address, binaryStatement);
+            }
+         }
+      
+      	// Resolve the branch still pending at the end of the trace.  With delayed branching,
+      	// a branch whose delay slot was not reached is left out.
+          void finish(int nextAddress) {
+            if (pending && (!delayedBranching || delaySlotSeen)) {
+               entries[pendingIndex].updatePrediction(nextAddress == pendingTarget);
+            }
+            pending = false;
+         }
+      
+          public String toString() {
+            long correct = 0, incorrect = 0;
+            StringBuilder table = new StringBuilder();
+            for (int i=0; i<entries.length; i++) {
+               correct += entries[i].getStatsPredCorrect();
+               incorrect += entries[i].getStatsPredIncorrect();
+               table.append(String.format("%5d %-16s %-10s %10d %10d %9.2f%%%n", i, entries[i].getHistoryAsStr(),
+                            entries[i].getPredictionAsStr(), entries[i].getStatsPredCorrect(),
+                            entries[i].getStatsPredIncorrect(), entries[i].getStatsPredPrecision()));
+            }
+            return "Branch History Table: "+entries.length+" entries, history "+history+", "
+                   +(correct+incorrect)+" branches, "
+                   +String.format("%.2f%%", (correct+incorrect == 0) ? 0.0 : correct*100.0/(correct+incorrect))
+                   +" predicted correctly\n"
+                   +String.format("%5s %-16s %-10s %10s %10s %10s%n", "index", "history", "prediction", "correct", "incorrect", "precision")
+                   +table;
+         }
+      }
+   }
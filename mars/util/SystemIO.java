@@ -1,5 +1,6 @@
    package mars.util;
    import mars.*;
+   import mars.simulator.*;
    import java.io.*;
    import javax.swing.*;
    import java.util.*;
@@ -68,6 +69,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	// Added by DPS 28 Feb 2008.  See getInputReader() below.
       private static BufferedReader inputReader = null;
    
+      // Limits on output and file use by the MIPS program, -1 meaning no limit, and
+      // the amounts used so far.  Set by command-line MARS for untrusted programs.
+      private static int outputByteLimit = -1;
+      private static int openFileLimit = -1;
+      private static long bytesOutput = 0;
+      private static int filesOpened = 0;
+      private static boolean outputLimitReached = false;
+   
     /**
      * Implements syscall to read an integer value.  
      * Client is responsible for catching NumberFormatException.
@@ -176,6 +185,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      */
        public static void printString(String string)
       {
+         string = limitOutput(string);
          if (Globals.getGui() == null)
          {
             System.out.print(string);
@@ -285,6 +295,39 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
      */
    
        public static int writeToFile(int fd, byte[] myBuffer, int lengthRequested)
+      {
+         int lengthAllowed = lengthRequested;
+         if (outputByteLimit >= 0 && lengthRequested > 0) {
+            lengthAllowed = (int) Math.min(lengthRequested, Math.max(0, outputByteLimit - bytesOutput));
+         }
+         if (lengthAllowed == lengthRequested) {
+            return countOutput(writeBytes(fd, myBuffer, lengthRequested), lengthRequested);
+         }
+         // Only part of the output fits: write that part and report its length, then stop.
+         int written = -1;
+         if (lengthAllowed > 0) {
+            written = countOutput(writeBytes(fd, java.util.Arrays.copyOf(myBuffer, lengthAllowed), lengthAllowed), 
+                                  lengthAllowed);
+         }
+         else {
+            fileErrorString = new String(
+                    "Write to file with fd " + fd + " exceeds output limit of " + outputByteLimit + " bytes");
+         }
+         stopAtOutputLimit();
+         return written;
+      }
+   
+      // Charge a completed write against the output limit.  Returns the write's result.
+       private static int countOutput(int written, int lengthRequested)
+      {
+         if (written > 0) {
+            bytesOutput += Math.min(written, lengthRequested);
+         }
+         return written;
+      }
+   
+      // Does the work of writeToFile(), without the output limit.
+       private static int writeBytes(int fd, byte[] myBuffer, int lengthRequested)
       {
        /////////////// DPS 8-Jan-2013  ////////////////////////////////////////////////////
        /// Write to STDOUT or STDERR file descriptor while using IDE - write to Messages pane. 
@@ -437,6 +480,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                 // Set up input stream from disk file
                inputStream = new FileInputStream(filename);
                FileIOData.setStreamInUse(fdToUse, inputStream); // Save stream for later use
+               filesOpened++;
             } 
                 catch (FileNotFoundException e)
                {
@@ -452,6 +496,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             { 
                outputStream = new FileOutputStream(filename, ((flags & O_APPEND) != 0) );
                FileIOData.setStreamInUse(fdToUse, outputStream); // Save stream for later use
+               filesOpened++;
             } 
                 catch (FileNotFoundException e)
                {
@@ -481,6 +526,100 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          FileIOData.resetFiles();
       }
    
+    /**
+     * Set limits on what the MIPS program may output and open, and reset the amounts used.
+     * The output limit covers console output and writes to files.  When it is reached the
+     * output is cut off and the simulation is stopped.  The open file limit is the total
+     * number of files the program may open during the run; it is separate from 
+     * SYSCALL_MAXFILES, which limits files open at the same time.
+     *
+     * @param byteLimit maximum number of bytes output, or -1 for no limit
+     * @param fileLimit maximum number of files opened, or -1 for no limit
+     */
+       public static void setResourceLimits(int byteLimit, int fileLimit)
+      {
+         outputByteLimit = byteLimit;
+         openFileLimit = fileLimit;
+         bytesOutput = 0;
+         filesOpened = 0;
+         outputLimitReached = false;
+      }
+   
+    /**
+     * Number of bytes output by the MIPS program, to the console and to files, since the
+     * most recent call to setResourceLimits.
+     *
+     * @return number of bytes output
+     */
+       public static long getBytesOutput()
+      {
+         return bytesOutput;
+      }
+   
+    /**
+     * Number of files opened by the MIPS program since the most recent call to setResourceLimits.
+     *
+     * @return number of files opened
+     */
+       public static int getFilesOpened()
+      {
+         return filesOpened;
+      }
+   
+    /**
+     * Whether the MIPS program was stopped for reaching the output limit.
+     *
+     * @return true if the output limit was reached, false otherwise
+     */
+       public static boolean isOutputLimitReached()
+      {
+         return outputLimitReached;
+      }
+   
+      // Count console output against the output limit, returning the part of it that fits.
+      // Output is counted in bytes as encoded for the console, so a character outside
+      // ASCII may count as more than one byte.
+       private static String limitOutput(String string)
+      {
+         if (outputByteLimit < 0) {
+            bytesOutput += encodedLength(string);
+            return string;
+         }
+         long length = 0;
+         for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            int charLength = (c < 0x80) ? 1 : encodedLength(String.valueOf(c));
+            if (bytesOutput + length + charLength > outputByteLimit) {
+               string = string.substring(0, i);
+               stopAtOutputLimit();
+               break;
+            }
+            length += charLength;
+         }
+         bytesOutput += length;
+         return string;
+      }
+   
+      // Number of bytes in string when encoded in the default charset, as System.out does.
+       private static int encodedLength(String string)
+      {
+         for (int i = 0; i < string.length(); i++) {
+            if (string.charAt(i) >= 0x80) {
+               return string.getBytes().length;
+            }
+         }
+         return string.length();
+      }
+   
+      // The simulation stops at the end of the instruction now executing.
+       private static void stopAtOutputLimit()
+      {
+         if (!outputLimitReached) {
+            outputLimitReached = true;
+            Simulator.getInstance().stopExecution(null);
+         }
+      }
+   
      /**
       *  Retrieve file operation or error message
    	*
@@ -491,6 +630,18 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          return fileErrorString;
       }
    
+    /**
+     * Read one character of standard input, from the same reader the read syscalls
+     * use when there is no GUI, so a device reading standard input does not take 
+     * characters from under them.
+     * @return the character, or -1 at end of input
+     * @throws IOException if standard input cannot be read
+     */
+       public static int readStandardInputCharacter() throws IOException
+      {
+         return getInputReader().read();
+      }
+   
       ///////////////////////////////////////////////////////////////////////
       // Private method to simply return the BufferedReader used for
    	// keyboard input, redirected input, or piped input.
@@ -642,6 +793,15 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                return -1;
             }
          
+            if (openFileLimit >= 0 && filesOpened >= openFileLimit)
+            {
+               fileErrorString = new String(
+                        "File name " + filename
+                        + " exceeds limit of " + openFileLimit
+                        + " files opened");
+               return -1;
+            }
+         
             while (fileNames[i] != null && i < SYSCALL_MAXFILES)
             {
                i++;
@@ -47,7 +47,6 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    public class DataSegmentWindow extends JInternalFrame implements Observer {
    
       private static final String [] dataSegmentNames={"Data", "Stack", "Kernel"};
-      private static  Object[][] dataData;
    
       private static JTable dataTable;
       private JScrollPane dataTableScroller;
@@ -61,16 +60,16 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       static final int NUMBER_OF_COLUMNS = VALUES_PER_ROW + 1;// 1 for address and 8 for values
       static final int BYTES_PER_VALUE = 4;
       static final int BYTES_PER_ROW = VALUES_PER_ROW * BYTES_PER_VALUE;
+   	// The table covers a whole memory segment and is scrolled.  MEMORY_CHUNK_SIZE is only
+   	// used for an address outside of every segment, which is shown by itself in a table
+   	// of NUMBER_OF_ROWS rows.  The Prev and Next buttons scroll by half the visible rows.
       static final int MEMORY_CHUNK_SIZE = NUMBER_OF_ROWS * BYTES_PER_ROW;
-   	// PREV_NEXT_CHUNK_SIZE determines how many rows will be scrolled when Prev or Next buttons fire.
-   	// MEMORY_CHUNK_SIZE/2 means scroll half a table up or down.  Easier to view series that flows off the edge.
-   	// MEMORY_CHUNK_SIZE means scroll a full table's worth.  Scrolls through memory faster.  DPS 26-Jan-09
-      static final int PREV_NEXT_CHUNK_SIZE = MEMORY_CHUNK_SIZE/2;
       static final int ADDRESS_COLUMN = 0;
       static final boolean USER_MODE = false;
       static final boolean KERNEL_MODE = true;
    
       private boolean addressHighlighting = false;
+      private boolean observingWrites = false; // true while memory write notices keep the table current
       private boolean asciiDisplay = false;
       private int addressRow, addressColumn, addressRowFirstAddress;
       private Settings settings;
@@ -220,16 +219,19 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          if (rowColumn==null || rowColumn.x < 0 || rowColumn.y < 0) {
             return;
          }
+         DataTableModel model = (DataTableModel) dataTable.getModel();
+         int previousRow = model.getRowForAddress(this.addressRowFirstAddress);
          this.addressRow = rowColumn.x;
          this.addressColumn = rowColumn.y; 
-         this.addressRowFirstAddress = Binary.stringToInt(dataTable.getValueAt(this.addressRow,ADDRESS_COLUMN).toString());
-      //System.out.println("Address "+Binary.intToHexString(address)+" becomes row "+ addressRow + " column "+addressColumn+
-      //" starting addr "+dataTable.getValueAt(this.addressRow,ADDRESS_COLUMN));
-         // Tell the system that table contents have changed.  This will trigger re-rendering 
-      	// during which cell renderers are obtained.  The cell of interest (identified by 
-      	// instance variables this.addressRow and this.addressColumn) will get a renderer
-      	// with highlight background color and all others get renderer with default background. 
-         dataTable.tableChanged(new TableModelEvent(dataTable.getModel(),0,dataData.length-1));
+         this.addressRowFirstAddress = model.getRowAddress(this.addressRow);
+         // Tell the system that the previously highlighted row and this one have changed.  This
+      	// will trigger re-rendering during which cell renderers are obtained.  The cell of interest
+      	// (identified by instance variables this.addressRowFirstAddress and this.addressColumn) will
+      	// get a renderer with highlight background color and all others get renderer with default background. 
+         if (previousRow >= 0 && previousRow != this.addressRow) {
+            model.fireTableRowsUpdated(previousRow, previousRow);
+         }
+         model.fireTableRowsUpdated(this.addressRow, this.addressRow);
       }
    	 
    	 // Given address, will compute table cell location, adjusting table if necessary to
@@ -258,40 +260,25 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          baseAddressSelector.setSelectedIndex(desiredComboBoxIndex);
          ((CustomComboBoxModel) baseAddressSelector.getModel()).forceComboBoxUpdate(desiredComboBoxIndex);
          baseAddressButtons[desiredComboBoxIndex].getActionListeners()[0].actionPerformed(null);
-      	// STEP 3:  Display memory chunk containing this address, which may be 
-      	// different than the one just displayed.
-         int baseAddress = displayBaseAddressArray[desiredComboBoxIndex];
-         if (baseAddress == -1) {
-            if (desiredComboBoxIndex == GLOBAL_POINTER_ADDRESS_INDEX) {
-               baseAddress = RegisterFile.getValue(RegisterFile.GLOBAL_POINTER_REGISTER) 
-                             - (RegisterFile.getValue(RegisterFile.GLOBAL_POINTER_REGISTER) % BYTES_PER_ROW);
-            } 
-            else if (desiredComboBoxIndex == STACK_POINTER_BASE_ADDRESS_INDEX) {
-               baseAddress = RegisterFile.getValue(RegisterFile.STACK_POINTER_REGISTER) 
-                             - (RegisterFile.getValue(RegisterFile.STACK_POINTER_REGISTER) % BYTES_PER_ROW);            } 
-            else {
-               return null;// shouldn't happen since these are the only two
-            }
+      	// STEP 3:  Make sure the table covers this address, which may be outside the 
+      	// segment just displayed.
+         DataTableModel model = (DataTableModel) dataTable.getModel();
+         if (model.getRowForAddress(address) < 0) {
+            updateModelForMemoryRange(alignToRow(address));
          }
-         int byteOffset  = address - baseAddress;
-         int chunkOffset = byteOffset / MEMORY_CHUNK_SIZE; 
-         int byteOffsetIntoChunk = byteOffset % MEMORY_CHUNK_SIZE;
-      	// Subtract 1 from chunkOffset because we're gonna call the "next" action
-      	// listener to get the correct chunk loaded and displayed, and the first
-      	// thing it does is increment firstAddress by MEMORY_CHUNK_SIZE.  Here
-      	// we do an offsetting decrement in advance because we don't want the
-      	// increment but we want the other actions that method provides.
-         firstAddress = firstAddress + chunkOffset * MEMORY_CHUNK_SIZE - PREV_NEXT_CHUNK_SIZE;
-         nextButton.getActionListeners()[0].actionPerformed(null);
       	// STEP 4:  Find cell containing this address.  Add 1 to column calculation
       	// because table column 0 displays address, not memory contents.  The 
       	// "convertColumnIndexToView()" is not necessary because the columns cannot be
       	// reordered, but I included it as a precautionary measure in case that changes.
-         int addrRow    = byteOffsetIntoChunk / BYTES_PER_ROW;
-         int addrColumn = byteOffsetIntoChunk % BYTES_PER_ROW / BYTES_PER_VALUE + 1;
+         int addrRow    = model.getRowForAddress(address);
+         int addrColumn = (address - model.getRowAddress(addrRow)) / BYTES_PER_VALUE + 1;
          addrColumn = dataTable.convertColumnIndexToView(addrColumn); 
          Rectangle addressCell = dataTable.getCellRect(addrRow, addrColumn, true);
-      	// STEP 5:  Center the row containing the cell of interest, to the extent possible.
+      	// STEP 5:  Center the row containing the cell of interest, to the extent possible,
+      	// unless it is already in view.
+         if (dataTableScroller.getViewport().getViewRect().contains(addressCell)) {
+            return new Point(addrRow, addrColumn);
+         }
          double cellHeight = addressCell.getHeight();
          double viewHeight = dataTableScroller.getViewport().getExtentSize().getHeight();
          int numberOfVisibleRows = (int) (viewHeight / cellHeight);
@@ -407,27 +394,16 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	//  Generates the Address/Data part of the Data Segment window.
    	//   Returns the JScrollPane for the Address/Data part of the Data Segment window.
       private JScrollPane generateDataPanel(){
-         dataData = new Object[NUMBER_OF_ROWS][NUMBER_OF_COLUMNS];
-         int valueBase = Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase();
+         int valueBase = getValueDisplayFormat();
          int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
-         int address = this.homeAddress;
-         for(int row=0; row<NUMBER_OF_ROWS; row++){
-            dataData[row][ADDRESS_COLUMN] = NumberDisplayBaseChooser.formatUnsignedInteger(address, addressBase);
-            for (int column=1; column<NUMBER_OF_COLUMNS; column++) {
-               try {
-                  dataData[row][column] = NumberDisplayBaseChooser.formatNumber(Globals.memory.getRawWord(address), valueBase);
-               } 
-                  catch (AddressErrorException aee) {
-                     dataData[row][column] = NumberDisplayBaseChooser.formatNumber(0, valueBase);
-                  }
-               address += BYTES_PER_VALUE;
-            }
-         }
          String [] names = new String[NUMBER_OF_COLUMNS];
          for (int i=0; i<NUMBER_OF_COLUMNS; i++) {
             names[i] = getHeaderStringForColumn(i, addressBase);
          }
-         dataTable= new MyTippedJTable(new DataTableModel(dataData, names));
+         DataTableModel model = new DataTableModel(names, valueBase, addressBase);
+         int[] range = getSegmentRange(this.homeAddress);
+         model.setRange(range[0], range[1]);
+         dataTable= new MyTippedJTable(model);
       	// Do not allow user to re-order columns; column order corresponds to MIPS memory order
          dataTable.getTableHeader().setReorderingAllowed(false);
          dataTable.setRowSelectionAllowed(false);
@@ -443,6 +419,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
          dataTableScroller = new JScrollPane(dataTable,ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS, 
                                 ScrollPaneConstants.HORIZONTAL_SCROLLBAR_ALWAYS);
+      	// Keep firstAddress and the Prev/Next buttons in step with scrolling.
+         dataTableScroller.getViewport().addChangeListener(
+               new ChangeListener() {
+                  public void stateChanged(ChangeEvent e) {
+                     int row = dataTable.rowAtPoint(dataTableScroller.getViewport().getViewPosition());
+                     if (row >= 0) {
+                        firstAddress = ((DataTableModel) dataTable.getModel()).getRowAddress(row);
+                        updatePrevNextButtonEnableStatus();
+                     }
+                  }
+               });
          return dataTableScroller;
       }
       
@@ -475,7 +462,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 */
       public void clearHighlighting() {
          addressHighlighting=false;
-         dataTable.tableChanged(new TableModelEvent(dataTable.getModel(),0,dataData.length-1));
+         DataTableModel model = (DataTableModel) dataTable.getModel();
+         int row = model.getRowForAddress(addressRowFirstAddress);
+         if (row >= 0) {
+            model.fireTableRowsUpdated(row, row);
+         }
       	// The below addresses situation in which addressRow and addressColum hold their
       	// values across assemble operations.  Whereupon at the first step of the next
       	// run the last cells from the previous run are highlighted!  This method is called
@@ -492,71 +483,105 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    	
    	/**
-   	 * Update table model with contents of new memory "chunk".  Mars supports megabytes of
-   	 * data segment space so we only plug a "chunk" at a time into the table.
-   	 * @param firstAddr the first address in the memory range to be placed in the model.
+   	 * Display memory starting at the given address.  The table covers the whole memory
+   	 * segment containing that address and is scrolled so the address is in the top row.
+   	 * Rows are read from memory and formatted as they come into view.
+   	 * @param firstAddr the first address in the memory range to be displayed.
    	 */
    	 
       public void updateModelForMemoryRange(int firstAddr) {
          if (tablePanel.getComponentCount() == 0) 
             return; // ignore if no content to change
-         int valueBase = getValueDisplayFormat();
-         int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
-         int address = firstAddr;
-         TableModel dataModel = dataTable.getModel();
-         for (int row=0; row<NUMBER_OF_ROWS; row++) {
-            ((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatUnsignedInteger(address, addressBase),row,ADDRESS_COLUMN);
-            for (int column=1; column<NUMBER_OF_COLUMNS; column++) {
-               try {
-                  ((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(Globals.memory.getWordNoNotify(address), valueBase),row,column);
-               } 
-                  catch (AddressErrorException aee) {
-                     // Bit of a hack here.  Memory will throw an exception if you try to read directly from text segment when the
-                  	// self-modifying code setting is disabled.  This is a good thing if it is the executing MIPS program trying to
-                  	// read.  But not a good thing if it is the DataSegmentDisplay trying to read.  I'll trick Memory by 
-                  	// temporarily enabling the setting as "non persistent" so it won't write through to the registry.
-                     if (Memory.inTextSegment(address)) {
-                        int displayValue = 0;
-                        if (!Globals.getSettings().getBooleanSetting(Settings.SELF_MODIFYING_CODE_ENABLED)) {
-                           Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, true);
-                           try {
-                              displayValue = Globals.memory.getWordNoNotify(address);
-                           } 
-                              catch (AddressErrorException e) { 
-                              // Still got an exception?  Doesn't seem possible but if we drop through it will write default value 0.
-                              }
-                           Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, false);
-                        }
-                        ((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(displayValue, valueBase),row,column);
+         DataTableModel model = (DataTableModel) dataTable.getModel();
+         if (model.getRowForAddress(firstAddr) < 0) {
+            int[] range = getSegmentRange(firstAddr);
+            model.setRange(range[0], range[1]);
+         }
+         updateValues();
+         scrollToRow(model.getRowForAddress(firstAddr));
+      }
+   	
+   	// Scroll the table so the given row is at the top, or as near as possible.
+      private void scrollToRow(int row) {
+         JViewport viewport = dataTableScroller.getViewport();
+         int rowHeight = dataTable.getRowHeight();
+         int maxY = Math.max(0, dataTable.getRowCount() * rowHeight - viewport.getExtentSize().height);
+         viewport.setViewPosition(new Point(viewport.getViewPosition().x, Math.min(Math.max(row, 0) * rowHeight, maxY)));
+         updatePrevNextButtonEnableStatus();
+      }
+   	
+   	// Number of table rows that fit in the viewport.
+      private int getVisibleRowCount() {
+         int rows = dataTableScroller.getViewport().getExtentSize().height / dataTable.getRowHeight();
+         return (rows > 0) ? rows : NUMBER_OF_ROWS;
+      }
+   	
+   	// Round address down to the first address of its table row.
+      private static int alignToRow(int address) {
+         return address & ~(BYTES_PER_ROW - 1);
+      }
+   	
+   	// Given an address, return the first and last address of the memory segment 
+   	// containing it, which is the range covered by the table while it is displayed.
+   	// Segment limits come from Memory and depend on the memory configuration.  An
+   	// address outside every segment gets a range of MEMORY_CHUNK_SIZE bytes to itself.
+      private int[] getSegmentRange(int address) {
+         if (Memory.inTextSegment(address)) {
+            return new int[] {Memory.textBaseAddress, Memory.textLimitAddress - 1};
+         } 
+         else if (Memory.inDataSegment(address)) {
+            return new int[] {Memory.dataSegmentBaseAddress, Memory.dataSegmentLimitAddress - 1};
+         } 
+         else if (address >= Memory.stackLimitAddress && address <= Memory.userHighAddress) {
+            return new int[] {Memory.stackLimitAddress, Memory.userHighAddress};
+         } 
+         else if (Memory.inKernelDataSegment(address)) {
+            return new int[] {Memory.kernelDataBaseAddress, Memory.kernelDataSegmentLimitAddress - 1};
+         } 
+         else if (Memory.inMemoryMapSegment(address) || address == Memory.kernelHighAddress) {
+            return new int[] {Memory.memoryMapBaseAddress, Memory.kernelHighAddress};
+         }
+         int first = alignToRow(address);
+         return new int[] {first, (first > -1 - MEMORY_CHUNK_SIZE && first < 0) ? -1 : first + MEMORY_CHUNK_SIZE - 1};
+      }
+   	
+   	// Read a memory word for display without notifying observers.
+      private int getWordForDisplay(int address) {
+         try {
+            return Globals.memory.getWordNoNotify(address);
+         } 
+            catch (AddressErrorException aee) {
+               // Bit of a hack here.  Memory will throw an exception if you try to read directly from text segment when the
+            	// self-modifying code setting is disabled.  This is a good thing if it is the executing MIPS program trying to
+            	// read.  But not a good thing if it is the DataSegmentDisplay trying to read.  I'll trick Memory by 
+            	// temporarily enabling the setting as "non persistent" so it won't write through to the registry.
+               int displayValue = 0;
+               if (Memory.inTextSegment(address)) {
+                  if (!Globals.getSettings().getBooleanSetting(Settings.SELF_MODIFYING_CODE_ENABLED)) {
+                     Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, true);
+                     try {
+                        displayValue = Globals.memory.getWordNoNotify(address);
                      } 
-							// Bug Fix: the following line of code disappeared during the release 4.4 mods, but is essential to
-							// display values of 0 for valid MIPS addresses that are outside the MARS simulated address space.  Such
-							// addresses cause an AddressErrorException.  Prior to 4.4, they performed this line of code unconditionally.  
-							// With 4.4, I added the above IF statement to work with the text segment but inadvertently removed this line!
-							// Now it becomes the "else" part, executed when not in text segment.  DPS 8-July-2014.
-                     else {
-                        ((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(0, valueBase),row,column);
-                     }
+                        catch (AddressErrorException e) { 
+                        // Still got an exception?  Doesn't seem possible but if we drop through it will display default value 0.
+                        }
+                     Globals.getSettings().setBooleanSettingNonPersistent(Settings.SELF_MODIFYING_CODE_ENABLED, false);
                   }
-               address += BYTES_PER_VALUE;
+               } 
+            	// Valid MIPS addresses that are outside the MARS simulated address space display as 0.  DPS 8-July-2014.
+               return displayValue;
             }
-         }
       }
    	 
    	/**
-   	 * Update data display to show this value (I'm not sure it is being called).
+   	 * Update data display to show this value.  The row containing the address is
+   	 * read from memory again when it is next displayed.
    	 */
    	
       public void updateCell(int address, int value) {
-         int offset = address-this.firstAddress;
-         if (offset<0 || offset>=MEMORY_CHUNK_SIZE) { // out of range
-            return;
-         }
-         int row = offset/BYTES_PER_ROW;
-         int column = (offset % BYTES_PER_ROW)/BYTES_PER_VALUE + 1; // column 0 reserved for address
-         int valueBase = Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase();
-         ((DataTableModel)dataTable.getModel()).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(value, valueBase),
-                    row,column);
+         if (tablePanel.getComponentCount() == 0) 
+            return; // ignore if no content to change
+         ((DataTableModel)dataTable.getModel()).invalidateAddress(address);
       }
    	
    	/**
@@ -567,13 +592,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          if (tablePanel.getComponentCount() == 0) 
             return; // ignore if no content to change
          int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
-         int address = this.firstAddress;
-         String formattedAddress;
-         for(int i=0; i<NUMBER_OF_ROWS; i++) {
-            formattedAddress = NumberDisplayBaseChooser.formatUnsignedInteger(address, addressBase);
-            ((DataTableModel)dataTable.getModel()).setDisplayAndModelValueAt(formattedAddress, i, 0);
-            address += BYTES_PER_ROW;
-         }
+         ((DataTableModel)dataTable.getModel()).invalidateAll(getValueDisplayFormat(), addressBase);
       	// column headers include address offsets, so translate them too
          for (int i=1; i<NUMBER_OF_COLUMNS; i++) {
             dataTable.getColumnModel().getColumn(i).setHeaderValue(getHeaderStringForColumn(i, addressBase));
@@ -582,11 +601,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    	
       /**
-   	 * Update data display to show all values
+   	 * Update data display to show all values.  While memory write notices are being
+   	 * observed, rows are already refreshed as they are written, so nothing is done
+   	 * unless the display base has changed.
    	 */
    	 
       public void updateValues(){
-         updateModelForMemoryRange(this.firstAddress);
+         if (tablePanel.getComponentCount() == 0) 
+            return; // ignore if no content to change
+         int valueBase = getValueDisplayFormat();
+         int addressBase = Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase();
+         DataTableModel model = (DataTableModel) dataTable.getModel();
+         if (!observingWrites || !model.isFormattedWith(valueBase, addressBase)) {
+            model.invalidateAll(valueBase, addressBase);
+         }
       }
    
       /**
@@ -598,16 +626,13 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    
       /**
-   	 * Reset all data display values to 0
+   	 * Redisplay all data values from memory, which has typically just been reset.
    	 */   
    	
       public void resetValues(){
-         int valueBase = Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase();
-         TableModel dataModel = dataTable.getModel();
-         for (int row=0; row<NUMBER_OF_ROWS; row++) {
-            for (int column=1; column<NUMBER_OF_COLUMNS; column++) {
-               ((DataTableModel)dataModel).setDisplayAndModelValueAt(NumberDisplayBaseChooser.formatNumber(0, valueBase),row,column);
-            }
+         if (tablePanel.getComponentCount() != 0) {
+            ((DataTableModel)dataTable.getModel()).invalidateAll(getValueDisplayFormat(), 
+                             Globals.getGui().getMainPane().getExecutePane().getAddressDisplayBase());
          }
          disableAllButtons();
       }
@@ -775,11 +800,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       }
    	
    	////////////////////////////////////////////////////////////////////////////////////
-   	// This will assure that user cannot view memory locations outside the data segment
-   	// for selected mode.  For user mode, this means no lower than data segment base,
-   	// or higher than user memory boundary.  For kernel mode, this means no lower than
-   	// kernel data segment base or higher than kernel memory.  It is called by the
-   	// above action listeners.
+   	// This will assure that user cannot view memory locations outside the memory segment
+   	// containing homeAddress.  The table is set to cover that whole segment if it does 
+   	// not already.  It is called by the above action listeners.
    	//
    	// lowAddress is lowest desired address to view, it is adjusted if necessary
    	// and returned.
@@ -787,28 +810,27 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	// PrevButton and NextButton are enabled/disabled appropriately.
    	//
       private int setFirstAddressAndPrevNextButtonEnableStatus(int lowAddress) {
-         int lowLimit = (userOrKernelMode==USER_MODE) ? Math.min(Math.min(Globals.memory.textBaseAddress,
-            													 Globals.memory.dataSegmentBaseAddress),
-            																		Globals.memory.dataBaseAddress)
-                                                      : Globals.memory.kernelDataBaseAddress;
-         int highLimit= (userOrKernelMode==USER_MODE) ? Globals.memory.userHighAddress
-                                                      : Globals.memory.kernelHighAddress;
-         if (lowAddress <= lowLimit) {
-            lowAddress = lowLimit;
-            prevButton.setEnabled(false);
-         } 
-         else {
-            prevButton.setEnabled(true);
+         if (tablePanel.getComponentCount() == 0) 
+            return lowAddress;
+         DataTableModel model = (DataTableModel) dataTable.getModel();
+         int[] range = getSegmentRange(homeAddress);
+         if (!model.hasRange(range[0], range[1])) {
+            model.setRange(range[0], range[1]);
          }
-         if (lowAddress >= highLimit - MEMORY_CHUNK_SIZE) {
-            lowAddress = highLimit - MEMORY_CHUNK_SIZE + 1;
-            nextButton.setEnabled(false);
-         } 
-         else {
-            nextButton.setEnabled(true);
+         if (model.getRowForAddress(lowAddress) < 0) {
+            boolean belowRange = (lowAddress & 0xFFFFFFFFL) < (model.getRowAddress(0) & 0xFFFFFFFFL);
+            lowAddress = model.getRowAddress(belowRange ? 0 : model.getRowCount() - 1);
          }
          return lowAddress;
       }
+   	
+   	// Prev is enabled unless the first row is at the top, and Next unless the last
+   	// row is visible.
+      private void updatePrevNextButtonEnableStatus() {
+         int topRow = dataTable.rowAtPoint(dataTableScroller.getViewport().getViewPosition());
+         prevButton.setEnabled(topRow > 0);
+         nextButton.setEnabled(topRow >= 0 && topRow + getVisibleRowCount() < dataTable.getRowCount());
+      }
    
    	
     	/** Required by Observer interface.  Called when notified by an Observable that we are registered with.
@@ -830,12 +852,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             	// or stepped mode.
                if (notice.getRunSpeed() != RunSpeedPanel.UNLIMITED_SPEED || notice.getMaxSteps()==1) {
                   Memory.getInstance().addObserver(this);
+                  observingWrites = true;
                   addressHighlighting = true;
                }
             } 
             else {
                // Simulated MIPS execution stops.  Stop responding.
                Memory.getInstance().deleteObserver(this);
+               observingWrites = false;
             }
          } 
          else if (observable == settings) { 
@@ -847,6 +871,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             MemoryAccessNotice access = (MemoryAccessNotice) obj;
             if (access.getAccessType()==AccessNotice.WRITE) {
                int address = access.getAddress();
+               this.updateCell(address, access.getValue());
             	// Use the same highlighting technique as for Text Segment -- see
             	// AddressCellRenderer class below.
                this.highlightCellForAddress(address);
@@ -880,12 +905,100 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	// Class representing memory data table data
    	
       class DataTableModel extends AbstractTableModel {
+         // Formatted rows are kept for a few screens' worth of scrolling.
+         private static final int MAX_CACHED_ROWS = 512;
          String[] columnNames;
-         Object[][] data;         
+         private int firstRowAddress;
+         private int rowCount;
+         private int valueBase, addressBase; // used for the formatted rows now held
+         private LinkedHashMap<Integer,Object[]> rows;  // row number -> formatted cells, least recently used first
       	
-         public DataTableModel(Object[][] d, String [] n){
-            data=d;
+         public DataTableModel(String [] n, int valueBase, int addressBase){
             columnNames= n;
+            this.valueBase = valueBase;
+            this.addressBase = addressBase;
+            rows = 
+               new LinkedHashMap<Integer,Object[]>(MAX_CACHED_ROWS, 0.75f, true) {
+                  protected boolean removeEldestEntry(Map.Entry<Integer,Object[]> eldest) {
+                     return size() > MAX_CACHED_ROWS;
+                  }
+               };
+         }
+      
+        /*
+         * Set the table to cover memory from firstAddress through lastAddress (inclusive).
+         */
+         public void setRange(int firstAddress, int lastAddress) {
+            synchronized (this) {
+               firstRowAddress = alignToRow(firstAddress);
+               rowCount = (int) (((lastAddress & 0xFFFFFFFFL) - (firstRowAddress & 0xFFFFFFFFL)) / BYTES_PER_ROW) + 1;
+               rows.clear();
+            }
+            fireTableDataChanged();
+         }
+      
+         public boolean hasRange(int firstAddress, int lastAddress) {
+            return firstRowAddress == alignToRow(firstAddress) && getRowForAddress(lastAddress) == rowCount - 1;
+         }
+      
+         public int getRowAddress(int row) {
+            return firstRowAddress + row * BYTES_PER_ROW;
+         }
+      
+        /*
+         * Returns table row containing the given address, -1 if it is not covered.
+         */
+         public int getRowForAddress(int address) {
+            long offset = (address & 0xFFFFFFFFL) - (firstRowAddress & 0xFFFFFFFFL);
+            return (offset < 0 || offset >= (long) rowCount * BYTES_PER_ROW) ? -1 : (int) (offset / BYTES_PER_ROW);
+         }
+      
+         public boolean isFormattedWith(int valueBase, int addressBase) {
+            return this.valueBase == valueBase && this.addressBase == addressBase;
+         }
+      
+        /*
+         * Discard all formatted rows, to be formatted again in the given bases as they
+         * are displayed, and repaint.
+         */
+         public void invalidateAll(int valueBase, int addressBase) {
+            synchronized (this) {
+               this.valueBase = valueBase;
+               this.addressBase = addressBase;
+               rows.clear();
+            }
+            if (rowCount > 0) {
+               fireTableRowsUpdated(0, rowCount-1);
+            }
+         }
+      
+        /*
+         * Discard the formatted row containing the address, if any, and repaint it.
+         */
+         public void invalidateAddress(int address) {
+            int row = getRowForAddress(address);
+            if (row >= 0) {
+               synchronized (this) {
+                  rows.remove(row);
+               }
+               fireTableRowsUpdated(row, row);
+            }
+         }
+      
+        // Formatted cells of a row, reading and formatting them if not held.
+         private synchronized Object[] getRow(int row) {
+            Object[] cells = rows.get(row);
+            if (cells == null) {
+               cells = new Object[NUMBER_OF_COLUMNS];
+               int address = getRowAddress(row);
+               cells[ADDRESS_COLUMN] = NumberDisplayBaseChooser.formatUnsignedInteger(address, addressBase);
+               for (int column=1; column<NUMBER_OF_COLUMNS; column++) {
+                  cells[column] = NumberDisplayBaseChooser.formatNumber(getWordForDisplay(address), valueBase);
+                  address += BYTES_PER_VALUE;
+               }
+               rows.put(row, cells);
+            }
+            return cells;
          }
       
          public int getColumnCount() {
@@ -893,7 +1006,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
         
          public int getRowCount() {
-            return data.length;
+            return rowCount;
          }
       
          public String getColumnName(int col) {
@@ -901,7 +1014,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
       
          public Object getValueAt(int row, int col) {
-            return data[row][col];
+            return getRow(row)[col];
          }
       
         /*
@@ -941,24 +1054,17 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          */
          public void setValueAt(Object value, int row, int col) {
             int val=0;
-            int address=0;
             try {
                val = Binary.stringToInt((String) value);
             }
                catch (NumberFormatException nfe) {
-                  data[row][col] = "INVALID";
+                  getRow(row)[col] = "INVALID";
                   fireTableCellUpdated(row, col);
                   return;
                }
          
                // calculate address from row and column
-            try {
-               address = Binary.stringToInt((String)data[row][ADDRESS_COLUMN]) + (col-1)*BYTES_PER_VALUE;  // KENV 1/6/05
-            }
-               catch (NumberFormatException nfe) {
-                  //  can't really happen since memory addresses are completely under
-                  // the control of my software.
-               }
+            int address = getRowAddress(row) + (col-1)*BYTES_PER_VALUE;  // KENV 1/6/05
          	//  Assures that if changed during MIPS program execution, the update will
          	//  occur only between MIPS instructions.
             synchronized (Globals.memoryAndRegistersLock) {
@@ -972,33 +1078,10 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                   }
             }// end synchronized block
             int valueBase = Globals.getGui().getMainPane().getExecutePane().getValueDisplayBase();
-            data[row][col] = NumberDisplayBaseChooser.formatNumber(val, valueBase); 
+            getRow(row)[col] = NumberDisplayBaseChooser.formatNumber(val, valueBase); 
             fireTableCellUpdated(row, col);
             return;
          }
-      
-      
-        /*
-         * Update cell contents in table model.  Does not affect MIPS memory.
-         */
-         private void setDisplayAndModelValueAt(Object value, int row, int col) {
-            data[row][col] = value;
-            fireTableCellUpdated(row, col);
-         }
-      
-         private void printDebugData() {
-            int numRows = getRowCount();
-            int numCols = getColumnCount();
-         
-            for (int i=0; i < numRows; i++) {
-               System.out.print("    row " + i + ":");
-               for (int j=0; j < numCols; j++) {
-                  System.out.print("  " + data[i][j]);
-               }
-               System.out.println();
-            }
-            System.out.println("--------------------------");
-         }
       }  
       
    	
@@ -1013,7 +1096,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                                     isSelected, hasFocus, row, column);
          	
             cell.setHorizontalAlignment(SwingConstants.RIGHT);
-            int rowFirstAddress = Binary.stringToInt(table.getValueAt(row,ADDRESS_COLUMN).toString());
+            int rowFirstAddress = ((DataTableModel) table.getModel()).getRowAddress(row);
             if (settings.getDataSegmentHighlighting() && addressHighlighting  && rowFirstAddress==addressRowFirstAddress && column==addressColumn) {
                cell.setBackground( settings.getColorSettingByPosition(Settings.DATASEGMENT_HIGHLIGHT_BACKGROUND) );
                cell.setForeground( settings.getColorSettingByPosition(Settings.DATASEGMENT_HIGHLIGHT_FOREGROUND) );
@@ -1083,9 +1166,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
       	// This one will respond when either timer goes off or button lifted.
          public void actionPerformed(ActionEvent ae) {
-            firstAddress -= PREV_NEXT_CHUNK_SIZE;
+            firstAddress -= Math.max(1, getVisibleRowCount() / 2) * BYTES_PER_ROW;
             firstAddress = setFirstAddressAndPrevNextButtonEnableStatus(firstAddress);
-            updateModelForMemoryRange(firstAddress);
+            scrollToRow(((DataTableModel) dataTable.getModel()).getRowForAddress(firstAddress));
          }
       }//////////////////////////////////////////////////////////////////////
    	
@@ -1105,9 +1188,9 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          }
       	// This one will respond when either timer goes off or button lifted.
          public void actionPerformed(ActionEvent ae) {
-            firstAddress += PREV_NEXT_CHUNK_SIZE;
+            firstAddress += Math.max(1, getVisibleRowCount() / 2) * BYTES_PER_ROW;
             firstAddress = setFirstAddressAndPrevNextButtonEnableStatus(firstAddress);
-            updateModelForMemoryRange(firstAddress);
+            scrollToRow(((DataTableModel) dataTable.getModel()).getRowForAddress(firstAddress));
          }
       }//////////////////////////////////////////////////////////////////////
    	
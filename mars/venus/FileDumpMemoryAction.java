@@ -52,10 +52,11 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private int[] baseAddressArray;      
       private int[] limitAddressArray;
       private int[] highAddressArray;
-   	// These three are allocated and filled by buildDialogPanel() and used by action listeners.
+   	// These four are allocated and filled by buildDialogPanel() and used by action listeners.
       private String[] segmentListArray;  
       private int[] segmentListBaseArray; 
       private int[] segmentListHighArray;
+      private int[] segmentListLimitArray;
    	 
       private JComboBox segmentListSelector;
       private JComboBox formatListSelector;
@@ -112,6 +113,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          segmentListArray = new String[segmentArray.length];
          segmentListBaseArray = new int[segmentArray.length];
          segmentListHighArray = new int[segmentArray.length];
+         segmentListLimitArray = new int[segmentArray.length];
         
          // Calculate the actual highest address to be dumped.  For text segment, this depends on the
       	// program length (number of machine code instructions).  For data segment, this depends on
@@ -134,6 +136,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             if (highAddressArray[i] >= baseAddressArray[i]) {
                segmentListBaseArray[segmentCount] = baseAddressArray[i];
                segmentListHighArray[segmentCount] = highAddressArray[i];
+               segmentListLimitArray[segmentCount] = limitAddressArray[i] - Memory.WORD_LENGTH_BYTES;
                segmentListArray[segmentCount] = 
                        segmentArray[i] + " (" + Binary.intToHexString(baseAddressArray[i]) + 
                        " - " + Binary.intToHexString(highAddressArray[i]) + ")";
@@ -188,9 +191,12 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          dumpButton.addActionListener(
                 new ActionListener() {
                    public void actionPerformed(ActionEvent e) {
-                     if (performDump(segmentListBaseArray[segmentListSelector.getSelectedIndex()], 
-                                 segmentListHighArray[segmentListSelector.getSelectedIndex()], 
-                        			(DumpFormat)formatListSelector.getSelectedItem())) {
+                     DumpFormat format = (DumpFormat)formatListSelector.getSelectedItem();
+                     int segment = segmentListSelector.getSelectedIndex();
+                     // A sparse format skips unused memory itself, so give it the whole segment.
+                     if (performDump(segmentListBaseArray[segment], 
+                                 (format instanceof MemoryImageDumpFormat) ? segmentListLimitArray[segment] : segmentListHighArray[segment], 
+                        			format)) {
                         closeDialog();
                      }
                   }
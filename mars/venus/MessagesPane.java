@@ -10,6 +10,7 @@
    import mars.simulator.Simulator;
    import javax.swing.event.DocumentEvent;
    import javax.swing.text.Position.Bias;
+   import java.io.*;
 
 /*
 Copyright (c) 2003-2010,  Pete Sanderson and Kenneth Vollmar
@@ -55,6 +56,14 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	// must obviously be smaller than the former.
       public static final int MAXIMUM_SCROLLED_CHARACTERS = Globals.maximumMessageCharacters;
       public static final int NUMBER_OF_CHARACTERS_TO_CUT = Globals.maximumMessageCharacters/10 ; // 10%
+   	// Run output is collected here by postRunMessage and appended to the run text
+   	// area in one piece by a single queued RunOutputFlusher.  Guarded by itself.
+      private final StringBuilder pendingRunOutput = new StringBuilder();
+      private boolean runOutputFlushPending = false;
+   	// When not null, all run output is also written here.  Guarded by pendingRunOutput.
+      private Writer runOutputLog = null;
+      private File runOutputLogFile = null;
+      private JCheckBox runTabLogCheckBox;
    
    /**
      *  Constructor for the class, sets up two fresh tabbed text areas for program feedback.
@@ -161,8 +170,16 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
                      run.setText("");
                   }
                });
+         runTabLogCheckBox = new JCheckBox("Log");
+         runTabLogCheckBox.setToolTipText("Also write all Run I/O output to a temporary file, which is never cut");
+         runTabLogCheckBox.addItemListener(
+                new ItemListener() {
+                   public void itemStateChanged(ItemEvent e) {
+                     setRunOutputLogging(e.getStateChange() == ItemEvent.SELECTED);
+                  }
+               });
          runTab = new JPanel(new BorderLayout());
-         runTab.add(createBoxForButton(runTabClearButton),BorderLayout.WEST);
+         runTab.add(createBoxForButtons(new JComponent[] {runTabClearButton, runTabLogCheckBox}),BorderLayout.WEST);
          runTab.add(new JScrollPane(run, ScrollPaneConstants.VERTICAL_SCROLLBAR_AS_NEEDED, 
                        ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED), BorderLayout.CENTER);				
          this.addTab("Mars Messages", assembleTab);
@@ -173,13 +190,20 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	
       // Center given button in a box, centered vertically and 6 pixels on left and right
        private Box createBoxForButton(JButton button) {
-         Box buttonRow = Box.createHorizontalBox();
-         buttonRow.add(Box.createHorizontalStrut(6));
-         buttonRow.add(button);
-         buttonRow.add(Box.createHorizontalStrut(6));
+         return createBoxForButtons(new JComponent[] {button});
+      }
+   	
+      // Stack given buttons in a box, centered vertically and 6 pixels on left and right
+       private Box createBoxForButtons(JComponent[] buttons) {
          Box buttonBox = Box.createVerticalBox();
          buttonBox.add(Box.createVerticalGlue());
-         buttonBox.add(buttonRow);
+         for (int i=0; i<buttons.length; i++) {
+            Box buttonRow = Box.createHorizontalBox();
+            buttonRow.add(Box.createHorizontalStrut(6));
+            buttonRow.add(buttons[i]);
+            buttonRow.add(Box.createHorizontalStrut(6));
+            buttonBox.add(buttonRow);
+         }
          buttonBox.add(Box.createVerticalGlue());
          return buttonBox;
       }
@@ -298,26 +322,123 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	// "print" syscalls. "invokeLater" schedules the code to be
    	// run under the event-processing thread no matter what.
    	// DPS, 23 Aug 2005.
+   	// Messages are collected and only one flush is queued at a time, so a program
+   	// that prints a great deal does not flood the event queue, and the text area
+   	// is appended to and cut once per flush rather than once per message.
        public void postRunMessage(String message) {
-         final String mess = message;
-         SwingUtilities.invokeLater(
-                new Runnable() { 
-                   public void run() { 
-                     setSelectedComponent(runTab);
-                     run.append(mess);
-                  // can do some crude cutting here.  If the document gets "very large", 
-                  // let's cut off the oldest text. This will limit scrolling but the limit 
-                  // can be set reasonably high.
-                     if (run.getDocument().getLength() > MAXIMUM_SCROLLED_CHARACTERS) {
-                        try {
-                           run.getDocument().remove(0, NUMBER_OF_CHARACTERS_TO_CUT);
-                        } 
-                            catch (BadLocationException ble) { 
-                           // only if NUMBER_OF_CHARACTERS_TO_CUT > MAXIMUM_SCROLLED_CHARACTERS
-                           }
-                     }
+         synchronized (pendingRunOutput) {
+            pendingRunOutput.append(message);
+            // Text beyond the display limit would be cut right after it is appended anyway.
+            if (pendingRunOutput.length() > 2 * MAXIMUM_SCROLLED_CHARACTERS) {
+               pendingRunOutput.delete(0, pendingRunOutput.length() - MAXIMUM_SCROLLED_CHARACTERS);
+            }
+            if (runOutputLog != null) {
+               try {
+                  runOutputLog.write(message);
+               } 
+                   catch (IOException e) {
+                     closeRunOutputLog();
+                  }
+            }
+            if (runOutputFlushPending) {
+               return;
+            }
+            runOutputFlushPending = true;
+         }
+         SwingUtilities.invokeLater(new RunOutputFlusher());
+      }
+   	
+   	// Appends collected run output to the run text area.  Runs on the event thread.
+       private class RunOutputFlusher implements Runnable {
+          public void run() {
+            String text;
+            synchronized (pendingRunOutput) {
+               text = pendingRunOutput.toString();
+               pendingRunOutput.setLength(0);
+               runOutputFlushPending = false;
+               if (runOutputLog != null) {
+                  try {
+                     runOutputLog.flush();
                   } 
-               });
+                      catch (IOException e) {
+                        closeRunOutputLog();
+                     }
+               }
+            }
+            setSelectedComponent(runTab);
+            if (text.length() > MAXIMUM_SCROLLED_CHARACTERS) {
+               text = text.substring(text.length() - MAXIMUM_SCROLLED_CHARACTERS);
+            }
+            run.append(text);
+         // can do some crude cutting here.  If the document gets "very large", 
+         // let's cut off the oldest text. This will limit scrolling but the limit 
+         // can be set reasonably high.
+            int length = run.getDocument().getLength();
+            if (length > MAXIMUM_SCROLLED_CHARACTERS) {
+               try {
+                  run.getDocument().remove(0, Math.min(length, length - MAXIMUM_SCROLLED_CHARACTERS + NUMBER_OF_CHARACTERS_TO_CUT));
+               } 
+                   catch (BadLocationException ble) { 
+                  // only if NUMBER_OF_CHARACTERS_TO_CUT > MAXIMUM_SCROLLED_CHARACTERS
+                  }
+            }
+         }
+      }
+   	
+   	/**
+   	 *  Start or stop writing all run output to a log file in addition to the run
+   	 *  text area.  The log is a new temporary file, which is not cut, so it holds
+   	 *  output beyond what the text area keeps.  Its name is posted to the Mars 
+   	 *  Messages tab.
+   	 *
+   	 *  @param enabled true to start logging, false to stop.
+   	 */
+       public void setRunOutputLogging(boolean enabled) {
+         String note = null;
+         synchronized (pendingRunOutput) {
+            if (enabled && runOutputLog == null) {
+               try {
+                  runOutputLogFile = File.createTempFile("mars-run-", ".txt");
+                  runOutputLog = new BufferedWriter(new FileWriter(runOutputLogFile));
+                  note = "Logging Run I/O output to " + runOutputLogFile.getPath() + "\n";
+               } 
+                   catch (IOException e) {
+                     note = "Cannot create Run I/O log file: " + e.getMessage() + "\n";
+                     runOutputLog = null;
+                  }
+            } 
+            else if (!enabled && runOutputLog != null) {
+               note = "Run I/O output logged to " + runOutputLogFile.getPath() + "\n";
+               closeRunOutputLog();
+            }
+         }
+         if (note != null) {
+            postMarsMessage(note);
+         }
+         if (runTabLogCheckBox.isSelected() != (runOutputLog != null)) {
+            runTabLogCheckBox.setSelected(runOutputLog != null);
+         }
+      }
+   
+   	/**
+   	 *  Get the file run output is being logged to.
+   	 *
+   	 *  @return the log file, or null if run output is not being logged.
+   	 */
+       public File getRunOutputLogFile() {
+         synchronized (pendingRunOutput) {
+            return (runOutputLog == null) ? null : runOutputLogFile;
+         }
+      }
+   
+      // Caller must hold the pendingRunOutput lock.
+       private void closeRunOutputLog() {
+         try {
+            runOutputLog.close();
+         } 
+             catch (IOException e) { 
+            }
+         runOutputLog = null;
       }
    	
    	/**
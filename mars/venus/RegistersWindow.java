@@ -343,6 +343,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          * Update cell contents in table model.  Does not affect MIPS register.
          */
           private void setDisplayAndModelValueAt(Object value, int row, int col) {
+            if (value.equals(data[row][col]))
+               return; // unchanged, so no need to repaint the cell
             data[row][col] = value;
             fireTableCellUpdated(row, col);
          }
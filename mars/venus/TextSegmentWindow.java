@@ -59,7 +59,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 * consistent once set up, since address column is not editable.
    	 */
       private  int[] intAddresses;      // index is table model row, value is text address
-      private  Hashtable addressRows;   // key is text address, value is table model row
+      private  AddressRowIndex addressRows; // maps text address to table model row
       private  Hashtable<Integer, ModifiedCode> executeMods;   // key is table model row, value is original code, basic, source.
       private  Container contentPane;
       private  TextTableModel tableModel;
@@ -67,6 +67,7 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
       private  boolean codeHighlighting;
       private boolean breakpointsEnabled;  // Added 31 Dec 2009
       private int highlightAddress;
+      private int highlightRow = -1;   // table model row last highlighted, -1 if none
       private TableModelListener tableModelListener;
       private boolean inDelaySlot; // Added 25 June 2007
    	
@@ -111,7 +112,6 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          ArrayList sourceStatementList = Globals.program.getMachineList();
          data = new Object[sourceStatementList.size()][columnNames.length];
          intAddresses = new int[data.length];
-         addressRows = new Hashtable(data.length);
          executeMods = new Hashtable<Integer,ModifiedCode>(data.length);
       	// Get highest source line number to determine #leading spaces so line numbers will vertically align
       	// In multi-file situation, this will not necessarily be the last line b/c sourceStatementList contains
@@ -129,7 +129,6 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
          for (int i = 0; i < sourceStatementList.size(); i++) {
             ProgramStatement statement = (ProgramStatement) sourceStatementList.get(i);
             intAddresses[i] = statement.getAddress();
-            addressRows.put(new Integer(intAddresses[i]), new Integer(i));
             data[i][BREAK_COLUMN] = Boolean.FALSE;
             data[i][ADDRESS_COLUMN] = NumberDisplayBaseChooser.formatUnsignedInteger(statement.getAddress(), addressBase);
             data[i][CODE_COLUMN] = NumberDisplayBaseChooser.formatNumber(statement.getBinaryStatement(), 16);
@@ -147,6 +146,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
             data[i][SOURCE_COLUMN] = sourceString;
             lastLine=statement.getSourceLine();
          }
+         addressRows = new AddressRowIndex(intAddresses);
+         highlightRow = -1;
          contentPane.removeAll();
          tableModel = new TextTableModel(data);
          if (tableModelListener!=null) {
@@ -524,21 +525,25 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public void highlightStepAtAddress(int address, boolean inDelaySlot) {
          highlightAddress = address;
       	// Scroll if necessary to assure highlighted row is visible.
+         int previousRow = highlightRow;
          int row = 0;
          try {
             row = findRowForAddress(address);
          } 
              catch (IllegalArgumentException e) {
+               highlightRow = -1;
+               fireRowUpdated(previousRow);
                return;
             }
          table.scrollRectToVisible(table.getCellRect(row, 0, true));
          this.inDelaySlot = inDelaySlot;// Added 25 June 2007
          // Trigger highlighting, which is done by the column's cell renderer.
-         // IMPLEMENTATION NOTE: Pretty crude implementation; mark all rows 
-         // as changed so assure that the previously highlighted row is 
-         // unhighlighted.  Would be better to keep track of previous row
-         // then fire two events: one for it and one for the new row.
-         table.tableChanged(new TableModelEvent(tableModel));
+         // Only the previously highlighted row and the new one need repainting.
+         highlightRow = row;
+         if (previousRow != row) {
+            fireRowUpdated(previousRow);
+         }
+         fireRowUpdated(row);
          //this.inDelaySlot = false;// Added 25 June 2007
       }
    
@@ -565,8 +570,8 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
        public void unhighlightAllSteps() {
          boolean saved = this.getCodeHighlighting();
          this.setCodeHighlighting(false);
-         table.tableChanged(new TableModelEvent(tableModel,0,data.length-1, BASIC_COLUMN));
-         table.tableChanged(new TableModelEvent(tableModel,0,data.length-1, SOURCE_COLUMN));
+         // Only the row at the highlight address can be rendered highlighted.
+         fireRowUpdated(highlightRow);
          this.setCodeHighlighting(saved);
       }
      
@@ -666,16 +671,77 @@ WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
    	 *  corresponding to this address.
    	 */
        private int findRowForAddress(int address) throws IllegalArgumentException {
-         int addressRow = 0;
-         try {
-            addressRow = ((Integer)addressRows.get(new Integer(address))).intValue();
-         } 
-             catch (NullPointerException e) {
-               throw new IllegalArgumentException(); // address not found in map
-               //return addressRow;// if address not in map, do nothing.
-            }
+         int addressRow = (addressRows == null) ? -1 : addressRows.getRow(address);
+         if (addressRow < 0) {
+            throw new IllegalArgumentException(); // address not found in map
+         }
          return addressRow;
       }  
+   
+   	/*
+   	 *  Notify the table that all cells of the given table model row have changed,
+   	 *  so it will be repainted.  Does nothing if row is negative.
+   	 */
+       private void fireRowUpdated(int row) {
+         if (row >= 0 && row < data.length) {
+            table.tableChanged(new TableModelEvent(tableModel, row, row));
+         }
+      }
+   
+   /**
+    *  Maps text segment addresses to table model rows in constant time.  The statement
+    *  addresses are split into regions of nearby addresses (user and kernel text are far
+    *  apart), and each region has an array giving the row for every word in it, or -1
+    *  if there is no statement at that word.
+    */
+       private class AddressRowIndex {
+         // Longest run of words without a statement that is kept inside a region.
+         private static final int MAX_GAP_WORDS = 4096;
+         private int[] regionBase;
+         private int[][] regionRows;
+      
+          public AddressRowIndex(int[] addresses) {
+            ArrayList<int[]> regions = new ArrayList<int[]>(); // first and last row of each region
+            int first = 0;
+            for (int i = 1; i <= addresses.length; i++) {
+               if (i == addresses.length || wordDistance(addresses[i-1], addresses[i]) < 1
+                   || wordDistance(addresses[i-1], addresses[i]) > MAX_GAP_WORDS) {
+                  if (i > first) {
+                     regions.add(new int[] {first, i-1});
+                  }
+                  first = i;
+               }
+            }
+            regionBase = new int[regions.size()];
+            regionRows = new int[regions.size()][];
+            for (int r = 0; r < regions.size(); r++) {
+               int firstRow = regions.get(r)[0];
+               int lastRow = regions.get(r)[1];
+               regionBase[r] = addresses[firstRow];
+               regionRows[r] = new int[(int) wordDistance(addresses[firstRow], addresses[lastRow]) + 1];
+               Arrays.fill(regionRows[r], -1);
+               for (int row = firstRow; row <= lastRow; row++) {
+                  regionRows[r][(int) wordDistance(regionBase[r], addresses[row])] = row;
+               }
+            }
+         }
+      
+         // Returns table model row for the statement at the given address, -1 if none.
+          public int getRow(int address) {
+            for (int r = 0; r < regionBase.length; r++) {
+               long offset = wordDistance(regionBase[r], address);
+               if (offset >= 0 && offset < regionRows[r].length && (address & 3) == (regionBase[r] & 3)) {
+                  return regionRows[r][(int) offset];
+               }
+            }
+            return -1;
+         }
+      
+         // Number of words from one address to another, treating addresses as unsigned.
+          private long wordDistance(int from, int to) {
+            return ((to & 0xFFFFFFFFL) - (from & 0xFFFFFFFFL)) >> 2;
+         }
+      }
      
    
      